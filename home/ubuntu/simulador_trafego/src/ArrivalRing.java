@@ -0,0 +1,96 @@
+package com.simuladortrafego;
+
+// Fila FIFO de chegadas que ainda não entraram na rede, em colunas circulares (id, destino, classe, tick).
+// A origem é o link dono da fila. Sem slot do VehiclePool: o veículo só ganha registro ao ser admitido,
+// então uma entrada saturada por muito tempo custa 17 bytes por chegada, não um registro inteiro.
+final class ArrivalRing {
+    private int[] ids;
+    private int[] destinations;
+    private byte[] classes;
+    private long[] ticks;
+    private int head = 0;
+    private int size = 0;
+
+    ArrivalRing(int initialCapacity) {
+        int capacity = Math.max(4, Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1);
+        this.ids = new int[capacity];
+        this.destinations = new int[capacity];
+        this.classes = new byte[capacity];
+        this.ticks = new long[capacity];
+    }
+
+    ArrivalRing(ArrivalRing source) {
+        this.ids = source.ids.clone();
+        this.destinations = source.destinations.clone();
+        this.classes = source.classes.clone();
+        this.ticks = source.ticks.clone();
+        this.head = source.head;
+        this.size = source.size;
+    }
+
+    void addLast(int id, int destination, int vehicleClass, long tick) {
+        if (size == ids.length) grow();
+        int k = (head + size) & (ids.length - 1);
+        ids[k] = id;
+        destinations[k] = destination;
+        classes[k] = (byte) vehicleClass;
+        ticks[k] = tick;
+        size++;
+    }
+
+    // Campos da chegada mais antiga; removeFirst descarta
+    int firstId() {
+        if (size == 0) throw new IllegalStateException("Fila vazia.");
+        return ids[head];
+    }
+
+    int firstDestination() {
+        return destinations[head];
+    }
+
+    int firstClass() {
+        return classes[head];
+    }
+
+    long firstTick() {
+        return ticks[head];
+    }
+
+    int id(int index) {
+        return ids[(head + index) & (ids.length - 1)];
+    }
+
+    void removeFirst() {
+        if (size == 0) throw new IllegalStateException("Fila vazia.");
+        head = (head + 1) & (ids.length - 1);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void grow() {
+        int capacity = ids.length << 1;
+        int[] biggerIds = new int[capacity];
+        int[] biggerDestinations = new int[capacity];
+        byte[] biggerClasses = new byte[capacity];
+        long[] biggerTicks = new long[capacity];
+        for (int k = 0; k < size; k++) {
+            int from = (head + k) & (ids.length - 1);
+            biggerIds[k] = ids[from];
+            biggerDestinations[k] = destinations[from];
+            biggerClasses[k] = classes[from];
+            biggerTicks[k] = ticks[from];
+        }
+        ids = biggerIds;
+        destinations = biggerDestinations;
+        classes = biggerClasses;
+        ticks = biggerTicks;
+        head = 0;
+    }
+}
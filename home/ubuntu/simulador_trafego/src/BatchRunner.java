@@ -0,0 +1,326 @@
+package com.simuladortrafego;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Executa réplicas Monte Carlo de uma matriz de cenários em paralelo.
+// Cada réplica é um TickEngine isolado; o Grid/NetworkIndex é congelado e compartilhado por todas.
+public class BatchRunner {
+    private final int threads;
+
+    public BatchRunner(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Número de threads deve ser positivo.");
+        }
+        this.threads = threads;
+    }
+
+    public static final class Estimate {
+        private final int n;
+        private final double mean;
+        private final double stdDev;
+        private final double halfWidth95;
+
+        Estimate(double[] samples) {
+            this.n = samples.length;
+            double sum = 0;
+            for (double x : samples) sum += x;
+            this.mean = n > 0 ? sum / n : 0.0;
+            double sq = 0;
+            for (double x : samples) sq += (x - mean) * (x - mean);
+            this.stdDev = n > 1 ? Math.sqrt(sq / (n - 1)) : 0.0;
+            this.halfWidth95 = n > 1 ? studentT975(n - 1) * stdDev / Math.sqrt(n) : Double.NaN;
+        }
+
+        public int getN() {
+            return n;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getStdDev() {
+            return stdDev;
+        }
+
+        public double getHalfWidth95() {
+            return halfWidth95;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.2f ± %.2f", mean, halfWidth95);
+        }
+    }
+
+    public static final class ScenarioSummary {
+        private final Scenario scenario;
+        private final List<ReplicationResult> replications;
+        private final Estimate delay;
+        private final Estimate throughput;
+        private final Estimate pedestrianDelay;
+        private final Estimate co2Kg;
+        private final Estimate noxGrams;
+        private final Estimate fuelLiters;
+
+        ScenarioSummary(Scenario scenario, List<ReplicationResult> replications) {
+            this.scenario = scenario;
+            this.replications = replications;
+            double[] delays = new double[replications.size()];
+            double[] flows = new double[replications.size()];
+            double[] pedestrians = new double[replications.size()];
+            double[] co2 = new double[replications.size()];
+            double[] nox = new double[replications.size()];
+            double[] fuel = new double[replications.size()];
+            for (int r = 0; r < delays.length; r++) {
+                delays[r] = replications.get(r).getMeanDelaySeconds();
+                flows[r] = replications.get(r).getThroughputPerHour();
+                pedestrians[r] = replications.get(r).getMeanPedestrianDelaySeconds();
+                co2[r] = replications.get(r).getCo2Grams() / 1000;
+                nox[r] = replications.get(r).getNoxGrams();
+                fuel[r] = replications.get(r).getFuelLiters();
+            }
+            this.delay = new Estimate(delays);
+            this.throughput = new Estimate(flows);
+            this.pedestrianDelay = new Estimate(pedestrians);
+            this.co2Kg = new Estimate(co2);
+            this.noxGrams = new Estimate(nox);
+            this.fuelLiters = new Estimate(fuel);
+        }
+
+        public Scenario getScenario() {
+            return scenario;
+        }
+
+        public List<ReplicationResult> getReplications() {
+            return replications;
+        }
+
+        public Estimate getDelay() {
+            return delay;
+        }
+
+        public Estimate getThroughput() {
+            return throughput;
+        }
+
+        public Estimate getPedestrianDelay() {
+            return pedestrianDelay;
+        }
+
+        public Estimate getCo2Kg() {
+            return co2Kg;
+        }
+
+        public Estimate getNoxGrams() {
+            return noxGrams;
+        }
+
+        public Estimate getFuelLiters() {
+            return fuelLiters;
+        }
+    }
+
+    public List<ScenarioSummary> run(List<Scenario> matrix, int replications) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Map<Scenario, List<Future<ReplicationResult>>> futures = new LinkedHashMap<>();
+            for (Scenario scenario : matrix) {
+                List<Future<ReplicationResult>> perScenario = new ArrayList<>();
+                for (int r = 0; r < replications; r++) {
+                    Scenario replica = scenario.withSeed(replicationSeed(scenario.getSeed(), r));
+                    perScenario.add(pool.submit(() -> new TickEngine(replica).run()));
+                }
+                futures.put(scenario, perScenario);
+            }
+            List<ScenarioSummary> summaries = new ArrayList<>();
+            for (Map.Entry<Scenario, List<Future<ReplicationResult>>> entry : futures.entrySet()) {
+                List<ReplicationResult> results = new ArrayList<>();
+                for (Future<ReplicationResult> f : entry.getValue()) {
+                    results.add(f.get());
+                }
+                summaries.add(new ScenarioSummary(entry.getKey(), results));
+            }
+            return summaries;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Execução em lote interrompida.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha em uma réplica: " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Sementes das réplicas espalhadas a partir da semente do cenário (mistura do SplitMix64)
+    static long replicationSeed(long baseSeed, int replication) {
+        long z = baseSeed + (replication + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Quantil 0.975 da t de Student para df = 1..30 (tabela usual); com poucas réplicas a expansão erra muito
+    private static final double[] T975 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+    // Quantil 0.975 da t de Student: tabela até df = 30, acima pela expansão de Cornish-Fisher (erro < 0,1%)
+    static double studentT975(int df) {
+        if (df < 1) {
+            throw new IllegalArgumentException("Graus de liberdade devem ser positivos: " + df);
+        }
+        if (df <= T975.length) return T975[df - 1];
+        double z = 1.959963984540054;
+        double z3 = z * z * z;
+        double z5 = z3 * z * z;
+        return z + (z3 + z) / (4.0 * df) + (5 * z5 + 16 * z3 + 3 * z) / (96.0 * df * df);
+    }
+
+    public static void main(String[] args) {
+        int replications = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        EngineMode mode = args.length > 2 ? EngineMode.valueOf(args[2].toUpperCase()) : EngineMode.MICRO;
+        long durationTicks = 1200; // 2 minutos simulados, como o main do Simulator
+
+        String gridSpec = args.length > 3 ? args[3] : null; // Malha NxM (ex.: 20x20), extrato OSM ou arquivo de cenário
+        if (gridSpec != null && !OsmImporter.isOsmFile(gridSpec) && Files.isRegularFile(Paths.get(gridSpec))) {
+            runScenarioFile(Paths.get(gridSpec), replications, threads);
+            return;
+        }
+        if (gridSpec != null) {
+            durationTicks = 36000; // 1 hora simulada
+        }
+        NetworkIndex network = buildNetwork(gridSpec);
+        ZonePartition zone = mode == EngineMode.HYBRID ? centralZone(network, gridSpec) : null;
+        for (int approach : GridlockDetector.starvedApproaches(network)) {
+            System.err.println("Aviso: aproximação " + network.approachDirection(approach) + " em "
+                    + network.intersection(network.approachIntersection(approach)).getId() + " nunca recebe verde.");
+        }
+
+        List<Scenario> matrix = new ArrayList<>();
+        double[] demands = {600, 1200, 2400};
+        int entryScale = Math.max(1, network.entryLinks().length / 2); // demanda por par de entradas
+        for (double demand : demands) {
+            DemandModel model = DemandModel.uniform(network, demand * entryScale);
+            for (SignalPolicy policy : SignalPolicy.values()) {
+                matrix.add(new Scenario("padrao-" + (int) demand + "-" + policy, network, model, policy,
+                        durationTicks, 1000000, 42L, mode, zone));
+            }
+        }
+        if (args.length > 3) {
+            runAndPrint(matrix, replications, threads);
+            return;
+        }
+        // Pico da manhã: viagens OD com destino, começando às 7h30
+        List<OdMatrix> rush = new ArrayList<>();
+        rush.add(new OdMatrix("pendular", TimeProfile.weekday())
+                .addTrips("S2-N-I1S", "S5-I2E-Exit", 900)
+                .addTrips("S2-N-I1S", "S3-I1N-Exit", 300)
+                .addTrips("S4-E-I2W", "S3-I1N-Exit", 900));
+        DemandModel rushModel = new DemandModel(network, rush, 7.5 * 3600);
+        for (SignalPolicy policy : SignalPolicy.values()) {
+            matrix.add(new Scenario("pico-manha-" + policy, network, rushModel, policy, durationTicks, 1000, 42L, mode, zone));
+        }
+        runAndPrint(matrix, replications, threads);
+    }
+
+    // null = grid padrão do Simulator; "NxM" = malha Manhattan com quadras de 150 m e 2 faixas;
+    // caminho .osm/.osm.gz/.osm.pbf = extrato do OpenStreetMap
+    static NetworkIndex buildNetwork(String gridSpec) {
+        Grid grid = new Grid();
+        if (gridSpec != null && OsmImporter.isOsmFile(gridSpec)) {
+            try {
+                grid = new OsmImporter(Runtime.getRuntime().availableProcessors()).importFile(Paths.get(gridSpec));
+            } catch (IOException e) {
+                throw new IllegalStateException("Não foi possível importar " + gridSpec + ": " + e.getMessage(), e);
+            }
+        } else if (gridSpec != null) {
+            int[] size = parseGridSize(gridSpec);
+            Simulator.buildManhattanGrid(grid, size[0], size[1], 150, 2);
+        } else {
+            Simulator.buildDefaultGrid(grid);
+        }
+        grid.freeze();
+        return new NetworkIndex(grid);
+    }
+
+    // Núcleo microscópico no centro da malha, entorno mesoscópico
+    static ZonePartition centralZone(NetworkIndex network, String gridSpec) {
+        if (gridSpec == null) {
+            return ZonePartition.around(network, "I1", 0);
+        }
+        if (OsmImporter.isOsmFile(gridSpec)) { // Sem malha regular: núcleo em torno de um cruzamento do meio do índice
+            return ZonePartition.around(network, network.intersection(network.intersectionCount() / 2).getId(), 3);
+        }
+        int[] size = parseGridSize(gridSpec);
+        return ZonePartition.around(network, "I-" + size[0] / 2 + "-" + size[1] / 2,
+                Math.max(1, Math.min(size[0], size[1]) / 4));
+    }
+
+    private static int[] parseGridSize(String gridSpec) {
+        String[] size = gridSpec.toLowerCase().split("x");
+        if (size.length != 2) {
+            throw new IllegalArgumentException("Malha inválida (use NxM): " + gridSpec);
+        }
+        return new int[] {Integer.parseInt(size[0]), Integer.parseInt(size[1])};
+    }
+
+    // Cenário declarativo: a modalidade vem do arquivo; réplicas de cada política de semáforo
+    private static void runScenarioFile(Path path, int replications, int threads) {
+        Scenario base;
+        try {
+            base = ScenarioFile.load(path).toScenario();
+        } catch (IOException e) {
+            throw new IllegalStateException("Não foi possível ler o cenário " + path + ": " + e.getMessage(), e);
+        }
+        NetworkIndex network = base.getNetwork();
+        for (int approach : GridlockDetector.starvedApproaches(network)) {
+            System.err.println("Aviso: aproximação " + network.approachDirection(approach) + " em "
+                    + network.intersection(network.approachIntersection(approach)).getId() + " nunca recebe verde.");
+        }
+        List<Scenario> matrix = new ArrayList<>();
+        for (SignalPolicy policy : SignalPolicy.values()) {
+            matrix.add(new Scenario(base.getName() + "-" + policy, network, base.getDemand(), policy,
+                    base.getDurationTicks(), base.getMaxVehicles(), base.getSeed(), base.getEngineMode(), base.getMicroZone())
+                    .withVehicleClasses(base.getClassShares(), base.getBusStops())
+                    .withEmissions(base.tracksEmissions()));
+        }
+        runAndPrint(matrix, replications, threads);
+    }
+
+    private static void runAndPrint(List<Scenario> matrix, int replications, int threads) {
+        System.out.println("Executando " + matrix.size() + " cenários x " + replications + " réplicas em " + threads + " threads...");
+        long start = System.currentTimeMillis();
+        List<ScenarioSummary> summaries = new BatchRunner(threads).run(matrix, replications);
+        boolean pedestrians = false; // Coluna de pedestres só quando algum cenário tem faixas
+        boolean emissions = false;   // Idem para emissões, só quando algum cenário as acumula
+        for (Scenario scenario : matrix) {
+            pedestrians |= scenario.getNetwork().crosswalkCount() > 0;
+            emissions |= scenario.tracksEmissions();
+        }
+        System.out.println(String.format("%-28s %22s %24s", "Cenário", "Atraso médio (s)", "Vazão (veíc/h)")
+                + (pedestrians ? String.format(" %22s", "Espera pedestre (s)") : "")
+                + (emissions ? String.format(" %22s %22s %22s", "CO2 (kg)", "NOx (g)", "Combustível (l)") : ""));
+        for (ScenarioSummary summary : summaries) {
+            System.out.println(String.format("%-28s %22s %24s", summary.getScenario().getName(),
+                    summary.getDelay(), summary.getThroughput())
+                    + (pedestrians ? String.format(" %22s", summary.getPedestrianDelay()) : "")
+                    + (emissions ? String.format(" %22s %22s %22s", summary.getCo2Kg(), summary.getNoxGrams(),
+                            summary.getFuelLiters()) : ""));
+        }
+        System.out.println("Concluído em " + (System.currentTimeMillis() - start) + " ms.");
+    }
+}
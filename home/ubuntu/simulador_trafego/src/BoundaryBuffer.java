@@ -0,0 +1,188 @@
+package com.simuladortrafego;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Mensagem de um tick entre dois processos vizinhos: espaço livre nos links de fronteira do remetente
+// e os veículos que cruzaram para links do destinatário. Colunas primitivas, reutilizadas a cada tick.
+// Formato binário (big-endian): tick, nRooms, (link, vagas)*, nVeículos, registros de VEHICLE_BYTES.
+final class BoundaryBuffer {
+    static final int VEHICLE_BYTES = 4 + 4 + 8 + 8 + 4 + 4 + 8 + 8 + 8 + 8 + 4 + 4 + 4;
+
+    private long tick;
+    private int roomCount = 0;
+    private int[] roomLink = new int[16];
+    private int[] room = new int[16];
+
+    private int size = 0;
+    private int[] link = new int[16];
+    private int[] vehicleId = new int[16];
+    private double[] desiredSpeed = new double[16];
+    private long[] spawnTick = new long[16];
+    private int[] origin = new int[16];
+    private int[] destination = new int[16];
+    private double[] freeFlowSeconds = new double[16];
+    private double[] speed = new double[16];
+    private double[] position = new double[16];
+    private long[] randomState = new long[16]; // O fluxo aleatório acompanha o veículo entre processos
+    private int[] vehicleClass = new int[16];
+    private int[] stops = new int[16];      // contadores da viagem (TripStatistics) seguem o veículo
+    private int[] waitTicks = new int[16];
+
+    void clear() {
+        roomCount = 0;
+        size = 0;
+    }
+
+    void addRoom(int linkId, int free) {
+        if (roomCount == roomLink.length) {
+            roomLink = Arrays.copyOf(roomLink, roomCount * 2);
+            room = Arrays.copyOf(room, roomCount * 2);
+        }
+        roomLink[roomCount] = linkId;
+        room[roomCount] = free;
+        roomCount++;
+    }
+
+    void addVehicle(int linkId, int id, double desired, long spawned, int originLink, int dest,
+                    double freeFlow, double currentSpeed, double entryPosition, long random, int classIndex,
+                    int tripStops, int tripWaitTicks) {
+        if (size == link.length) grow(size * 2);
+        link[size] = linkId;
+        vehicleId[size] = id;
+        desiredSpeed[size] = desired;
+        spawnTick[size] = spawned;
+        origin[size] = originLink;
+        destination[size] = dest;
+        freeFlowSeconds[size] = freeFlow;
+        speed[size] = currentSpeed;
+        position[size] = entryPosition;
+        randomState[size] = random;
+        vehicleClass[size] = classIndex;
+        stops[size] = tripStops;
+        waitTicks[size] = tripWaitTicks;
+        size++;
+    }
+
+    private void grow(int capacity) {
+        link = Arrays.copyOf(link, capacity);
+        vehicleId = Arrays.copyOf(vehicleId, capacity);
+        desiredSpeed = Arrays.copyOf(desiredSpeed, capacity);
+        spawnTick = Arrays.copyOf(spawnTick, capacity);
+        origin = Arrays.copyOf(origin, capacity);
+        destination = Arrays.copyOf(destination, capacity);
+        freeFlowSeconds = Arrays.copyOf(freeFlowSeconds, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        position = Arrays.copyOf(position, capacity);
+        randomState = Arrays.copyOf(randomState, capacity);
+        vehicleClass = Arrays.copyOf(vehicleClass, capacity);
+        stops = Arrays.copyOf(stops, capacity);
+        waitTicks = Arrays.copyOf(waitTicks, capacity);
+    }
+
+    int encodedBytes() {
+        return 8 + 4 + roomCount * 8 + 4 + size * VEHICLE_BYTES;
+    }
+
+    void encode(ByteBuffer out, long currentTick) {
+        out.putLong(currentTick);
+        out.putInt(roomCount);
+        for (int k = 0; k < roomCount; k++) {
+            out.putInt(roomLink[k]).putInt(room[k]);
+        }
+        out.putInt(size);
+        for (int k = 0; k < size; k++) {
+            out.putInt(link[k]).putInt(vehicleId[k]).putDouble(desiredSpeed[k]).putLong(spawnTick[k])
+                    .putInt(origin[k]).putInt(destination[k]).putDouble(freeFlowSeconds[k])
+                    .putDouble(speed[k]).putDouble(position[k]).putLong(randomState[k]).putInt(vehicleClass[k])
+                    .putInt(stops[k]).putInt(waitTicks[k]);
+        }
+    }
+
+    void decode(ByteBuffer in) {
+        clear();
+        tick = in.getLong();
+        int rooms = in.getInt();
+        for (int k = 0; k < rooms; k++) {
+            addRoom(in.getInt(), in.getInt());
+        }
+        int vehicles = in.getInt();
+        if (vehicles > link.length) grow(Integer.highestOneBit(vehicles) << 1);
+        for (int k = 0; k < vehicles; k++) {
+            addVehicle(in.getInt(), in.getInt(), in.getDouble(), in.getLong(), in.getInt(), in.getInt(),
+                    in.getDouble(), in.getDouble(), in.getDouble(), in.getLong(), in.getInt(), in.getInt(), in.getInt());
+        }
+    }
+
+    long tick() {
+        return tick;
+    }
+
+    int roomCount() {
+        return roomCount;
+    }
+
+    int roomLink(int k) {
+        return roomLink[k];
+    }
+
+    int room(int k) {
+        return room[k];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int link(int k) {
+        return link[k];
+    }
+
+    int vehicleId(int k) {
+        return vehicleId[k];
+    }
+
+    double desiredSpeed(int k) {
+        return desiredSpeed[k];
+    }
+
+    long spawnTick(int k) {
+        return spawnTick[k];
+    }
+
+    int origin(int k) {
+        return origin[k];
+    }
+
+    int destination(int k) {
+        return destination[k];
+    }
+
+    double freeFlowSeconds(int k) {
+        return freeFlowSeconds[k];
+    }
+
+    double speed(int k) {
+        return speed[k];
+    }
+
+    double position(int k) {
+        return position[k];
+    }
+
+    long randomState(int k) {
+        return randomState[k];
+    }
+
+    int vehicleClass(int k) {
+        return vehicleClass[k];
+    }
+
+    int stops(int k) {
+        return stops[k];
+    }
+
+    int waitTicks(int k) {
+        return waitTicks[k];
+    }
+}
@@ -1,12 +1,13 @@
 package com.simuladortrafego;
 
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Car extends Thread {
     private static final AtomicInteger idGenerator = new AtomicInteger(0);
     private String carId;
+    private final int number; // Identificador nos diários (EventJournal)
     protected Grid grid; // Changed to protected for EmergencyVehicle
     protected Street currentStreet; // Changed to protected
     private Street previousStreet;
@@ -16,11 +17,17 @@ public class Car extends Thread {
     private double speed;
     private volatile boolean running = true;
     private volatile boolean runningSim = true;
-    private Random random = new Random();
+    private final SplittableRandom random; // Fluxo próprio derivado da semente (RandomStreams)
     private Direction lastArrivalDirection = null; // Added to store arrival direction at an intersection
 
     public Car(Grid grid, Street startStreet, double initialSpeed) {
-        this.carId = "Carro-" + idGenerator.incrementAndGet();
+        this(grid, startStreet, initialSpeed, new RandomStreams(RandomStreams.DEFAULT_SEED));
+    }
+
+    public Car(Grid grid, Street startStreet, double initialSpeed, RandomStreams streams) {
+        this.number = idGenerator.incrementAndGet();
+        this.carId = "Carro-" + number;
+        this.random = streams.stream(RandomStreams.CAR, number);
         this.grid = grid;
         this.currentStreet = startStreet;
         this.previousStreet = null; // Inicializa previousStreet
@@ -41,6 +48,10 @@ public class Car extends Thread {
         System.out.println(carId + " criado na rua " + startStreet.getId() + " indo em direção a " + (nextIntersection != null ? nextIntersection.getId() : "N/A"));
     }
 
+    public int getNumber() {
+        return number;
+    }
+
     public String getCarId() {
         return carId;
     }
@@ -160,10 +171,18 @@ public class Car extends Thread {
         chooseNextStreetAndDepart(intersection);
     }
 
+    // Veículos de emergência com sirene atravessam com prioridade, fora das fases
+    protected boolean obeysMovementPhases() {
+        return true;
+    }
+
     private boolean shouldProceedOnYellow() {
         // Simple logic: 50% chance to proceed if yellow
         // More complex logic could consider distance to intersection, speed, etc.
-        return random.nextBoolean();
+        boolean go = random.nextBoolean();
+        EventJournal journal = grid.getJournal();
+        if (journal != null) journal.appendNow(EventJournal.YELLOW, number, grid.indexOfIntersection(currentIntersection), go ? 1 : 0);
+        return go;
     }
 
     protected void chooseNextStreetAndDepart(Intersection fromIntersection) {
@@ -172,6 +191,23 @@ public class Car extends Thread {
         // this.previousStreet (campo) é a rua usada para chegar em fromIntersection.
 
         List<Street> possibleExits = grid.getExitingStreetsFromIntersection(fromIntersection, this.lastArrivalDirection);
+        if (!possibleExits.isEmpty() && obeysMovementPhases()) {
+            // Só os movimentos que a fase corrente libera; o semáforo fica verde se algum movimento da aproximação
+            // está liberado (ex.: só a direita, no verde de outra via), então pode ser preciso esperar a próxima fase
+            List<Street> allowed = fromIntersection.getAllowedExits(previousStreet, possibleExits);
+            while (allowed.isEmpty() && running) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                    runningSim = false;
+                    return;
+                }
+                allowed = fromIntersection.getAllowedExits(previousStreet, possibleExits);
+            }
+            possibleExits = allowed;
+        }
 
         if (possibleExits.isEmpty()) {
             System.out.println(getCarId() + " não encontrou saídas válidas de " + fromIntersection.getId() + " (chegou de " + this.lastArrivalDirection + "). Terminando jornada.");
@@ -181,6 +217,11 @@ public class Car extends Thread {
         }
 
         Street nextChosenStreet = possibleExits.get(random.nextInt(possibleExits.size()));
+        EventJournal journal = grid.getJournal();
+        if (journal != null) {
+            journal.appendNow(EventJournal.EXIT, number, grid.indexOfIntersection(fromIntersection),
+                    grid.indexOfStreet(nextChosenStreet));
+        }
         
         // O campo previousStreet do carro foi corretamente definido em arriveAtIntersection para a rua que ele acabou de atravessar para chegar em fromIntersection.
         // Agora, o carro está se movendo para nextChosenStreet.
@@ -0,0 +1,93 @@
+package com.simuladortrafego;
+
+// Rumos em graus (0 = norte, 90 = leste, sentido horário), independentes do número de ramos do cruzamento.
+// Direction continua sendo a bússola de 4 valores das APIs antigas: cada rumo cai em um quadrante, e os
+// rumos exatos de NORTH/EAST/SOUTH/WEST reproduzem as regras antigas de areCompatible e de retorno.
+public final class Compass {
+    // Fluxos quase paralelos andam lado a lado; quase opostos dividem o eixo sem se cruzar
+    static final double PARALLEL_DEGREES = 30;
+    static final double REVERSE_DEGREES = 150;
+    // Ruas que chegam com rumos mais próximos que isso formam uma única aproximação
+    static final double SAME_APPROACH_DEGREES = 5;
+    static final int MAX_APPROACHES = 64; // Os conflitos de cada aproximação cabem em um long
+    // Meia largura da via vista do centro: separa entrada e saída de um mesmo ramo (< SAME_APPROACH_DEGREES / 2)
+    static final double LANE_OFFSET_DEGREES = 1;
+
+    private Compass() {
+    }
+
+    public static double bearing(Direction direction) {
+        switch (direction) {
+            case NORTH: return 0;
+            case EAST: return 90;
+            case SOUTH: return 180;
+            default: return 270;
+        }
+    }
+
+    public static double normalize(double bearing) {
+        double b = bearing % 360;
+        return b < 0 ? b + 360 : b;
+    }
+
+    public static Direction quadrant(double bearing) {
+        double b = normalize(bearing);
+        if (b < 45 || b >= 315) return Direction.NORTH;
+        if (b < 135) return Direction.EAST;
+        if (b < 225) return Direction.SOUTH;
+        return Direction.WEST;
+    }
+
+    // Menor ângulo entre dois rumos, em [0, 180]
+    public static double difference(double a, double b) {
+        double d = Math.abs(normalize(a) - normalize(b));
+        return d > 180 ? 360 - d : d;
+    }
+
+    // Seguir no rumo b vindo no rumo a é um retorno
+    public static boolean isReverse(double a, double b) {
+        return difference(a, b) >= REVERSE_DEGREES;
+    }
+
+    // Movimentos de passagem que chegam nos rumos a e b se cruzam dentro do cruzamento
+    public static boolean conflicts(double a, double b) {
+        double d = difference(a, b);
+        return d > PARALLEL_DEGREES && d < REVERSE_DEGREES;
+    }
+
+    // Conflito entre os movimentos (chegada inA -> saída outA) e (inB -> outB). Cada movimento é uma corda
+    // na borda do cruzamento: entra no ramo oposto ao rumo de chegada, um pouco à esquerda de quem olha do
+    // centro, e sai no ramo do rumo de saída, um pouco à direita (circulação pela direita). Cordas que se
+    // cruzam são conflito; mesma saída é conflito de convergência; mesma aproximação só diverge.
+    public static boolean movementsConflict(double inA, double outA, double inB, double outB) {
+        if (difference(inA, inB) < SAME_APPROACH_DEGREES) return false;
+        if (difference(outA, outB) < SAME_APPROACH_DEGREES) return true;
+        double entryA = normalize(inA + 180 - LANE_OFFSET_DEGREES);
+        double exitA = normalize(outA + LANE_OFFSET_DEGREES);
+        return onArc(entryA, exitA, normalize(inB + 180 - LANE_OFFSET_DEGREES))
+                != onArc(entryA, exitA, normalize(outB + LANE_OFFSET_DEGREES));
+    }
+
+    // x está no arco de "from" até "to" no sentido horário (extremidades excluídas)
+    private static boolean onArc(double from, double to, double x) {
+        double offset = normalize(x - from);
+        return offset > 0 && offset < normalize(to - from);
+    }
+
+    // Matriz de conflitos em bitsets: bit j de masks[i] ligado quando i e j se cruzam
+    static long[] conflictMasks(double[] bearings, int count) {
+        if (count > MAX_APPROACHES) {
+            throw new IllegalArgumentException("No máximo " + MAX_APPROACHES + " aproximações por cruzamento.");
+        }
+        long[] masks = new long[count];
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                if (conflicts(bearings[i], bearings[j])) {
+                    masks[i] |= 1L << j;
+                    masks[j] |= 1L << i;
+                }
+            }
+        }
+        return masks;
+    }
+}
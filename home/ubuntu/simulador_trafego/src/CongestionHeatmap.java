@@ -0,0 +1,223 @@
+package com.simuladortrafego;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Mapa de congestionamento incremental por link e por intervalo de tempo.
+// O motor alimenta o balde de 1 s corrente (amostras de velocidade, veículos e parados uma vez por
+// segundo; saídas pela linha de retenção a cada tick). Quando o segundo fecha, o balde é somado aos
+// baldes correntes de 1 min e de 15 min, então consultar um intervalo longo lê poucos baldes grossos
+// em vez de reprocessar trajetórias. Cada nível é um anel com retenção própria, em vetores primitivos
+// achatados [slot * links + link].
+public final class CongestionHeatmap {
+    static final int[] BUCKET_SECONDS = {1, 60, 900};
+    static final double STOPPED_SPEED = 0.5; // m/s; abaixo disso o veículo conta como fila
+
+    // Agregado de um link (ou aproximação) em um intervalo
+    public static final class Window {
+        private final double meanSpeed;
+        private final double density;
+        private final double flowPerHour;
+        private final double meanQueue;
+        private final int coveredSeconds;
+
+        Window(double meanSpeed, double density, double flowPerHour, double meanQueue, int coveredSeconds) {
+            this.meanSpeed = meanSpeed;
+            this.density = density;
+            this.flowPerHour = flowPerHour;
+            this.meanQueue = meanQueue;
+            this.coveredSeconds = coveredSeconds;
+        }
+
+        public double getMeanSpeed() {
+            return meanSpeed;
+        }
+
+        public double getDensity() {
+            return density;
+        }
+
+        public double getFlowPerHour() {
+            return flowPerHour;
+        }
+
+        public double getMeanQueue() {
+            return meanQueue;
+        }
+
+        public int getCoveredSeconds() {
+            return coveredSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Window{velocidade=%.1f m/s, densidade=%.1f veíc/km, fluxo=%.0f veíc/h, fila=%.1f, cobertura=%d s}",
+                    meanSpeed, density, flowPerHour, meanQueue, coveredSeconds);
+        }
+    }
+
+    private final NetworkIndex network;
+    private final int links;
+    private final int[] retention;      // baldes guardados por nível
+    private final long[][] bucketOf;    // balde absoluto guardado em cada slot, ou -1
+    private final int[][] samples;      // instantes de amostragem por slot (iguais para todos os links)
+    private final double[][] speedSum;
+    private final int[][] vehicleSamples;
+    private final int[][] queueSamples;
+    private final int[][] exits;
+    private final int[][] approachLinks;
+    private long currentSecond = 0;
+
+    public CongestionHeatmap(NetworkIndex network, int secondsRetained, int minutesRetained, int quartersRetained) {
+        if (secondsRetained <= 0 || minutesRetained <= 0 || quartersRetained <= 0) {
+            throw new IllegalArgumentException("Retenção do mapa de congestionamento deve ser positiva.");
+        }
+        this.network = network;
+        this.links = network.linkCount();
+        this.retention = new int[] {secondsRetained, minutesRetained, quartersRetained};
+        int levels = BUCKET_SECONDS.length;
+        this.bucketOf = new long[levels][];
+        this.samples = new int[levels][];
+        this.speedSum = new double[levels][];
+        this.vehicleSamples = new int[levels][];
+        this.queueSamples = new int[levels][];
+        this.exits = new int[levels][];
+        for (int level = 0; level < levels; level++) {
+            bucketOf[level] = new long[retention[level]];
+            Arrays.fill(bucketOf[level], -1);
+            samples[level] = new int[retention[level]];
+            speedSum[level] = new double[retention[level] * links];
+            vehicleSamples[level] = new int[retention[level] * links];
+            queueSamples[level] = new int[retention[level] * links];
+            exits[level] = new int[retention[level] * links];
+            bucketOf[level][0] = 0;
+        }
+        List<List<Integer>> byApproach = new ArrayList<>();
+        for (int a = 0; a < network.approachCount(); a++) byApproach.add(new ArrayList<>());
+        for (int l = 0; l < links; l++) {
+            if (network.linkApproach(l) >= 0) byApproach.get(network.linkApproach(l)).add(l);
+        }
+        this.approachLinks = new int[byApproach.size()][];
+        for (int a = 0; a < approachLinks.length; a++) {
+            List<Integer> own = byApproach.get(a);
+            approachLinks[a] = new int[own.size()];
+            for (int k = 0; k < own.size(); k++) approachLinks[a][k] = own.get(k);
+        }
+    }
+
+    // 5 min de segundos, 2 h de minutos e 24 h de quartos de hora
+    public CongestionHeatmap(NetworkIndex network) {
+        this(network, 300, 120, 96);
+    }
+
+    // Segundo simulado corrente; ao virar o segundo, o balde fechado sobe para os níveis grossos
+    void advanceTo(long second) {
+        while (currentSecond < second) {
+            int slot = (int) (currentSecond % retention[0]);
+            for (int level = 1; level < BUCKET_SECONDS.length; level++) {
+                long bucket = currentSecond / BUCKET_SECONDS[level];
+                int target = openBucket(level, bucket);
+                samples[level][target] += samples[0][slot];
+                int from = slot * links;
+                int to = target * links;
+                for (int l = 0; l < links; l++) {
+                    speedSum[level][to + l] += speedSum[0][from + l];
+                    vehicleSamples[level][to + l] += vehicleSamples[0][from + l];
+                    queueSamples[level][to + l] += queueSamples[0][from + l];
+                    exits[level][to + l] += exits[0][from + l];
+                }
+            }
+            currentSecond++;
+            openBucket(0, currentSecond);
+        }
+    }
+
+    // Slot do balde no nível; se o slot guardava um balde antigo, ele é descartado
+    private int openBucket(int level, long bucket) {
+        int slot = (int) (bucket % retention[level]);
+        if (bucketOf[level][slot] != bucket) {
+            bucketOf[level][slot] = bucket;
+            samples[level][slot] = 0;
+            int from = slot * links;
+            Arrays.fill(speedSum[level], from, from + links, 0);
+            Arrays.fill(vehicleSamples[level], from, from + links, 0);
+            Arrays.fill(queueSamples[level], from, from + links, 0);
+            Arrays.fill(exits[level], from, from + links, 0);
+        }
+        return slot;
+    }
+
+    // Um instante de amostragem no segundo corrente (o motor amostra uma vez por segundo)
+    void beginSample() {
+        samples[0][(int) (currentSecond % retention[0])]++;
+    }
+
+    void sample(int link, int vehicles, double speedTotal, int stopped) {
+        int at = (int) (currentSecond % retention[0]) * links + link;
+        vehicleSamples[0][at] += vehicles;
+        speedSum[0][at] += speedTotal;
+        queueSamples[0][at] += stopped;
+    }
+
+    void exit(int link) {
+        exits[0][(int) (currentSecond % retention[0]) * links + link]++;
+    }
+
+    public Window queryLink(int link, long fromSecond, long toSecond) {
+        return query(new int[] {link}, fromSecond, toSecond);
+    }
+
+    // Fila e fluxo somados sobre os links da aproximação; velocidade ponderada pelas amostras
+    public Window queryApproach(int approach, long fromSecond, long toSecond) {
+        return query(approachLinks[approach], fromSecond, toSecond);
+    }
+
+    // Intervalo [fromSecond, toSecond): usa o balde mais grosso alinhado e disponível em cada trecho
+    private Window query(int[] linkSet, long fromSecond, long toSecond) {
+        long end = Math.min(toSecond, currentSecond); // o segundo corrente ainda está aberto
+        double speed = 0;
+        long vehicles = 0, queue = 0, exited = 0, sampled = 0;
+        int covered = 0;
+        double lengthKm = 0;
+        for (int link : linkSet) lengthKm += network.linkLength(link) / 1000.0;
+        long t = Math.max(0, fromSecond);
+        while (t < end) {
+            int level = BUCKET_SECONDS.length - 1;
+            int slot = -1;
+            for (; level >= 0; level--) {
+                int size = BUCKET_SECONDS[level];
+                if (t % size != 0 || t + size > end) continue;
+                long bucket = t / size;
+                int candidate = (int) (bucket % retention[level]);
+                if (bucketOf[level][candidate] == bucket) {
+                    slot = candidate;
+                    break;
+                }
+            }
+            if (slot < 0) { // Segundo fora da retenção
+                t++;
+                continue;
+            }
+            sampled += samples[level][slot];
+            for (int link : linkSet) {
+                int at = slot * links + link;
+                speed += speedSum[level][at];
+                vehicles += vehicleSamples[level][at];
+                queue += queueSamples[level][at];
+                exited += exits[level][at];
+            }
+            covered += BUCKET_SECONDS[level];
+            t += BUCKET_SECONDS[level];
+        }
+        return new Window(vehicles > 0 ? speed / vehicles : 0.0,
+                sampled > 0 && lengthKm > 0 ? vehicles / (double) sampled / lengthKm : 0.0,
+                covered > 0 ? exited * 3600.0 / covered : 0.0,
+                sampled > 0 ? queue / (double) sampled : 0.0,
+                covered);
+    }
+
+    public long getCurrentSecond() {
+        return currentSecond;
+    }
+}
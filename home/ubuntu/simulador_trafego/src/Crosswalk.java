@@ -0,0 +1,69 @@
+package com.simuladortrafego;
+
+// Faixa de pedestres sobre o ramo de uma aproximação do cruzamento (a mesma Direction do semáforo).
+// Só configuração: demanda em pedestres/h, botoeira e os intervalos de "siga" e "pare piscante"; o estado
+// das travessias fica com quem roda o ciclo (Intersection com threads, PedestrianSignals nos motores headless).
+public final class Crosswalk {
+    static final double WALKING_SPEED = 1.2;      // m/s, velocidade de projeto da travessia
+    static final long DEFAULT_WALK_MS = 7000;     // "siga" mínimo usual
+    static final double DEFAULT_LENGTH = 12.0;    // m, três faixas de rolamento
+
+    private final Direction approach;
+    private final double pedestriansPerHour;
+    private final boolean pushButton;
+    private final long walkMs;
+    private final long clearanceMs; // "pare piscante": tempo para atravessar a faixa inteira
+
+    public Crosswalk(Direction approach, double pedestriansPerHour, boolean pushButton) {
+        this(approach, pedestriansPerHour, pushButton, DEFAULT_WALK_MS, DEFAULT_LENGTH);
+    }
+
+    public Crosswalk(Direction approach, double pedestriansPerHour, boolean pushButton, long walkMs, double lengthMeters) {
+        if (approach == null) {
+            throw new IllegalArgumentException("Faixa de pedestres sem aproximação.");
+        }
+        if (pedestriansPerHour < 0 || walkMs <= 0 || lengthMeters <= 0) {
+            throw new IllegalArgumentException("Faixa de pedestres inválida: demanda, siga e comprimento devem ser positivos.");
+        }
+        this.approach = approach;
+        this.pedestriansPerHour = pedestriansPerHour;
+        this.pushButton = pushButton;
+        this.walkMs = walkMs;
+        this.clearanceMs = Math.round(lengthMeters / WALKING_SPEED * 1000);
+    }
+
+    public Direction getApproach() {
+        return approach;
+    }
+
+    public double getPedestriansPerHour() {
+        return pedestriansPerHour;
+    }
+
+    // Com botoeira a faixa só abre quando alguém chamou; sem ela abre em toda fase compatível
+    public boolean hasPushButton() {
+        return pushButton;
+    }
+
+    public long getWalkMs() {
+        return walkMs;
+    }
+
+    public long getClearanceMs() {
+        return clearanceMs;
+    }
+
+    // Verde mínimo da fase em que a faixa abre: siga + pare piscante
+    public long getMinGreenMs() {
+        return walkMs + clearanceMs;
+    }
+
+    @Override
+    public String toString() {
+        return "Crosswalk{" +
+                "approach=" + approach +
+                ", pedestriansPerHour=" + pedestriansPerHour +
+                ", pushButton=" + pushButton +
+                '}';
+    }
+}
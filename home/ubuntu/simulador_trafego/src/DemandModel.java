@@ -0,0 +1,172 @@
+package com.simuladortrafego;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+// Demanda compilada a partir de matrizes OD: chegadas de Poisson por origem a cada tick,
+// com a taxa escalada pelo perfil horário da matriz. Imutável e compartilhável entre réplicas.
+public final class DemandModel {
+    private static final double NORMAL_APPROX_LAMBDA = 30.0;
+
+    public interface ArrivalSink {
+        void arrival(int originLink, int destinationStreet); // destinationStreet = -1 para rota aleatória
+    }
+
+    private static final class CompiledMatrix {
+        final TimeProfile profile;
+        final int[] originLinks;
+        final double[] originRate;       // veículos/h no pico, por origem
+        final double[][] cumulativeRate; // por origem, acumulado sobre os destinos
+        final int[][] destinations;
+
+        CompiledMatrix(TimeProfile profile, int origins) {
+            this.profile = profile;
+            this.originLinks = new int[origins];
+            this.originRate = new double[origins];
+            this.cumulativeRate = new double[origins][];
+            this.destinations = new int[origins][];
+        }
+    }
+
+    private final NetworkIndex network;
+    private final CompiledMatrix[] matrices;
+    private final RouteTable routes;
+    private final double startSecondOfDay;
+    private final double peakRatePerHour;
+
+    public DemandModel(NetworkIndex network, List<OdMatrix> odMatrices, double startSecondOfDay) {
+        this.network = network;
+        this.startSecondOfDay = startSecondOfDay;
+        this.matrices = new CompiledMatrix[odMatrices.size()];
+        Set<Integer> allDestinations = new HashSet<>();
+        Set<Integer> exitStreets = new HashSet<>();
+        for (int l = 0; l < network.linkCount(); l++) {
+            for (int k = 0; k < network.exitCount(l); k++) {
+                exitStreets.add(network.exitStreet(l, k));
+            }
+        }
+        double peak = 0;
+        for (int m = 0; m < matrices.length; m++) {
+            OdMatrix od = odMatrices.get(m);
+            // Agrupa por origem preservando a ordem de declaração
+            Map<Integer, List<Integer>> byOrigin = new LinkedHashMap<>();
+            for (int k = 0; k < od.size(); k++) {
+                int originStreet = network.streetIndexOf(od.getOrigin(k));
+                if (originStreet < 0 || network.originLinkForStreet(originStreet) < 0) {
+                    throw new IllegalArgumentException("Matriz " + od.getName() + ": origem inválida " + od.getOrigin(k));
+                }
+                String destId = od.getDestination(k);
+                if (destId != null) {
+                    int destStreet = network.streetIndexOf(destId);
+                    if (destStreet < 0 || !exitStreets.contains(destStreet)) {
+                        throw new IllegalArgumentException("Matriz " + od.getName() + ": destino inválido " + destId);
+                    }
+                }
+                byOrigin.computeIfAbsent(network.originLinkForStreet(originStreet), x -> new ArrayList<>()).add(k);
+            }
+            CompiledMatrix compiled = new CompiledMatrix(od.getProfile(), byOrigin.size());
+            int o = 0;
+            for (Map.Entry<Integer, List<Integer>> entry : byOrigin.entrySet()) {
+                List<Integer> pairs = entry.getValue();
+                compiled.originLinks[o] = entry.getKey();
+                compiled.cumulativeRate[o] = new double[pairs.size()];
+                compiled.destinations[o] = new int[pairs.size()];
+                double acc = 0;
+                for (int p = 0; p < pairs.size(); p++) {
+                    int k = pairs.get(p);
+                    acc += od.getRatePerHour(k);
+                    compiled.cumulativeRate[o][p] = acc;
+                    String destId = od.getDestination(k);
+                    int dest = destId == null ? -1 : network.streetIndexOf(destId);
+                    compiled.destinations[o][p] = dest;
+                    if (dest >= 0) allDestinations.add(dest);
+                }
+                compiled.originRate[o] = acc;
+                peak += acc;
+                o++;
+            }
+            matrices[m] = compiled;
+        }
+        this.peakRatePerHour = peak;
+        int[] dests = new int[allDestinations.size()];
+        int d = 0;
+        for (int s = 0; s < network.streetCount(); s++) { // ordem estável
+            if (allDestinations.contains(s)) dests[d++] = s;
+        }
+        this.routes = new RouteTable(network, dests);
+    }
+
+    // Demanda sem destino (rota aleatória, como o Simulator) dividida igualmente entre as entradas da rede
+    public static DemandModel uniform(NetworkIndex network, double totalPerHour) {
+        OdMatrix od = new OdMatrix("uniforme", TimeProfile.flat());
+        int[] entries = network.entryLinks();
+        for (int l : entries) {
+            od.addTrips(network.street(network.linkStreet(l)).getId(), null, totalPerHour / entries.length);
+        }
+        List<OdMatrix> list = new ArrayList<>();
+        list.add(od);
+        return new DemandModel(network, list, 0);
+    }
+
+    // Gera as chegadas do tick em lote; retorna quantas foram geradas
+    public int generate(long tick, double tickSeconds, RandomGenerator random, ArrivalSink sink) {
+        double secondOfDay = startSecondOfDay + tick * tickSeconds;
+        int generated = 0;
+        for (CompiledMatrix m : matrices) {
+            double scale = m.profile.multiplierAt(secondOfDay) * tickSeconds / 3600.0;
+            if (scale <= 0) continue;
+            for (int o = 0; o < m.originLinks.length; o++) {
+                int n = samplePoisson(random, m.originRate[o] * scale);
+                for (int a = 0; a < n; a++) {
+                    sink.arrival(m.originLinks[o], pickDestination(random, m.cumulativeRate[o], m.destinations[o]));
+                }
+                generated += n;
+            }
+        }
+        return generated;
+    }
+
+    private static int pickDestination(RandomGenerator random, double[] cumulative, int[] destinations) {
+        if (destinations.length == 1) return destinations[0];
+        double u = random.nextDouble() * cumulative[cumulative.length - 1];
+        int lo = 0, hi = cumulative.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] > u) hi = mid; else lo = mid + 1;
+        }
+        return destinations[lo];
+    }
+
+    // Knuth para lambda pequeno (o caso comum por tick); aproximação normal para lotes grandes
+    static int samplePoisson(RandomGenerator random, double lambda) {
+        if (lambda <= 0) return 0;
+        if (lambda >= NORMAL_APPROX_LAMBDA) {
+            return (int) Math.max(0, Math.round(lambda + Math.sqrt(lambda) * random.nextGaussian()));
+        }
+        double limit = Math.exp(-lambda);
+        double product = random.nextDouble();
+        int n = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            n++;
+        }
+        return n;
+    }
+
+    public RouteTable getRoutes() {
+        return routes;
+    }
+
+    public double getPeakRatePerHour() {
+        return peakRatePerHour;
+    }
+
+    public double getStartSecondOfDay() {
+        return startSecondOfDay;
+    }
+}
@@ -0,0 +1,145 @@
+package com.simuladortrafego;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Saída compacta dos laços virtuais, um quadro por intervalo fechado, para arquivo ou qualquer fluxo
+// (um socket até o controlador de campo, por exemplo). Formato binário (big-endian): cabeçalho (MAGIC,
+// VERSION, intervalo em ms, número de laços e os ids em UTF) escrito no primeiro quadro; cada quadro é o
+// tick de fim do intervalo seguido, para cada laço na ordem do cabeçalho, de três inteiros de 16 bits sem
+// sinal: veículos, ocupação em centésimos de ponto percentual e velocidade média em cm/s. São 8 + 6 bytes
+// por laço e intervalo, sem texto depois do cabeçalho.
+public final class DetectorFeed implements AutoCloseable {
+    static final int MAGIC = 0x53494D44; // "SIMD"
+    static final int VERSION = 1;
+    private static final int MAX_FIELD = 0xFFFF;
+
+    private final DataOutputStream out;
+    private boolean headerWritten = false;
+    private long frames = 0;
+
+    public DetectorFeed(OutputStream stream) {
+        this.out = new DataOutputStream(new BufferedOutputStream(stream));
+    }
+
+    // O arquivo existente é sobrescrito
+    public static DetectorFeed create(Path path) throws IOException {
+        return new DetectorFeed(Files.newOutputStream(path));
+    }
+
+    // Último intervalo fechado dos laços; o fluxo é esvaziado a cada quadro para quem lê ao vivo
+    public void write(LoopDetectors detectors) throws IOException {
+        if (!headerWritten) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt((int) detectors.getIntervalMs());
+            out.writeInt(detectors.size());
+            for (int d = 0; d < detectors.size(); d++) out.writeUTF(detectors.id(d));
+            headerWritten = true;
+        }
+        out.writeLong(detectors.getIntervalEndTick());
+        for (int d = 0; d < detectors.size(); d++) {
+            out.writeShort(Math.min(MAX_FIELD, detectors.count(d)));
+            out.writeShort((int) Math.round(detectors.occupancy(d) * 10000));
+            out.writeShort((int) Math.min(MAX_FIELD, Math.round(detectors.meanSpeed(d) * 100)));
+        }
+        out.flush();
+        frames++;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    public static Reader open(Path path) throws IOException {
+        return new Reader(Files.newInputStream(path));
+    }
+
+    // Leitura quadro a quadro: next() avança e os acessores valem para o quadro corrente
+    public static final class Reader implements AutoCloseable {
+        private final DataInputStream in;
+        private final long intervalMs;
+        private final String[] ids;
+        private final int[] count;
+        private final double[] occupancy;
+        private final double[] speed;
+        private long tick = -1;
+
+        public Reader(InputStream stream) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(stream));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("O fluxo não é uma saída de detectores.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Versão de saída de detectores não suportada: " + version);
+            }
+            this.intervalMs = in.readInt();
+            this.ids = new String[in.readInt()];
+            for (int d = 0; d < ids.length; d++) ids[d] = in.readUTF();
+            this.count = new int[ids.length];
+            this.occupancy = new double[ids.length];
+            this.speed = new double[ids.length];
+        }
+
+        public boolean next() throws IOException {
+            try {
+                tick = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            for (int d = 0; d < ids.length; d++) {
+                count[d] = in.readUnsignedShort();
+                occupancy[d] = in.readUnsignedShort() / 10000.0;
+                speed[d] = in.readUnsignedShort() / 100.0;
+            }
+            return true;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        public String id(int d) {
+            return ids[d];
+        }
+
+        public long tick() {
+            return tick;
+        }
+
+        public int count(int d) {
+            return count[d];
+        }
+
+        public double occupancy(int d) {
+            return occupancy[d];
+        }
+
+        public double meanSpeed(int d) {
+            return speed[d];
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
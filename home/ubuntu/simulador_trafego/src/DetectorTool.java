@@ -0,0 +1,70 @@
+package com.simuladortrafego;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+// Saída dos laços virtuais de um cenário declarativo (diretivas "detector"):
+//   exportar <cenário> <saída> [intervalo]   roda o cenário no TickEngine e grava o DetectorFeed
+//   listar <saída>                           imprime o feed em texto: tick;detector;veiculos;ocupacao;velocidade_ms
+public class DetectorTool {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: DetectorTool exportar <arquivo de cenário> <saída> [intervalo, ex.: 30s]");
+            System.err.println("     DetectorTool listar <saída>");
+            System.exit(2);
+        }
+        switch (args[0]) {
+            case "exportar":
+                if (args.length < 3) {
+                    System.err.println("Uso: DetectorTool exportar <arquivo de cenário> <saída> [intervalo]");
+                    System.exit(2);
+                }
+                export(Paths.get(args[1]), Paths.get(args[2]), args.length > 3 ? parseSeconds(args[3]) * 1000 : -1);
+                break;
+            case "listar":
+                list(Paths.get(args[1]));
+                break;
+            default:
+                throw new IllegalArgumentException("Comando desconhecido: " + args[0]);
+        }
+    }
+
+    private static long parseSeconds(String value) {
+        String digits = value.endsWith("s") ? value.substring(0, value.length() - 1) : value;
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Intervalo inválido: " + value);
+        }
+    }
+
+    private static void export(Path scenarioPath, Path output, long intervalMs) throws IOException {
+        Scenario scenario = ScenarioFile.load(scenarioPath).toScenario();
+        TickEngine engine = new TickEngine(scenario);
+        if (engine.getDetectors() == null) {
+            throw new IllegalArgumentException(scenarioPath + " não declara nenhum detector.");
+        }
+        if (intervalMs > 0) engine.setDetectorIntervalMs(intervalMs);
+        long start = System.currentTimeMillis();
+        try (DetectorFeed feed = DetectorFeed.create(output)) {
+            engine.enableDetectorFeed(feed);
+            engine.run();
+            System.out.println("Gravados " + feed.getFrames() + " intervalos de " + engine.getDetectors().size()
+                    + " detectores em " + output + " (" + (System.currentTimeMillis() - start) + " ms).");
+        }
+    }
+
+    private static void list(Path feed) throws IOException {
+        try (DetectorFeed.Reader reader = DetectorFeed.open(feed)) {
+            System.out.println("tick;detector;veiculos;ocupacao;velocidade_ms");
+            while (reader.next()) {
+                for (int d = 0; d < reader.size(); d++) {
+                    System.out.println(String.format(Locale.ROOT, "%d;%s;%d;%.4f;%.2f", reader.tick(),
+                            reader.id(d), reader.count(d), reader.occupancy(d), reader.meanSpeed(d)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.simuladortrafego;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Sobe N processos DistributedNode em localhost (um por partição do grid), espera todos terminarem
+// e agrega as linhas "RESULTADO" de cada um. Para vários hosts, rode DistributedNode diretamente em
+// cada máquina com a mesma lista de endereços.
+public class DistributedLauncher {
+
+    // Uso: DistributedLauncher [processos] [padrao|NxM] [MICRO|MESO|HYBRID] [demanda/h] [ticks] [porta base]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int processes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        String grid = args.length > 1 ? args[1] : "20x20";
+        String mode = args.length > 2 ? args[2].toUpperCase() : "MESO";
+        String demand = args.length > 3 ? args[3] : "20000";
+        String ticks = args.length > 4 ? args[4] : "36000";
+        int basePort = args.length > 5 ? Integer.parseInt(args[5]) : 47000;
+
+        StringBuilder addresses = new StringBuilder();
+        for (int rank = 0; rank < processes; rank++) {
+            if (rank > 0) addresses.append(',');
+            addresses.append("127.0.0.1:").append(basePort + rank);
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> nodes = new ArrayList<>();
+        for (int rank = 0; rank < processes; rank++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    DistributedNode.class.getName(), String.valueOf(rank), addresses.toString(), grid, mode,
+                    demand, "42", ticks);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            nodes.add(builder.start());
+        }
+        System.out.println("Simulando malha " + grid + " (" + mode + ") em " + processes + " processos...");
+
+        int spawned = 0, completed = 0, inNetwork = 0, violations = 0;
+        double delaySum = 0;
+        for (int rank = 0; rank < processes; rank++) {
+            Process node = nodes.get(rank);
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(node.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    if (!line.startsWith("RESULTADO;")) {
+                        System.out.println("[" + rank + "] " + line);
+                        continue;
+                    }
+                    String[] f = line.split(";");
+                    int nodeCompleted = Integer.parseInt(f[3]);
+                    spawned += Integer.parseInt(f[2]);
+                    completed += nodeCompleted;
+                    inNetwork += Integer.parseInt(f[4]);
+                    delaySum += Double.parseDouble(f[5]) * nodeCompleted;
+                    violations += Integer.parseInt(f[8]);
+                    System.out.println(String.format("Processo %s: gerados=%s concluídos=%s enviados=%s recebidos=%s em %s ms",
+                            f[1], f[2], f[3], f[6], f[7], f[9]));
+                }
+            }
+            if (node.waitFor() != 0) {
+                System.err.println("Processo " + rank + " terminou com código " + node.exitValue());
+            }
+        }
+        double hours = Long.parseLong(ticks) * TickEngine.TICK_SECONDS / 3600.0;
+        System.out.println(String.format("Total: gerados=%d concluídos=%d na rede=%d atraso médio=%.2f s vazão=%.0f veíc/h violações=%d",
+                spawned, completed, inNetwork, completed > 0 ? delaySum / completed : 0.0, completed / hours, violations));
+    }
+}
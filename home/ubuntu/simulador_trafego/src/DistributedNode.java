@@ -0,0 +1,243 @@
+package com.simuladortrafego;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+// Um processo da simulação distribuída: roda um TickEngine restrito aos cruzamentos do seu rank e,
+// ao fim de cada tick, troca com cada vizinho uma única mensagem binária (BoundaryBuffer) por canais NIO.
+// Só avança para o próximo tick depois de receber a mensagem de todos os vizinhos (barreira por tick).
+// Conexões: cada rank escuta no próprio endereço, conecta-se aos vizinhos de rank menor e aceita os de rank maior.
+public class DistributedNode {
+    private static final long CONNECT_TIMEOUT_MS = 30000;
+
+    private static final class Peer {
+        final int rank;
+        final SocketChannel channel;
+        final BoundaryBuffer message = new BoundaryBuffer();
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        ByteBuffer inHeader = ByteBuffer.allocate(4);
+        ByteBuffer inBody = ByteBuffer.allocate(64 * 1024);
+        boolean bodyPending;
+        boolean complete;
+
+        Peer(int rank, SocketChannel channel) {
+            this.rank = rank;
+            this.channel = channel;
+        }
+    }
+
+    private final TickEngine engine;
+    private final Scenario scenario;
+    private final ProcessPartition partition;
+    private final int rank;
+    private final List<Peer> peers = new ArrayList<>();
+    private Selector selector;
+
+    public DistributedNode(Scenario scenario, ProcessPartition partition, int rank) {
+        // Mesma semente em todos os ranks: demanda e sorteios por veículo iguais aos do processo único
+        this.scenario = scenario;
+        this.rank = rank;
+        this.engine = new TickEngine(scenario, partition, rank);
+        this.partition = partition;
+    }
+
+    public void connect(List<InetSocketAddress> addresses) throws IOException {
+        if (addresses.size() != partition.parts()) {
+            throw new IllegalArgumentException("Esperados " + partition.parts() + " endereços, recebidos " + addresses.size());
+        }
+        int higher = 0;
+        for (int peer = rank + 1; peer < partition.parts(); peer++) {
+            if (partition.isNeighbour(rank, peer)) higher++;
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            // Só no endereço do rank (localhost na mesma máquina), não em todas as interfaces: a troca não tem
+            // autenticação
+            server.bind(addresses.get(rank));
+            for (int peer = 0; peer < rank; peer++) {
+                if (!partition.isNeighbour(rank, peer)) continue;
+                SocketChannel channel = connectWithRetry(addresses.get(peer));
+                ByteBuffer hello = ByteBuffer.allocate(4).putInt(rank);
+                hello.flip();
+                while (hello.hasRemaining()) channel.write(hello);
+                peers.add(new Peer(peer, channel));
+            }
+            for (int k = 0; k < higher; k++) {
+                SocketChannel channel = server.accept();
+                ByteBuffer hello = ByteBuffer.allocate(4);
+                while (hello.hasRemaining()) {
+                    if (channel.read(hello) < 0) throw new IOException("Vizinho fechou a conexão no handshake.");
+                }
+                hello.flip();
+                int peer = hello.getInt();
+                if (!partition.isNeighbour(rank, peer)) {
+                    throw new IOException("Conexão inesperada do processo " + peer);
+                }
+                peers.add(new Peer(peer, channel));
+            }
+        }
+        selector = Selector.open();
+        for (Peer peer : peers) {
+            peer.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            peer.channel.configureBlocking(false);
+            peer.channel.register(selector, 0, peer);
+        }
+    }
+
+    static SocketChannel connectWithRetry(InetSocketAddress address) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+        while (true) {
+            try {
+                return SocketChannel.open(address);
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) throw e;
+                try {
+                    Thread.sleep(100); // O vizinho ainda não está escutando
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Conexão interrompida.", ie);
+                }
+            }
+        }
+    }
+
+    public ReplicationResult run() throws IOException {
+        exchange(0); // Espaço livre inicial dos links de fronteira
+        while (engine.getTick() < scenario.getDurationTicks()) {
+            engine.step();
+            exchange(engine.getTick());
+        }
+        return engine.result();
+    }
+
+    // Envia a mensagem do tick a todos os vizinhos e espera a de cada um; escrita e leitura são
+    // intercaladas pelo Selector para que dois vizinhos com mensagens grandes não travem um ao outro
+    private void exchange(long tick) throws IOException {
+        for (Peer peer : peers) {
+            BoundaryBuffer message = engine.outbox(peer.rank);
+            int bytes = message.encodedBytes();
+            if (peer.out.capacity() < bytes + 4) {
+                peer.out = ByteBuffer.allocate(Integer.highestOneBit(bytes + 4) << 1);
+            }
+            peer.out.clear();
+            peer.out.putInt(bytes);
+            message.encode(peer.out, tick);
+            peer.out.flip();
+            message.clear();
+            peer.inHeader.clear();
+            peer.bodyPending = false;
+            peer.complete = false;
+            peer.channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        int remaining = peers.size();
+        while (remaining > 0) {
+            selector.select();
+            for (SelectionKey key : selector.selectedKeys()) {
+                Peer peer = (Peer) key.attachment();
+                if (key.isWritable()) {
+                    peer.channel.write(peer.out);
+                    if (!peer.out.hasRemaining()) key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                }
+                if (key.isReadable() && read(peer, tick)) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+                if (key.interestOps() == 0 && !peer.complete) {
+                    peer.complete = true; // Mensagem enviada e recebida
+                    remaining--;
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+    }
+
+    // Lê de forma incremental; retorna true quando a mensagem do tick chegou inteira e foi aplicada
+    private boolean read(Peer peer, long tick) throws IOException {
+        if (!peer.bodyPending) {
+            if (peer.channel.read(peer.inHeader) < 0) throw new IOException("Processo " + peer.rank + " desconectou.");
+            if (peer.inHeader.hasRemaining()) return false;
+            peer.inHeader.flip();
+            int bytes = peer.inHeader.getInt();
+            if (peer.inBody.capacity() < bytes) {
+                peer.inBody = ByteBuffer.allocate(Integer.highestOneBit(bytes) << 1);
+            }
+            peer.inBody.clear().limit(bytes);
+            peer.bodyPending = true;
+        }
+        if (peer.inBody.hasRemaining() && peer.channel.read(peer.inBody) < 0) {
+            throw new IOException("Processo " + peer.rank + " desconectou.");
+        }
+        if (peer.inBody.hasRemaining()) return false;
+        peer.inBody.flip();
+        peer.message.decode(peer.inBody);
+        if (peer.message.tick() != tick) {
+            throw new IllegalStateException("Processo " + peer.rank + " fora de sincronia: tick "
+                    + peer.message.tick() + ", esperado " + tick);
+        }
+        engine.receive(peer.message);
+        return true;
+    }
+
+    public void close() throws IOException {
+        for (Peer peer : peers) peer.channel.close();
+        if (selector != null) selector.close();
+    }
+
+    public TickEngine getEngine() {
+        return engine;
+    }
+
+    // Cenário reconstruído de forma idêntica em todos os processos a partir dos mesmos argumentos
+    static Scenario buildScenario(String gridSpec, EngineMode mode, double demandPerHour, long seed, long ticks) {
+        NetworkIndex network = BatchRunner.buildNetwork(gridSpec);
+        ZonePartition zone = mode == EngineMode.HYBRID ? BatchRunner.centralZone(network, gridSpec) : null;
+        return new Scenario("distribuido-" + (int) demandPerHour, network, DemandModel.uniform(network, demandPerHour),
+                SignalPolicy.FIXED, ticks, 1000000, seed, mode, zone);
+    }
+
+    static List<InetSocketAddress> parseAddresses(String list) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String entry : list.split(",")) {
+            int colon = entry.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Endereço inválido (use host:porta): " + entry);
+            }
+            addresses.add(new InetSocketAddress(entry.substring(0, colon), Integer.parseInt(entry.substring(colon + 1))));
+        }
+        return addresses;
+    }
+
+    // Uso: DistributedNode <rank> <host:porta,...> <padrao|NxM> <MICRO|MESO|HYBRID> <demanda/h> <semente> <ticks>
+    // Imprime uma linha "RESULTADO;..." que o DistributedLauncher agrega.
+    public static void main(String[] args) throws IOException {
+        if (args.length < 7) {
+            System.err.println("Uso: DistributedNode <rank> <host:porta,...> <padrao|NxM> <MICRO|MESO|HYBRID> <demanda/h> <semente> <ticks>");
+            System.exit(2);
+        }
+        int rank = Integer.parseInt(args[0]);
+        List<InetSocketAddress> addresses = parseAddresses(args[1]);
+        String gridSpec = args[2].equalsIgnoreCase("padrao") ? null : args[2];
+        Scenario scenario = buildScenario(gridSpec, EngineMode.valueOf(args[3].toUpperCase()),
+                Double.parseDouble(args[4]), Long.parseLong(args[5]), Long.parseLong(args[6]));
+        ProcessPartition partition = ProcessPartition.strips(scenario.getNetwork(), addresses.size());
+        DistributedNode node = new DistributedNode(scenario, partition, rank);
+        try {
+            node.connect(addresses);
+            long start = System.currentTimeMillis();
+            ReplicationResult result = node.run();
+            TickEngine engine = node.getEngine();
+            System.out.println("RESULTADO;" + rank + ";" + result.getSpawned() + ";" + result.getCompleted() + ";"
+                    + result.getInNetwork() + ";" + result.getMeanDelaySeconds() + ";" + engine.getSent() + ";"
+                    + engine.getReceived() + ";" + engine.getConservationViolations() + ";"
+                    + (System.currentTimeMillis() - start));
+        } finally {
+            node.close();
+        }
+    }
+}
@@ -4,7 +4,11 @@ public class EmergencyVehicle extends Car {
     private boolean sirenOn = false;
 
     public EmergencyVehicle(Grid grid, Street startStreet, double initialSpeed) {
-        super(grid, startStreet, initialSpeed);
+        this(grid, startStreet, initialSpeed, new RandomStreams(RandomStreams.DEFAULT_SEED));
+    }
+
+    public EmergencyVehicle(Grid grid, Street startStreet, double initialSpeed, RandomStreams streams) {
+        super(grid, startStreet, initialSpeed, streams);
         this.sirenOn = true; // Veículos de emergência geralmente têm sirenes ligadas ao responder
         System.out.println("VeiculoDeEmergencia " + getCarId() + " criado e sirene LIGADA.");
     }
@@ -71,6 +75,11 @@ public class EmergencyVehicle extends Car {
         }
     }
 
+    @Override
+    protected boolean obeysMovementPhases() {
+        return !isSirenOn(); // Com sirene, o cruzamento dá prioridade a qualquer movimento
+    }
+
     // chooseNextStreetAndDepart is inherited from Car, can be overridden if needed.
 }
 
@@ -0,0 +1,168 @@
+package com.simuladortrafego;
+
+import java.io.IOException;
+import java.util.Locale;
+
+// Emissões acumuladas em fluxo durante a execução (EmissionModel), sem guardar trajetórias: a cada tick cada
+// veículo micro soma g/s × tick na célula (faixa, classe, poluente) da própria faixa. Cada faixa é escrita
+// só pela thread que a segue (TickEngine.enableParallelLanes), então a soma roda em paralelo sem trava e dá
+// o mesmo resultado para qualquer número de threads. Links meso não têm velocidade por tick: ao sair da fila
+// o veículo soma o trecho em fluxo livre à velocidade desejada e o tempo parado em marcha lenta.
+// Ruas e aproximações são somas das faixas e links delas, feitas só na consulta.
+public final class EmissionLedger {
+    public enum Pollutant {
+        CO2, NOX, FUEL // g, g, litros
+    }
+
+    private static final int CLASSES = VehicleClass.values().length;
+    private static final int POLLUTANTS = Pollutant.values().length;
+
+    private final NetworkIndex network;
+    private final int[] laneLink;
+    private final int[] firstLane;  // faixas de um link são contíguas (LaneIndex)
+    private final int[] laneCount;
+    private final double[] lanes;  // [(faixa * CLASSES + classe) * POLLUTANTS + poluente]
+    private final double[] links;  // [(link * CLASSES + classe) * POLLUTANTS + poluente], links meso
+
+    EmissionLedger(NetworkIndex network, int[] laneLink) {
+        this.network = network;
+        this.laneLink = laneLink;
+        this.firstLane = new int[network.linkCount()];
+        this.laneCount = new int[network.linkCount()];
+        for (int lane = laneLink.length - 1; lane >= 0; lane--) {
+            firstLane[laneLink[lane]] = lane;
+            laneCount[laneLink[lane]]++;
+        }
+        this.lanes = new double[laneLink.length * CLASSES * POLLUTANTS];
+        this.links = new double[network.linkCount() * CLASSES * POLLUTANTS];
+    }
+
+    // Cópia independente (bifurcação do motor)
+    EmissionLedger(EmissionLedger source) {
+        this.network = source.network;
+        this.laneLink = source.laneLink;
+        this.firstLane = source.firstLane;
+        this.laneCount = source.laneCount;
+        this.lanes = source.lanes.clone();
+        this.links = source.links.clone();
+    }
+
+    // Um tick de um veículo micro (chamado pela thread dona da faixa)
+    void sample(int lane, int c, double speed, double acceleration, double seconds) {
+        double co2 = EmissionModel.co2(c, speed, acceleration) * seconds;
+        int at = (lane * CLASSES + c) * POLLUTANTS;
+        lanes[at] += co2;
+        lanes[at + 1] += EmissionModel.nox(c, speed, acceleration) * seconds;
+        lanes[at + 2] += co2 * EmissionModel.LITERS_PER_GRAM_CO2[c];
+    }
+
+    // Passagem completa por um link meso: trecho em fluxo livre a velocidade constante e espera em marcha lenta
+    void traversal(int link, int c, double speed, double cruiseSeconds, double idleSeconds) {
+        double co2 = EmissionModel.co2(c, speed, 0) * cruiseSeconds + EmissionModel.co2(c, 0, 0) * idleSeconds;
+        int at = (link * CLASSES + c) * POLLUTANTS;
+        links[at] += co2;
+        links[at + 1] += EmissionModel.nox(c, speed, 0) * cruiseSeconds + EmissionModel.nox(c, 0, 0) * idleSeconds;
+        links[at + 2] += co2 * EmissionModel.LITERS_PER_GRAM_CO2[c];
+    }
+
+    public double linkTotal(int link, Pollutant p) {
+        double total = 0;
+        for (int c = 0; c < CLASSES; c++) total += linkClassTotal(link, c, p);
+        return total;
+    }
+
+    private double linkClassTotal(int link, int c, Pollutant p) {
+        double total = links[(link * CLASSES + c) * POLLUTANTS + p.ordinal()];
+        for (int lane = firstLane[link]; lane < firstLane[link] + laneCount[link]; lane++) {
+            total += lanes[(lane * CLASSES + c) * POLLUTANTS + p.ordinal()];
+        }
+        return total;
+    }
+
+    // Os dois sentidos de uma rua de mão dupla
+    public double streetTotal(int street, Pollutant p) {
+        double total = 0;
+        for (int link : network.streetLinks(street)) total += linkTotal(link, p);
+        return total;
+    }
+
+    // Links que chegam à aproximação
+    public double approachTotal(int approach, Pollutant p) {
+        double total = 0;
+        for (int link = 0; link < network.linkCount(); link++) {
+            if (network.linkApproach(link) == approach) total += linkTotal(link, p);
+        }
+        return total;
+    }
+
+    public double classTotal(VehicleClass c, Pollutant p) {
+        double total = 0;
+        for (int at = c.ordinal() * POLLUTANTS + p.ordinal(); at < lanes.length; at += CLASSES * POLLUTANTS) {
+            total += lanes[at];
+        }
+        for (int at = c.ordinal() * POLLUTANTS + p.ordinal(); at < links.length; at += CLASSES * POLLUTANTS) {
+            total += links[at];
+        }
+        return total;
+    }
+
+    public double total(Pollutant p) {
+        double total = 0;
+        for (VehicleClass c : VehicleClass.values()) total += classTotal(c, p);
+        return total;
+    }
+
+    // Uma linha por rua, aproximação e classe com emissões: "tipo;id;co2_g;nox_g;combustivel_l"
+    public void report(Appendable out) throws IOException {
+        double[] streets = perStreet(Pollutant.CO2);
+        double[] streetsNox = perStreet(Pollutant.NOX);
+        double[] streetsFuel = perStreet(Pollutant.FUEL);
+        out.append("tipo;id;co2_g;nox_g;combustivel_l\n");
+        for (int s = 0; s < network.streetCount(); s++) {
+            if (streets[s] > 0) line(out, "rua", network.street(s).getId(), streets[s], streetsNox[s], streetsFuel[s]);
+        }
+        double[] approaches = perApproach(Pollutant.CO2);
+        double[] approachesNox = perApproach(Pollutant.NOX);
+        double[] approachesFuel = perApproach(Pollutant.FUEL);
+        for (int a = 0; a < network.approachCount(); a++) {
+            if (approaches[a] <= 0) continue;
+            line(out, "aproximacao", network.intersection(network.approachIntersection(a)).getId() + ":"
+                    + network.approachDirection(a), approaches[a], approachesNox[a], approachesFuel[a]);
+        }
+        for (VehicleClass c : VehicleClass.values()) {
+            double co2 = classTotal(c, Pollutant.CO2);
+            if (co2 > 0) line(out, "classe", c.getKey(), co2, classTotal(c, Pollutant.NOX), classTotal(c, Pollutant.FUEL));
+        }
+    }
+
+    private static void line(Appendable out, String kind, String id, double co2, double nox, double fuel) throws IOException {
+        out.append(kind).append(';').append(id).append(';')
+                .append(String.format(Locale.ROOT, "%.1f;%.3f;%.3f", co2, nox, fuel)).append('\n');
+    }
+
+    // Uma passada pelas faixas e links para o relatório inteiro, em vez de uma por rua
+    private double[] perLink(Pollutant p) {
+        double[] perLink = new double[network.linkCount()];
+        for (int lane = 0; lane < laneLink.length; lane++) {
+            for (int c = 0; c < CLASSES; c++) perLink[laneLink[lane]] += lanes[(lane * CLASSES + c) * POLLUTANTS + p.ordinal()];
+        }
+        for (int link = 0; link < perLink.length; link++) {
+            for (int c = 0; c < CLASSES; c++) perLink[link] += links[(link * CLASSES + c) * POLLUTANTS + p.ordinal()];
+        }
+        return perLink;
+    }
+
+    private double[] perStreet(Pollutant p) {
+        double[] perLink = perLink(p);
+        double[] perStreet = new double[network.streetCount()];
+        for (int link = 0; link < perLink.length; link++) perStreet[network.linkStreet(link)] += perLink[link];
+        return perStreet;
+    }
+
+    private double[] perApproach(Pollutant p) {
+        double[] perLink = perLink(p);
+        double[] perApproach = new double[network.approachCount()];
+        for (int link = 0; link < perLink.length; link++) perApproach[network.linkApproach(link)] += perLink[link];
+        return perApproach;
+    }
+}
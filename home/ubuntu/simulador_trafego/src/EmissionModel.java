@@ -0,0 +1,73 @@
+package com.simuladortrafego;
+
+// Modelo instantâneo de emissões de Panis, Broekx e Liu (2006): E = max(E0, f1 + f2·v + f3·v² + f4·a + f5·a²
+// + f6·v·a) em g/s, com v em m/s e a em m/s², um conjunto de coeficientes por classe e poluente. Para NOx
+// o carro tem um segundo conjunto na desaceleração forte (a < -0,5 m/s²).
+// Tabelas por ordinal de VehicleClass, como as da própria classe, lidas sem despacho por veículo:
+// carro = automóvel a gasolina, caminhão = veículo pesado (HDV), ônibus = ônibus para CO2 e HDV para NOx,
+// bicicleta não emite. Combustível sai do CO2 pela massa de CO2 por litro queimado (gasolina ou diesel).
+final class EmissionModel {
+    static final double NOX_DECELERATION = -0.5; // m/s²
+
+    // {E0, f1, f2, f3, f4, f5, f6}
+    private static final double[] PETROL_CAR_CO2 = {0, 5.53e-1, 1.61e-1, -2.89e-3, 2.66e-1, 5.11e-1, 1.83e-1};
+    private static final double[] HDV_CO2 = {0, 1.52e+0, 1.88e+0, -6.95e-2, 4.71e+0, 5.88e+0, 2.09e+0};
+    private static final double[] BUS_CO2 = {0, 9.04e-1, 1.13e+0, -4.27e-2, 2.81e+0, 3.45e+0, 1.22e+0};
+    private static final double[] PETROL_CAR_NOX = {0, 6.19e-4, 8.00e-5, -4.03e-6, -4.13e-4, 3.80e-4, 1.77e-4};
+    private static final double[] PETROL_CAR_NOX_DECEL = {0, 2.17e-4, 0, 0, 0, 0, 0};
+    private static final double[] HDV_NOX = {0, 3.56e-2, 9.71e-3, -2.40e-4, 3.26e-2, 1.33e-2, 1.15e-2};
+    private static final double[] NONE = {0, 0, 0, 0, 0, 0, 0};
+    private static final double PETROL_CO2_PER_LITER = 2310; // g
+    private static final double DIESEL_CO2_PER_LITER = 2680; // g
+
+    static final double[][] CO2 = new double[VehicleClass.values().length][];
+    static final double[][] NOX = new double[VehicleClass.values().length][];
+    static final double[][] NOX_DECEL = new double[VehicleClass.values().length][];
+    static final double[] LITERS_PER_GRAM_CO2 = new double[VehicleClass.values().length];
+
+    static {
+        for (VehicleClass c : VehicleClass.values()) {
+            int i = c.ordinal();
+            switch (c) {
+                case CAR:
+                    CO2[i] = PETROL_CAR_CO2;
+                    NOX[i] = PETROL_CAR_NOX;
+                    NOX_DECEL[i] = PETROL_CAR_NOX_DECEL;
+                    LITERS_PER_GRAM_CO2[i] = 1 / PETROL_CO2_PER_LITER;
+                    break;
+                case BUS:
+                    CO2[i] = BUS_CO2;
+                    NOX[i] = HDV_NOX;
+                    NOX_DECEL[i] = HDV_NOX;
+                    LITERS_PER_GRAM_CO2[i] = 1 / DIESEL_CO2_PER_LITER;
+                    break;
+                case TRUCK:
+                    CO2[i] = HDV_CO2;
+                    NOX[i] = HDV_NOX;
+                    NOX_DECEL[i] = HDV_NOX;
+                    LITERS_PER_GRAM_CO2[i] = 1 / DIESEL_CO2_PER_LITER;
+                    break;
+                default:
+                    CO2[i] = NONE;
+                    NOX[i] = NONE;
+                    NOX_DECEL[i] = NONE;
+                    LITERS_PER_GRAM_CO2[i] = 0;
+            }
+        }
+    }
+
+    private EmissionModel() {
+    }
+
+    static double co2(int c, double v, double a) {
+        return rate(CO2[c], v, a);
+    }
+
+    static double nox(int c, double v, double a) {
+        return rate(a < NOX_DECELERATION ? NOX_DECEL[c] : NOX[c], v, a);
+    }
+
+    private static double rate(double[] f, double v, double a) {
+        return Math.max(f[0], f[1] + f[2] * v + f[3] * v * v + f[4] * a + f[5] * a * a + f[6] * v * a);
+    }
+}
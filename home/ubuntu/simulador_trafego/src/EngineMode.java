@@ -0,0 +1,7 @@
+package com.simuladortrafego;
+
+public enum EngineMode {
+    MICRO, // IDM/MOBIL por veículo em cada faixa
+    MESO,  // Cada link é uma fila com tempo de fluxo livre e vazão de saturação
+    HYBRID // MICRO dentro da ZonePartition do cenário, MESO no restante
+}
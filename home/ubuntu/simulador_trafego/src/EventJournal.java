@@ -0,0 +1,258 @@
+package com.simuladortrafego;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Diário binário só de acréscimo com toda entrada externa e decisão de uma execução: chegadas, saídas
+// escolhidas, decisões no amarelo e trocas de fase. Escrito em um arquivo mapeado em memória, em janelas
+// de MAP_BYTES: acrescentar um evento é só escrever no buffer, sem chamada de sistema por registro.
+// Formato (big-endian): cabeçalho (MAGIC, VERSION, semente, número de argumentos do descritor e cada um como
+// tamanho em 2 bytes e bytes UTF-8, completado até múltiplo de 8) seguido de registros de RECORD_BYTES: tipo,
+// entidade, tick, a, b. Na versão 1 o descritor era um texto só, com os argumentos separados por espaço.
+// Um registro nunca atravessa janelas; o resto da última janela fica zerado e o tipo 0 marca o fim, então
+// um diário de uma execução que caiu no meio continua legível até o último evento gravado. Depois de close()
+// os acréscimos são descartados: uma thread do Simulator que ainda não terminou não escreve no arquivo cortado.
+public final class EventJournal implements AutoCloseable {
+    static final int MAGIC = 0x53494D4A; // "SIMJ"
+    static final int VERSION = 2;
+    static final int RECORD_BYTES = 4 + 4 + 8 + 4 + 4;
+    static final long MAP_BYTES = 1L << 22;
+
+    // Tipos de evento; os campos a e b de cada tipo estão descritos em describe()
+    public static final int SPAWN = 1;
+    public static final int EXIT = 2;
+    public static final int YELLOW = 3;
+    public static final int PHASE = 4;
+    public static final int END = 5;
+
+    private final FileChannel channel;
+    private final long seed;
+    private final String[] descriptor;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long records = 0;
+    private volatile long clock = 0; // Tick atual para quem grava sem conhecer o relógio (threads do Simulator)
+
+    private EventJournal(FileChannel channel, long seed, String[] descriptor) throws IOException {
+        this.channel = channel;
+        this.seed = seed;
+        this.descriptor = descriptor.clone();
+        this.windowStart = 0;
+        this.window = channel.map(FileChannel.MapMode.READ_WRITE, 0, MAP_BYTES);
+        window.putInt(MAGIC).putInt(VERSION).putLong(seed).putInt(descriptor.length);
+        for (String arg : descriptor) {
+            byte[] text = arg.getBytes(StandardCharsets.UTF_8);
+            if (text.length > 0xFFFF) {
+                throw new IllegalArgumentException("Argumento do descritor longo demais: " + text.length + " bytes.");
+            }
+            window.putShort((short) text.length).put(text);
+        }
+        while (window.position() % 8 != 0) window.put((byte) 0);
+    }
+
+    // O descritor diz como reconstruir o cenário (argumentos de ReplayTool, guardados um a um, então podem ter
+    // espaços); o arquivo existente é sobrescrito
+    public static EventJournal create(Path path, long seed, String... descriptor) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new EventJournal(channel, seed, descriptor);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public synchronized void append(int type, long tick, int entity, int a, int b) {
+        if (window == null) return; // Fechado: ver o comentário da classe
+        if (window.remaining() < RECORD_BYTES) {
+            try {
+                windowStart += window.position();
+                window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, MAP_BYTES);
+            } catch (IOException e) {
+                throw new IllegalStateException("Não foi possível estender o diário: " + e.getMessage(), e);
+            }
+        }
+        window.putInt(type).putInt(entity).putLong(tick).putInt(a).putInt(b);
+        records++;
+    }
+
+    // Grava no tick do relógio compartilhado, avançado pelo laço do Simulator
+    public void appendNow(int type, int entity, int a, int b) {
+        append(type, clock, entity, a, b);
+    }
+
+    public void setClock(long tick) {
+        clock = tick;
+    }
+
+    public synchronized long recordCount() {
+        return records;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public String[] getDescriptor() {
+        return descriptor.clone();
+    }
+
+    // Descarrega e corta o arquivo no último registro
+    @Override
+    public synchronized void close() throws IOException {
+        if (window == null) return;
+        window.force();
+        long end = windowStart + window.position();
+        window = null;
+        channel.truncate(end);
+        channel.close();
+    }
+
+    static String describe(int type, long tick, int entity, int a, int b) {
+        switch (type) {
+            case SPAWN: return "tick " + tick + ": chegada do veículo " + entity + " (origem " + a + ", destino " + b + ")";
+            case EXIT: return "tick " + tick + ": veículo " + entity + " em " + a + " escolhe a saída " + b;
+            case YELLOW: return "tick " + tick + ": veículo " + entity + " em " + a + (b == 1 ? " avança" : " para") + " no amarelo";
+            case PHASE: return "tick " + tick + ": cruzamento " + entity + " passa para a fase " + a;
+            case END: return "tick " + tick + ": fim (concluídos " + entity + ", gerados " + a + ", na rede " + b + ")";
+            default: return "tick " + tick + ": evento desconhecido " + type;
+        }
+    }
+
+    // Evento sem o resultado (campo b), para mensagens de divergência na reprodução
+    static String describeKey(int type, long tick, int entity, int a) {
+        switch (type) {
+            case EXIT: return "tick " + tick + ": saída do veículo " + entity + " em " + a;
+            case YELLOW: return "tick " + tick + ": decisão no amarelo do veículo " + entity + " em " + a;
+            case PHASE: return "tick " + tick + ": cruzamento " + entity + " na fase " + a;
+            default: return describe(type, tick, entity, a, 0);
+        }
+    }
+
+    public static Reader open(Path path) throws IOException {
+        return new Reader(path);
+    }
+
+    // Leitura sequencial: o registro corrente fica nos campos até advance(); sem alocação por evento
+    public static final class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final long size;
+        private final long seed;
+        private final String[] descriptor;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private boolean atEnd = false;
+        private int type;
+        private int entity;
+        private long tick;
+        private int a;
+        private int b;
+
+        private Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                this.size = channel.size();
+                ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAP_BYTES));
+                if (size < 20 || header.getInt() != MAGIC) {
+                    throw new IllegalArgumentException(path + " não é um diário de simulação.");
+                }
+                int version = header.getInt();
+                if (version != 1 && version != VERSION) {
+                    throw new IllegalArgumentException(path + ": versão de diário não suportada: " + version);
+                }
+                this.seed = header.getLong();
+                int count = header.getInt();
+                if (version == 1) {
+                    byte[] text = new byte[count];
+                    header.get(text);
+                    this.descriptor = new String(text, StandardCharsets.UTF_8).split(" ");
+                } else {
+                    this.descriptor = new String[count];
+                    for (int k = 0; k < count; k++) {
+                        byte[] text = new byte[header.getShort() & 0xFFFF];
+                        header.get(text);
+                        descriptor[k] = new String(text, StandardCharsets.UTF_8);
+                    }
+                }
+                this.windowStart = (header.position() + 7) & ~7;
+                this.window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, MAP_BYTES));
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            advance();
+        }
+
+        public void advance() {
+            if (atEnd) return;
+            if (window.remaining() < RECORD_BYTES) {
+                windowStart += window.position();
+                if (size - windowStart < RECORD_BYTES) {
+                    atEnd = true;
+                    return;
+                }
+                try {
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, MAP_BYTES));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Falha ao ler o diário: " + e.getMessage(), e);
+                }
+            }
+            type = window.getInt();
+            if (type == 0) { // Resto zerado da última janela de uma execução interrompida
+                atEnd = true;
+                return;
+            }
+            entity = window.getInt();
+            tick = window.getLong();
+            a = window.getInt();
+            b = window.getInt();
+        }
+
+        public boolean atEnd() {
+            return atEnd;
+        }
+
+        public int type() {
+            return atEnd ? 0 : type;
+        }
+
+        public long tick() {
+            return tick;
+        }
+
+        public int entity() {
+            return entity;
+        }
+
+        public int a() {
+            return a;
+        }
+
+        public int b() {
+            return b;
+        }
+
+        public String describeCurrent() {
+            return atEnd ? "fim do diário" : describe(type, tick, entity, a, b);
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public String[] getDescriptor() {
+            return descriptor.clone();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
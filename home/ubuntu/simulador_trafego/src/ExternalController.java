@@ -0,0 +1,364 @@
+package com.simuladortrafego;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Controlador de semáforos externo ("hardware in the loop") ligado ao TickEngine por um socket local.
+// Os cruzamentos escolhidos saem do ciclo do SignalController e, a cada tick, o motor manda ao controlador
+// uma única mensagem com o estado de todas as aproximações deles e dos laços que chegam a elas, e espera a
+// resposta com o novo estado de cada aproximação antes de mover os veículos. Formato binário (big-endian),
+// com TCP_NODELAY e um só flush por sentido e tick, para o ida-e-volta ficar em dezenas de microssegundos:
+//   handshake (motor): MAGIC, VERSION, tick em ms, intervalo dos laços em ms, número de cruzamentos e, para
+//     cada um, o id (UTF), o número de aproximações e o quadrante (Direction.ordinal) de cada uma; depois o
+//     número de laços e, para cada um, o id (UTF) e o índice da aproximação medida. O controlador responde MAGIC.
+//   quadro (motor): tick a simular; um byte por aproximação com o estado atual (LightState.ordinal); um mapa
+//     de bits de presença dos laços no tick anterior; um byte 1 se fechou intervalo desde o último quadro,
+//     seguido então dos três inteiros de 16 bits por laço da DetectorFeed (veículos, ocupação, cm/s).
+//   resposta (controlador): o tick recebido e um byte por aproximação com o estado a aplicar.
+// Índices de aproximação e de laço são os da ordem do handshake, não os do NetworkIndex.
+public final class ExternalController implements AutoCloseable {
+    static final int MAGIC = 0x53494D43; // "SIMC"
+    static final int VERSION = 1;
+    private static final int MAX_FIELD = 0xFFFF;
+    private static final LightState[] STATES = LightState.values();
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final List<String> intersectionIds;
+    private SignalController signals;
+    private LoopDetectors detectors;
+    private int[] approaches;      // aproximações controladas, na ordem do handshake
+    private int[] detectorIndex;   // laços (índice de LoopDetectors) que medem aproximações controladas
+    private byte[] states;         // um byte por aproximação, nos dois sentidos
+    private byte[] presence;
+    private long intervalsSent = 0;
+    private long exchanges = 0;
+    private long roundTripNanos = 0;
+    private long maxRoundTripNanos = 0;
+
+    // intersectionIds vazio: todos os cruzamentos da rede
+    public ExternalController(Socket socket, List<String> intersectionIds) throws IOException {
+        socket.setTcpNoDelay(true);
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.intersectionIds = new ArrayList<>(intersectionIds);
+    }
+
+    // Espera o controlador conectar na porta local; só no loopback, como o VisualizationServer, porque o
+    // protocolo não tem autenticação e quem conecta passa a comandar os semáforos
+    public static ExternalController accept(int port, List<String> intersectionIds) throws IOException {
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            return new ExternalController(server.accept(), intersectionIds);
+        }
+    }
+
+    // Chamado pelo TickEngine antes do primeiro tick: tira os cruzamentos do ciclo e faz o handshake
+    void attach(NetworkIndex network, SignalController signals, LoopDetectors detectors) throws IOException {
+        List<Integer> controlled = new ArrayList<>();
+        if (intersectionIds.isEmpty()) {
+            for (int i = 0; i < network.intersectionCount(); i++) controlled.add(i);
+        }
+        for (String id : intersectionIds) {
+            int i = network.intersectionIndexOf(id);
+            if (i < 0) {
+                throw new IllegalArgumentException("Cruzamento desconhecido: " + id);
+            }
+            if (controlled.contains(i)) {
+                throw new IllegalArgumentException("Cruzamento repetido: " + id);
+            }
+            controlled.add(i);
+        }
+        int[] flatApproach = new int[network.approachCount()];
+        Arrays.fill(flatApproach, -1);
+        List<Integer> approachList = new ArrayList<>();
+        for (int i : controlled) {
+            for (int a : network.intersectionApproaches(i)) {
+                flatApproach[a] = approachList.size();
+                approachList.add(a);
+            }
+        }
+        List<Integer> detectorList = new ArrayList<>();
+        for (int d = 0; detectors != null && d < detectors.size(); d++) {
+            int approach = network.linkApproach(network.detectorLink(d));
+            if (approach >= 0 && flatApproach[approach] >= 0) detectorList.add(d);
+        }
+        this.signals = signals;
+        this.detectors = detectors;
+        this.approaches = approachList.stream().mapToInt(Integer::intValue).toArray();
+        this.detectorIndex = detectorList.stream().mapToInt(Integer::intValue).toArray();
+        this.states = new byte[approaches.length];
+        this.presence = new byte[(detectorIndex.length + 7) / 8];
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt((int) TickEngine.TICK_MS);
+        out.writeInt(detectors == null ? 0 : (int) detectors.getIntervalMs());
+        out.writeInt(controlled.size());
+        for (int i : controlled) {
+            out.writeUTF(network.intersection(i).getId());
+            out.writeInt(network.intersectionApproaches(i).length);
+            for (int a : network.intersectionApproaches(i)) out.writeByte(network.approachDirection(a).ordinal());
+        }
+        out.writeInt(detectorIndex.length);
+        for (int d : detectorIndex) {
+            out.writeUTF(detectors.id(d));
+            out.writeInt(flatApproach[network.linkApproach(network.detectorLink(d))]);
+        }
+        out.flush();
+        if (in.readInt() != MAGIC) {
+            throw new IOException("O controlador externo não confirmou o handshake.");
+        }
+        for (int i : controlled) signals.setExternal(i);
+        if (detectors != null) intervalsSent = detectors.getIntervals();
+    }
+
+    // Um ida-e-volta por tick, antes de mover os veículos; bloqueia até a resposta chegar
+    void exchange(long tick) throws IOException {
+        long start = System.nanoTime();
+        out.writeLong(tick);
+        for (int k = 0; k < approaches.length; k++) states[k] = (byte) signals.state(approaches[k]).ordinal();
+        out.write(states);
+        Arrays.fill(presence, (byte) 0);
+        for (int k = 0; k < detectorIndex.length; k++) {
+            if (detectors.isOccupied(detectorIndex[k])) presence[k >> 3] |= (byte) (1 << (k & 7));
+        }
+        out.write(presence);
+        boolean closed = detectors != null && detectors.getIntervals() != intervalsSent;
+        out.writeByte(closed ? 1 : 0);
+        if (closed) {
+            for (int d : detectorIndex) {
+                out.writeShort(Math.min(MAX_FIELD, detectors.count(d)));
+                out.writeShort((int) Math.round(detectors.occupancy(d) * 10000));
+                out.writeShort((int) Math.min(MAX_FIELD, Math.round(detectors.meanSpeed(d) * 100)));
+            }
+            intervalsSent = detectors.getIntervals();
+        }
+        out.flush();
+        long echo = in.readLong();
+        if (echo != tick) {
+            throw new IOException("Resposta do controlador externo para o tick " + echo + ", esperado " + tick);
+        }
+        in.readFully(states);
+        for (int k = 0; k < approaches.length; k++) {
+            if (states[k] < 0 || states[k] >= STATES.length) {
+                throw new IOException("Estado de semáforo inválido do controlador externo: " + states[k]);
+            }
+            signals.setExternalState(approaches[k], STATES[states[k]]);
+        }
+        long elapsed = System.nanoTime() - start;
+        exchanges++;
+        roundTripNanos += elapsed;
+        maxRoundTripNanos = Math.max(maxRoundTripNanos, elapsed);
+    }
+
+    public int approachCount() {
+        return approaches == null ? 0 : approaches.length;
+    }
+
+    public long getExchanges() {
+        return exchanges;
+    }
+
+    // Ida-e-volta medido no motor: montagem do quadro, rede, decisão do controlador e aplicação da resposta
+    public double getMeanRoundTripMicros() {
+        return exchanges == 0 ? 0.0 : roundTripNanos / 1000.0 / exchanges;
+    }
+
+    public double getMaxRoundTripMicros() {
+        return maxRoundTripNanos / 1000.0;
+    }
+
+    // Fecha o socket; o controlador vê o fim do fluxo (Client.next() devolve false)
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    // Lado do controlador: lê o handshake, depois next() / setState() / reply() a cada tick.
+    // Sem setState, a resposta devolve o estado recebido no quadro.
+    public static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final long tickMs;
+        private final long intervalMs;
+        private final String[] intersectionIds;
+        private final int[] approachIntersection;
+        private final Direction[] approachDirection;
+        private final String[] detectorIds;
+        private final int[] detectorApproach;
+        private final byte[] state;
+        private final byte[] presence;
+        private final int[] count;
+        private final double[] occupancy;
+        private final double[] speed;
+        private boolean intervalClosed;
+        private long tick = -1;
+
+        public Client(Socket socket) throws IOException {
+            socket.setTcpNoDelay(true);
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("O fluxo não é de um simulador com controle externo.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Versão do protocolo de controle externo não suportada: " + version);
+            }
+            this.tickMs = in.readInt();
+            this.intervalMs = in.readInt();
+            this.intersectionIds = new String[in.readInt()];
+            List<Integer> owner = new ArrayList<>();
+            List<Direction> directions = new ArrayList<>();
+            for (int k = 0; k < intersectionIds.length; k++) {
+                intersectionIds[k] = in.readUTF();
+                int approaches = in.readInt();
+                for (int a = 0; a < approaches; a++) {
+                    owner.add(k);
+                    directions.add(Direction.values()[in.readUnsignedByte()]);
+                }
+            }
+            this.approachIntersection = owner.stream().mapToInt(Integer::intValue).toArray();
+            this.approachDirection = directions.toArray(new Direction[0]);
+            this.detectorIds = new String[in.readInt()];
+            this.detectorApproach = new int[detectorIds.length];
+            for (int d = 0; d < detectorIds.length; d++) {
+                detectorIds[d] = in.readUTF();
+                detectorApproach[d] = in.readInt();
+            }
+            this.state = new byte[approachIntersection.length];
+            this.presence = new byte[(detectorIds.length + 7) / 8];
+            this.count = new int[detectorIds.length];
+            this.occupancy = new double[detectorIds.length];
+            this.speed = new double[detectorIds.length];
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+
+        // Conecta ao motor, tentando de novo enquanto ele ainda não está escutando
+        public static Client connect(InetSocketAddress address) throws IOException {
+            return new Client(DistributedNode.connectWithRetry(address).socket());
+        }
+
+        // Próximo quadro; false quando o motor terminou e fechou a conexão
+        public boolean next() throws IOException {
+            try {
+                tick = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            in.readFully(state);
+            in.readFully(presence);
+            intervalClosed = in.readUnsignedByte() == 1;
+            if (intervalClosed) {
+                for (int d = 0; d < detectorIds.length; d++) {
+                    count[d] = in.readUnsignedShort();
+                    occupancy[d] = in.readUnsignedShort() / 10000.0;
+                    speed[d] = in.readUnsignedShort() / 100.0;
+                }
+            }
+            return true;
+        }
+
+        public void setState(int approach, LightState value) {
+            state[approach] = (byte) value.ordinal();
+        }
+
+        public void reply() throws IOException {
+            out.writeLong(tick);
+            out.write(state);
+            out.flush();
+        }
+
+        public long getTickMs() {
+            return tickMs;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public long tick() {
+            return tick;
+        }
+
+        public int intersectionCount() {
+            return intersectionIds.length;
+        }
+
+        public String intersectionId(int k) {
+            return intersectionIds[k];
+        }
+
+        public int approachCount() {
+            return approachIntersection.length;
+        }
+
+        public int approachIntersection(int approach) {
+            return approachIntersection[approach];
+        }
+
+        public Direction approachDirection(int approach) {
+            return approachDirection[approach];
+        }
+
+        public LightState state(int approach) {
+            return STATES[state[approach]];
+        }
+
+        public int detectorCount() {
+            return detectorIds.length;
+        }
+
+        public String detectorId(int d) {
+            return detectorIds[d];
+        }
+
+        public int detectorApproach(int d) {
+            return detectorApproach[d];
+        }
+
+        // Presença sobre o laço no último tick simulado
+        public boolean isOccupied(int d) {
+            return (presence[d >> 3] >> (d & 7) & 1) != 0;
+        }
+
+        // true se este quadro trouxe um intervalo fechado; os valores abaixo são os do último recebido
+        public boolean intervalClosed() {
+            return intervalClosed;
+        }
+
+        public int count(int d) {
+            return count[d];
+        }
+
+        public double occupancy(int d) {
+            return occupancy[d];
+        }
+
+        public double meanSpeed(int d) {
+            return speed[d];
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
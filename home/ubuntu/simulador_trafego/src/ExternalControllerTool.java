@@ -0,0 +1,132 @@
+package com.simuladortrafego;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Co-simulação com um controlador de semáforos externo (ExternalController):
+//   simular <cenário|NxM> <porta> [cruzamentos|todos]   roda o cenário esperando o controlador na porta local
+//   atuado <host:porta>                                 controlador atuado de exemplo, do outro lado do socket
+// O controlador de exemplo alterna, em cada cruzamento, os quadrantes norte-sul e leste-oeste: verde mínimo,
+// prorrogado enquanto algum laço do grupo verde detecta veículos (até o máximo), amarelo e vermelho geral.
+// Sem laços no grupo verde o verde dura o máximo, como um controlador de tempo fixo.
+public class ExternalControllerTool {
+    private static final long MIN_GREEN_MS = 10000;
+    private static final long MAX_GREEN_MS = 40000;
+    private static final long GAP_MS = 3000;
+    private static final long YELLOW_MS = 3000;
+    private static final long ALL_RED_MS = 1000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: ExternalControllerTool simular <arquivo de cenário|NxM> <porta> [cruzamentos separados por vírgula|todos]");
+            System.err.println("     ExternalControllerTool atuado <host:porta>");
+            System.exit(2);
+        }
+        switch (args[0]) {
+            case "simular":
+                if (args.length < 3) {
+                    System.err.println("Uso: ExternalControllerTool simular <arquivo de cenário|NxM> <porta> [cruzamentos|todos]");
+                    System.exit(2);
+                }
+                List<String> ids = args.length < 4 || args[3].equalsIgnoreCase("todos")
+                        ? new ArrayList<>() : Arrays.asList(args[3].split(","));
+                simulate(args[1], Integer.parseInt(args[2]), ids);
+                break;
+            case "atuado":
+                actuated(DistributedNode.parseAddresses(args[1]).get(0));
+                break;
+            default:
+                throw new IllegalArgumentException("Comando desconhecido: " + args[0]);
+        }
+    }
+
+    private static void simulate(String source, int port, List<String> intersectionIds) throws IOException {
+        Scenario scenario = source.matches("\\d+x\\d+")
+                ? DistributedNode.buildScenario(source, EngineMode.MICRO, 12000, 42, 3000)
+                : ScenarioFile.load(Paths.get(source)).toScenario();
+        TickEngine engine = new TickEngine(scenario);
+        System.out.println("Esperando o controlador externo na porta " + port + "...");
+        try (ExternalController controller = ExternalController.accept(port, intersectionIds)) {
+            engine.enableExternalController(controller);
+            long start = System.nanoTime();
+            ReplicationResult result = engine.run();
+            double wallSeconds = (System.nanoTime() - start) / 1e9;
+            double simulatedSeconds = engine.getTick() * TickEngine.TICK_SECONDS;
+            System.out.println(result);
+            System.out.println(String.format(Locale.ROOT,
+                    "%d aproximações controladas, %d trocas, ida-e-volta médio %.1f µs (máximo %.1f µs), %.1fx o tempo real",
+                    controller.approachCount(), controller.getExchanges(), controller.getMeanRoundTripMicros(),
+                    controller.getMaxRoundTripMicros(), simulatedSeconds / wallSeconds));
+        }
+    }
+
+    private static boolean northSouth(Direction direction) {
+        return direction == Direction.NORTH || direction == Direction.SOUTH;
+    }
+
+    private static void actuated(InetSocketAddress address) throws IOException {
+        try (ExternalController.Client client = ExternalController.Client.connect(address)) {
+            int intersections = client.intersectionCount();
+            boolean[] servingNorthSouth = new boolean[intersections];
+            int[] stage = new int[intersections]; // 0 verde, 1 amarelo, 2 vermelho geral
+            long[] elapsedMs = new long[intersections];
+            long[] gapMs = new long[intersections];
+            boolean[] hasDetector = new boolean[client.approachCount()];
+            for (int d = 0; d < client.detectorCount(); d++) hasDetector[client.detectorApproach(d)] = true;
+            // Por cruzamento e grupo [norte-sul, leste-oeste]: tem aproximações, tem laços
+            boolean[][] groupPresent = new boolean[intersections][2];
+            boolean[][] groupDetected = new boolean[intersections][2];
+            for (int a = 0; a < client.approachCount(); a++) {
+                int group = northSouth(client.approachDirection(a)) ? 0 : 1;
+                groupPresent[client.approachIntersection(a)][group] = true;
+                if (hasDetector[a]) groupDetected[client.approachIntersection(a)][group] = true;
+            }
+            for (int i = 0; i < intersections; i++) servingNorthSouth[i] = groupPresent[i][0];
+            boolean[] presence = new boolean[intersections];
+            long frames = 0;
+            while (client.next()) {
+                Arrays.fill(presence, false);
+                for (int d = 0; d < client.detectorCount(); d++) {
+                    int a = client.detectorApproach(d);
+                    int i = client.approachIntersection(a);
+                    if (client.isOccupied(d) && northSouth(client.approachDirection(a)) == servingNorthSouth[i]) {
+                        presence[i] = true;
+                    }
+                }
+                for (int i = 0; i < intersections; i++) {
+                    elapsedMs[i] += client.getTickMs();
+                    gapMs[i] = presence[i] ? 0 : gapMs[i] + client.getTickMs();
+                    boolean actuated = groupDetected[i][servingNorthSouth[i] ? 0 : 1];
+                    boolean otherWaiting = groupPresent[i][servingNorthSouth[i] ? 1 : 0]; // senão o verde fica
+                    if (stage[i] == 0 && otherWaiting && elapsedMs[i] >= MIN_GREEN_MS
+                            && (elapsedMs[i] >= MAX_GREEN_MS || actuated && gapMs[i] >= GAP_MS)) {
+                        stage[i] = 1;
+                        elapsedMs[i] = 0;
+                    } else if (stage[i] == 1 && elapsedMs[i] >= YELLOW_MS) {
+                        stage[i] = 2;
+                        elapsedMs[i] = 0;
+                    } else if (stage[i] == 2 && elapsedMs[i] >= ALL_RED_MS) {
+                        stage[i] = 0;
+                        elapsedMs[i] = 0;
+                        gapMs[i] = 0;
+                        servingNorthSouth[i] = !servingNorthSouth[i];
+                    }
+                }
+                for (int a = 0; a < client.approachCount(); a++) {
+                    int i = client.approachIntersection(a);
+                    boolean serving = northSouth(client.approachDirection(a)) == servingNorthSouth[i];
+                    client.setState(a, !serving || stage[i] == 2 ? LightState.RED
+                            : stage[i] == 1 ? LightState.YELLOW : LightState.GREEN);
+                }
+                client.reply();
+                frames++;
+            }
+            System.out.println("Controlador atuado: " + frames + " ticks em " + intersections + " cruzamentos.");
+        }
+    }
+}
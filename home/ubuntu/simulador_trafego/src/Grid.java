@@ -2,8 +2,10 @@ package com.simuladortrafego;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -14,27 +16,65 @@ public class Grid {
     private Map<String, Set<String>> intersectionStreetMap;
     // Adjacency list for streets: Street ID -> List of connected Intersection IDs
     private Map<String, Set<String>> streetIntersectionMap;
+    // Índices por id: redes carregadas de arquivo têm milhões de elementos e a busca linear ficava quadrática
+    private Map<String, Street> streetById;
+    private Map<String, Intersection> intersectionById;
+    // Posição em getStreets()/getIntersections(), a numeração dos diários: gravada sem busca linear por evento
+    private Map<Street, Integer> streetIndex;
+    private Map<Intersection, Integer> intersectionIndex;
+    // Depois de congelado o grid pode ser compartilhado entre várias execuções sem cópias defensivas
+    private volatile boolean frozen = false;
+    private boolean verbose = true; // grids grandes desligam o log de cada conexão
+    private volatile EventJournal journal; // Diário das decisões dos carros e semáforos com threads (opcional)
+    // Cópias imutáveis das listas, publicadas de uma vez: leitores iteram sem trava e sem copiar a lista a
+    // cada chamada. null depois de um add: a próxima leitura monta e publica a cópia nova.
+    private volatile List<Street> streetSnapshot = null;
+    private volatile List<Intersection> intersectionSnapshot = null;
+    // Ruas fechadas com a simulação rodando; trocado inteiro a cada alteração (closeStreet/reopenStreet)
+    private volatile Set<String> closedStreetIds = Collections.emptySet();
 
     public Grid() {
         this.streets = new ArrayList<>();
         this.intersections = new ArrayList<>();
         this.intersectionStreetMap = new HashMap<>();
         this.streetIntersectionMap = new HashMap<>();
+        this.streetById = new HashMap<>();
+        this.intersectionById = new HashMap<>();
+        this.streetIndex = new IdentityHashMap<>();
+        this.intersectionIndex = new IdentityHashMap<>();
     }
 
     public void addStreet(Street street) {
+        checkNotFrozen();
         this.streets.add(street);
+        this.streetSnapshot = null;
+        this.streetIndex.putIfAbsent(street, streets.size() - 1); // Como indexOf, vale a primeira posição
+        this.streetById.putIfAbsent(street.getId(), street); // Como na busca linear, o primeiro com o id vence
         this.streetIntersectionMap.putIfAbsent(street.getId(), new HashSet<>());
     }
 
     public void addIntersection(Intersection intersection) {
+        checkNotFrozen();
         this.intersections.add(intersection);
+        this.intersectionSnapshot = null;
+        this.intersectionIndex.putIfAbsent(intersection, intersections.size() - 1);
+        this.intersectionById.putIfAbsent(intersection.getId(), intersection);
         this.intersectionStreetMap.putIfAbsent(intersection.getId(), new HashSet<>());
     }
 
     // Connect a street to an intersection
     // The direction indicates how the street arrives at or departs from the intersection
     public void connectStreetToIntersection(String streetId, String intersectionId, Direction streetDirectionAtIntersection, boolean isIncoming) {
+        connect(streetId, intersectionId, Compass.bearing(streetDirectionAtIntersection), isIncoming, "na direção " + streetDirectionAtIntersection);
+    }
+
+    // Rumo exato em graus (0 = norte): cruzamentos com 3, 5, 6... ramos, como os importados do OSM
+    public void connectStreetToIntersection(String streetId, String intersectionId, double bearing, boolean isIncoming) {
+        connect(streetId, intersectionId, bearing, isIncoming, "no rumo " + Math.round(Compass.normalize(bearing)) + "°");
+    }
+
+    private void connect(String streetId, String intersectionId, double bearing, boolean isIncoming, String label) {
+        checkNotFrozen();
         Street street = findStreetById(streetId);
         Intersection intersection = findIntersectionById(intersectionId);
 
@@ -49,37 +89,95 @@ public class Grid {
 
         // Informa o cruzamento sobre a rua conectada
         if (isIncoming) {
-            intersection.addIncomingStreet(street, streetDirectionAtIntersection);
+            intersection.addIncomingStreet(street, bearing);
         } else {
-            intersection.addOutgoingStreet(street, streetDirectionAtIntersection);
+            intersection.addOutgoingStreet(street, bearing);
         }
-        System.out.println("Rua conectada " + streetId + (isIncoming ? " chegando em" : " saindo de") + " cruzamento " + intersectionId + " na direção " + streetDirectionAtIntersection);
+        if (verbose) System.out.println("Rua conectada " + streetId + (isIncoming ? " chegando em" : " saindo de") + " cruzamento " + intersectionId + " " + label);
     }
 
     public Street findStreetById(String id) {
-        for (Street s : streets) {
-            if (s.getId().equals(id)) {
-                return s;
-            }
-        }
-        return null;
+        return streetById.get(id);
     }
 
     public Intersection findIntersectionById(String id) {
-        for (Intersection i : intersections) {
-            if (i.getId().equals(id)) {
-                return i;
-            }
+        return intersectionById.get(id);
+    }
+
+    // Mesmo resultado de getStreets().indexOf(street): -1 se a rua não é deste grid
+    public int indexOfStreet(Street street) {
+        Integer index = streetIndex.get(street);
+        return index == null ? -1 : index;
+    }
+
+    public int indexOfIntersection(Intersection intersection) {
+        Integer index = intersectionIndex.get(intersection);
+        return index == null ? -1 : index;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public void freeze() {
+        this.frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public void setJournal(EventJournal journal) {
+        this.journal = journal;
+    }
+
+    public EventJournal getJournal() {
+        return journal;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Grid congelado não pode ser alterado.");
         }
-        return null;
     }
 
     public List<Intersection> getIntersections() {
-        return new ArrayList<>(intersections);
+        List<Intersection> snapshot = intersectionSnapshot;
+        if (snapshot == null) {
+            snapshot = Collections.unmodifiableList(new ArrayList<>(intersections));
+            intersectionSnapshot = snapshot;
+        }
+        return snapshot;
     }
 
     public List<Street> getStreets() {
-        return new ArrayList<>(streets);
+        List<Street> snapshot = streetSnapshot;
+        if (snapshot == null) {
+            snapshot = Collections.unmodifiableList(new ArrayList<>(streets));
+            streetSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    // Fecha a rua para os carros que ainda vão escolher a saída; quem já está nela segue. Vale também com o
+    // grid congelado: a topologia não muda, só o conjunto de ruas fechadas é trocado.
+    public synchronized void closeStreet(String streetId) {
+        if (findStreetById(streetId) == null) {
+            throw new IllegalArgumentException("Rua desconhecida: " + streetId);
+        }
+        Set<String> next = new HashSet<>(closedStreetIds);
+        next.add(streetId);
+        closedStreetIds = Collections.unmodifiableSet(next);
+    }
+
+    public synchronized void reopenStreet(String streetId) {
+        Set<String> next = new HashSet<>(closedStreetIds);
+        next.remove(streetId);
+        closedStreetIds = Collections.unmodifiableSet(next);
+    }
+
+    public boolean isStreetClosed(String streetId) {
+        return closedStreetIds.contains(streetId);
     }
 
     public List<Intersection> getIntersectionsConnectedToStreet(Street street) {
@@ -175,7 +273,14 @@ public class Grid {
         }
         // If no other exits, and arrival street is two-way, it could be an option (e.g. U-turn if allowed)
         // This is too simple. The Intersection's outgoingStreets map should be the primary source.
-        return intersection.getPossibleExits(arrivalDirection); // Delegate to a more robust method in Intersection
+        List<Street> possible = intersection.getPossibleExits(arrivalDirection); // Delegate to a more robust method in Intersection
+        Set<String> closed = closedStreetIds; // Uma leitura: a escolha toda usa o mesmo conjunto
+        if (closed.isEmpty()) return possible;
+        List<Street> open = new ArrayList<>(possible.size());
+        for (Street street : possible) {
+            if (!closed.contains(street.getId())) open.add(street);
+        }
+        return open;
     }
 
     public void printGrid() {
@@ -0,0 +1,262 @@
+package com.simuladortrafego;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Detector incremental de travamentos para os motores headless.
+// Grafo de espera: cada fila (faixa micro ou link meso) cuja frente está parada porque a rua de saída
+// não tem espaço gera a aresta link -> saída. O motor só avisa quando a situação de uma frente muda, e a
+// busca de ciclo parte apenas da aresta nova, então o custo por tick é proporcional às arestas alteradas.
+// Aproximações famintas: estáticas (nenhuma fase dá verde, ex.: i2.setGreenPhases(EAST) sem NORTH/SOUTH)
+// ou dinâmicas (frente esperando no vermelho por mais de starvationTicks), vencidas por uma fila de prazos.
+public final class GridlockDetector {
+
+    public interface Listener {
+        void gridlock(long tick, int[] cycleLinks);
+
+        void starved(long tick, int queue, int link, long waitingTicks);
+    }
+
+    private final NetworkIndex network;
+    private final long starvationTicks;
+    private final Listener listener;
+
+    // Arestas por (link, saída), contadas porque várias faixas do mesmo link podem esperar pela mesma saída
+    private final int[] exitOffset;
+    private final int[] edgeCount;
+    private final int[] queueHome;  // link de cada fila
+    private final int[] queueExit;  // aresta atual de cada fila (saída do link), ou -1
+    private final boolean[] inCycle; // links de um ciclo já informado, até o ciclo se desfazer
+
+    // Espera no vermelho: início por fila e fila FIFO de prazos (prazos crescem com o tick de início)
+    private final long[] redSince;
+    private final IntRing deadlineQueues;
+    private final IntRing deadlineStamp;
+    private final int[] redStamp;
+    private final boolean[] starvedReported;
+    private long currentTick = 0;
+
+    private int[] stack = new int[64];
+    private int[] path = new int[64];
+    private final int[] visitMark;
+    private int visitEpoch = 0;
+    private int gridlocks = 0;
+    private int starvations = 0;
+
+    // queueLinks: link de cada fila do motor (faixas micro e links meso)
+    public GridlockDetector(NetworkIndex network, int[] queueLinks, long starvationTicks, Listener listener) {
+        this.network = network;
+        this.starvationTicks = starvationTicks;
+        this.listener = listener;
+        int links = network.linkCount();
+        this.exitOffset = new int[links + 1];
+        for (int l = 0; l < links; l++) {
+            exitOffset[l + 1] = exitOffset[l] + network.exitCount(l);
+        }
+        this.edgeCount = new int[exitOffset[links]];
+        int queues = queueLinks.length;
+        this.queueHome = queueLinks.clone();
+        this.queueExit = new int[queues];
+        Arrays.fill(queueExit, -1);
+        this.inCycle = new boolean[links];
+        this.redSince = new long[queues];
+        Arrays.fill(redSince, -1);
+        this.redStamp = new int[queues];
+        this.starvedReported = new boolean[queues];
+        this.visitMark = new int[links];
+        this.deadlineQueues = new IntRing(16);
+        this.deadlineStamp = new IntRing(16);
+    }
+
+    // Cópia independente do estado (bifurcação do motor), avisando outro listener
+    public GridlockDetector(GridlockDetector source, Listener listener) {
+        this.network = source.network;
+        this.starvationTicks = source.starvationTicks;
+        this.listener = listener;
+        this.exitOffset = source.exitOffset;
+        this.queueHome = source.queueHome;
+        this.edgeCount = source.edgeCount.clone();
+        this.queueExit = source.queueExit.clone();
+        this.inCycle = source.inCycle.clone();
+        this.redSince = source.redSince.clone();
+        this.deadlineQueues = new IntRing(source.deadlineQueues);
+        this.deadlineStamp = new IntRing(source.deadlineStamp);
+        this.redStamp = source.redStamp.clone();
+        this.starvedReported = source.starvedReported.clone();
+        this.currentTick = source.currentTick;
+        this.visitMark = new int[source.visitMark.length];
+        this.gridlocks = source.gridlocks;
+        this.starvations = source.starvations;
+    }
+
+    // Direções com semáforo que nenhuma fase do cruzamento coloca em verde
+    public static List<Direction> starvedDirections(Intersection intersection) {
+        List<Direction> starved = new ArrayList<>();
+        for (Direction d : Direction.values()) {
+            if (intersection.getTrafficLight(d) == null) continue;
+            boolean served = false;
+            for (int p = 0; p < intersection.getPhases().size() && !served; p++) {
+                served = intersection.getGreenDirections(p).contains(d);
+            }
+            if (!served) starved.add(d);
+        }
+        return starved;
+    }
+
+    // Aproximações estaticamente famintas da rede compilada
+    public static int[] starvedApproaches(NetworkIndex network) {
+        boolean[] green = new boolean[network.approachCount()];
+        for (int i = 0; i < network.intersectionCount(); i++) {
+            for (int p = 0; p < network.phaseCount(i); p++) {
+                for (int a : network.phaseApproaches(i, p)) green[a] = true;
+            }
+        }
+        int count = 0;
+        int[] starved = new int[green.length];
+        for (int a = 0; a < green.length; a++) {
+            if (!green[a]) starved[count++] = a;
+        }
+        return Arrays.copyOf(starved, count);
+    }
+
+    // A frente da fila espera pela saída "exit" do seu link por falta de espaço
+    public void block(int queue, int exit) {
+        if (queueExit[queue] == exit) return;
+        unblock(queue);
+        int link = queueHome[queue];
+        queueExit[queue] = exit;
+        if (edgeCount[exitOffset[link] + exit]++ == 0) {
+            findCycle(link, network.exitNextLink(link, exit));
+        }
+    }
+
+    public void unblock(int queue) {
+        int exit = queueExit[queue];
+        if (exit < 0) return;
+        int link = queueHome[queue];
+        queueExit[queue] = -1;
+        if (--edgeCount[exitOffset[link] + exit] == 0 && inCycle[link]) {
+            clearCycle(link);
+        }
+    }
+
+    public boolean isBlocked(int queue) {
+        return queueExit[queue] >= 0;
+    }
+
+    // Fila vazia ou frente andando
+    public void idle(int queue) {
+        unblock(queue);
+        released(queue);
+    }
+
+    // Busca em profundidade a partir do destino da aresta nova: se voltar a "from", há ciclo
+    private void findCycle(int from, int start) {
+        if (start < 0 || inCycle[from]) return;
+        visitEpoch++;
+        int depth = 0;
+        int top = 0;
+        stack = push(stack, top++, start);
+        while (top > 0) {
+            int node = stack[--top];
+            if (node < 0) { // Marcador de volta na busca
+                depth--;
+                continue;
+            }
+            if (visitMark[node] == visitEpoch) continue;
+            visitMark[node] = visitEpoch;
+            path = push(path, depth++, node);
+            if (node == from) {
+                report(Arrays.copyOf(path, depth));
+                return;
+            }
+            stack = push(stack, top++, -1);
+            for (int k = 0; k < network.exitCount(node); k++) {
+                if (edgeCount[exitOffset[node] + k] > 0) {
+                    int next = network.exitNextLink(node, k);
+                    if (next >= 0 && visitMark[next] != visitEpoch) stack = push(stack, top++, next);
+                }
+            }
+        }
+    }
+
+    private static int[] push(int[] array, int index, int value) {
+        if (index == array.length) array = Arrays.copyOf(array, index * 2);
+        array[index] = value;
+        return array;
+    }
+
+    private void report(int[] cycle) {
+        gridlocks++;
+        for (int link : cycle) inCycle[link] = true;
+        listener.gridlock(currentTick, cycle);
+    }
+
+    // Um link saiu do ciclo: libera todos os links marcados alcançáveis por ele para novas detecções
+    private void clearCycle(int link) {
+        visitEpoch++;
+        int top = 0;
+        stack = push(stack, top++, link);
+        while (top > 0) {
+            int node = stack[--top];
+            if (!inCycle[node] || visitMark[node] == visitEpoch) continue;
+            visitMark[node] = visitEpoch;
+            inCycle[node] = false;
+            for (int k = 0; k < network.exitCount(node); k++) {
+                int next = network.exitNextLink(node, k);
+                if (next >= 0) stack = push(stack, top++, next);
+            }
+        }
+    }
+
+    // A frente da fila está parada no vermelho desde o tick atual (chamadas repetidas são ignoradas)
+    public void waitingAtRed(int queue) {
+        if (redSince[queue] >= 0) return;
+        redSince[queue] = currentTick;
+        redStamp[queue]++;
+        deadlineQueues.addLast(queue);
+        deadlineStamp.addLast(redStamp[queue]);
+    }
+
+    public void released(int queue) {
+        if (redSince[queue] < 0) return;
+        redSince[queue] = -1;
+        starvedReported[queue] = false;
+    }
+
+    // Início do tick: vence os prazos; entradas de esperas já encerradas são descartadas pelo carimbo
+    public void step(long tick) {
+        currentTick = tick;
+        while (!deadlineQueues.isEmpty()) {
+            int queue = deadlineQueues.peekFirst();
+            int stamp = deadlineStamp.peekFirst();
+            boolean live = redSince[queue] >= 0 && redStamp[queue] == stamp;
+            if (live && tick - redSince[queue] < starvationTicks) break;
+            deadlineQueues.pollFirst();
+            deadlineStamp.pollFirst();
+            if (live && !starvedReported[queue]) {
+                starvedReported[queue] = true;
+                starvations++;
+                listener.starved(tick, queue, queueHome[queue], tick - redSince[queue]);
+            }
+        }
+    }
+
+    public int getGridlocks() {
+        return gridlocks;
+    }
+
+    public int getStarvations() {
+        return starvations;
+    }
+
+    public List<Integer> linksInGridlock() {
+        List<Integer> links = new ArrayList<>();
+        for (int l = 0; l < inCycle.length; l++) {
+            if (inCycle[l]) links.add(l);
+        }
+        return Collections.unmodifiableList(links);
+    }
+}
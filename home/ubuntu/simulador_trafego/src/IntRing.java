@@ -0,0 +1,63 @@
+package com.simuladortrafego;
+
+// Fila FIFO de inteiros em buffer circular; só aloca quando precisa crescer.
+final class IntRing {
+    private int[] items;
+    private int head = 0;
+    private int size = 0;
+
+    IntRing(int initialCapacity) {
+        this.items = new int[Math.max(4, Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1)];
+    }
+
+    IntRing(IntRing source) {
+        this.items = source.items.clone();
+        this.head = source.head;
+        this.size = source.size;
+    }
+
+    void addLast(int value) {
+        if (size == items.length) grow();
+        items[(head + size) & (items.length - 1)] = value;
+        size++;
+    }
+
+    int pollFirst() {
+        if (size == 0) throw new IllegalStateException("Fila vazia.");
+        int value = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+        return value;
+    }
+
+    int peekFirst() {
+        if (size == 0) throw new IllegalStateException("Fila vazia.");
+        return items[head];
+    }
+
+    int get(int index) {
+        return items[(head + index) & (items.length - 1)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        int[] bigger = new int[items.length << 1];
+        for (int k = 0; k < size; k++) {
+            bigger[k] = items[(head + k) & (items.length - 1)];
+        }
+        items = bigger;
+        head = 0;
+    }
+}
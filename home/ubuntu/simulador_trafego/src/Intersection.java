@@ -3,7 +3,10 @@ package com.simuladortrafego;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -12,21 +15,44 @@ public class Intersection {
     private Map<Direction, TrafficLight> trafficLights; // Lights controlling entry FROM this direction
     private Map<Direction, List<Street>> incomingStreets;
     private Map<Direction, List<Street>> outgoingStreets;
+    private final Map<Direction, List<Double>> outgoingBearings = new EnumMap<>(Direction.class); // alinhado a outgoingStreets
     private Grid grid; // Reference to the grid for context
 
+    // Aproximações por rumo de chegada, para cruzamentos com qualquer número de ramos. Semáforos seguem
+    // por quadrante (Direction); os conflitos entre aproximações ficam pré-calculados em bitsets:
+    // bit b de approachConflicts[a] ligado quando os movimentos de a e b se cruzam (teste O(1) por par).
+    private double[] approachBearings = new double[4];
+    private long[] approachConflicts = new long[4];
+    private final List<List<Street>> approachStreets = new ArrayList<>();
+    // Ramos de saída por rumo, com a mesma tolerância das aproximações; movimento = aproximação * ramos + ramo
+    private double[] exitBearings = new double[4];
+    private final List<List<Street>> exitStreets = new ArrayList<>();
+    private BitSet[] resolvedPhases; // Cache de resolvePhases, descartado a cada conexão ou troca de fases
+    private BitSet[] movementConflicts;
+
     // Basic cycle control for semaphores at this intersection
-    private List<Direction> greenPhases; // Order of directions that get green light
-    private int currentPhaseIndex = 0;
+    private final List<SignalPhase> phases = new ArrayList<>();
+    private List<Direction> greenPhases; // Semáforo que dita os tempos de cada fase (SignalPhase.getLead)
+    private volatile int currentPhaseIndex = 0; // Lido pelas threads dos carros em getAllowedExits
     private long phaseTime = 20000; // Default time for a full phase (e.g., N-S green, then E-W green)
     private long lastPhaseChangeTime;
     private final Lock phaseLock = new ReentrantLock();
 
+    // Faixas de pedestres por aproximação. No ciclo com threads os pedestres são só uma contagem esperada
+    // acumulada por faixa (nada de thread por pedestre); a faixa abre nas fases em que o semáforo da sua
+    // aproximação está vermelho, se não tem botoeira ou se alguém já chamou, e segura o verde da fase
+    private final Map<Direction, Crosswalk> crosswalks = new EnumMap<>(Direction.class);
+    private final Map<Direction, Double> pedestriansWaiting = new EnumMap<>(Direction.class);
+    private long pedestrianGreenMs = 0; // verde mínimo da fase corrente pelas faixas abertas nela
+    private long lastPedestrianUpdate;
+
     public Intersection(String id, Grid grid) {
         this.id = id;
         this.grid = grid;
-        this.trafficLights = new HashMap<>();
-        this.incomingStreets = new HashMap<>();
-        this.outgoingStreets = new HashMap<>();
+        // EnumMap: iteração na ordem de Direction, e não na dos hashes de identidade (que variam entre execuções)
+        this.trafficLights = new EnumMap<>(Direction.class);
+        this.incomingStreets = new EnumMap<>(Direction.class);
+        this.outgoingStreets = new EnumMap<>(Direction.class);
         this.greenPhases = new ArrayList<>();
         // Example: Default phases for a 4-way intersection
         // This needs to be configured based on actual connected streets
@@ -37,17 +63,254 @@ public class Intersection {
     }
 
     public void addIncomingStreet(Street street, Direction arrivalDirection) {
+        addIncomingStreet(street, Compass.bearing(arrivalDirection));
+    }
+
+    // bearing = rumo de deslocamento de quem chega (0 = seguindo para o norte)
+    public void addIncomingStreet(Street street, double bearing) {
+        Direction arrivalDirection = Compass.quadrant(bearing);
+        addApproach(street, Compass.normalize(bearing));
+        resolvedPhases = null;
         this.incomingStreets.computeIfAbsent(arrivalDirection, k -> new ArrayList<>()).add(street);
         // Automatically create a traffic light for this incoming direction if it doesn't exist
         if (!trafficLights.containsKey(arrivalDirection)) {
             TrafficLight light = new TrafficLight("TL-" + id + "-" + arrivalDirection.name(), this, arrivalDirection);
             trafficLights.put(arrivalDirection, light);
-            light.start(); // Start the traffic light thread
+            // A thread do semáforo só é iniciada por startLights(); motores headless usam o grid sem threads
         }
     }
 
     public void addOutgoingStreet(Street street, Direction departureDirection) {
+        addOutgoingStreet(street, Compass.bearing(departureDirection));
+    }
+
+    public void addOutgoingStreet(Street street, double bearing) {
+        Direction departureDirection = Compass.quadrant(bearing);
         this.outgoingStreets.computeIfAbsent(departureDirection, k -> new ArrayList<>()).add(street);
+        this.outgoingBearings.computeIfAbsent(departureDirection, k -> new ArrayList<>()).add(Compass.normalize(bearing));
+        addExitLeg(street, Compass.normalize(bearing));
+        resolvedPhases = null;
+    }
+
+    private void addExitLeg(Street street, double bearing) {
+        for (int e = 0; e < exitStreets.size(); e++) {
+            if (Compass.difference(exitBearings[e], bearing) < Compass.SAME_APPROACH_DEGREES) {
+                exitStreets.get(e).add(street);
+                return;
+            }
+        }
+        if (exitStreets.size() == exitBearings.length) {
+            exitBearings = Arrays.copyOf(exitBearings, exitBearings.length * 2);
+        }
+        exitBearings[exitStreets.size()] = bearing;
+        List<Street> streets = new ArrayList<>();
+        streets.add(street);
+        exitStreets.add(streets);
+    }
+
+    private void addApproach(Street street, double bearing) {
+        int count = approachStreets.size();
+        for (int a = 0; a < count; a++) {
+            if (Compass.difference(approachBearings[a], bearing) < Compass.SAME_APPROACH_DEGREES) {
+                approachStreets.get(a).add(street);
+                return;
+            }
+        }
+        if (count == Compass.MAX_APPROACHES) {
+            throw new IllegalStateException("Cruzamento " + id + " com mais de " + Compass.MAX_APPROACHES + " aproximações.");
+        }
+        if (count == approachBearings.length) {
+            approachBearings = Arrays.copyOf(approachBearings, count * 2);
+            approachConflicts = Arrays.copyOf(approachConflicts, count * 2);
+        }
+        approachBearings[count] = bearing;
+        approachConflicts[count] = 0;
+        for (int a = 0; a < count; a++) {
+            if (Compass.conflicts(approachBearings[a], bearing)) {
+                approachConflicts[a] |= 1L << count;
+                approachConflicts[count] |= 1L << a;
+            }
+        }
+        List<Street> streets = new ArrayList<>();
+        streets.add(street);
+        approachStreets.add(streets);
+    }
+
+    public int getApproachCount() {
+        return approachStreets.size();
+    }
+
+    public double getApproachBearing(int approach) {
+        return approachBearings[approach];
+    }
+
+    public Direction getApproachDirection(int approach) {
+        return Compass.quadrant(approachBearings[approach]);
+    }
+
+    public List<Street> getApproachStreets(int approach) {
+        return Collections.unmodifiableList(approachStreets.get(approach));
+    }
+
+    public long getApproachConflicts(int approach) {
+        return approachConflicts[approach];
+    }
+
+    public boolean approachesConflict(int a, int b) {
+        return (approachConflicts[a] >>> b & 1L) != 0;
+    }
+
+    // Aproximação em que a rua chega, ou -1
+    public int approachOf(Street street) {
+        for (int a = 0; a < approachStreets.size(); a++) {
+            if (approachStreets.get(a).contains(street)) return a;
+        }
+        return -1;
+    }
+
+    public int getExitLegCount() {
+        return exitStreets.size();
+    }
+
+    public double getExitLegBearing(int leg) {
+        return exitBearings[leg];
+    }
+
+    // Ramo de saída da rua, ou -1
+    public int getExitLeg(Street street) {
+        for (int e = 0; e < exitStreets.size(); e++) {
+            if (exitStreets.get(e).contains(street)) return e;
+        }
+        return -1;
+    }
+
+    // Fases resolvidas na geometria atual: bitset, por fase, dos movimentos liberados (aproximação * ramos + ramo).
+    // Fases antigas liberam todos os movimentos das aproximações de phaseGreenMask; fases por movimento são
+    // validadas contra a matriz de conflitos de movimentos, que só é montada quando existe alguma.
+    // Os bitsets devolvidos ficam em cache e não devem ser modificados.
+    public synchronized BitSet[] resolvePhases() {
+        if (resolvedPhases != null) return resolvedPhases;
+        int legs = exitStreets.size();
+        BitSet[] resolved = new BitSet[phases.size()];
+        for (int p = 0; p < phases.size(); p++) {
+            SignalPhase phase = phases.get(p);
+            BitSet movements = new BitSet();
+            if (phase.isLegacy()) {
+                long green = phaseGreenMask(phase.getLead());
+                for (int a = 0; a < approachStreets.size(); a++) {
+                    if ((green >>> a & 1L) != 0) movements.set(a * legs, (a + 1) * legs);
+                }
+            } else {
+                if (movementConflicts == null) movementConflicts = buildMovementConflicts();
+                BitSet protectedMovements = resolveMovements(phase.getProtectedMovements(), p);
+                BitSet permittedMovements = resolveMovements(phase.getPermittedMovements(), p);
+                checkConflicts(protectedMovements, p, "protegidos");
+                checkConflicts(permittedMovements, p, "permitidos");
+                movements.or(protectedMovements);
+                movements.or(permittedMovements);
+            }
+            resolved[p] = movements;
+        }
+        resolvedPhases = resolved;
+        return resolved;
+    }
+
+    // Matriz de conflitos de movimentos em bitsets, a partir dos rumos de chegada e de saída
+    private BitSet[] buildMovementConflicts() {
+        int legs = exitStreets.size();
+        int count = approachStreets.size() * legs;
+        BitSet[] conflicts = new BitSet[count];
+        for (int m = 0; m < count; m++) conflicts[m] = new BitSet(count);
+        for (int m = 0; m < count; m++) {
+            for (int n = m + 1; n < count; n++) {
+                if (Compass.movementsConflict(approachBearings[m / legs], exitBearings[m % legs],
+                        approachBearings[n / legs], exitBearings[n % legs])) {
+                    conflicts[m].set(n);
+                    conflicts[n].set(m);
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    private BitSet resolveMovements(List<Movement> movements, int phase) {
+        int legs = exitStreets.size();
+        BitSet resolved = new BitSet();
+        for (Movement movement : movements) {
+            boolean found = false;
+            for (int a = 0; a < approachStreets.size(); a++) {
+                if (getApproachDirection(a) != movement.getApproach()) continue;
+                for (int e = 0; e < legs; e++) {
+                    if (Movement.classify(approachBearings[a], exitBearings[e]) == movement.getTurn()) {
+                        resolved.set(a * legs + e);
+                        found = true;
+                    }
+                }
+            }
+            if (!found) {
+                throw new IllegalStateException("Fase " + (phase + 1) + " do cruzamento " + id + ": movimento "
+                        + movement + " não existe na geometria do cruzamento.");
+            }
+        }
+        return resolved;
+    }
+
+    private void checkConflicts(BitSet movements, int phase, String kind) {
+        for (int m = movements.nextSetBit(0); m >= 0; m = movements.nextSetBit(m + 1)) {
+            if (!movementConflicts[m].intersects(movements)) continue;
+            BitSet crossing = (BitSet) movementConflicts[m].clone();
+            crossing.and(movements);
+            throw new IllegalStateException("Fase " + (phase + 1) + " do cruzamento " + id + ": movimentos " + kind
+                    + " " + describeMovement(m) + " e " + describeMovement(crossing.nextSetBit(0)) + " se cruzam.");
+        }
+    }
+
+    private String describeMovement(int movement) {
+        int legs = exitStreets.size();
+        double in = approachBearings[movement / legs];
+        double out = exitBearings[movement % legs];
+        return Compass.quadrant(in) + ":" + Movement.classify(in, out)
+                + String.format(" (rumo %.0f° -> %.0f°)", in, out);
+    }
+
+    // Saídas entre "candidates" cujo movimento a partir da rua de chegada está liberado na fase corrente do
+    // ciclo com threads. Sem fases (semáforos sempre vermelhos) ou rua desconhecida, não há restrição.
+    public List<Street> getAllowedExits(Street arrivalStreet, List<Street> candidates) {
+        int phase = currentPhaseIndex;
+        int approach = approachOf(arrivalStreet);
+        if (phases.isEmpty() || approach < 0) return candidates;
+        BitSet allowed = resolvePhases()[phase];
+        int legs = exitStreets.size();
+        List<Street> result = new ArrayList<>();
+        for (Street exit : candidates) {
+            int leg = getExitLeg(exit);
+            if (leg >= 0 && allowed.get(approach * legs + leg)) result.add(exit);
+        }
+        return result;
+    }
+
+    // Aproximações em verde na fase, como bitset: todas do quadrante da fase (dividem o semáforo) e as que
+    // não cruzam nenhuma delas. Sem aproximação no quadrante, valem as compatíveis com o rumo da fase.
+    public long phaseGreenMask(Direction phase) {
+        return phaseGreenMask(approachBearings, approachConflicts, approachStreets.size(), phase);
+    }
+
+    static long phaseGreenMask(double[] bearings, long[] conflicts, int count, Direction phase) {
+        long members = 0;
+        long crossing = 0;
+        for (int a = 0; a < count; a++) {
+            if (Compass.quadrant(bearings[a]) == phase) {
+                members |= 1L << a;
+                crossing |= conflicts[a];
+            }
+        }
+        long green = members;
+        double phaseBearing = Compass.bearing(phase);
+        for (int a = 0; a < count; a++) {
+            boolean compatible = members != 0 ? (crossing >>> a & 1L) == 0 : !Compass.conflicts(bearings[a], phaseBearing);
+            if (compatible) green |= 1L << a;
+        }
+        return green;
     }
 
     public TrafficLight getTrafficLight(Direction forDirection) {
@@ -69,34 +332,93 @@ public class Intersection {
 
     // Method to define the sequence of green lights
     public void setGreenPhases(List<Direction> phases) {
+        List<SignalPhase> converted = new ArrayList<>();
+        for (Direction d : phases) converted.add(SignalPhase.of(d));
+        setPhases(converted);
+    }
+
+    // Fases por movimento de giro; como setGreenPhases, chamar antes das conexões evita acionar semáforos
+    public void setPhases(List<SignalPhase> phases) {
+        this.phases.clear();
+        this.phases.addAll(phases);
         this.greenPhases.clear();
-        this.greenPhases.addAll(phases);
+        for (SignalPhase phase : phases) this.greenPhases.add(phase.getLead());
         this.currentPhaseIndex = 0;
+        this.resolvedPhases = null;
         if (!phases.isEmpty()) {
             initializePhaseTimes();
         }
     }
 
+    public List<SignalPhase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    // Uma faixa por aproximação (substitui a anterior); a aproximação precisa ter semáforo
+    public void addCrosswalk(Crosswalk crosswalk) {
+        if (!trafficLights.containsKey(crosswalk.getApproach())) {
+            throw new IllegalArgumentException("Cruzamento " + id + " não tem chegada pela direção " + crosswalk.getApproach() + ".");
+        }
+        phaseLock.lock();
+        try {
+            crosswalks.put(crosswalk.getApproach(), crosswalk);
+            pedestriansWaiting.put(crosswalk.getApproach(), 0.0);
+        } finally {
+            phaseLock.unlock();
+        }
+    }
+
+    public Map<Direction, Crosswalk> getCrosswalks() {
+        return Collections.unmodifiableMap(crosswalks);
+    }
+
+    // A faixa da aproximação anda junto da fase quando o semáforo dessa aproximação não está verde nela
+    public boolean crosswalkConcurrent(int phase, Direction approach) {
+        return !getGreenDirections(phase).contains(approach);
+    }
+
+    // Semáforos (quadrantes) verdes na fase: nas fases antigas, os compatíveis com a direção da fase;
+    // nas fases por movimento, os das aproximações com algum movimento liberado
+    public List<Direction> getGreenDirections(int phase) {
+        SignalPhase signalPhase = phases.get(phase);
+        List<Direction> green = new ArrayList<>();
+        for (Direction d : trafficLights.keySet()) {
+            if (signalPhase.isLegacy() ? areCompatible(d, signalPhase.getLead()) : hasMovementFrom(signalPhase, d)) {
+                green.add(d);
+            }
+        }
+        return green;
+    }
+
+    private static boolean hasMovementFrom(SignalPhase phase, Direction approach) {
+        for (Movement m : phase.getProtectedMovements()) {
+            if (m.getApproach() == approach) return true;
+        }
+        for (Movement m : phase.getPermittedMovements()) {
+            if (m.getApproach() == approach) return true;
+        }
+        return false;
+    }
+
     private void initializePhaseTimes() {
         // Set initial light states based on the first phase
-        if (greenPhases.isEmpty()) return;
-        Direction currentGreenDirection = greenPhases.get(currentPhaseIndex);
+        if (phases.isEmpty()) return;
+        List<Direction> green = getGreenDirections(currentPhaseIndex);
         for (Map.Entry<Direction, TrafficLight> entry : trafficLights.entrySet()) {
-            if (entry.getKey() == currentGreenDirection || areCompatible(entry.getKey(), currentGreenDirection)) {
+            if (green.contains(entry.getKey())) {
                 entry.getValue().turnGreen();
             } else {
                 entry.getValue().turnRed();
             }
         }
         lastPhaseChangeTime = System.currentTimeMillis();
+        lastPedestrianUpdate = lastPhaseChangeTime;
+        pedestrianGreenMs = openCrosswalks(currentPhaseIndex);
     }
 
     // Basic check for compatible directions (e.g., North and South can be green together)
-    private boolean areCompatible(Direction d1, Direction d2) {
-        if (d1 == d2) return true;
-        if ((d1 == Direction.NORTH && d2 == Direction.SOUTH) || (d1 == Direction.SOUTH && d2 == Direction.NORTH)) return true;
-        if ((d1 == Direction.EAST && d2 == Direction.WEST) || (d1 == Direction.WEST && d2 == Direction.EAST)) return true;
-        return false;
+    static boolean areCompatible(Direction d1, Direction d2) {
+        return !Compass.conflicts(Compass.bearing(d1), Compass.bearing(d2));
     }
 
     // This method would be called periodically by a simulator thread or its own thread
@@ -108,6 +430,7 @@ public class Intersection {
             }
 
             long currentTime = System.currentTimeMillis();
+            accumulatePedestrians(currentTime);
             TrafficLight currentGreenLight = trafficLights.get(greenPhases.get(currentPhaseIndex));
 
             if (currentGreenLight == null) { // Não deve acontecer se configurado corretamente
@@ -118,15 +441,13 @@ public class Intersection {
             }
 
             // Transition: Green -> Yellow
-            if (currentGreenLight.getCurrentState() == LightState.GREEN && (currentTime - lastPhaseChangeTime) >= currentGreenLight.getGreenTime()) {
+            if (currentGreenLight.getCurrentState() == LightState.GREEN && (currentTime - lastPhaseChangeTime) >= Math.max(currentGreenLight.getGreenTime(), pedestrianGreenMs)) {
                 currentGreenLight.turnYellow();
-                // Also turn compatible lights yellow if they were green
-                for (Direction dir : greenPhases) { // Check all directions in the current phase
-                    if (areCompatible(dir, greenPhases.get(currentPhaseIndex)) && dir != greenPhases.get(currentPhaseIndex)) {
-                        TrafficLight compatibleLight = trafficLights.get(dir);
-                        if (compatibleLight != null && compatibleLight.getCurrentState() == LightState.GREEN) {
-                            compatibleLight.turnYellow();
-                        }
+                // Also turn the other lights of the phase yellow if they were green
+                for (Direction dir : getGreenDirections(currentPhaseIndex)) {
+                    TrafficLight phaseLight = trafficLights.get(dir);
+                    if (phaseLight != currentGreenLight && phaseLight.getCurrentState() == LightState.GREEN) {
+                        phaseLight.turnYellow();
                     }
                 }
                 lastPhaseChangeTime = currentTime; // Reset timer for yellow phase
@@ -134,13 +455,11 @@ public class Intersection {
             // Transition: Yellow -> Red, then advance phase
             else if (currentGreenLight.getCurrentState() == LightState.YELLOW && (currentTime - lastPhaseChangeTime) >= currentGreenLight.getYellowTime()) {
                 currentGreenLight.turnRed();
-                 // Also turn compatible lights red
-                for (Direction dir : greenPhases) {
-                    if (areCompatible(dir, greenPhases.get(currentPhaseIndex)) && dir != greenPhases.get(currentPhaseIndex)) {
-                        TrafficLight compatibleLight = trafficLights.get(dir);
-                        if (compatibleLight != null && compatibleLight.getCurrentState() == LightState.YELLOW) {
-                            compatibleLight.turnRed();
-                        }
+                // Also turn the other lights of the phase red
+                for (Direction dir : getGreenDirections(currentPhaseIndex)) {
+                    TrafficLight phaseLight = trafficLights.get(dir);
+                    if (phaseLight != currentGreenLight && phaseLight.getCurrentState() == LightState.YELLOW) {
+                        phaseLight.turnRed();
                     }
                 }
                 advancePhase();
@@ -157,10 +476,11 @@ public class Intersection {
     private void advancePhase() {
         currentPhaseIndex = (currentPhaseIndex + 1) % greenPhases.size();
         Direction nextGreenDirection = greenPhases.get(currentPhaseIndex);
-        
+        List<Direction> nextGreen = getGreenDirections(currentPhaseIndex);
+
         // Turn all other lights red first (important for safety)
         for (Map.Entry<Direction, TrafficLight> entry : trafficLights.entrySet()) {
-            if (!areCompatible(entry.getKey(), nextGreenDirection)) {
+            if (!nextGreen.contains(entry.getKey())) {
                  if(entry.getValue().getCurrentState() != LightState.RED) entry.getValue().turnRed();
             }
         }
@@ -172,17 +492,43 @@ public class Intersection {
         } else {
              System.err.println("Erro: Nenhum semáforo para a próxima fase verde: " + nextGreenDirection + " no cruzamento " + id);
         }
-        // Turn compatible lights green
-        for (Direction dir : greenPhases) {
-            if (areCompatible(dir, nextGreenDirection) && dir != nextGreenDirection) {
-                TrafficLight compatibleLight = trafficLights.get(dir);
-                if (compatibleLight != null) {
-                    compatibleLight.turnGreen();
-                }
+        // Turn the other lights of the phase green
+        for (Direction dir : nextGreen) {
+            if (dir != nextGreenDirection) {
+                trafficLights.get(dir).turnGreen();
             }
         }
+        EventJournal journal = grid.getJournal();
+        if (journal != null) journal.appendNow(EventJournal.PHASE, grid.indexOfIntersection(this), currentPhaseIndex, 0);
         lastPhaseChangeTime = System.currentTimeMillis();
-        System.out.println("Cruzamento " + id + " avançou para fase: " + nextGreenDirection);
+        System.out.println("Cruzamento " + id + " avançou para fase: " + phases.get(currentPhaseIndex));
+        pedestrianGreenMs = openCrosswalks(currentPhaseIndex);
+    }
+
+    // Demanda esperada de pedestres desde a última atualização, somada à espera de cada faixa
+    private void accumulatePedestrians(long now) {
+        if (crosswalks.isEmpty()) return;
+        double hours = (now - lastPedestrianUpdate) / 3600000.0;
+        lastPedestrianUpdate = now;
+        for (Crosswalk crosswalk : crosswalks.values()) {
+            pedestriansWaiting.merge(crosswalk.getApproach(), crosswalk.getPedestriansPerHour() * hours, Double::sum);
+        }
+    }
+
+    // Abre as faixas compatíveis com a fase (sem botoeira, ou com pelo menos um pedestre que apertou);
+    // quem esperava atravessa. Retorna o verde mínimo que as faixas abertas exigem da fase
+    private long openCrosswalks(int phase) {
+        long minGreen = 0;
+        for (Crosswalk crosswalk : crosswalks.values()) {
+            Direction approach = crosswalk.getApproach();
+            double waiting = pedestriansWaiting.get(approach);
+            if (!crosswalkConcurrent(phase, approach) || (crosswalk.hasPushButton() && waiting < 1)) continue;
+            pedestriansWaiting.put(approach, waiting - Math.floor(waiting));
+            minGreen = Math.max(minGreen, crosswalk.getMinGreenMs());
+            System.out.println("Cruzamento " + id + ": travessia " + approach + " aberta para "
+                    + (long) Math.floor(waiting) + " pedestre(s).");
+        }
+        return minGreen;
     }
 
     private void checkCongestionAndAdjust(TrafficLight previousGreenLight) {
@@ -230,6 +576,14 @@ public class Intersection {
         }
     }
 
+    public void startLights() {
+        for (TrafficLight light : trafficLights.values()) {
+            if (light.getState() == Thread.State.NEW) {
+                light.start();
+            }
+        }
+    }
+
     public void stopAllLights() {
         for (TrafficLight light : trafficLights.values()) {
             light.stopLight();
@@ -246,6 +600,10 @@ public class Intersection {
         return trafficLights;
     }
 
+    public List<Direction> getGreenPhases() {
+        return Collections.unmodifiableList(greenPhases);
+    }
+
     public Map<Direction, List<Street>> getIncomingStreets() {
         return incomingStreets;
     }
@@ -255,40 +613,28 @@ public class Intersection {
     }
 
     public List<Street> getPossibleExits(Direction arrivalDirection) {
-        List<Street> possible = new ArrayList<>();
-        if (this.outgoingStreets == null) return possible;
-
-        for (Map.Entry<Direction, List<Street>> entry : this.outgoingStreets.entrySet()) {
-            // Basic rule: do not make an immediate U-turn if other options exist.
-            // A U-turn would mean exiting in the opposite direction of arrival.
-            // This logic can be more sophisticated, e.g. allowing U-turns if explicitly permitted or if no other exits.
-            if (arrivalDirection == null || !isOpposite(arrivalDirection, entry.getKey())) {
-                possible.addAll(entry.getValue());
-            }
+        if (arrivalDirection == null) { // Sem direção de chegada, todas as saídas valem
+            List<Street> all = new ArrayList<>();
+            this.outgoingStreets.values().forEach(all::addAll);
+            return all;
         }
+        return getPossibleExits(Compass.bearing(arrivalDirection));
+    }
 
-        // If only a U-turn is possible (or no arrival direction specified, so all are considered),
-        // and 'possible' is empty, then add all outgoing streets.
-        if (possible.isEmpty() && !this.outgoingStreets.isEmpty()) {
-            if (arrivalDirection != null && this.outgoingStreets.containsKey(getOppositeDirection(arrivalDirection))){
-                 possible.addAll(this.outgoingStreets.get(getOppositeDirection(arrivalDirection)));
-            } else { // If no specific opposite or no arrival direction, add all as last resort
-                this.outgoingStreets.values().forEach(possible::addAll);
+    // Basic rule: do not make an immediate U-turn if other options exist; retorno só quando é a única saída
+    public List<Street> getPossibleExits(double arrivalBearing) {
+        List<Street> possible = new ArrayList<>();
+        List<Street> reverse = new ArrayList<>();
+        for (Map.Entry<Direction, List<Street>> entry : this.outgoingStreets.entrySet()) {
+            List<Double> bearings = outgoingBearings.get(entry.getKey());
+            for (int k = 0; k < entry.getValue().size(); k++) {
+                (Compass.isReverse(arrivalBearing, bearings.get(k)) ? reverse : possible).add(entry.getValue().get(k));
             }
         }
-        return possible;
-    }
-
-    private boolean isOpposite(Direction d1, Direction d2) {
-        if (d1 == null || d2 == null) return false;
-        if (d1 == Direction.NORTH && d2 == Direction.SOUTH) return true;
-        if (d1 == Direction.SOUTH && d2 == Direction.NORTH) return true;
-        if (d1 == Direction.EAST && d2 == Direction.WEST) return true;
-        if (d1 == Direction.WEST && d2 == Direction.EAST) return true;
-        return false;
+        return possible.isEmpty() ? reverse : possible;
     }
 
-    private Direction getOppositeDirection(Direction d) {
+    static Direction oppositeOf(Direction d) {
         if (d == null) return null;
         switch (d) {
             case NORTH: return Direction.SOUTH;
@@ -0,0 +1,130 @@
+package com.simuladortrafego;
+
+import java.util.Arrays;
+
+// Veículos de cada faixa ordenados pela posição (índice 0 = mais próximo da linha de retenção).
+// O líder de um veículo é o elemento anterior da sua faixa: consulta O(1) via laneOrder do pool.
+// A ocupação em ucp de cada link é mantida em insert/remove, para a checagem de capacidade a cada entrada
+// não percorrer os veículos do link. Em milésimos de ucp, inteiro: somar e subtrair não acumula erro.
+final class LaneIndex {
+    private static final int PCU_SCALE = 1000;
+    private static final int[] CLASS_PCU = new int[VehicleClass.PCU.length];
+
+    static {
+        for (int c = 0; c < CLASS_PCU.length; c++) CLASS_PCU[c] = (int) Math.round(VehicleClass.PCU[c] * PCU_SCALE);
+    }
+
+    private final VehiclePool pool;
+    private final int[] laneBase; // link -> primeira faixa global
+    private final int[] laneLink;
+    private final int[][] vehicles;
+    private final int[] size;
+    private final int[] linkPcu;
+
+    LaneIndex(NetworkIndex network, VehiclePool pool) {
+        this.pool = pool;
+        this.laneBase = new int[network.linkCount() + 1];
+        for (int l = 0; l < network.linkCount(); l++) {
+            laneBase[l + 1] = laneBase[l] + network.linkLanes(l);
+        }
+        int lanes = laneBase[network.linkCount()];
+        this.laneLink = new int[lanes];
+        for (int l = 0; l < network.linkCount(); l++) {
+            for (int k = laneBase[l]; k < laneBase[l + 1]; k++) laneLink[k] = l;
+        }
+        this.vehicles = new int[lanes][];
+        for (int k = 0; k < lanes; k++) vehicles[k] = new int[4];
+        this.size = new int[lanes];
+        this.linkPcu = new int[network.linkCount()];
+    }
+
+    // Cópia das faixas sobre o pool copiado (bifurcação do motor); a geometria é compartilhada
+    LaneIndex(LaneIndex source, VehiclePool pool) {
+        this.pool = pool;
+        this.laneBase = source.laneBase;
+        this.laneLink = source.laneLink;
+        this.vehicles = new int[source.vehicles.length][];
+        for (int k = 0; k < vehicles.length; k++) vehicles[k] = source.vehicles[k].clone();
+        this.size = source.size.clone();
+        this.linkPcu = source.linkPcu.clone();
+    }
+
+    int laneCount() {
+        return size.length;
+    }
+
+    int firstLane(int link) {
+        return laneBase[link];
+    }
+
+    int lanesOf(int link) {
+        return laneBase[link + 1] - laneBase[link];
+    }
+
+    int linkOf(int lane) {
+        return laneLink[lane];
+    }
+
+    int size(int lane) {
+        return size[lane];
+    }
+
+    // Soma das ucp dos veículos nas faixas do link
+    double linkPcu(int link) {
+        return linkPcu[link] / (double) PCU_SCALE;
+    }
+
+    int vehicle(int lane, int order) {
+        return vehicles[lane][order];
+    }
+
+    int leader(int v) {
+        int order = pool.laneOrder(v);
+        return order > 0 ? vehicles[pool.lane(v)][order - 1] : -1;
+    }
+
+    int follower(int v) {
+        int lane = pool.lane(v);
+        int order = pool.laneOrder(v);
+        return order + 1 < size[lane] ? vehicles[lane][order + 1] : -1;
+    }
+
+    int tail(int lane) {
+        return size[lane] > 0 ? vehicles[lane][size[lane] - 1] : -1;
+    }
+
+    // Posição onde "position" entraria na faixa mantendo a ordem decrescente
+    int insertionOrder(int lane, double position) {
+        int lo = 0, hi = size[lane];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (pool.position(vehicles[lane][mid]) >= position) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    void insert(int lane, int v) {
+        int order = insertionOrder(lane, pool.position(v));
+        if (size[lane] == vehicles[lane].length) {
+            vehicles[lane] = Arrays.copyOf(vehicles[lane], size[lane] * 2);
+        }
+        int[] arr = vehicles[lane];
+        System.arraycopy(arr, order, arr, order + 1, size[lane] - order);
+        arr[order] = v;
+        size[lane]++;
+        linkPcu[laneLink[lane]] += CLASS_PCU[pool.vehicleClass(v)];
+        pool.setLane(v, lane);
+        for (int k = order; k < size[lane]; k++) pool.setLaneOrder(arr[k], k);
+    }
+
+    void remove(int v) {
+        int lane = pool.lane(v);
+        int order = pool.laneOrder(v);
+        int[] arr = vehicles[lane];
+        System.arraycopy(arr, order + 1, arr, order, size[lane] - order - 1);
+        size[lane]--;
+        linkPcu[laneLink[lane]] -= CLASS_PCU[pool.vehicleClass(v)];
+        for (int k = order; k < size[lane]; k++) pool.setLaneOrder(arr[k], k);
+        pool.setLane(v, -1);
+    }
+}
@@ -0,0 +1,43 @@
+package com.simuladortrafego;
+
+// Fila FIFO de longs em buffer circular (handles do VehiclePool); só aloca quando precisa crescer.
+final class LongRing {
+    private long[] items;
+    private int head = 0;
+    private int size = 0;
+
+    LongRing(int initialCapacity) {
+        this.items = new long[Math.max(4, Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1)];
+    }
+
+    void addLast(long value) {
+        if (size == items.length) grow();
+        items[(head + size) & (items.length - 1)] = value;
+        size++;
+    }
+
+    long pollFirst() {
+        if (size == 0) throw new IllegalStateException("Fila vazia.");
+        long value = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void grow() {
+        long[] bigger = new long[items.length << 1];
+        for (int k = 0; k < size; k++) {
+            bigger[k] = items[(head + k) & (items.length - 1)];
+        }
+        items = bigger;
+        head = 0;
+    }
+}
@@ -0,0 +1,58 @@
+package com.simuladortrafego;
+
+// Laço indutivo virtual numa rua, cobrindo todas as faixas do sentido que chega ao cruzamento informado
+// (obrigatório em rua de mão dupla). A posição é a distância da borda de jusante do laço até a linha de
+// retenção, como nos detectores de campo (laço de parada junto da linha, laço de aproximação mais atrás).
+// Só configuração: contagens, ocupação e velocidade ficam com LoopDetectors nos motores headless.
+public final class LoopDetector {
+    static final double DEFAULT_LENGTH = 2.0; // m, laço retangular usual
+
+    private final String id;
+    private final double distanceFromStopLine;
+    private final double length;
+    private final String towardIntersection;
+
+    public LoopDetector(String id, double distanceFromStopLine) {
+        this(id, distanceFromStopLine, DEFAULT_LENGTH, null);
+    }
+
+    public LoopDetector(String id, double distanceFromStopLine, double lengthMeters, String towardIntersection) {
+        if (id == null || id.isEmpty()) {
+            throw new IllegalArgumentException("Detector sem identificador.");
+        }
+        if (distanceFromStopLine < 0 || lengthMeters <= 0) {
+            throw new IllegalArgumentException("Detector " + id + " inválido: distância não pode ser negativa e o comprimento deve ser positivo.");
+        }
+        this.id = id;
+        this.distanceFromStopLine = distanceFromStopLine;
+        this.length = lengthMeters;
+        this.towardIntersection = towardIntersection;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public double getDistanceFromStopLine() {
+        return distanceFromStopLine;
+    }
+
+    public double getLength() {
+        return length;
+    }
+
+    // Cruzamento para onde segue o sentido detectado; null em rua de mão única
+    public String getTowardIntersection() {
+        return towardIntersection;
+    }
+
+    @Override
+    public String toString() {
+        return "LoopDetector{" +
+                "id='" + id + '\'' +
+                ", distanceFromStopLine=" + distanceFromStopLine +
+                ", length=" + length +
+                (towardIntersection == null ? "" : ", towardIntersection=" + towardIntersection) +
+                '}';
+    }
+}
@@ -0,0 +1,213 @@
+package com.simuladortrafego;
+
+import java.util.Arrays;
+
+// Laços virtuais (LoopDetector) de uma execução headless, sem varrer a frota: cada faixa sabe de antemão
+// quais laços a cobrem, e o seguimento do veículo confere só se a frente cruzou a borda de montante do laço
+// (contagem e velocidade pontual) ou se o veículo está sobre ele (ocupação) naquele tick. Os acumuladores
+// são por (laço, faixa) e cada um é escrito só pela thread dona da faixa, então os laços funcionam com as
+// faixas em paralelo sem trava. A cada intervalo os acumuladores de cada laço são somados numa fase
+// sequencial do tick: veículos, ocupação (fração do tempo, média das faixas) e velocidade média.
+// Em links meso não há posição: o veículo é contado ao sair da fila, à velocidade de saída, e ocupa o laço
+// pelo tempo de passar o próprio comprimento mais o do laço.
+public final class LoopDetectors {
+    public static final long DEFAULT_INTERVAL_MS = 30000;
+
+    private final NetworkIndex network;
+    private final long intervalMs;
+    private final long intervalTicks;
+    private final int[][] laneSlots;     // por faixa: os slots (laço, faixa) que a cobrem
+    private final int[] slotDetector;
+    private final int[] detectorFirstSlot;
+    private final int[] detectorLanes;
+    private final int[] slotCount;
+    private final double[] slotSpeed;    // soma das velocidades pontuais
+    private final double[] slotOccupied; // s com veículo sobre o laço
+    private final long[] slotPresentTick;
+    private long currentTick = 0;
+    private final int[] count;
+    private final double[] occupancy;
+    private final double[] meanSpeed;
+    private long intervalEndTick = -1;
+    private long intervals = 0;
+
+    LoopDetectors(NetworkIndex network, LaneIndex lanes, long intervalMs) {
+        if (intervalMs < TickEngine.TICK_MS || intervalMs % TickEngine.TICK_MS != 0) {
+            throw new IllegalArgumentException("Intervalo dos detectores deve ser múltiplo de " + TickEngine.TICK_MS
+                    + " ms: " + intervalMs);
+        }
+        this.network = network;
+        this.intervalMs = intervalMs;
+        this.intervalTicks = intervalMs / TickEngine.TICK_MS;
+        int detectors = network.detectorCount();
+        this.detectorFirstSlot = new int[detectors];
+        this.detectorLanes = new int[detectors];
+        int slots = 0;
+        int[] lanesCovered = new int[lanes.laneCount()];
+        for (int d = 0; d < detectors; d++) {
+            int link = network.detectorLink(d);
+            detectorFirstSlot[d] = slots;
+            detectorLanes[d] = lanes.lanesOf(link);
+            slots += detectorLanes[d];
+            for (int lane = lanes.firstLane(link); lane < lanes.firstLane(link) + lanes.lanesOf(link); lane++) {
+                lanesCovered[lane]++;
+            }
+        }
+        this.slotDetector = new int[slots];
+        this.laneSlots = new int[lanes.laneCount()][];
+        for (int lane = 0; lane < laneSlots.length; lane++) laneSlots[lane] = new int[lanesCovered[lane]];
+        for (int d = 0; d < detectors; d++) {
+            int first = lanes.firstLane(network.detectorLink(d));
+            for (int k = 0; k < detectorLanes[d]; k++) {
+                int slot = detectorFirstSlot[d] + k;
+                slotDetector[slot] = d;
+                laneSlots[first + k][--lanesCovered[first + k]] = slot;
+            }
+        }
+        this.slotCount = new int[slots];
+        this.slotSpeed = new double[slots];
+        this.slotOccupied = new double[slots];
+        this.slotPresentTick = new long[slots];
+        Arrays.fill(slotPresentTick, -1);
+        this.count = new int[detectors];
+        this.occupancy = new double[detectors];
+        this.meanSpeed = new double[detectors];
+    }
+
+    // Cópia independente (bifurcação do motor)
+    LoopDetectors(LoopDetectors source) {
+        this.network = source.network;
+        this.intervalMs = source.intervalMs;
+        this.intervalTicks = source.intervalTicks;
+        this.laneSlots = source.laneSlots;
+        this.slotDetector = source.slotDetector;
+        this.detectorFirstSlot = source.detectorFirstSlot;
+        this.detectorLanes = source.detectorLanes;
+        this.slotCount = source.slotCount.clone();
+        this.slotSpeed = source.slotSpeed.clone();
+        this.slotOccupied = source.slotOccupied.clone();
+        this.slotPresentTick = source.slotPresentTick.clone();
+        this.currentTick = source.currentTick;
+        this.count = source.count.clone();
+        this.occupancy = source.occupancy.clone();
+        this.meanSpeed = source.meanSpeed.clone();
+        this.intervalEndTick = source.intervalEndTick;
+        this.intervals = source.intervals;
+    }
+
+    boolean covers(int lane) {
+        return laneSlots[lane].length > 0;
+    }
+
+    // Um tick de um veículo micro na faixa, da posição "before" até "after" (frente do veículo)
+    void sample(int lane, long tick, double before, double after, double vehicleLength, double speed) {
+        for (int slot : laneSlots[lane]) {
+            int d = slotDetector[slot];
+            double start = network.detectorStart(d);
+            if (before < start && after >= start) {
+                slotCount[slot]++;
+                slotSpeed[slot] += speed;
+            }
+            if (after > start && after - vehicleLength < network.detectorEnd(d)) {
+                slotOccupied[slot] += TickEngine.TICK_SECONDS;
+                slotPresentTick[slot] = tick;
+            }
+        }
+    }
+
+    // Entrada no link já depois da borda de montante (sobra da travessia do cruzamento), fase sequencial
+    void entered(int lane, double position, double speed) {
+        for (int slot : laneSlots[lane]) {
+            if (position >= network.detectorStart(slotDetector[slot])) {
+                slotCount[slot]++;
+                slotSpeed[slot] += speed;
+            }
+        }
+    }
+
+    // Saída da fila de um link meso (sequencial)
+    void discharge(int link, long tick, double vehicleLength, double speed) {
+        for (int d : network.linkDetectors(link)) {
+            int slot = detectorFirstSlot[d];
+            slotCount[slot]++;
+            slotSpeed[slot] += speed;
+            slotOccupied[slot] += (vehicleLength + network.detector(d).getLength()) / speed;
+            slotPresentTick[slot] = tick;
+        }
+    }
+
+    // Fim do tick (sequencial): fecha o intervalo quando ele termina. Retorna true se fechou
+    boolean endTick(long tick) {
+        currentTick = tick;
+        if (tick % intervalTicks != 0) return false;
+        double seconds = intervalMs / 1000.0;
+        for (int d = 0; d < count.length; d++) {
+            int n = 0;
+            double speedTotal = 0;
+            double occupied = 0;
+            for (int slot = detectorFirstSlot[d]; slot < detectorFirstSlot[d] + detectorLanes[d]; slot++) {
+                n += slotCount[slot];
+                speedTotal += slotSpeed[slot];
+                occupied += slotOccupied[slot];
+                slotCount[slot] = 0;
+                slotSpeed[slot] = 0;
+                slotOccupied[slot] = 0;
+            }
+            count[d] = n;
+            meanSpeed[d] = n > 0 ? speedTotal / n : 0.0;
+            occupancy[d] = Math.min(1.0, occupied / (seconds * detectorLanes[d]));
+        }
+        intervalEndTick = tick;
+        intervals++;
+        return true;
+    }
+
+    public int size() {
+        return count.length;
+    }
+
+    public String id(int d) {
+        return network.detector(d).getId();
+    }
+
+    public int indexOf(String detectorId) {
+        for (int d = 0; d < count.length; d++) {
+            if (id(d).equals(detectorId)) return d;
+        }
+        return -1;
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    // Intervalos fechados até agora e o tick em que o último fechou (-1 se nenhum)
+    public long getIntervals() {
+        return intervals;
+    }
+
+    public long getIntervalEndTick() {
+        return intervalEndTick;
+    }
+
+    // Valores do último intervalo fechado
+    public int count(int d) {
+        return count[d];
+    }
+
+    public double occupancy(int d) {
+        return occupancy[d];
+    }
+
+    public double meanSpeed(int d) {
+        return meanSpeed[d];
+    }
+
+    // Presença no último tick: algum veículo sobre o laço
+    public boolean isOccupied(int d) {
+        for (int slot = detectorFirstSlot[d]; slot < detectorFirstSlot[d] + detectorLanes[d]; slot++) {
+            if (slotPresentTick[slot] == currentTick) return true;
+        }
+        return false;
+    }
+}
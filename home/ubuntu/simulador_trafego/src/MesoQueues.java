@@ -0,0 +1,122 @@
+package com.simuladortrafego;
+
+// Representação mesoscópica dos links: uma fila FIFO por link, com capacidade de armazenamento vinda de
+// Street.getCapacity e vazão de saída limitada pela saturação (créditos acumulados a cada tick).
+// Ocupação e créditos são em ucp (VehicleClass.PCU): um caminhão ocupa e consome crédito de 2,5 carros.
+// Só os links com veículos ficam no conjunto ativo, então redes grandes e vazias custam pouco por tick.
+// O estado numérico de cada link fica fora do heap (OffHeapTable), como o dos veículos no VehiclePool.
+final class MesoQueues {
+    static final double SATURATION_FLOW_PER_LANE = 1800.0; // veículos/h por faixa no verde
+
+    // Layout do registro por link
+    private static final int CREDIT_PER_TICK = 0;
+    private static final int MAX_CREDIT = 8;
+    private static final int CREDIT = 16;
+    private static final int CAPACITY = 24;
+    private static final int OCCUPANCY = 32;
+    private static final int RECORD_BYTES = 40;
+
+    private final IntRing[] queues;
+    private final OffHeapTable state;
+    private final int[] active;
+    private final boolean[] isActive;
+    private int activeCount = 0;
+
+    MesoQueues(NetworkIndex network, boolean[] mesoLinks, double tickSeconds) {
+        int links = network.linkCount();
+        this.queues = new IntRing[links];
+        this.state = new OffHeapTable(RECORD_BYTES, links);
+        this.active = new int[links];
+        this.isActive = new boolean[links];
+        for (int l = 0; l < links; l++) {
+            if (!mesoLinks[l]) continue;
+            int lanes = network.linkLanes(l);
+            queues[l] = new IntRing(4);
+            state.setInt(l, CAPACITY, network.streetCapacity(network.linkStreet(l)));
+            state.setDouble(l, CREDIT_PER_TICK, lanes * SATURATION_FLOW_PER_LANE * tickSeconds / 3600.0);
+            state.setDouble(l, MAX_CREDIT, lanes);
+        }
+    }
+
+    // Cópia das filas (bifurcação do motor); o estado fora do heap fica em copy-on-write
+    MesoQueues(MesoQueues source) {
+        this.queues = new IntRing[source.queues.length];
+        for (int l = 0; l < queues.length; l++) {
+            if (source.queues[l] != null) queues[l] = new IntRing(source.queues[l]);
+        }
+        this.state = new OffHeapTable(source.state);
+        this.active = source.active.clone();
+        this.isActive = source.isActive.clone();
+        this.activeCount = source.activeCount;
+    }
+
+    boolean hasRoom(int link) {
+        return state.getDouble(link, OCCUPANCY) < state.getInt(link, CAPACITY);
+    }
+
+    // Capacidade alterada em execução (NetworkEdits); uma fila acima do novo limite só deixa de receber
+    void setCapacity(int link, int vehicles) {
+        state.setInt(link, CAPACITY, Math.max(1, vehicles));
+    }
+
+    int room(int link) {
+        return (int) Math.max(0, state.getInt(link, CAPACITY) - state.getDouble(link, OCCUPANCY));
+    }
+
+    void add(int link, int v, double pcu) {
+        queues[link].addLast(v);
+        state.setDouble(link, OCCUPANCY, state.getDouble(link, OCCUPANCY) + pcu);
+        if (!isActive[link]) {
+            isActive[link] = true;
+            active[activeCount++] = link;
+        }
+    }
+
+    int size(int link) {
+        return queues[link].size();
+    }
+
+    int head(int link) {
+        return queues[link].peekFirst();
+    }
+
+    int vehicle(int link, int index) {
+        return queues[link].get(index);
+    }
+
+    int poll(int link, double pcu) {
+        state.setDouble(link, CREDIT, state.getDouble(link, CREDIT) - pcu);
+        state.setDouble(link, OCCUPANCY, state.getDouble(link, OCCUPANCY) - pcu);
+        return queues[link].pollFirst();
+    }
+
+    // Acumula a vazão do tick; retorna false se a saturação ainda não permite liberar um veículo
+    boolean accrue(int link) {
+        double credit = Math.min(state.getDouble(link, MAX_CREDIT),
+                state.getDouble(link, CREDIT) + state.getDouble(link, CREDIT_PER_TICK));
+        state.setDouble(link, CREDIT, credit);
+        return credit >= 1;
+    }
+
+    boolean canRelease(int link) {
+        return state.getDouble(link, CREDIT) >= 1;
+    }
+
+    int activeCount() {
+        return activeCount;
+    }
+
+    int activeLink(int index) {
+        return active[index];
+    }
+
+    // Remove do conjunto ativo se a fila esvaziou (troca com o último)
+    void deactivateIfEmpty(int index) {
+        int link = active[index];
+        if (!queues[link].isEmpty()) return;
+        isActive[link] = false;
+        state.setDouble(link, CREDIT, 0);
+        state.setDouble(link, OCCUPANCY, 0); // Descarta o resíduo de arredondamento das frações de ucp
+        active[index] = active[--activeCount];
+    }
+}
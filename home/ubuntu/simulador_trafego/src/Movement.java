@@ -0,0 +1,62 @@
+package com.simuladortrafego;
+
+// Movimento de giro em um cruzamento: aproximação (quadrante do rumo de chegada) -> manobra.
+// A manobra sai do ângulo entre o rumo de chegada e o de saída, então vale para qualquer geometria:
+// "NORTH:LEFT" é quem chega seguindo para o norte e sai à esquerda, seja qual for o rumo exato da saída.
+public final class Movement {
+    private final Direction approach;
+    private final Turn turn;
+
+    public Movement(Direction approach, Turn turn) {
+        if (approach == null || turn == null) {
+            throw new IllegalArgumentException("Movimento precisa de aproximação e manobra.");
+        }
+        this.approach = approach;
+        this.turn = turn;
+    }
+
+    public Direction getApproach() {
+        return approach;
+    }
+
+    public Turn getTurn() {
+        return turn;
+    }
+
+    // Manobra de quem chega no rumo arrival e sai no rumo exit (circulação pela direita).
+    // Os limites são os de Compass: o que getPossibleExits trata como retorno é U_TURN aqui.
+    public static Turn classify(double arrivalBearing, double exitBearing) {
+        double delta = Compass.normalize(exitBearing - arrivalBearing);
+        if (delta <= Compass.PARALLEL_DEGREES || delta >= 360 - Compass.PARALLEL_DEGREES) return Turn.THROUGH;
+        if (delta < Compass.REVERSE_DEGREES) return Turn.RIGHT;
+        if (delta <= 360 - Compass.REVERSE_DEGREES) return Turn.U_TURN;
+        return Turn.LEFT;
+    }
+
+    // "NORTH:LEFT"
+    public static Movement parse(String text) {
+        int colon = text.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Movimento '" + text + "' deve ter o formato APROXIMAÇÃO:MANOBRA.");
+        }
+        return new Movement(Direction.valueOf(text.substring(0, colon).trim().toUpperCase()),
+                Turn.valueOf(text.substring(colon + 1).trim().toUpperCase()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Movement)) return false;
+        Movement other = (Movement) o;
+        return approach == other.approach && turn == other.turn;
+    }
+
+    @Override
+    public int hashCode() {
+        return approach.ordinal() * Turn.values().length + turn.ordinal();
+    }
+
+    @Override
+    public String toString() {
+        return approach + ":" + turn;
+    }
+}
@@ -0,0 +1,161 @@
+package com.simuladortrafego;
+
+// Alterações na rede com a simulação rodando (fechar ou reabrir ruas, mudar capacidade, impor mão única,
+// retemporizar semáforos), no estilo RCU: cada alteração monta uma versão nova de NetworkEdits e a publica
+// de uma vez; o motor lê a versão corrente no início de cada tick, sem trava, e passa a usá-la inteira.
+// Quem altera pode estar em qualquer thread; as alterações entre si são serializadas (synchronized).
+// Um editor pode ser compartilhado por vários motores do mesmo cenário (TickEngine.useEditor).
+// O motor que grava ou reproduz um diário trava o editor: o diário não guarda alterações na rede, então elas
+// são recusadas na chamada, sem chegar ao motor.
+public final class NetworkEditor {
+    private final NetworkIndex network;
+    private volatile NetworkEdits current;
+    private volatile boolean locked = false;
+
+    public NetworkEditor(NetworkIndex network, RouteTable routes) {
+        this(NetworkEdits.initial(network, routes));
+    }
+
+    // Continua a partir de uma versão existente (bifurcação do motor)
+    NetworkEditor(NetworkEdits start) {
+        this.network = start.getNetwork();
+        this.current = start;
+    }
+
+    public NetworkEdits current() {
+        return current;
+    }
+
+    public NetworkIndex getNetwork() {
+        return network;
+    }
+
+    // Definitivo: as alterações seguintes lançam IllegalStateException
+    synchronized void lock() {
+        locked = true;
+    }
+
+    public boolean isLocked() {
+        return locked;
+    }
+
+    // Quem está na rua termina o trecho; ninguém mais entra e as rotas passam a evitá-la
+    public synchronized NetworkEdits closeStreet(String streetId) {
+        checkEditable();
+        return setClosed(street(streetId), true);
+    }
+
+    public synchronized NetworkEdits reopenStreet(String streetId) {
+        checkEditable();
+        return setClosed(street(streetId), false);
+    }
+
+    private NetworkEdits setClosed(int s, boolean closed) {
+        if (current.isStreetClosed(s) == closed) return current;
+        boolean[] streets = current.closedStreetsCopy();
+        streets[s] = closed;
+        return publish(current.withClosures(streets, current.closedLinksCopy()));
+    }
+
+    // Só o sentido que chega em towardIntersectionId continua aberto
+    public synchronized NetworkEdits restrictOneWay(String streetId, String towardIntersectionId) {
+        checkEditable();
+        int s = street(streetId);
+        int toward = intersection(towardIntersectionId);
+        boolean[] links = current.closedLinksCopy();
+        boolean found = false;
+        for (int l : network.streetLinks(s)) {
+            boolean open = network.linkIntersection(l) == toward;
+            found |= open;
+            links[l] = !open;
+        }
+        if (!found) {
+            throw new IllegalArgumentException("Rua " + streetId + " não chega no cruzamento " + towardIntersectionId + ".");
+        }
+        return publish(current.withClosures(current.closedStreetsCopy(), links));
+    }
+
+    // Desfaz restrictOneWay
+    public synchronized NetworkEdits allowBothWays(String streetId) {
+        checkEditable();
+        int s = street(streetId);
+        boolean[] links = current.closedLinksCopy();
+        for (int l : network.streetLinks(s)) {
+            links[l] = false;
+        }
+        return publish(current.withClosures(current.closedStreetsCopy(), links));
+    }
+
+    // Veículos que a rua comporta (por sentido); quem já está nela acima do novo limite termina o trecho
+    public synchronized NetworkEdits setCapacity(String streetId, int vehicles) {
+        checkEditable();
+        if (vehicles < 1) {
+            throw new IllegalArgumentException("Capacidade deve ser positiva: " + vehicles);
+        }
+        return setCapacityValue(street(streetId), vehicles);
+    }
+
+    public synchronized NetworkEdits restoreCapacity(String streetId) {
+        checkEditable();
+        return setCapacityValue(street(streetId), -1);
+    }
+
+    private NetworkEdits setCapacityValue(int s, int vehicles) {
+        if (current.editedCapacity(s) == vehicles) return current;
+        int[] values = current.capacityCopy();
+        values[s] = vehicles;
+        return publish(current.withCapacity(values));
+    }
+
+    // Novos tempos de verde e amarelo para todas as aproximações do cruzamento; valem a partir da próxima
+    // troca (o verde corrente termina quando completar o novo tempo)
+    public synchronized NetworkEdits retimeLight(String intersectionId, double greenSeconds, double yellowSeconds) {
+        checkEditable();
+        if (greenSeconds <= 0 || yellowSeconds <= 0) {
+            throw new IllegalArgumentException("Tempos de verde e amarelo devem ser positivos.");
+        }
+        return setTiming(intersection(intersectionId), Math.round(greenSeconds * 1000), Math.round(yellowSeconds * 1000));
+    }
+
+    public synchronized NetworkEdits restoreTiming(String intersectionId) {
+        checkEditable();
+        return setTiming(intersection(intersectionId), -1, -1);
+    }
+
+    private NetworkEdits setTiming(int i, long green, long yellow) {
+        long[] greenMs = current.greenCopy();
+        long[] yellowMs = current.yellowCopy();
+        for (int a : network.intersectionApproaches(i)) {
+            greenMs[a] = green;
+            yellowMs[a] = yellow;
+        }
+        return publish(current.withTiming(greenMs, yellowMs));
+    }
+
+    private void checkEditable() {
+        if (locked) {
+            throw new IllegalStateException("Rede travada: o motor está gravando ou reproduzindo um diário.");
+        }
+    }
+
+    private NetworkEdits publish(NetworkEdits next) {
+        current = next;
+        return next;
+    }
+
+    private int street(String streetId) {
+        int s = network.streetIndexOf(streetId);
+        if (s < 0) {
+            throw new IllegalArgumentException("Rua desconhecida: " + streetId);
+        }
+        return s;
+    }
+
+    private int intersection(String intersectionId) {
+        int i = network.intersectionIndexOf(intersectionId);
+        if (i < 0) {
+            throw new IllegalArgumentException("Cruzamento desconhecido: " + intersectionId);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,152 @@
+package com.simuladortrafego;
+
+import java.util.Arrays;
+
+// Versão imutável das alterações feitas na rede durante a execução: ruas fechadas, sentidos proibidos
+// (mão única imposta), capacidades e tempos de semáforo. Publicada pelo NetworkEditor e lida pelo motor
+// uma vez por tick, sem trava: uma versão nunca muda depois de criada.
+// Cada alteração gera uma versão nova que reaproveita os vetores não alterados da anterior, então
+// comparar referências diz o que mudou. A tabela de rotas (que evita o que está fechado) é montada
+// aqui, por quem publica, e não na thread que avança os ticks.
+public final class NetworkEdits {
+    private final NetworkIndex network;
+    private final RouteTable baseRoutes;
+    private final long version;
+    private final boolean[] closedStreets; // null: nenhuma rua fechada
+    private final boolean[] closedLinks;   // entrada proibida no link (sentido da rua fechado); null: nenhum
+    private final int[] capacity;          // por rua, -1 = NetworkIndex.streetCapacity; null: nenhuma alterada
+    private final long[] greenMs;          // por aproximação, -1 = a do cenário; null: nenhum alterado
+    private final long[] yellowMs;
+    private final RouteTable routes;
+
+    private NetworkEdits(NetworkIndex network, RouteTable baseRoutes, long version, boolean[] closedStreets,
+                         boolean[] closedLinks, int[] capacity, long[] greenMs, long[] yellowMs, RouteTable routes) {
+        this.network = network;
+        this.baseRoutes = baseRoutes;
+        this.version = version;
+        this.closedStreets = closedStreets;
+        this.closedLinks = closedLinks;
+        this.capacity = capacity;
+        this.greenMs = greenMs;
+        this.yellowMs = yellowMs;
+        this.routes = routes;
+    }
+
+    // Versão 0: a rede do cenário, sem alterações
+    static NetworkEdits initial(NetworkIndex network, RouteTable routes) {
+        return new NetworkEdits(network, routes, 0, null, null, null, null, null, routes);
+    }
+
+    NetworkEdits withClosures(boolean[] streets, boolean[] links) {
+        streets = noneSet(streets) ? null : streets;
+        links = noneSet(links) ? null : links;
+        RouteTable rebuilt = streets == null && links == null ? baseRoutes : new RouteTable(baseRoutes, streets, links);
+        return new NetworkEdits(network, baseRoutes, version + 1, streets, links, capacity, greenMs, yellowMs, rebuilt);
+    }
+
+    NetworkEdits withCapacity(int[] values) {
+        return new NetworkEdits(network, baseRoutes, version + 1, closedStreets, closedLinks, values, greenMs,
+                yellowMs, routes);
+    }
+
+    NetworkEdits withTiming(long[] green, long[] yellow) {
+        return new NetworkEdits(network, baseRoutes, version + 1, closedStreets, closedLinks, capacity, green,
+                yellow, routes);
+    }
+
+    private static boolean noneSet(boolean[] flags) {
+        if (flags == null) return true;
+        for (boolean flag : flags) {
+            if (flag) return false;
+        }
+        return true;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public NetworkIndex getNetwork() {
+        return network;
+    }
+
+    public boolean isStreetClosed(int street) {
+        return closedStreets != null && closedStreets[street];
+    }
+
+    public boolean isLinkClosed(int link) {
+        return closedLinks != null && closedLinks[link];
+    }
+
+    // Entrada proibida: rua fechada ou sentido fechado
+    public boolean isEntryClosed(int link) {
+        return isStreetClosed(network.linkStreet(link)) || isLinkClosed(link);
+    }
+
+    // Capacidade em vigor da rua (veículos por sentido), alterada ou não; vale igual para links micro e meso
+    public int capacity(int street) {
+        int edited = editedCapacity(street);
+        return edited >= 0 ? edited : network.streetCapacity(street);
+    }
+
+    // -1 se não foi alterada
+    int editedCapacity(int street) {
+        return capacity == null ? -1 : capacity[street];
+    }
+
+    public long greenMs(int approach) {
+        return greenMs == null || greenMs[approach] < 0 ? network.approachGreenMs(approach) : greenMs[approach];
+    }
+
+    public long yellowMs(int approach) {
+        return yellowMs == null || yellowMs[approach] < 0 ? network.approachYellowMs(approach) : yellowMs[approach];
+    }
+
+    public RouteTable getRoutes() {
+        return routes;
+    }
+
+    // Cópias para o editor montar a próxima versão
+    boolean[] closedStreetsCopy() {
+        return closedStreets == null ? new boolean[network.streetCount()] : closedStreets.clone();
+    }
+
+    boolean[] closedLinksCopy() {
+        return closedLinks == null ? new boolean[network.linkCount()] : closedLinks.clone();
+    }
+
+    int[] capacityCopy() {
+        if (capacity != null) return capacity.clone();
+        int[] values = new int[network.streetCount()];
+        Arrays.fill(values, -1);
+        return values;
+    }
+
+    long[] greenCopy() {
+        return timingCopy(greenMs);
+    }
+
+    long[] yellowCopy() {
+        return timingCopy(yellowMs);
+    }
+
+    private long[] timingCopy(long[] values) {
+        if (values != null) return values.clone();
+        long[] copy = new long[network.approachCount()];
+        Arrays.fill(copy, -1);
+        return copy;
+    }
+
+    // O que mudou em relação a outra versão (o motor só reaplica o que mudou)
+    boolean closuresDiffer(NetworkEdits other) {
+        return closedStreets != other.closedStreets || closedLinks != other.closedLinks;
+    }
+
+    boolean capacityDiffers(NetworkEdits other) {
+        return capacity != other.capacity;
+    }
+
+    boolean timingDiffers(NetworkEdits other) {
+        return greenMs != other.greenMs || yellowMs != other.yellowMs;
+    }
+}
@@ -0,0 +1,556 @@
+package com.simuladortrafego;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Topologia compilada (somente leitura) de um Grid congelado.
+// Uma única instância é compartilhada por todas as réplicas que usam o mesmo grid; os motores
+// headless guardam apenas o próprio estado (veículos, semáforos) indexado pelos inteiros daqui.
+public final class NetworkIndex {
+    private final Grid grid;
+    private final Street[] streets;
+    private final Intersection[] intersections;
+    private final Map<String, Integer> streetIndex = new HashMap<>();
+    private final Map<String, Integer> intersectionIndex = new HashMap<>();
+
+    // Aproximação = rumo de chegada com semáforo em um cruzamento; approachDirection é o quadrante
+    private final int[] approachIntersection;
+    private final Direction[] approachDirection;
+    private final double[] approachBearing;
+    private final long[] approachGreenMs;
+    private final long[] approachYellowMs;
+    private final int[][] intersectionApproaches;
+    // Fases: cruzamento -> fase -> aproximações em verde; e a aproximação que dita os tempos da fase
+    private final int[][][] phaseApproaches;
+    private final int[][] phaseLeadApproach;
+    // Movimento = (aproximação, ramo de saída); id global = movementBase do cruzamento + id local do Intersection
+    private final int[] movementBase;
+    private final int movementCount;
+    private final int[][][] phaseMovements;
+    private final int[][] approachMovements; // movimentos de cada aproximação, um por ramo de saída
+    // Faixas de pedestres: uma por (cruzamento, quadrante de aproximação), na ordem de Direction. A faixa anda
+    // nas fases em que nenhuma aproximação do seu quadrante está verde; movementCrosswalk é a faixa que um
+    // movimento atravessa ao sair pelo ramo dela (-1 se nenhuma), onde a conversão cede aos pedestres
+    private final Crosswalk[] crosswalks;
+    private final int[] crosswalkIntersection;
+    private final int[][][] phaseCrosswalks;
+    private final int[] movementCrosswalk;
+
+    // Link = rua percorrida em direção a um cruzamento (uma rua de mão dupla gera dois links)
+    private final int[] linkStreet;
+    private final int[] linkIntersection;
+    private final int[] linkApproach;
+    private final double[] linkLength;
+    private final int[][] linkExitStreet;
+    private final int[][] linkExitNext; // próximo link, ou -1 quando a saída deixa a rede
+    private final int[][] linkExitMovement;
+    private final boolean[][] linkExitServed; // algum verde libera o movimento (ou a aproximação não tem fase)
+    private final int[] entryLinks;
+    private final int[][] streetLinks;
+    private final boolean[] entryLink;
+    // Laços virtuais: cada detector fica no link do sentido que ele mede, entre start e end (m desde o início)
+    private final LoopDetector[] detectors;
+    private final int[] detectorLink;
+    private final double[] detectorStart;
+    private final double[] detectorEnd;
+    private final int[][] linkDetectors;
+
+    public NetworkIndex(Grid grid) {
+        this.grid = grid;
+        List<Street> streetList = grid.getStreets();
+        List<Intersection> intersectionList = grid.getIntersections();
+        this.streets = streetList.toArray(new Street[0]);
+        this.intersections = intersectionList.toArray(new Intersection[0]);
+        for (int s = 0; s < streets.length; s++) {
+            streetIndex.put(streets[s].getId(), s);
+        }
+        for (int i = 0; i < intersections.length; i++) {
+            intersectionIndex.put(intersections[i].getId(), i);
+        }
+
+        // Aproximações: uma por rumo de chegada, na ordem (quadrante, rumo) para resultados reprodutíveis;
+        // no grid de 4 ramos isso é a ordem de Direction.values() de antes
+        List<Integer> apInt = new ArrayList<>();
+        List<Integer> apLocal = new ArrayList<>();
+        this.intersectionApproaches = new int[intersections.length][];
+        int[][] globalApproach = new int[intersections.length][];
+        for (int i = 0; i < intersections.length; i++) {
+            Intersection at = intersections[i];
+            Integer[] order = new Integer[at.getApproachCount()];
+            for (int k = 0; k < order.length; k++) order[k] = k;
+            Arrays.sort(order, Comparator.<Integer>comparingInt(k -> at.getApproachDirection(k).ordinal())
+                    .thenComparingDouble(at::getApproachBearing));
+            globalApproach[i] = new int[order.length];
+            intersectionApproaches[i] = new int[order.length];
+            for (int k = 0; k < order.length; k++) {
+                globalApproach[i][order[k]] = apInt.size();
+                intersectionApproaches[i][k] = apInt.size();
+                apInt.add(i);
+                apLocal.add(order[k]);
+            }
+        }
+        int approaches = apInt.size();
+        this.approachIntersection = new int[approaches];
+        this.approachDirection = new Direction[approaches];
+        this.approachBearing = new double[approaches];
+        this.approachGreenMs = new long[approaches];
+        this.approachYellowMs = new long[approaches];
+        for (int a = 0; a < approaches; a++) {
+            Intersection at = intersections[apInt.get(a)];
+            approachIntersection[a] = apInt.get(a);
+            approachDirection[a] = at.getApproachDirection(apLocal.get(a));
+            approachBearing[a] = at.getApproachBearing(apLocal.get(a));
+            TrafficLight light = at.getTrafficLight(approachDirection[a]); // Semáforo do quadrante
+            approachGreenMs[a] = light.getGreenTime();
+            approachYellowMs[a] = light.getYellowTime();
+        }
+
+        // Fases: movimentos liberados vêm de Intersection.resolvePhases, que valida as fases por movimento
+        // contra a matriz de conflitos (erro de configuração aparece aqui, na carga). Nas fases antigas o
+        // verde é o bitset de phaseGreenMask; nas por movimento, as aproximações com algum movimento.
+        // A primeira aproximação do quadrante da fase dita os tempos.
+        this.movementBase = new int[intersections.length];
+        this.phaseApproaches = new int[intersections.length][][];
+        this.phaseLeadApproach = new int[intersections.length][];
+        this.phaseMovements = new int[intersections.length][][];
+        int movements = 0;
+        for (int i = 0; i < intersections.length; i++) {
+            Intersection at = intersections[i];
+            int legs = at.getExitLegCount();
+            movementBase[i] = movements;
+            movements += at.getApproachCount() * legs;
+            List<SignalPhase> phases = at.getPhases();
+            BitSet[] resolved = at.resolvePhases();
+            phaseApproaches[i] = new int[phases.size()][];
+            phaseLeadApproach[i] = new int[phases.size()];
+            phaseMovements[i] = new int[phases.size()][];
+            for (int p = 0; p < phases.size(); p++) {
+                SignalPhase phase = phases.get(p);
+                long mask = phase.isLegacy() ? at.phaseGreenMask(phase.getLead()) : 0;
+                List<Integer> green = new ArrayList<>();
+                int lead = -1;
+                for (int a : intersectionApproaches[i]) {
+                    int local = apLocal.get(a);
+                    int firstMovement = resolved[p].nextSetBit(local * legs);
+                    boolean isGreen = phase.isLegacy() ? (mask >>> local & 1L) != 0
+                            : firstMovement >= 0 && firstMovement < (local + 1) * legs;
+                    if (isGreen) green.add(a);
+                    if (lead < 0 && approachDirection[a] == phase.getLead()) lead = a;
+                }
+                phaseApproaches[i][p] = toIntArray(green);
+                phaseLeadApproach[i][p] = lead;
+                int base = movementBase[i];
+                phaseMovements[i][p] = resolved[p].stream().map(m -> base + m).toArray();
+            }
+        }
+        this.movementCount = movements;
+        this.approachMovements = new int[approaches][];
+        for (int a = 0; a < approaches; a++) {
+            int i = approachIntersection[a];
+            int legs = intersections[i].getExitLegCount();
+            int first = movementBase[i] + apLocal.get(a) * legs;
+            approachMovements[a] = new int[legs];
+            for (int e = 0; e < legs; e++) approachMovements[a][e] = first + e;
+        }
+
+        // Faixas de pedestres
+        List<Crosswalk> walkList = new ArrayList<>();
+        List<Integer> walkIntersection = new ArrayList<>();
+        this.phaseCrosswalks = new int[intersections.length][][];
+        this.movementCrosswalk = new int[movementCount];
+        Arrays.fill(movementCrosswalk, -1);
+        for (int i = 0; i < intersections.length; i++) {
+            Intersection at = intersections[i];
+            int legs = at.getExitLegCount();
+            int first = walkList.size();
+            for (Crosswalk crosswalk : at.getCrosswalks().values()) {
+                int c = walkList.size();
+                walkList.add(crosswalk);
+                walkIntersection.add(i);
+                for (int k = 0; k < at.getApproachCount(); k++) {
+                    if (at.getApproachDirection(k) == crosswalk.getApproach()) continue;
+                    for (int e = 0; e < legs; e++) {
+                        if (leavesThrough(at, crosswalk.getApproach(), at.getExitLegBearing(e))) {
+                            movementCrosswalk[movementBase[i] + k * legs + e] = c;
+                        }
+                    }
+                }
+            }
+            phaseCrosswalks[i] = new int[phaseApproaches[i].length][];
+            for (int p = 0; p < phaseApproaches[i].length; p++) {
+                List<Integer> open = new ArrayList<>();
+                for (int c = first; c < walkList.size(); c++) {
+                    boolean conflicting = false;
+                    for (int a : phaseApproaches[i][p]) {
+                        conflicting |= approachDirection[a] == walkList.get(c).getApproach();
+                    }
+                    if (!conflicting) open.add(c);
+                }
+                phaseCrosswalks[i][p] = toIntArray(open);
+            }
+        }
+        this.crosswalks = walkList.toArray(new Crosswalk[0]);
+        this.crosswalkIntersection = toIntArray(walkIntersection);
+
+        // Links
+        List<int[]> links = new ArrayList<>(); // {rua, cruzamento, aproximação}
+        Map<Integer, List<Integer>> linksByStreet = new HashMap<>();
+        for (int i = 0; i < intersections.length; i++) {
+            for (int a : intersectionApproaches[i]) {
+                for (Street street : intersections[i].getApproachStreets(apLocal.get(a))) {
+                    int s = streetIndex.get(street.getId());
+                    linksByStreet.computeIfAbsent(s, k -> new ArrayList<>()).add(links.size());
+                    links.add(new int[] {s, i, a});
+                }
+            }
+        }
+        int linkCount = links.size();
+        this.linkStreet = new int[linkCount];
+        this.linkIntersection = new int[linkCount];
+        this.linkApproach = new int[linkCount];
+        this.linkLength = new double[linkCount];
+        for (int l = 0; l < linkCount; l++) {
+            int[] link = links.get(l);
+            linkStreet[l] = link[0];
+            linkIntersection[l] = link[1];
+            linkApproach[l] = link[2];
+            linkLength[l] = streets[link[0]].getLength();
+        }
+
+        // Saídas de cada link, seguindo a mesma regra de Car.chooseNextStreetAndDepart
+        boolean[] outgoingSomewhere = new boolean[streets.length];
+        this.linkExitStreet = new int[linkCount][];
+        this.linkExitNext = new int[linkCount][];
+        this.linkExitMovement = new int[linkCount][];
+        this.linkExitServed = new boolean[linkCount][];
+        BitSet served = new BitSet(movementCount);
+        boolean[] approachInPhase = new boolean[approaches];
+        for (int i = 0; i < intersections.length; i++) {
+            for (int p = 0; p < phaseMovements[i].length; p++) {
+                for (int m : phaseMovements[i][p]) served.set(m);
+                for (int a : phaseApproaches[i][p]) approachInPhase[a] = true;
+            }
+        }
+        for (int l = 0; l < linkCount; l++) {
+            int i = linkIntersection[l];
+            Intersection at = intersections[i];
+            int a = linkApproach[l];
+            int first = movementBase[i] + apLocal.get(a) * at.getExitLegCount();
+            List<Street> exits = at.getPossibleExits(approachBearing[a]);
+            linkExitStreet[l] = new int[exits.size()];
+            linkExitNext[l] = new int[exits.size()];
+            linkExitMovement[l] = new int[exits.size()];
+            linkExitServed[l] = new boolean[exits.size()];
+            for (int k = 0; k < exits.size(); k++) {
+                int s = streetIndex.get(exits.get(k).getId());
+                outgoingSomewhere[s] = true;
+                linkExitStreet[l][k] = s;
+                linkExitNext[l][k] = nextLink(s, i, linksByStreet);
+                linkExitMovement[l][k] = first + at.getExitLeg(exits.get(k));
+                // Aproximação sem nenhuma fase segue como antes (faminta, avisada pelo GridlockDetector);
+                // com fase, só os movimentos que algum verde libera são oferecidos às rotas e à escolha aleatória
+                linkExitServed[l][k] = !approachInPhase[a] || served.get(linkExitMovement[l][k]);
+            }
+        }
+        for (Intersection at : intersections) {
+            for (List<Street> out : at.getOutgoingStreets().values()) {
+                for (Street street : out) {
+                    outgoingSomewhere[streetIndex.get(street.getId())] = true;
+                }
+            }
+        }
+
+        // Entradas da rede: links cuja rua não sai de nenhum cruzamento (ex.: S2, S4 no grid padrão)
+        List<Integer> entries = new ArrayList<>();
+        for (int l = 0; l < linkCount; l++) {
+            if (!outgoingSomewhere[linkStreet[l]]) {
+                entries.add(l);
+            }
+        }
+        if (entries.isEmpty()) { // Rede fechada: qualquer link serve como entrada
+            for (int l = 0; l < linkCount; l++) entries.add(l);
+        }
+        this.entryLinks = toIntArray(entries);
+        this.entryLink = new boolean[linkCount];
+        for (int l : entryLinks) entryLink[l] = true;
+        this.streetLinks = new int[streets.length][];
+        for (int s = 0; s < streets.length; s++) {
+            List<Integer> own = linksByStreet.get(s);
+            streetLinks[s] = own != null ? toIntArray(own) : new int[0];
+        }
+
+        // Laços virtuais
+        List<LoopDetector> loops = new ArrayList<>();
+        List<Integer> loopLinks = new ArrayList<>();
+        List<List<Integer>> perLink = new ArrayList<>();
+        for (int l = 0; l < linkCount; l++) perLink.add(new ArrayList<>());
+        Set<String> loopIds = new HashSet<>();
+        for (int s = 0; s < streets.length; s++) {
+            for (LoopDetector detector : streets[s].getLoopDetectors()) {
+                if (!loopIds.add(detector.getId())) {
+                    throw new IllegalArgumentException("Detector duplicado: " + detector.getId());
+                }
+                int link = -1;
+                for (int l : streetLinks[s]) {
+                    if (detector.getTowardIntersection() == null
+                            || intersections[linkIntersection[l]].getId().equals(detector.getTowardIntersection())) {
+                        link = l;
+                    }
+                }
+                if (link < 0) {
+                    throw new IllegalArgumentException("Detector " + detector.getId() + ": a rua " + streets[s].getId()
+                            + " não chega a " + (detector.getTowardIntersection() == null ? "nenhum cruzamento"
+                            : "o cruzamento " + detector.getTowardIntersection()) + ".");
+                }
+                perLink.get(link).add(loops.size());
+                loops.add(detector);
+                loopLinks.add(link);
+            }
+        }
+        this.detectors = loops.toArray(new LoopDetector[0]);
+        this.detectorLink = toIntArray(loopLinks);
+        this.detectorStart = new double[detectors.length];
+        this.detectorEnd = new double[detectors.length];
+        for (int d = 0; d < detectors.length; d++) {
+            detectorEnd[d] = linkLength[detectorLink[d]] - detectors[d].getDistanceFromStopLine();
+            detectorStart[d] = detectorEnd[d] - detectors[d].getLength();
+            if (detectorStart[d] < 0) { // Street.addLoopDetector já recusa; a ocupação conta com o laço no link
+                LoopDetector detector = detectors[d];
+                throw new IllegalArgumentException("Detector " + detector.getId() + ": distância + comprimento ("
+                        + (detector.getDistanceFromStopLine() + detector.getLength()) + " m) passa do comprimento"
+                        + " da rua " + streets[linkStreet[detectorLink[d]]].getId() + " (" + linkLength[detectorLink[d]] + " m).");
+            }
+        }
+        this.linkDetectors = new int[linkCount][];
+        for (int l = 0; l < linkCount; l++) linkDetectors[l] = toIntArray(perLink.get(l));
+    }
+
+    private int nextLink(int street, int fromIntersection, Map<Integer, List<Integer>> linksByStreet) {
+        List<Integer> candidates = linksByStreet.get(street);
+        if (candidates == null) {
+            return -1; // Rua que deixa a rede
+        }
+        for (int l : candidates) {
+            if (linkIntersection[l] != fromIntersection) {
+                return l;
+            }
+        }
+        // Só volta para o cruzamento de partida: retorno permitido apenas em mão dupla
+        return streets[street].isTwoWay() ? candidates.get(0) : -1;
+    }
+
+    // A saída no rumo "exit" passa pelo ramo de alguma aproximação do quadrante (ramo oposto ao rumo de chegada)
+    private static boolean leavesThrough(Intersection at, Direction quadrant, double exit) {
+        for (int k = 0; k < at.getApproachCount(); k++) {
+            if (at.getApproachDirection(k) == quadrant && Compass.isReverse(at.getApproachBearing(k), exit)) return true;
+        }
+        return false;
+    }
+
+    private static int[] toIntArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = values.get(k);
+        }
+        return result;
+    }
+
+    public Grid getGrid() {
+        return grid;
+    }
+
+    public int streetCount() {
+        return streets.length;
+    }
+
+    public Street street(int s) {
+        return streets[s];
+    }
+
+    // Capacidade da rua sem alterações, em veículos (ucp) por sentido; a mesma para links micro e meso
+    public int streetCapacity(int s) {
+        return Math.max(1, streets[s].getCapacity());
+    }
+
+    public int intersectionCount() {
+        return intersections.length;
+    }
+
+    public Intersection intersection(int i) {
+        return intersections[i];
+    }
+
+    public int streetIndexOf(String streetId) {
+        Integer s = streetIndex.get(streetId);
+        return s != null ? s : -1;
+    }
+
+    public int intersectionIndexOf(String intersectionId) {
+        Integer i = intersectionIndex.get(intersectionId);
+        return i != null ? i : -1;
+    }
+
+    public int approachCount() {
+        return approachIntersection.length;
+    }
+
+    public int approachIntersection(int a) {
+        return approachIntersection[a];
+    }
+
+    public Direction approachDirection(int a) {
+        return approachDirection[a];
+    }
+
+    public double approachBearing(int a) {
+        return approachBearing[a];
+    }
+
+    public long approachGreenMs(int a) {
+        return approachGreenMs[a];
+    }
+
+    public long approachYellowMs(int a) {
+        return approachYellowMs[a];
+    }
+
+    public int[] intersectionApproaches(int i) {
+        return intersectionApproaches[i];
+    }
+
+    public int phaseCount(int i) {
+        return phaseApproaches[i].length;
+    }
+
+    public int[] phaseApproaches(int i, int phase) {
+        return phaseApproaches[i][phase];
+    }
+
+    public int phaseLeadApproach(int i, int phase) {
+        return phaseLeadApproach[i][phase];
+    }
+
+    public int crosswalkCount() {
+        return crosswalks.length;
+    }
+
+    public Crosswalk crosswalk(int c) {
+        return crosswalks[c];
+    }
+
+    public int crosswalkIntersection(int c) {
+        return crosswalkIntersection[c];
+    }
+
+    public int[] phaseCrosswalks(int i, int phase) {
+        return phaseCrosswalks[i][phase];
+    }
+
+    public int movementCrosswalk(int m) {
+        return movementCrosswalk[m];
+    }
+
+    public int linkCount() {
+        return linkStreet.length;
+    }
+
+    public int linkStreet(int l) {
+        return linkStreet[l];
+    }
+
+    public int linkIntersection(int l) {
+        return linkIntersection[l];
+    }
+
+    public int linkApproach(int l) {
+        return linkApproach[l];
+    }
+
+    public int linkLanes(int l) {
+        return streets[linkStreet[l]].getLanes();
+    }
+
+    public double linkLength(int l) {
+        return linkLength[l];
+    }
+
+    public int exitCount(int l) {
+        return linkExitNext[l].length;
+    }
+
+    public int exitStreet(int l, int k) {
+        return linkExitStreet[l][k];
+    }
+
+    public int exitNextLink(int l, int k) {
+        return linkExitNext[l][k];
+    }
+
+    public int exitMovement(int l, int k) {
+        return linkExitMovement[l][k];
+    }
+
+    public boolean exitServed(int l, int k) {
+        return linkExitServed[l][k];
+    }
+
+    public int movementCount() {
+        return movementCount;
+    }
+
+    public int[] phaseMovements(int i, int phase) {
+        return phaseMovements[i][phase];
+    }
+
+    public int[] approachMovements(int a) {
+        return approachMovements[a];
+    }
+
+    public int[] entryLinks() {
+        return entryLinks;
+    }
+
+    public int[] streetLinks(int s) {
+        return streetLinks[s];
+    }
+
+    public int detectorCount() {
+        return detectors.length;
+    }
+
+    public LoopDetector detector(int d) {
+        return detectors[d];
+    }
+
+    public int detectorLink(int d) {
+        return detectorLink[d];
+    }
+
+    public double detectorStart(int d) {
+        return detectorStart[d];
+    }
+
+    public double detectorEnd(int d) {
+        return detectorEnd[d];
+    }
+
+    public int[] linkDetectors(int l) {
+        return linkDetectors[l];
+    }
+
+    // Link onde um veículo entra na rede pela rua informada (prefere links de entrada)
+    public int originLinkForStreet(int s) {
+        int[] candidates = streetLinks[s];
+        for (int l : candidates) {
+            if (entryLink[l]) return l;
+        }
+        return candidates.length > 0 ? candidates[0] : -1;
+    }
+}
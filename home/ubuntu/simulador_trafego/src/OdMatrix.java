@@ -0,0 +1,53 @@
+package com.simuladortrafego;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Matriz origem-destino com seu perfil horário. Origem e destino são ids de ruas:
+// a origem deve alimentar um cruzamento e o destino deve ser uma rua de saída (ou null = rota aleatória).
+public class OdMatrix {
+    private final String name;
+    private final TimeProfile profile;
+    private final List<String> origins = new ArrayList<>();
+    private final List<String> destinations = new ArrayList<>();
+    private final List<Double> ratesPerHour = new ArrayList<>();
+
+    public OdMatrix(String name, TimeProfile profile) {
+        this.name = name;
+        this.profile = profile;
+    }
+
+    public OdMatrix addTrips(String originStreetId, String destinationStreetId, double peakRatePerHour) {
+        if (peakRatePerHour < 0) {
+            throw new IllegalArgumentException("Taxa negativa para o par " + originStreetId + " -> " + destinationStreetId);
+        }
+        origins.add(originStreetId);
+        destinations.add(destinationStreetId);
+        ratesPerHour.add(peakRatePerHour);
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public TimeProfile getProfile() {
+        return profile;
+    }
+
+    public int size() {
+        return origins.size();
+    }
+
+    public String getOrigin(int k) {
+        return origins.get(k);
+    }
+
+    public String getDestination(int k) {
+        return destinations.get(k);
+    }
+
+    public double getRatePerHour(int k) {
+        return ratesPerHour.get(k);
+    }
+}
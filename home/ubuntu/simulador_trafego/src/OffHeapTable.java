@@ -0,0 +1,133 @@
+package com.simuladortrafego;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Tabela de registros de tamanho fixo fora do heap, em blocos de ByteBuffer direto.
+// Cada campo é lido/escrito por um VarHandle de visão sobre o buffer no deslocamento do layout, então
+// o coletor de lixo só enxerga os objetos dos blocos, não os milhões de registros dentro deles.
+// Crescer acrescenta blocos sem copiar os existentes. A memória é devolvida quando a tabela é coletada.
+// Uma cópia (construtor de cópia) compartilha os blocos com a original: os dois lados só leem o bloco
+// compartilhado e cada um copia o bloco na primeira escrita (copy-on-write), então copiar custa um vetor
+// de referências e os blocos que ninguém altera nunca são duplicados.
+final class OffHeapTable {
+    static final int RECORDS_PER_CHUNK = 4096;
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_MASK = RECORDS_PER_CHUNK - 1;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle DOUBLE = MethodHandles.byteBufferViewVarHandle(double[].class, ByteOrder.nativeOrder());
+
+    private final int recordBytes;
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private boolean[] shared = new boolean[0]; // bloco também referenciado por outra tabela
+    private int sharedCount = 0;
+    private int capacity = 0;
+
+    // recordBytes múltiplo de 8 para manter longs e doubles alinhados
+    OffHeapTable(int recordBytes, int initialRecords) {
+        if (recordBytes <= 0 || recordBytes % 8 != 0) {
+            throw new IllegalArgumentException("Tamanho de registro deve ser múltiplo positivo de 8: " + recordBytes);
+        }
+        this.recordBytes = recordBytes;
+        ensureCapacity(initialRecords);
+    }
+
+    // Cópia que compartilha todos os blocos; chamador garante que a origem não está sendo escrita por outra thread
+    OffHeapTable(OffHeapTable source) {
+        this.recordBytes = source.recordBytes;
+        this.capacity = source.capacity;
+        this.chunks = source.chunks.clone();
+        this.shared = new boolean[chunks.length];
+        Arrays.fill(shared, true);
+        this.sharedCount = chunks.length;
+        Arrays.fill(source.shared, true);
+        source.sharedCount = chunks.length;
+    }
+
+    // Copia já os blocos compartilhados; necessário antes de escritas concorrentes em registros distintos
+    void unshareAll() {
+        for (int c = 0; sharedCount > 0 && c < chunks.length; c++) {
+            if (shared[c]) unshare(c);
+        }
+    }
+
+    private void unshare(int c) {
+        ByteBuffer copy = ByteBuffer.allocateDirect(chunks[c].capacity()).order(ByteOrder.nativeOrder());
+        copy.put(0, chunks[c], 0, chunks[c].capacity());
+        chunks[c] = copy;
+        shared[c] = false;
+        sharedCount--;
+    }
+
+    // Capacidade arredondada para blocos inteiros; registros novos chegam zerados
+    void ensureCapacity(int records) {
+        if (records <= capacity) return;
+        int needed = (records + CHUNK_MASK) >>> CHUNK_SHIFT;
+        int old = chunks.length;
+        chunks = Arrays.copyOf(chunks, needed);
+        shared = Arrays.copyOf(shared, needed);
+        for (int c = old; c < needed; c++) {
+            chunks[c] = ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * recordBytes).order(ByteOrder.nativeOrder());
+        }
+        capacity = needed << CHUNK_SHIFT;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long offHeapBytes() {
+        return (long) chunks.length * RECORDS_PER_CHUNK * recordBytes;
+    }
+
+    private ByteBuffer chunk(int record) {
+        return chunks[record >>> CHUNK_SHIFT];
+    }
+
+    private ByteBuffer writableChunk(int record) {
+        int c = record >>> CHUNK_SHIFT;
+        if (sharedCount > 0 && shared[c]) unshare(c);
+        return chunks[c];
+    }
+
+    private int offset(int record, int field) {
+        return (record & CHUNK_MASK) * recordBytes + field;
+    }
+
+    int getInt(int record, int field) {
+        return (int) INT.get(chunk(record), offset(record, field));
+    }
+
+    void setInt(int record, int field, int value) {
+        INT.set(writableChunk(record), offset(record, field), value);
+    }
+
+    long getLong(int record, int field) {
+        return (long) LONG.get(chunk(record), offset(record, field));
+    }
+
+    void setLong(int record, int field, long value) {
+        LONG.set(writableChunk(record), offset(record, field), value);
+    }
+
+    double getDouble(int record, int field) {
+        return (double) DOUBLE.get(chunk(record), offset(record, field));
+    }
+
+    void setDouble(int record, int field, double value) {
+        DOUBLE.set(writableChunk(record), offset(record, field), value);
+    }
+
+    byte getByte(int record, int field) {
+        return chunk(record).get(offset(record, field));
+    }
+
+    void setByte(int record, int field, byte value) {
+        writableChunk(record).put(offset(record, field), value);
+    }
+}
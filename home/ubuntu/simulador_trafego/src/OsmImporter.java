@@ -0,0 +1,486 @@
+package com.simuladortrafego;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Importa um extrato do OpenStreetMap (.osm, .osm.gz ou .osm.pbf) para o modelo Grid.
+// Duas passadas em fluxo sobre o arquivo, que precisa ter nós antes das vias (ordem padrão dos extratos):
+//   1. só as vias: conta quantas vezes cada nó é usado por vias de tráfego (>= 2 usos = cruzamento);
+//   2. nós e vias: guarda coordenadas apenas dos nós usados, corta as vias em trechos entre cruzamentos
+//      e cria uma Street por trecho.
+// A memória cresce com o número de nós da malha viária (~40 bytes por nó), não com o tamanho do extrato.
+// Cada conexão usa o rumo exato de deslocamento (chegar no rumo 0 = seguindo para o norte): cruzamentos com
+// qualquer número de ramos viram aproximações por rumo (Compass), e getPossibleExits evita apenas o retorno.
+public final class OsmImporter {
+    static final String[] WAY_KEYS = {"highway", "oneway", "junction", "lanes", "lanes:forward"};
+    static final int TAG_HIGHWAY = 0;
+    static final int TAG_ONEWAY = 1;
+    static final int TAG_JUNCTION = 2;
+    static final int TAG_LANES = 3;
+    static final int TAG_LANES_FORWARD = 4;
+
+    private static final Set<String> ROAD_CLASSES = new HashSet<>(Arrays.asList(
+            "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential",
+            "motorway_link", "trunk_link", "primary_link", "secondary_link", "tertiary_link", "living_street"));
+    private static final double METERS_PER_VEHICLE = 7.0; // Mesma densidade de fila da malha Manhattan
+    private static final double SIGNAL_SNAP_METERS = 40; // Semáforo mapeado no ramo, antes da linha de retenção
+    private static final double EARTH_RADIUS = 6371008.8;
+    // Sem regra de preferência no modelo, cruzamentos sem semáforo alternam os eixos em ciclos curtos
+    private static final long UNSIGNALIZED_GREEN_MS = 5000;
+    private static final long UNSIGNALIZED_YELLOW_MS = 1000;
+
+    interface Sink {
+        void node(long id, int latE7, int lonE7, boolean trafficSignals);
+
+        // refs[0..refCount) e tags (indexadas por WAY_KEYS) só valem durante a chamada
+        void way(long id, long[] refs, int refCount, String[] tags);
+    }
+
+    private final int threads;
+    private int ways;
+    private int streets;
+    private int intersections;
+    private int signalized;
+    private int droppedSegments;
+    private long missingNodes;
+
+    public OsmImporter(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Número de threads deve ser positivo.");
+        }
+        this.threads = threads;
+    }
+
+    public static boolean isOsmFile(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".osm") || lower.endsWith(".osm.gz") || lower.endsWith(".pbf");
+    }
+
+    public Grid importFile(Path path) throws IOException {
+        Grid grid = new Grid();
+        grid.setVerbose(false);
+        NodeTable nodes = new NodeTable();
+        read(path, false, new Sink() {
+            @Override
+            public void node(long id, int latE7, int lonE7, boolean trafficSignals) {
+            }
+
+            @Override
+            public void way(long id, long[] refs, int refCount, String[] tags) {
+                if (!isRoad(tags)) return;
+                for (int k = 0; k < refCount; k++) {
+                    if (k == 0 || refs[k] != refs[k - 1]) nodes.count(refs[k]);
+                }
+            }
+        });
+        nodes.allocateCoordinates();
+        Builder builder = new Builder(grid, nodes);
+        read(path, true, builder);
+        builder.finish();
+        return grid;
+    }
+
+    private void read(Path path, boolean wantNodes, Sink sink) throws IOException {
+        if (path.getFileName().toString().toLowerCase().endsWith(".pbf")) {
+            new OsmPbfReader(threads).read(path, wantNodes, sink);
+        } else {
+            new OsmXmlReader().read(path, wantNodes, sink);
+        }
+    }
+
+    static int wayTagIndex(String key) {
+        for (int k = 0; k < WAY_KEYS.length; k++) {
+            if (WAY_KEYS[k].equals(key)) return k;
+        }
+        return -1;
+    }
+
+    private static boolean isRoad(String[] tags) {
+        return tags[TAG_HIGHWAY] != null && ROAD_CLASSES.contains(tags[TAG_HIGHWAY]);
+    }
+
+    // 1 = sentido do desenho da via, -1 = contrário, 0 = mão dupla
+    private static int oneway(String[] tags) {
+        String oneway = tags[TAG_ONEWAY];
+        if (oneway != null) {
+            switch (oneway) {
+                case "yes": case "true": case "1": return 1;
+                case "-1": case "reverse": return -1;
+                case "no": case "false": case "0": return 0;
+                default: break;
+            }
+        }
+        String highway = tags[TAG_HIGHWAY];
+        boolean implied = "roundabout".equals(tags[TAG_JUNCTION]) || "circular".equals(tags[TAG_JUNCTION])
+                || "motorway".equals(highway) || "motorway_link".equals(highway);
+        return implied ? 1 : 0;
+    }
+
+    // lanes conta os dois sentidos em vias de mão dupla; Street guarda faixas por sentido
+    private static int lanesPerDirection(String[] tags, int oneway) {
+        int total = parseLanes(tags[TAG_LANES]);
+        if (oneway != 0) return total > 0 ? total : defaultLanes(tags[TAG_HIGHWAY]);
+        int forward = parseLanes(tags[TAG_LANES_FORWARD]);
+        if (forward > 0) return forward;
+        if (total > 0) return Math.max(1, total / 2);
+        return defaultLanes(tags[TAG_HIGHWAY]);
+    }
+
+    private static int defaultLanes(String highway) {
+        return highway.startsWith("motorway") || highway.startsWith("trunk") || highway.equals("primary") ? 2 : 1;
+    }
+
+    // "2", "2;3" (valores alternativos: usa o primeiro); inválido = 0
+    private static int parseLanes(String value) {
+        if (value == null) return 0;
+        int n = 0;
+        int digits = 0;
+        for (int i = 0; i < value.length() && Character.isDigit(value.charAt(i)) && digits < 3; i++, digits++) {
+            n = n * 10 + (value.charAt(i) - '0');
+        }
+        return digits > 0 ? n : 0;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public int getStreets() {
+        return streets;
+    }
+
+    public int getIntersections() {
+        return intersections;
+    }
+
+    public int getSignalized() {
+        return signalized;
+    }
+
+    public int getDroppedSegments() {
+        return droppedSegments;
+    }
+
+    public long getMissingNodes() {
+        return missingNodes;
+    }
+
+    // Segunda passada: coordenadas, trechos entre cruzamentos e conexões.
+    // As conexões ficam em arrays até o fim porque as fases precisam ser definidas antes de os semáforos
+    // existirem (senão setGreenPhases imprime cada troca), e as aproximações só são conhecidas no fim.
+    private final class Builder implements Sink {
+        private final Grid grid;
+        private final NodeTable nodes;
+        private final int[] junctionOf;
+        private final List<Street> streetList = new ArrayList<>();
+        private long[] junctionNodes = new long[1024];
+        private int[] firstIncoming = new int[1024]; // Conexões de chegada de cada cruzamento, encadeadas em nextIncoming
+        private int[] lastIncoming = new int[1024];
+        private final BitSet signalizedJunctions = new BitSet();
+        private int junctions = 0;
+        private int[] connJunction = new int[4096];
+        private int[] connStreet = new int[4096];
+        private float[] connBearing = new float[4096];
+        private int[] nextIncoming = new int[4096];
+        private final BitSet incomingConnections = new BitSet();
+        private int connections = 0;
+        private double[] approachBearings = new double[8];
+        private int[] slots = new int[256];
+        private double[] distance = new double[256];
+
+        Builder(Grid grid, NodeTable nodes) {
+            this.grid = grid;
+            this.nodes = nodes;
+            this.junctionOf = new int[nodes.keys.length];
+            Arrays.fill(junctionOf, -1);
+        }
+
+        @Override
+        public void node(long id, int latE7, int lonE7, boolean trafficSignals) {
+            int slot = nodes.find(id);
+            if (slot < 0) return;
+            nodes.lat[slot] = latE7;
+            nodes.lon[slot] = lonE7;
+            nodes.flags[slot] |= NodeTable.HAS_COORDINATES | (trafficSignals ? NodeTable.SIGNALS : 0);
+        }
+
+        @Override
+        public void way(long id, long[] refs, int refCount, String[] tags) {
+            if (!isRoad(tags)) return;
+            ways++;
+            int oneway = oneway(tags);
+            int lanes = lanesPerDirection(tags, oneway);
+            if (slots.length < refCount) {
+                slots = new int[refCount];
+                distance = new double[refCount];
+            }
+            int m = 0;
+            for (int k = 0; k < refCount; k++) {
+                if (k > 0 && refs[k] == refs[k - 1]) continue;
+                int slot = nodes.find(refs[k]);
+                if (slot < 0 || (nodes.flags[slot] & NodeTable.HAS_COORDINATES) == 0) {
+                    missingNodes++; // Nó fora do recorte do extrato: a via é cortada ali
+                    slot = -1;
+                }
+                slots[m++] = slot;
+            }
+            if (oneway < 0) {
+                for (int a = 0, b = m - 1; a < b; a++, b--) {
+                    int t = slots[a];
+                    slots[a] = slots[b];
+                    slots[b] = t;
+                }
+            }
+            int segment = 0;
+            int start = -1;
+            for (int i = 0; i < m; i++) {
+                if (slots[i] < 0) {
+                    start = -1;
+                    continue;
+                }
+                if (start < 0) {
+                    start = i;
+                    distance[i] = 0;
+                    continue;
+                }
+                distance[i] = distance[i - 1] + meters(slots[i - 1], slots[i]);
+                if (i == m - 1 || slots[i + 1] < 0 || nodes.isJunction(slots[i])) {
+                    segment(id, segment++, start, i, oneway == 0, lanes);
+                    start = i;
+                }
+            }
+        }
+
+        private void segment(long wayId, int segment, int from, int to, boolean twoWay, int lanes) {
+            boolean startJunction = nodes.isJunction(slots[from]);
+            boolean endJunction = nodes.isJunction(slots[to]);
+            if (!startJunction && !endJunction) { // Trecho solto, sem cruzamento em nenhuma ponta
+                droppedSegments++;
+                return;
+            }
+            double length = Math.max(1.0, distance[to] - distance[from]);
+            int capacity = Math.max(1, (int) (length / METERS_PER_VEHICLE) * lanes);
+            Direction travel = twoWay ? null : Compass.quadrant(bearing(slots[from], slots[to]));
+            Street street = new Street("W" + wayId + "-" + segment, length, capacity, twoWay, travel, lanes);
+            grid.addStreet(street);
+            int streetIndex = streetList.size();
+            streetList.add(street);
+            // Rumo medido no nó vizinho ao cruzamento, não entre as pontas: curvas longas não mudam a aproximação
+            int startOrdinal = -1;
+            int endOrdinal = -1;
+            if (startJunction) {
+                startOrdinal = junction(slots[from]);
+                connect(startOrdinal, streetIndex, bearing(slots[from], slots[from + 1]), false);
+                if (twoWay) connect(startOrdinal, streetIndex, bearing(slots[from + 1], slots[from]), true);
+            }
+            if (endJunction) {
+                endOrdinal = junction(slots[to]);
+                connect(endOrdinal, streetIndex, bearing(slots[to - 1], slots[to]), true);
+                if (twoWay) connect(endOrdinal, streetIndex, bearing(slots[to], slots[to - 1]), false);
+            }
+            for (int k = from; k <= to; k++) {
+                if ((nodes.flags[slots[k]] & NodeTable.SIGNALS) == 0) continue;
+                if (startJunction && distance[k] - distance[from] <= SIGNAL_SNAP_METERS) signalizedJunctions.set(startOrdinal);
+                if (endJunction && distance[to] - distance[k] <= SIGNAL_SNAP_METERS) signalizedJunctions.set(endOrdinal);
+            }
+        }
+
+        private int junction(int slot) {
+            int ordinal = junctionOf[slot];
+            if (ordinal >= 0) return ordinal;
+            if (junctions == junctionNodes.length) {
+                junctionNodes = Arrays.copyOf(junctionNodes, junctions * 2);
+                firstIncoming = Arrays.copyOf(firstIncoming, junctions * 2);
+                lastIncoming = Arrays.copyOf(lastIncoming, junctions * 2);
+            }
+            junctionNodes[junctions] = nodes.keys[slot];
+            firstIncoming[junctions] = -1;
+            junctionOf[slot] = junctions;
+            return junctions++;
+        }
+
+        private void connect(int ordinal, int streetIndex, double bearing, boolean incoming) {
+            if (connections == connStreet.length) {
+                connJunction = Arrays.copyOf(connJunction, connections * 2);
+                connStreet = Arrays.copyOf(connStreet, connections * 2);
+                connBearing = Arrays.copyOf(connBearing, connections * 2);
+                nextIncoming = Arrays.copyOf(nextIncoming, connections * 2);
+            }
+            connJunction[connections] = ordinal;
+            connStreet[connections] = streetIndex;
+            connBearing[connections] = (float) bearing;
+            if (incoming) { // Encadeada no fim, na mesma ordem em que o cruzamento vai recebê-la
+                incomingConnections.set(connections);
+                nextIncoming[connections] = -1;
+                if (firstIncoming[ordinal] < 0) {
+                    firstIncoming[ordinal] = connections;
+                } else {
+                    nextIncoming[lastIncoming[ordinal]] = connections;
+                }
+                lastIncoming[ordinal] = connections;
+            }
+            connections++;
+        }
+
+        void finish() {
+            Intersection[] created = new Intersection[junctions];
+            for (int o = 0; o < junctions; o++) {
+                Intersection intersection = new Intersection("N" + junctionNodes[o], grid);
+                List<Direction> phases = inferPhases(o);
+                if (!phases.isEmpty()) intersection.setGreenPhases(phases); // Ainda sem semáforos: nada é acionado
+                grid.addIntersection(intersection);
+                created[o] = intersection;
+            }
+            for (int c = 0; c < connections; c++) {
+                grid.connectStreetToIntersection(streetList.get(connStreet[c]).getId(), created[connJunction[c]].getId(),
+                        connBearing[c], incomingConnections.get(c));
+            }
+            for (int o = 0; o < junctions; o++) {
+                if (signalizedJunctions.get(o)) continue;
+                for (Direction d : Direction.values()) {
+                    TrafficLight light = created[o].getTrafficLight(d);
+                    if (light != null) light.setTimings(UNSIGNALIZED_GREEN_MS, UNSIGNALIZED_YELLOW_MS);
+                }
+            }
+            streets = streetList.size();
+            intersections = junctions;
+            signalized = signalizedJunctions.cardinality();
+        }
+
+        // Aproximações agrupadas como em Intersection.addApproach; percorre os quadrantes na ordem de Direction
+        // e abre uma fase só quando ela põe em verde alguma aproximação ainda não atendida. Num cruzamento de
+        // 4 ramos isso dá um eixo por fase; em um "Y" cada ramo vira uma fase, pois todos se cruzam.
+        private List<Direction> inferPhases(int junction) {
+            int count = 0;
+            for (int c = firstIncoming[junction]; c >= 0; c = nextIncoming[c]) {
+                boolean merged = false;
+                for (int a = 0; a < count && !merged; a++) {
+                    merged = Compass.difference(approachBearings[a], connBearing[c]) < Compass.SAME_APPROACH_DEGREES;
+                }
+                if (merged) continue;
+                if (count == approachBearings.length) approachBearings = Arrays.copyOf(approachBearings, count * 2);
+                approachBearings[count++] = Compass.normalize(connBearing[c]);
+            }
+            long[] conflicts = Compass.conflictMasks(approachBearings, count);
+            List<Direction> phases = new ArrayList<>();
+            long covered = 0;
+            for (Direction d : Direction.values()) {
+                boolean hasMember = false;
+                for (int a = 0; a < count && !hasMember; a++) hasMember = Compass.quadrant(approachBearings[a]) == d;
+                if (!hasMember) continue;
+                long green = Intersection.phaseGreenMask(approachBearings, conflicts, count, d);
+                if ((green & ~covered) != 0) {
+                    phases.add(d);
+                    covered |= green;
+                }
+            }
+            return phases;
+        }
+
+        // Aproximação equirretangular: suficiente para trechos de até alguns quilômetros
+        private double meters(int a, int b) {
+            double latA = Math.toRadians(nodes.lat[a] * 1e-7);
+            double dLat = Math.toRadians((nodes.lat[b] - nodes.lat[a]) * 1e-7);
+            double dLon = Math.toRadians((nodes.lon[b] - nodes.lon[a]) * 1e-7) * Math.cos(latA + dLat / 2);
+            return Math.sqrt(dLat * dLat + dLon * dLon) * EARTH_RADIUS;
+        }
+
+        // Rumo de deslocamento de from para to, em graus (0 = norte, 90 = leste)
+        private double bearing(int from, int to) {
+            double dLat = nodes.lat[to] - nodes.lat[from];
+            double dLon = (nodes.lon[to] - nodes.lon[from]) * Math.cos(Math.toRadians(nodes.lat[from] * 1e-7));
+            return Compass.normalize(Math.toDegrees(Math.atan2(dLon, dLat)));
+        }
+    }
+
+    // Tabela hash aberta id do nó -> usos/coordenadas; o id 0 não existe no OSM e marca posição livre
+    static final class NodeTable {
+        static final byte HAS_COORDINATES = 1;
+        static final byte SIGNALS = 2;
+
+        long[] keys = new long[1 << 16];
+        int[] uses = new int[1 << 16];
+        int[] lat;
+        int[] lon;
+        byte[] flags;
+        private int size = 0;
+
+        void count(long id) {
+            if (size * 10L >= keys.length * 6L) grow();
+            int slot = probe(keys, id);
+            if (keys[slot] == 0) {
+                keys[slot] = id;
+                size++;
+            }
+            if (uses[slot] < Integer.MAX_VALUE) uses[slot]++;
+        }
+
+        int find(long id) {
+            int slot = probe(keys, id);
+            return keys[slot] == id ? slot : -1;
+        }
+
+        boolean isJunction(int slot) {
+            return uses[slot] >= 2;
+        }
+
+        void allocateCoordinates() {
+            lat = new int[keys.length];
+            lon = new int[keys.length];
+            flags = new byte[keys.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static int probe(long[] keys, long id) {
+            int mask = keys.length - 1;
+            long h = id * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (keys[slot] != 0 && keys[slot] != id) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldUses = uses;
+            keys = new long[oldKeys.length * 2];
+            uses = new int[oldKeys.length * 2];
+            for (int s = 0; s < oldKeys.length; s++) {
+                if (oldKeys[s] == 0) continue;
+                int slot = probe(keys, oldKeys[s]);
+                keys[slot] = oldKeys[s];
+                uses[slot] = oldUses[s];
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: OsmImporter <extrato.osm|.osm.gz|.osm.pbf> [threads]");
+            System.exit(1);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        OsmImporter importer = new OsmImporter(threads);
+        long start = System.currentTimeMillis();
+        Grid grid = importer.importFile(Paths.get(args[0]));
+        grid.freeze();
+        NetworkIndex network = new NetworkIndex(grid);
+        System.out.println(String.format("%d vias -> %d ruas, %d cruzamentos (%d semaforizados), %d links em %d ms.",
+                importer.getWays(), importer.getStreets(), importer.getIntersections(), importer.getSignalized(),
+                network.linkCount(), System.currentTimeMillis() - start));
+        if (importer.getDroppedSegments() > 0 || importer.getMissingNodes() > 0) {
+            System.out.println("Descartados: " + importer.getDroppedSegments() + " trechos sem cruzamento, "
+                    + importer.getMissingNodes() + " referências a nós fora do extrato.");
+        }
+        // Para simular: BatchRunner <réplicas> <threads> <modo> <extrato>
+    }
+}
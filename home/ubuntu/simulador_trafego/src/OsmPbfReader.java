@@ -0,0 +1,485 @@
+package com.simuladortrafego;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Decodificador mínimo de .osm.pbf (blocos zlib ou sem compressão, nós densos e vias).
+// A thread chamadora lê os blocos em sequência; descompressão e decodificação do protobuf rodam em
+// paralelo, com no máximo 2 blocos por thread em voo, e os resultados são entregues ao Sink na ordem
+// do arquivo. A memória fica limitada pelo tamanho de um bloco (~8000 entidades), não do extrato.
+final class OsmPbfReader {
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    private static final int MAX_BLOB_BYTES = 32 * 1024 * 1024;
+    private static final List<String> SUPPORTED_FEATURES = Arrays.asList("OsmSchema-V0.6", "DenseNodes");
+
+    private final int threads;
+
+    OsmPbfReader(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Número de threads deve ser positivo.");
+        }
+        this.threads = threads;
+    }
+
+    void read(Path path, boolean wantNodes, OsmImporter.Sink sink) throws IOException {
+        String name = path.getFileName().toString();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            long offset = 0;
+            while (true) {
+                int headerLength;
+                try {
+                    headerLength = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (headerLength <= 0 || headerLength > MAX_HEADER_BYTES) {
+                    throw new IOException(name + ": cabeçalho de bloco inválido no byte " + offset);
+                }
+                byte[] header = new byte[headerLength];
+                in.readFully(header);
+                String type = null;
+                int dataSize = -1;
+                try {
+                    Cursor h = new Cursor(header, 0, headerLength);
+                    while (h.more()) {
+                        int tag = h.tag();
+                        if (tag >>> 3 == 1) {
+                            type = h.string();
+                        } else if (tag >>> 3 == 3) {
+                            dataSize = (int) h.varint();
+                        } else {
+                            h.skip(tag);
+                        }
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(name + ": cabeçalho de bloco inválido no byte " + offset + ": " + e.getMessage());
+                }
+                if (type == null || dataSize < 0 || dataSize > MAX_BLOB_BYTES) {
+                    throw new IOException(name + ": bloco inválido no byte " + offset);
+                }
+                byte[] blob = new byte[dataSize];
+                in.readFully(blob);
+                if (type.equals("OSMHeader")) {
+                    checkHeader(name, blob);
+                } else if (type.equals("OSMData")) {
+                    pending.add(pool.submit(() -> decode(inflate(blob), wantNodes)));
+                    if (pending.size() >= threads * 2) deliver(name, pending.poll(), sink);
+                }
+                // Outros tipos de bloco são ignorados, como manda o formato
+                offset += 4 + headerLength + dataSize;
+            }
+            while (!pending.isEmpty()) deliver(name, pending.poll(), sink);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void deliver(String name, Future<Block> future, OsmImporter.Sink sink) throws IOException {
+        Block block;
+        try {
+            block = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Leitura de " + name + " interrompida.", e);
+        } catch (ExecutionException e) {
+            throw new IOException(name + ": PBF inválido: " + e.getCause().getMessage(), e.getCause());
+        }
+        for (int n = 0; n < block.nodeCount; n++) {
+            sink.node(block.nodeIds[n], block.nodeLat[n], block.nodeLon[n], block.nodeSignals[n]);
+        }
+        int keys = OsmImporter.WAY_KEYS.length;
+        long[] refs = new long[256];
+        String[] tags = new String[keys];
+        int from = 0;
+        for (int w = 0; w < block.wayCount; w++) {
+            int count = block.wayRefEnd[w] - from;
+            if (count > refs.length) refs = new long[count];
+            System.arraycopy(block.refs, from, refs, 0, count);
+            System.arraycopy(block.wayTags, w * keys, tags, 0, keys);
+            sink.way(block.wayIds[w], refs, count, tags);
+            from = block.wayRefEnd[w];
+        }
+    }
+
+    private static void checkHeader(String name, byte[] blob) throws IOException {
+        try {
+            byte[] data = inflate(blob);
+            Cursor c = new Cursor(data, 0, data.length);
+            while (c.more()) {
+                int tag = c.tag();
+                if (tag >>> 3 == 4) {
+                    String feature = c.string();
+                    if (!SUPPORTED_FEATURES.contains(feature)) {
+                        throw new IOException(name + ": recurso PBF não suportado: " + feature);
+                    }
+                } else {
+                    c.skip(tag);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException(name + ": cabeçalho OSM inválido: " + e.getMessage());
+        }
+    }
+
+    private static byte[] inflate(byte[] blob) {
+        Cursor c = new Cursor(blob, 0, blob.length);
+        int rawSize = -1;
+        Cursor zlib = null;
+        while (c.more()) {
+            int tag = c.tag();
+            switch (tag >>> 3) {
+                case 1: // raw
+                    Cursor raw = c.message();
+                    return Arrays.copyOfRange(blob, raw.pos, raw.end);
+                case 2:
+                    rawSize = (int) c.varint();
+                    break;
+                case 3:
+                    zlib = c.message();
+                    break;
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    throw new IllegalArgumentException("compressão não suportada (campo " + (tag >>> 3) + ")");
+                default:
+                    c.skip(tag);
+            }
+        }
+        if (zlib == null || rawSize < 0 || rawSize > MAX_BLOB_BYTES) {
+            throw new IllegalArgumentException("bloco sem dados");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob, zlib.pos, zlib.end - zlib.pos);
+            byte[] out = new byte[rawSize];
+            int n = 0;
+            while (n < rawSize && !inflater.finished()) {
+                int k = inflater.inflate(out, n, rawSize - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += k;
+            }
+            if (n != rawSize) {
+                throw new IllegalArgumentException("bloco zlib com " + n + " bytes, esperado " + rawSize);
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("zlib corrompido: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // PrimitiveBlock: tabela de strings, grupos (nós, nós densos, vias) e granularidade das coordenadas
+    private static Block decode(byte[] data, boolean wantNodes) {
+        Cursor c = new Cursor(data, 0, data.length);
+        String[] strings = new String[0];
+        List<Cursor> groups = new ArrayList<>();
+        long granularity = 100;
+        long latOffset = 0;
+        long lonOffset = 0;
+        while (c.more()) {
+            int tag = c.tag();
+            switch (tag >>> 3) {
+                case 1: strings = stringTable(c.message()); break;
+                case 2: groups.add(c.message()); break;
+                case 17: granularity = c.varint(); break;
+                case 19: latOffset = c.varint(); break;
+                case 20: lonOffset = c.varint(); break;
+                default: c.skip(tag);
+            }
+        }
+        // Índices da tabela de strings que interessam ao importador
+        int[] wayKey = new int[strings.length];
+        int highway = -1;
+        int trafficSignals = -1;
+        for (int s = 0; s < strings.length; s++) {
+            wayKey[s] = OsmImporter.wayTagIndex(strings[s]);
+            if (strings[s].equals("highway")) highway = s;
+            if (strings[s].equals("traffic_signals")) trafficSignals = s;
+        }
+        Block block = new Block();
+        for (Cursor group : groups) {
+            while (group.more()) {
+                int tag = group.tag();
+                int field = tag >>> 3;
+                if (field == 1 && wantNodes) {
+                    decodeNode(group.message(), block, granularity, latOffset, lonOffset, highway, trafficSignals);
+                } else if (field == 2 && wantNodes) {
+                    decodeDense(group.message(), block, granularity, latOffset, lonOffset, highway, trafficSignals);
+                } else if (field == 3) {
+                    decodeWay(group.message(), block, strings, wayKey);
+                } else {
+                    group.skip(tag);
+                }
+            }
+        }
+        return block;
+    }
+
+    private static String[] stringTable(Cursor c) {
+        List<String> strings = new ArrayList<>();
+        while (c.more()) {
+            int tag = c.tag();
+            if (tag >>> 3 == 1) {
+                strings.add(c.string());
+            } else {
+                c.skip(tag);
+            }
+        }
+        return strings.toArray(new String[0]);
+    }
+
+    private static void decodeNode(Cursor c, Block block, long granularity, long latOffset, long lonOffset,
+                                   int highway, int trafficSignals) {
+        long id = 0;
+        long lat = 0;
+        long lon = 0;
+        int[] keys = new int[0];
+        int[] vals = new int[0];
+        while (c.more()) {
+            int tag = c.tag();
+            switch (tag >>> 3) {
+                case 1: id = c.sint(); break;
+                case 2: keys = packedInts(c.message()); break;
+                case 3: vals = packedInts(c.message()); break;
+                case 8: lat = c.sint(); break;
+                case 9: lon = c.sint(); break;
+                default: c.skip(tag);
+            }
+        }
+        boolean signals = false;
+        for (int k = 0; k < Math.min(keys.length, vals.length); k++) {
+            signals |= keys[k] == highway && vals[k] == trafficSignals;
+        }
+        block.addNode(id, toE7(latOffset + granularity * lat), toE7(lonOffset + granularity * lon), signals);
+    }
+
+    // Nós densos: ids e coordenadas em delta, tags intercaladas em keys_vals com 0 separando os nós
+    private static void decodeDense(Cursor c, Block block, long granularity, long latOffset, long lonOffset,
+                                    int highway, int trafficSignals) {
+        Cursor ids = null;
+        Cursor lats = null;
+        Cursor lons = null;
+        Cursor keysVals = null;
+        while (c.more()) {
+            int tag = c.tag();
+            switch (tag >>> 3) {
+                case 1: ids = c.message(); break;
+                case 8: lats = c.message(); break;
+                case 9: lons = c.message(); break;
+                case 10: keysVals = c.message(); break;
+                default: c.skip(tag);
+            }
+        }
+        if (ids == null) return;
+        if (lats == null || lons == null) {
+            throw new IllegalArgumentException("nós densos sem coordenadas");
+        }
+        long id = 0;
+        long lat = 0;
+        long lon = 0;
+        while (ids.more()) {
+            id += ids.sint();
+            lat += lats.sint();
+            lon += lons.sint();
+            boolean signals = false;
+            if (keysVals != null) {
+                while (keysVals.more()) {
+                    int key = (int) keysVals.varint();
+                    if (key == 0) break;
+                    int value = (int) keysVals.varint();
+                    signals |= key == highway && value == trafficSignals;
+                }
+            }
+            block.addNode(id, toE7(latOffset + granularity * lat), toE7(lonOffset + granularity * lon), signals);
+        }
+    }
+
+    private static void decodeWay(Cursor c, Block block, String[] strings, int[] wayKey) {
+        long id = 0;
+        int[] keys = new int[0];
+        int[] vals = new int[0];
+        Cursor refs = null;
+        while (c.more()) {
+            int tag = c.tag();
+            switch (tag >>> 3) {
+                case 1: id = c.varint(); break;
+                case 2: keys = packedInts(c.message()); break;
+                case 3: vals = packedInts(c.message()); break;
+                case 8: refs = c.message(); break;
+                default: c.skip(tag);
+            }
+        }
+        String[] tags = new String[OsmImporter.WAY_KEYS.length];
+        for (int k = 0; k < Math.min(keys.length, vals.length); k++) {
+            if (keys[k] >= strings.length || vals[k] >= strings.length) {
+                throw new IllegalArgumentException("via " + id + " com índice de string inválido");
+            }
+            int key = wayKey[keys[k]];
+            if (key >= 0) tags[key] = strings[vals[k]];
+        }
+        // Vias sem highway nunca viram ruas: descartadas já aqui para não ocupar o bloco
+        if (tags[OsmImporter.TAG_HIGHWAY] == null || refs == null) return;
+        block.beginWay(id, tags);
+        long ref = 0;
+        while (refs.more()) {
+            ref += refs.sint();
+            block.addRef(ref);
+        }
+        block.endWay();
+    }
+
+    private static int[] packedInts(Cursor c) {
+        int[] values = new int[8];
+        int n = 0;
+        while (c.more()) {
+            if (n == values.length) values = Arrays.copyOf(values, n * 2);
+            values[n++] = (int) c.varint();
+        }
+        return Arrays.copyOf(values, n);
+    }
+
+    // Nanograus -> graus * 1e7
+    private static int toE7(long nanoDegrees) {
+        return (int) (nanoDegrees / 100);
+    }
+
+    private static final class Block {
+        long[] nodeIds = new long[0];
+        int[] nodeLat = new int[0];
+        int[] nodeLon = new int[0];
+        boolean[] nodeSignals = new boolean[0];
+        int nodeCount = 0;
+        long[] wayIds = new long[0];
+        int[] wayRefEnd = new int[0];
+        String[] wayTags = new String[0];
+        int wayCount = 0;
+        long[] refs = new long[0];
+        int refCount = 0;
+
+        void addNode(long id, int latE7, int lonE7, boolean signals) {
+            if (nodeCount == nodeIds.length) {
+                int capacity = Math.max(1024, nodeCount * 2);
+                nodeIds = Arrays.copyOf(nodeIds, capacity);
+                nodeLat = Arrays.copyOf(nodeLat, capacity);
+                nodeLon = Arrays.copyOf(nodeLon, capacity);
+                nodeSignals = Arrays.copyOf(nodeSignals, capacity);
+            }
+            nodeIds[nodeCount] = id;
+            nodeLat[nodeCount] = latE7;
+            nodeLon[nodeCount] = lonE7;
+            nodeSignals[nodeCount] = signals;
+            nodeCount++;
+        }
+
+        void beginWay(long id, String[] tags) {
+            int keys = tags.length;
+            if (wayCount == wayIds.length) {
+                int capacity = Math.max(256, wayCount * 2);
+                wayIds = Arrays.copyOf(wayIds, capacity);
+                wayRefEnd = Arrays.copyOf(wayRefEnd, capacity);
+                wayTags = Arrays.copyOf(wayTags, capacity * keys);
+            }
+            wayIds[wayCount] = id;
+            System.arraycopy(tags, 0, wayTags, wayCount * keys, keys);
+        }
+
+        void addRef(long ref) {
+            if (refCount == refs.length) refs = Arrays.copyOf(refs, Math.max(4096, refCount * 2));
+            refs[refCount++] = ref;
+        }
+
+        void endWay() {
+            wayRefEnd[wayCount++] = refCount;
+        }
+    }
+
+    // Leitura de campos protobuf (varint, zigzag, mensagens delimitadas) sobre um trecho do buffer
+    private static final class Cursor {
+        final byte[] buf;
+        int pos;
+        final int end;
+
+        Cursor(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        boolean more() {
+            return pos < end;
+        }
+
+        int tag() {
+            return (int) varint();
+        }
+
+        long varint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= end) throw new IllegalArgumentException("varint truncado");
+                byte b = buf[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return result;
+            }
+            throw new IllegalArgumentException("varint inválido");
+        }
+
+        long sint() {
+            long v = varint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        int length() {
+            long length = varint();
+            if (length < 0 || length > end - pos) throw new IllegalArgumentException("tamanho de campo inválido");
+            return (int) length;
+        }
+
+        Cursor message() {
+            int length = length();
+            Cursor sub = new Cursor(buf, pos, pos + length);
+            pos += length;
+            return sub;
+        }
+
+        String string() {
+            int length = length();
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        void skip(int tag) {
+            switch (tag & 7) {
+                case 0: varint(); break;
+                case 1: pos += 8; break;
+                case 2:
+                    int length = length(); // Antes do "+=": o operando esquerdo seria lido antes do varint
+                    pos += length;
+                    break;
+                case 5: pos += 4; break;
+                default: throw new IllegalArgumentException("tipo de campo protobuf " + (tag & 7));
+            }
+            if (pos > end) throw new IllegalArgumentException("campo truncado");
+        }
+    }
+}
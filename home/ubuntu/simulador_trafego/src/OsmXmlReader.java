@@ -0,0 +1,107 @@
+package com.simuladortrafego;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+// Leitura em fluxo (StAX) de extratos .osm / .osm.gz: nada além do elemento corrente fica em memória
+final class OsmXmlReader {
+
+    void read(Path path, boolean wantNodes, OsmImporter.Sink sink) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try (InputStream in = open(path)) {
+            XMLStreamReader xml = factory.createXMLStreamReader(in, "UTF-8");
+            try {
+                parse(xml, wantNodes, sink);
+            } catch (XMLStreamException | IllegalArgumentException e) {
+                throw new IOException(path.getFileName() + ":" + xml.getLocation().getLineNumber()
+                        + ": XML OSM inválido: " + e.getMessage(), e);
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Não foi possível abrir " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static InputStream open(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+        return path.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    private static void parse(XMLStreamReader xml, boolean wantNodes, OsmImporter.Sink sink) throws XMLStreamException {
+        String[] tags = new String[OsmImporter.WAY_KEYS.length];
+        long[] refs = new long[256];
+        int refCount = 0;
+        boolean inNode = false;
+        boolean inWay = false;
+        long id = 0;
+        int latE7 = 0;
+        int lonE7 = 0;
+        boolean signals = false;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (xml.getLocalName()) {
+                    case "node":
+                        if (!wantNodes) break;
+                        inNode = true;
+                        id = Long.parseLong(attribute(xml, "id"));
+                        latE7 = (int) Math.round(Double.parseDouble(attribute(xml, "lat")) * 1e7);
+                        lonE7 = (int) Math.round(Double.parseDouble(attribute(xml, "lon")) * 1e7);
+                        signals = false;
+                        break;
+                    case "way":
+                        inWay = true;
+                        id = Long.parseLong(attribute(xml, "id"));
+                        refCount = 0;
+                        Arrays.fill(tags, null);
+                        break;
+                    case "nd":
+                        if (!inWay) break;
+                        if (refCount == refs.length) refs = Arrays.copyOf(refs, refCount * 2);
+                        refs[refCount++] = Long.parseLong(attribute(xml, "ref"));
+                        break;
+                    case "tag":
+                        if (inNode) {
+                            signals |= "highway".equals(xml.getAttributeValue(null, "k"))
+                                    && "traffic_signals".equals(xml.getAttributeValue(null, "v"));
+                        } else if (inWay) {
+                            int key = OsmImporter.wayTagIndex(xml.getAttributeValue(null, "k"));
+                            if (key >= 0) tags[key] = xml.getAttributeValue(null, "v");
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = xml.getLocalName();
+                if (inNode && name.equals("node")) {
+                    inNode = false;
+                    sink.node(id, latE7, lonE7, signals);
+                } else if (inWay && name.equals("way")) {
+                    inWay = false;
+                    sink.way(id, refs, refCount, tags);
+                }
+            }
+        }
+    }
+
+    private static String attribute(XMLStreamReader xml, String name) {
+        String value = xml.getAttributeValue(null, name);
+        if (value == null) {
+            throw new IllegalArgumentException("<" + xml.getLocalName() + "> sem atributo '" + name + "'");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,5 @@
+package com.simuladortrafego;
+
+public enum PedestrianSignal {
+    WALK, FLASHING_DONT_WALK, DONT_WALK
+}
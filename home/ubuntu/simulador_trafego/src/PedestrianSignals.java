@@ -0,0 +1,153 @@
+package com.simuladortrafego;
+
+import java.util.Arrays;
+
+// Travessias de pedestres de uma execução headless, agregadas por faixa: só contagens e tempos, sem objeto
+// nem thread por pedestre, então grades com muita travessia custam um punhado de contas por faixa e tick.
+// Chegadas de Poisson a cada tick, com o fluxo de cada faixa guardado como long (RandomStreams, como os
+// veículos do VehiclePool): não dependem da ordem das faixas e a cópia continua com os mesmos sorteios.
+// Quem chega com a faixa em "siga" atravessa na hora; os demais esperam (e apertam a botoeira). Ao abrir,
+// a faixa mostra "siga" e depois "pare piscante" pelo tempo de travessia; enquanto há pedestre na faixa,
+// os veículos que saem pelo ramo dela esperam (SignalController.pedestriansCrossing).
+final class PedestrianSignals {
+    private final NetworkIndex network;
+    private final PedestrianSignal[] signal;
+    private final long[] intervalLeftMs;
+    private final long[] occupiedMs;   // até o último pedestre que entrou terminar a travessia
+    private final int[] waiting;
+    private final boolean[] called;    // alguém apertou a botoeira desde a última abertura
+    private final long[] random;
+    private long stepMs = -1;          // passo para o qual emptyProbability foi calculado
+    private double[] emptyProbability; // e^-λ: nenhuma chegada no passo
+    private double[] arrivalRate;      // λ por passo
+    private long arrived = 0;
+    private long served = 0;
+    private double delaySeconds = 0;   // pedestre·segundo de espera
+
+    PedestrianSignals(NetworkIndex network, RandomStreams streams) {
+        this.network = network;
+        int count = network.crosswalkCount();
+        this.signal = new PedestrianSignal[count];
+        Arrays.fill(signal, PedestrianSignal.DONT_WALK);
+        this.intervalLeftMs = new long[count];
+        this.occupiedMs = new long[count];
+        this.waiting = new int[count];
+        this.called = new boolean[count];
+        this.random = new long[count];
+        for (int c = 0; c < count; c++) {
+            random[c] = streams.seed(RandomStreams.PEDESTRIAN, c);
+        }
+    }
+
+    // Cópia independente (bifurcação do motor)
+    PedestrianSignals(PedestrianSignals source) {
+        this.network = source.network;
+        this.signal = source.signal.clone();
+        this.intervalLeftMs = source.intervalLeftMs.clone();
+        this.occupiedMs = source.occupiedMs.clone();
+        this.waiting = source.waiting.clone();
+        this.called = source.called.clone();
+        this.random = source.random.clone();
+        this.stepMs = source.stepMs;
+        this.emptyProbability = source.emptyProbability;
+        this.arrivalRate = source.arrivalRate;
+        this.arrived = source.arrived;
+        this.served = source.served;
+        this.delaySeconds = source.delaySeconds;
+    }
+
+    // Início do verde de uma fase: abre as faixas compatíveis que não têm botoeira ou foram chamadas e libera
+    // quem esperava. Retorna o verde mínimo que as faixas abertas exigem (siga + pare piscante)
+    long startPhase(int[] crosswalks) {
+        long minGreen = 0;
+        for (int c : crosswalks) {
+            Crosswalk crosswalk = network.crosswalk(c);
+            if (crosswalk.hasPushButton() && !called[c]) continue;
+            signal[c] = PedestrianSignal.WALK;
+            intervalLeftMs[c] = crosswalk.getWalkMs();
+            called[c] = false;
+            if (waiting[c] > 0) {
+                served += waiting[c];
+                waiting[c] = 0;
+                occupiedMs[c] = Math.max(occupiedMs[c], crosswalk.getClearanceMs());
+            }
+            minGreen = Math.max(minGreen, crosswalk.getMinGreenMs());
+        }
+        return minGreen;
+    }
+
+    void step(long dtMs) {
+        if (dtMs != stepMs) rates(dtMs);
+        double dtSeconds = dtMs / 1000.0;
+        for (int c = 0; c < signal.length; c++) {
+            int arrivals = arrivals(c);
+            if (arrivals > 0) {
+                arrived += arrivals;
+                if (signal[c] == PedestrianSignal.WALK) {
+                    served += arrivals;
+                    occupiedMs[c] = Math.max(occupiedMs[c], network.crosswalk(c).getClearanceMs());
+                } else {
+                    waiting[c] += arrivals;
+                    called[c] = true;
+                }
+            }
+            delaySeconds += waiting[c] * dtSeconds;
+            if (occupiedMs[c] > 0) occupiedMs[c] -= dtMs;
+            if (signal[c] != PedestrianSignal.DONT_WALK && (intervalLeftMs[c] -= dtMs) <= 0) {
+                if (signal[c] == PedestrianSignal.WALK) {
+                    signal[c] = PedestrianSignal.FLASHING_DONT_WALK;
+                    intervalLeftMs[c] += network.crosswalk(c).getClearanceMs();
+                } else {
+                    signal[c] = PedestrianSignal.DONT_WALK;
+                }
+            }
+        }
+    }
+
+    private void rates(long dtMs) {
+        stepMs = dtMs;
+        arrivalRate = new double[signal.length];
+        emptyProbability = new double[signal.length];
+        for (int c = 0; c < signal.length; c++) {
+            arrivalRate[c] = network.crosswalk(c).getPedestriansPerHour() * dtMs / 3600000.0;
+            emptyProbability[c] = Math.exp(-arrivalRate[c]);
+        }
+    }
+
+    // Poisson por inversão: com λ pequeno quase sempre um único sorteio e nenhuma conta a mais
+    private int arrivals(int c) {
+        random[c] = RandomStreams.advance(random[c]);
+        double u = RandomStreams.toDouble(RandomStreams.mix64(random[c]));
+        double p = emptyProbability[c];
+        double cumulative = p;
+        int k = 0;
+        while (u >= cumulative && p > 0) {
+            k++;
+            p *= arrivalRate[c] / k;
+            cumulative += p;
+        }
+        return k;
+    }
+
+    boolean blocks(int movement) {
+        int c = network.movementCrosswalk(movement);
+        return c >= 0 && occupiedMs[c] > 0;
+    }
+
+    PedestrianSignal signal(int crosswalk) {
+        return signal[crosswalk];
+    }
+
+    int waiting(int crosswalk) {
+        return waiting[crosswalk];
+    }
+
+    long served() {
+        return served;
+    }
+
+    // Espera média por pedestre chegado (quem ainda espera conta com a espera até agora)
+    double meanDelaySeconds() {
+        return arrived > 0 ? delaySeconds / arrived : 0.0;
+    }
+}
@@ -0,0 +1,89 @@
+package com.simuladortrafego;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Divisão do grid entre processos: cada processo é dono de um conjunto de cruzamentos e dos links
+// que chegam a eles. Os links cujo link anterior pertence a outro processo formam a fronteira,
+// por onde os veículos são transferidos a cada tick.
+public final class ProcessPartition {
+    private final NetworkIndex network;
+    private final int parts;
+    private final int[] intersectionOwner;
+    private final int[][][] importLinks; // [dono][vizinho] -> links do dono alimentados por links do vizinho
+
+    public ProcessPartition(NetworkIndex network, int[] intersectionOwner, int parts) {
+        if (parts <= 0 || intersectionOwner.length != network.intersectionCount()) {
+            throw new IllegalArgumentException("Partição inválida para " + network.intersectionCount() + " cruzamentos.");
+        }
+        for (int owner : intersectionOwner) {
+            if (owner < 0 || owner >= parts) {
+                throw new IllegalArgumentException("Processo dono fora do intervalo: " + owner);
+            }
+        }
+        this.network = network;
+        this.parts = parts;
+        this.intersectionOwner = intersectionOwner.clone();
+        List<List<List<Integer>>> imports = new ArrayList<>();
+        for (int p = 0; p < parts; p++) {
+            List<List<Integer>> perPeer = new ArrayList<>();
+            for (int q = 0; q < parts; q++) perPeer.add(new ArrayList<>());
+            imports.add(perPeer);
+        }
+        boolean[][] seen = new boolean[parts][network.linkCount()];
+        for (int l = 0; l < network.linkCount(); l++) {
+            int from = linkOwner(l);
+            for (int k = 0; k < network.exitCount(l); k++) {
+                int next = network.exitNextLink(l, k);
+                if (next < 0) continue;
+                int to = linkOwner(next);
+                if (to != from && !seen[from][next]) {
+                    seen[from][next] = true;
+                    imports.get(to).get(from).add(next);
+                }
+            }
+        }
+        this.importLinks = new int[parts][parts][];
+        for (int p = 0; p < parts; p++) {
+            for (int q = 0; q < parts; q++) {
+                List<Integer> links = imports.get(p).get(q);
+                importLinks[p][q] = new int[links.size()];
+                for (int k = 0; k < links.size(); k++) importLinks[p][q][k] = links.get(k);
+            }
+        }
+    }
+
+    // Faixas contíguas pela ordem de criação dos cruzamentos (na malha Manhattan, blocos de linhas)
+    public static ProcessPartition strips(NetworkIndex network, int parts) {
+        int n = network.intersectionCount();
+        if (parts > n) {
+            throw new IllegalArgumentException("Mais processos (" + parts + ") que cruzamentos (" + n + ").");
+        }
+        int[] owner = new int[n];
+        for (int i = 0; i < n; i++) {
+            owner[i] = (int) ((long) i * parts / n);
+        }
+        return new ProcessPartition(network, owner, parts);
+    }
+
+    public int parts() {
+        return parts;
+    }
+
+    public int intersectionOwner(int i) {
+        return intersectionOwner[i];
+    }
+
+    public int linkOwner(int link) {
+        return intersectionOwner[network.linkIntersection(link)];
+    }
+
+    // Links de "owner" que recebem veículos de "peer"; "owner" informa a "peer" o espaço livre neles
+    public int[] importLinks(int owner, int peer) {
+        return importLinks[owner][peer];
+    }
+
+    public boolean isNeighbour(int a, int b) {
+        return a != b && (importLinks[a][b].length > 0 || importLinks[b][a].length > 0);
+    }
+}
@@ -0,0 +1,160 @@
+package com.simuladortrafego;
+
+// Quantis aproximados em fluxo, no estilo DDSketch: cada valor positivo cai no balde ceil(log_γ(x)), com
+// γ = (1 + α) / (1 - α), então qualquer quantil sai com erro relativo de no máximo α, seja qual for a
+// distribuição. Guarda só contagens por balde (vetor denso entre o menor e o maior balde vistos); acima de
+// maxBins baldes os menores são somados ao primeiro mantido, o que limita a memória e só perde precisão
+// nos quantis mais baixos. Valores até MIN_VALUE (esperas nulas, por exemplo) contam num balde à parte.
+public final class QuantileSketch {
+    public static final double DEFAULT_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BINS = 1024;
+    static final double MIN_VALUE = 1e-3;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final int maxBins;
+    private int[] counts = new int[0];
+    private int offset = 0;     // índice do balde em counts[0]
+    private long zeroCount = 0;
+    private long count = 0;
+    private double sum = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_ACCURACY, DEFAULT_MAX_BINS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Precisão relativa deve estar entre 0 e 1: " + relativeAccuracy);
+        }
+        if (maxBins < 1) {
+            throw new IllegalArgumentException("Número máximo de baldes deve ser positivo: " + maxBins);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+        this.maxBins = maxBins;
+    }
+
+    public QuantileSketch(QuantileSketch source) {
+        this.relativeAccuracy = source.relativeAccuracy;
+        this.logGamma = source.logGamma;
+        this.maxBins = source.maxBins;
+        this.counts = source.counts.clone();
+        this.offset = source.offset;
+        this.zeroCount = source.zeroCount;
+        this.count = source.count;
+        this.sum = source.sum;
+        this.min = source.min;
+        this.max = source.max;
+    }
+
+    public void add(double value) {
+        if (value < 0 || Double.isNaN(value)) {
+            throw new IllegalArgumentException("Valor inválido para o sketch: " + value);
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value <= MIN_VALUE) {
+            zeroCount++;
+        } else {
+            addToBin((int) Math.ceil(Math.log(value) / logGamma), 1);
+        }
+    }
+
+    // Soma outro sketch com a mesma precisão (por exemplo, de outra réplica)
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Sketches com precisões diferentes: " + relativeAccuracy
+                    + " e " + other.relativeAccuracy);
+        }
+        for (int k = 0; k < other.counts.length; k++) {
+            if (other.counts[k] > 0) addToBin(other.offset + k, other.counts[k]);
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    private void addToBin(int index, int n) {
+        if (counts.length == 0) {
+            counts = new int[Math.min(8, maxBins)];
+            offset = index - counts.length / 2;
+        } else if (index < offset || index >= offset + counts.length) {
+            extend(index);
+        }
+        if (index < offset) index = offset; // Abaixo da faixa mantida: vai para o menor balde
+        counts[index - offset] += n;
+    }
+
+    // Cresce o vetor até cobrir o índice, com folga do lado em que cresceu; se passar de maxBins, mantém os
+    // baldes mais altos e soma os baixos ao primeiro mantido
+    private void extend(int index) {
+        int low = Math.min(offset, index);
+        int high = Math.max(offset + counts.length - 1, index);
+        int width = Math.max(high - low + 1, Math.min(maxBins, counts.length * 2));
+        if (width > maxBins) {
+            width = maxBins;
+            low = high - width + 1;
+        } else if (index < offset) {
+            low = high - width + 1;
+        }
+        int[] grown = new int[width];
+        for (int k = 0; k < counts.length; k++) {
+            grown[Math.max(offset + k, low) - low] += counts[k];
+        }
+        counts = grown;
+        offset = low;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count > 0 ? sum / count : 0.0;
+    }
+
+    public double getMin() {
+        return count > 0 ? min : 0.0;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : 0.0;
+    }
+
+    // Quantil q em [0, 1]; 0 sem amostras
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantil fora de [0, 1]: " + q);
+        }
+        if (count == 0) return 0.0;
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) return Math.min(min, MIN_VALUE);
+        long seen = zeroCount;
+        for (int k = 0; k < counts.length; k++) {
+            seen += counts[k];
+            if (seen > rank) {
+                // Centro do balde (γ^(i-1), γ^i] na métrica relativa, limitado ao que foi observado
+                double value = 2 * Math.exp((offset + k) * logGamma) / (1 + Math.exp(logGamma));
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.2f p90=%.2f p99=%.2f max=%.2f", count, quantile(0.5), quantile(0.9),
+                quantile(0.99), getMax());
+    }
+}
@@ -0,0 +1,85 @@
+package com.simuladortrafego;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+// Semente mestra -> fluxos aleatórios independentes por entidade (tipo, id). O fluxo de uma entidade depende
+// só da semente e da sua identidade, nunca da ordem em que as entidades são processadas nem do número de
+// threads: mesma entrada e mesma semente dão a mesma execução, bit a bit.
+// Objetos de vida longa (Car, gerador do Simulator, demanda do TickEngine) recebem um SplittableRandom; os
+// veículos do VehiclePool guardam só o estado de 64 bits no próprio registro e avançam com o mesmo passo
+// SplitMix64 do SplittableRandom, para que criar um veículo continue sem alocar.
+public final class RandomStreams {
+    public static final long DEFAULT_SEED = 42L; // Mesma semente padrão dos arquivos de cenário
+    static final long DEMAND = 1;
+    static final long VEHICLE = 2;
+    static final long CAR = 3;
+    static final long SPAWNER = 4;
+    static final long PEDESTRIAN = 5;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; // Incremento do SplittableRandom
+
+    private final long masterSeed;
+
+    public RandomStreams(long masterSeed) {
+        this.masterSeed = masterSeed;
+    }
+
+    public long getMasterSeed() {
+        return masterSeed;
+    }
+
+    public SplittableRandom stream(long kind, long id) {
+        return new SplittableRandom(seed(kind, id));
+    }
+
+    // Mesma sequência de stream(kind, id), mas copiável (bifurcação do motor)
+    public Stream copyableStream(long kind, long id) {
+        return new Stream(seed(kind, id));
+    }
+
+    // Estado inicial do fluxo (kind, id); ids vizinhos caem em estados sem relação entre si
+    public long seed(long kind, long id) {
+        return mix64(mix64(masterSeed + kind * GOLDEN_GAMMA) + (id + 1) * GOLDEN_GAMMA);
+    }
+
+    // Um passo do fluxo guardado como long: o novo estado é state + GOLDEN_GAMMA e o valor sorteado é
+    // mix64 do novo estado, exatamente como SplittableRandom.nextLong
+    static long advance(long state) {
+        return state + GOLDEN_GAMMA;
+    }
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Valor sorteado -> double em [0, 1), como SplittableRandom.nextDouble
+    static double toDouble(long bits) {
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+
+    // SplitMix64 com estado exposto à cópia: uma cópia continua exatamente com os sorteios que a original faria
+    public static final class Stream implements RandomGenerator {
+        private long state;
+
+        Stream(long seed) {
+            this.state = seed;
+        }
+
+        public Stream(Stream source) {
+            this.state = source.state;
+        }
+
+        @Override
+        public long nextLong() {
+            state = advance(state);
+            return mix64(state);
+        }
+    }
+
+    // Valor sorteado -> inteiro em [0, bound) pelos 32 bits altos (viés desprezível para poucas saídas)
+    static int toInt(long bits, int bound) {
+        return (int) (((bits >>> 32) * bound) >>> 32);
+    }
+}
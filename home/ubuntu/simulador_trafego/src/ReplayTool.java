@@ -0,0 +1,201 @@
+package com.simuladortrafego;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Gravação e reprodução de execuções do TickEngine por EventJournal, para depurar casos raros:
+//   gravar <diário> <padrao|NxM|extrato OSM|arquivo de cenário> [MICRO|MESO|HYBRID] [demanda/h] [semente] [ticks]
+//   reproduzir <diário> [tick]   sem tick, reproduz até o fim e confere o resultado gravado;
+//                                com tick, avança direto até ele e abre o modo passo a passo
+//   listar <diário>              imprime os eventos (inclusive os gravados pelo Simulator com threads)
+// O descritor do diário guarda os argumentos de "gravar", então a reprodução reconstrói o mesmo cenário.
+public class ReplayTool {
+    static final String THREADED_DESCRIPTOR = "threads"; // Diários do Simulator: só listar
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: ReplayTool gravar <diário> <padrao|NxM|extrato OSM|arquivo de cenário>"
+                    + " [MICRO|MESO|HYBRID] [demanda/h] [semente] [ticks]");
+            System.err.println("     ReplayTool reproduzir <diário> [tick]");
+            System.err.println("     ReplayTool listar <diário>");
+            System.exit(2);
+        }
+        Path path = Paths.get(args[1]);
+        switch (args[0]) {
+            case "gravar":
+                if (args.length < 3) {
+                    System.err.println("Uso: ReplayTool gravar <diário> <padrao|NxM|extrato OSM|arquivo de cenário> ...");
+                    System.exit(2);
+                }
+                record(path, Arrays.copyOfRange(args, 2, args.length));
+                break;
+            case "reproduzir":
+                replay(path, args.length > 2 ? Long.parseLong(args[2]) : -1);
+                break;
+            case "listar":
+                list(path);
+                break;
+            default:
+                throw new IllegalArgumentException("Comando desconhecido: " + args[0]);
+        }
+    }
+
+    // Mesmos argumentos e padrões do ReproducibilityCheck
+    static Scenario buildScenario(String[] args) throws IOException {
+        if (args[0].equals(THREADED_DESCRIPTOR)) {
+            throw new IllegalArgumentException("Diário do Simulator com threads não pode ser reproduzido; use listar.");
+        }
+        return ReproducibilityCheck.buildScenario(args);
+    }
+
+    private static void record(Path path, String[] descriptor) throws IOException {
+        Scenario scenario = buildScenario(descriptor);
+        TickEngine engine = new TickEngine(scenario);
+        long start = System.currentTimeMillis();
+        try (EventJournal journal = EventJournal.create(path, scenario.getSeed(), descriptor)) {
+            engine.enableJournal(journal);
+            ReplicationResult result = engine.run();
+            journal.append(EventJournal.END, engine.getTick(), result.getCompleted(), result.getSpawned(),
+                    result.getInNetwork());
+            System.out.println("Gravados " + journal.recordCount() + " eventos de " + engine.getTick() + " ticks em "
+                    + path + " (" + (System.currentTimeMillis() - start) + " ms).");
+            printResult(result);
+        }
+    }
+
+    private static void replay(Path path, long targetTick) throws IOException {
+        try (EventJournal.Reader reader = EventJournal.open(path)) {
+            Scenario scenario = buildScenario(reader.getDescriptor());
+            TickEngine engine = new TickEngine(scenario);
+            engine.replayFrom(reader);
+            long end = targetTick < 0 ? scenario.getDurationTicks() : Math.min(targetTick, scenario.getDurationTicks());
+            long start = System.currentTimeMillis();
+            while (engine.getTick() < end) {
+                engine.step();
+            }
+            System.out.println("Reproduzido até o tick " + engine.getTick() + " ("
+                    + (System.currentTimeMillis() - start) + " ms).");
+            if (targetTick < 0) {
+                checkEnd(engine, reader);
+            } else {
+                stepInteractively(engine);
+            }
+        }
+    }
+
+    // O registro END guarda o resultado da gravação
+    private static void checkEnd(TickEngine engine, EventJournal.Reader reader) {
+        ReplicationResult result = engine.result();
+        printResult(result);
+        if (reader.type() != EventJournal.END) {
+            throw new IllegalStateException("Diário sem registro final; próximo evento: " + reader.describeCurrent());
+        }
+        if (reader.entity() != result.getCompleted() || reader.a() != result.getSpawned()
+                || reader.b() != result.getInNetwork()) {
+            throw new IllegalStateException("Resultado divergente da gravação: " + reader.describeCurrent());
+        }
+        System.out.println("Resultado idêntico ao gravado.");
+    }
+
+    private static void printResult(ReplicationResult result) {
+        System.out.printf("gerados=%d concluídos=%d na rede=%d atraso médio=%.3f s%n", result.getSpawned(),
+                result.getCompleted(), result.getInNetwork(), result.getMeanDelaySeconds());
+    }
+
+    // Comandos: p [n] avança n ticks (1), t <tick> avança até o tick, v <id> mostra um veículo e passa a
+    // segui-lo (reaparece a cada avanço até sair da rede), s mostra o estado e o próximo evento do diário, q sai
+    private static void stepInteractively(TickEngine engine) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        printStatus(engine);
+        long followed = -1; // handle do veículo seguido: o slot pode ser reaproveitado depois que ele sai
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] command = line.trim().split("\\s+");
+            try {
+                switch (command[0]) {
+                    case "p":
+                        long steps = command.length > 1 ? Long.parseLong(command[1]) : 1;
+                        for (long k = 0; k < steps; k++) engine.step();
+                        printStatus(engine);
+                        followed = printFollowed(engine, followed);
+                        break;
+                    case "t":
+                        long target = Long.parseLong(command[1]);
+                        while (engine.getTick() < target) engine.step();
+                        printStatus(engine);
+                        followed = printFollowed(engine, followed);
+                        break;
+                    case "v":
+                        int id = Integer.parseInt(command[1]);
+                        followed = engine.findVehicle(id);
+                        if (followed >= 0) {
+                            printVehicle(engine, engine.getPool().slotOf(followed));
+                        } else {
+                            System.out.println(engine.isWaiting(id) ? "Veículo " + id + " esperando vaga na origem."
+                                    : "Veículo " + id + " não está na simulação.");
+                        }
+                        break;
+                    case "s":
+                        printStatus(engine);
+                        break;
+                    case "q":
+                        return;
+                    case "":
+                        break;
+                    default:
+                        System.out.println("Comandos: p [n], t <tick>, v <id>, s, q");
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                System.out.println("Comando inválido: " + line);
+            }
+        }
+    }
+
+    private static void printStatus(TickEngine engine) {
+        ReplicationResult result = engine.result();
+        System.out.println("tick " + engine.getTick() + ": gerados=" + result.getSpawned() + " concluídos="
+                + result.getCompleted() + " na rede=" + result.getInNetwork() + "; próximo evento: "
+                + engine.getReplay().describeCurrent());
+    }
+
+    private static long printFollowed(TickEngine engine, long handle) {
+        if (handle < 0) return handle;
+        VehiclePool pool = engine.getPool();
+        if (!pool.isValid(handle)) {
+            System.out.println("O veículo seguido saiu da rede.");
+            return -1;
+        }
+        printVehicle(engine, pool.slotOf(handle));
+        return handle;
+    }
+
+    private static void printVehicle(TickEngine engine, int v) {
+        VehiclePool pool = engine.getPool();
+        NetworkIndex network = engine.getNetwork();
+        int link = pool.link(v);
+        String where = link < 0 ? "fora de um link"
+                : network.street(network.linkStreet(link)).getId() + " -> "
+                + network.intersection(network.linkIntersection(link)).getId();
+        System.out.printf("veículo %d (%s): %s, progresso %.0f%%, %.1f m/s, saída %d, desde o tick %d%n",
+                pool.vehicleId(v), VehicleClass.of(pool.vehicleClass(v)).getKey(), where,
+                engine.linkProgress(v) * 100, pool.speed(v), pool.nextExit(v), pool.spawnTick(v));
+    }
+
+    // Uma linha por evento; diários do Simulator usam índices de Grid.getStreets()/getIntersections()
+    private static void list(Path path) throws IOException {
+        try (EventJournal.Reader reader = EventJournal.open(path)) {
+            System.out.println("semente " + reader.getSeed() + ", cenário " + Arrays.toString(reader.getDescriptor()));
+            long count = 0;
+            for (; !reader.atEnd(); reader.advance()) {
+                System.out.println(reader.describeCurrent());
+                count++;
+            }
+            System.out.println(count + " eventos.");
+        }
+    }
+}
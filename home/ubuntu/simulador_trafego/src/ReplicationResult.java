@@ -0,0 +1,114 @@
+package com.simuladortrafego;
+
+public final class ReplicationResult {
+    private final long seed;
+    private final int spawned;
+    private final int completed;
+    private final int inNetwork;
+    private final double meanDelaySeconds;
+    private final double throughputPerHour;
+    private final long pedestriansServed;
+    private final double meanPedestrianDelaySeconds;
+    private final boolean emissions;  // os totais abaixo só valem se o motor acumulou emissões
+    private final double co2Grams;
+    private final double noxGrams;
+    private final double fuelLiters;
+
+    public ReplicationResult(long seed, int spawned, int completed, int inNetwork,
+                             double meanDelaySeconds, double throughputPerHour) {
+        this(seed, spawned, completed, inNetwork, meanDelaySeconds, throughputPerHour, 0, 0.0);
+    }
+
+    public ReplicationResult(long seed, int spawned, int completed, int inNetwork,
+                             double meanDelaySeconds, double throughputPerHour,
+                             long pedestriansServed, double meanPedestrianDelaySeconds) {
+        this(seed, spawned, completed, inNetwork, meanDelaySeconds, throughputPerHour, pedestriansServed,
+                meanPedestrianDelaySeconds, false, 0, 0, 0);
+    }
+
+    private ReplicationResult(long seed, int spawned, int completed, int inNetwork,
+                              double meanDelaySeconds, double throughputPerHour,
+                              long pedestriansServed, double meanPedestrianDelaySeconds,
+                              boolean emissions, double co2Grams, double noxGrams, double fuelLiters) {
+        this.seed = seed;
+        this.spawned = spawned;
+        this.completed = completed;
+        this.inNetwork = inNetwork;
+        this.meanDelaySeconds = meanDelaySeconds;
+        this.throughputPerHour = throughputPerHour;
+        this.pedestriansServed = pedestriansServed;
+        this.meanPedestrianDelaySeconds = meanPedestrianDelaySeconds;
+        this.emissions = emissions;
+        this.co2Grams = co2Grams;
+        this.noxGrams = noxGrams;
+        this.fuelLiters = fuelLiters;
+    }
+
+    public ReplicationResult withEmissions(double co2, double nox, double fuel) {
+        return new ReplicationResult(seed, spawned, completed, inNetwork, meanDelaySeconds, throughputPerHour,
+                pedestriansServed, meanPedestrianDelaySeconds, true, co2, nox, fuel);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getSpawned() {
+        return spawned;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public int getInNetwork() {
+        return inNetwork;
+    }
+
+    public double getMeanDelaySeconds() {
+        return meanDelaySeconds;
+    }
+
+    public double getThroughputPerHour() {
+        return throughputPerHour;
+    }
+
+    public long getPedestriansServed() {
+        return pedestriansServed;
+    }
+
+    public double getMeanPedestrianDelaySeconds() {
+        return meanPedestrianDelaySeconds;
+    }
+
+    public boolean hasEmissions() {
+        return emissions;
+    }
+
+    public double getCo2Grams() {
+        return co2Grams;
+    }
+
+    public double getNoxGrams() {
+        return noxGrams;
+    }
+
+    public double getFuelLiters() {
+        return fuelLiters;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicationResult{" +
+                "seed=" + seed +
+                ", spawned=" + spawned +
+                ", completed=" + completed +
+                ", inNetwork=" + inNetwork +
+                ", meanDelaySeconds=" + String.format("%.2f", meanDelaySeconds) +
+                ", throughputPerHour=" + String.format("%.1f", throughputPerHour) +
+                (pedestriansServed > 0 ? ", pedestriansServed=" + pedestriansServed + ", meanPedestrianDelaySeconds="
+                        + String.format("%.2f", meanPedestrianDelaySeconds) : "") +
+                (emissions ? String.format(", co2Kg=%.2f, noxGrams=%.1f, fuelLiters=%.2f", co2Grams / 1000, noxGrams, fuelLiters) : "") +
+                '}';
+    }
+}
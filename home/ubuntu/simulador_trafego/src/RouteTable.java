@@ -0,0 +1,108 @@
+package com.simuladortrafego;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Próximo salto de menor tempo de fluxo livre (comprimento) de cada link até cada rua de destino,
+// usando só os movimentos que as fases liberam.
+// Calculado uma vez (Dijkstra reverso por destino) e compartilhado, somente leitura, entre as réplicas.
+public final class RouteTable {
+    private final NetworkIndex network;
+    private final int[] destinations;
+    private final int[] destinationSlot; // rua -> posição em destinations, ou -1
+    private final int[][] nextExit;      // slot do destino -> link -> índice da saída, ou -1 se inalcançável
+
+    public RouteTable(NetworkIndex network, int[] destinationStreets) {
+        this(network, destinationStreets, null, null);
+    }
+
+    // Mesmos destinos de "base", evitando as ruas fechadas (closedStreets[s], ou null para nenhuma)
+    // e os links com entrada proibida (closedLinks[l], ou null para nenhum)
+    public RouteTable(RouteTable base, boolean[] closedStreets, boolean[] closedLinks) {
+        this(base.network, base.destinations, closedStreets, closedLinks);
+    }
+
+    private RouteTable(NetworkIndex network, int[] destinationStreets, boolean[] closedStreets, boolean[] closedLinks) {
+        this.network = network;
+        this.destinations = destinationStreets.clone();
+        this.destinationSlot = new int[network.streetCount()];
+        Arrays.fill(destinationSlot, -1);
+        for (int d = 0; d < destinations.length; d++) {
+            destinationSlot[destinations[d]] = d;
+        }
+        int links = network.linkCount();
+        List<List<int[]>> predecessors = new ArrayList<>(links); // link -> {link anterior, saída usada}
+        for (int l = 0; l < links; l++) predecessors.add(new ArrayList<>());
+        for (int l = 0; l < links; l++) {
+            for (int k = 0; k < network.exitCount(l); k++) {
+                if (!usable(l, k, closedStreets, closedLinks)) continue;
+                int next = network.exitNextLink(l, k);
+                if (next >= 0) predecessors.get(next).add(new int[] {l, k});
+            }
+        }
+        this.nextExit = new int[destinations.length][];
+        for (int d = 0; d < destinations.length; d++) {
+            if (closedStreets != null && closedStreets[destinations[d]]) { // Destino fechado: inalcançável
+                nextExit[d] = new int[links];
+                Arrays.fill(nextExit[d], -1);
+            } else {
+                nextExit[d] = shortestPathsTo(destinations[d], predecessors, closedStreets, closedLinks);
+            }
+        }
+    }
+
+    // Movimento que alguma fase libera e que não entra em rua fechada nem em sentido proibido
+    private boolean usable(int l, int k, boolean[] closedStreets, boolean[] closedLinks) {
+        if (!network.exitServed(l, k)) return false;
+        if (closedStreets != null && closedStreets[network.exitStreet(l, k)]) return false;
+        int next = network.exitNextLink(l, k);
+        return closedLinks == null || next < 0 || !closedLinks[next];
+    }
+
+    private int[] shortestPathsTo(int destinationStreet, List<List<int[]>> predecessors, boolean[] closedStreets,
+                                  boolean[] closedLinks) {
+        int links = network.linkCount();
+        double[] cost = new double[links];
+        int[] exit = new int[links];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        Arrays.fill(exit, -1);
+        PriorityQueue<double[]> frontier = new PriorityQueue<>((x, y) -> Double.compare(x[0], y[0]));
+        for (int l = 0; l < links; l++) {
+            for (int k = 0; k < network.exitCount(l); k++) {
+                if (network.exitStreet(l, k) == destinationStreet && usable(l, k, closedStreets, closedLinks)) {
+                    cost[l] = 0;
+                    exit[l] = k;
+                    frontier.add(new double[] {0, l});
+                    break;
+                }
+            }
+        }
+        while (!frontier.isEmpty()) {
+            double[] top = frontier.poll();
+            int m = (int) top[1];
+            if (top[0] > cost[m]) continue;
+            double viaM = cost[m] + network.linkLength(m);
+            for (int[] pred : predecessors.get(m)) {
+                int l = pred[0];
+                if (viaM < cost[l]) {
+                    cost[l] = viaM;
+                    exit[l] = pred[1];
+                    frontier.add(new double[] {viaM, l});
+                }
+            }
+        }
+        return exit;
+    }
+
+    public boolean hasDestination(int street) {
+        return street >= 0 && destinationSlot[street] >= 0;
+    }
+
+    // Índice da saída de "link" no caminho mais curto até a rua de destino (-1 se inalcançável)
+    public int nextExit(int link, int destinationStreet) {
+        int slot = destinationSlot[destinationStreet];
+        return slot < 0 ? -1 : nextExit[slot][link];
+    }
+}
@@ -0,0 +1,161 @@
+package com.simuladortrafego;
+
+// Uma célula da matriz de cenários: grid (já compilado), demanda, política de semáforos e semente.
+// Imutável: réplicas derivam novas sementes com withSeed sem tocar no grid compartilhado.
+public final class Scenario {
+    private final String name;
+    private final NetworkIndex network;
+    private final DemandModel demand;
+    private final SignalPolicy signalPolicy;
+    private final long durationTicks;
+    private final int maxVehicles;
+    private final long seed;
+    private final EngineMode engineMode;
+    private final ZonePartition microZone; // só usada no modo HYBRID
+    private final double[] classShares;    // participação por VehicleClass.ordinal(); null: só carros
+    private final boolean[] busStops;      // ruas com ponto de ônibus; null: um ponto no meio de cada link
+    private final boolean emissions;       // o motor acumula emissões (EmissionLedger)
+
+    public Scenario(String name, NetworkIndex network, DemandModel demand, SignalPolicy signalPolicy,
+                    long durationTicks, int maxVehicles, long seed) {
+        this(name, network, demand, signalPolicy, durationTicks, maxVehicles, seed, EngineMode.MICRO);
+    }
+
+    public Scenario(String name, NetworkIndex network, DemandModel demand, SignalPolicy signalPolicy,
+                    long durationTicks, int maxVehicles, long seed, EngineMode engineMode) {
+        this(name, network, demand, signalPolicy, durationTicks, maxVehicles, seed, engineMode, null);
+    }
+
+    public Scenario(String name, NetworkIndex network, DemandModel demand, SignalPolicy signalPolicy,
+                    long durationTicks, int maxVehicles, long seed, EngineMode engineMode, ZonePartition microZone) {
+        this(name, network, demand, signalPolicy, durationTicks, maxVehicles, seed, engineMode, microZone, null, null, false);
+    }
+
+    private Scenario(String name, NetworkIndex network, DemandModel demand, SignalPolicy signalPolicy,
+                     long durationTicks, int maxVehicles, long seed, EngineMode engineMode, ZonePartition microZone,
+                     double[] classShares, boolean[] busStops, boolean emissions) {
+        if (durationTicks <= 0 || maxVehicles <= 0) {
+            throw new IllegalArgumentException("Cenário inválido: duração e máximo de veículos devem ser positivos.");
+        }
+        if (engineMode == EngineMode.HYBRID && microZone == null) {
+            throw new IllegalArgumentException("Modo HYBRID exige uma zona microscópica.");
+        }
+        this.name = name;
+        this.network = network;
+        this.demand = demand;
+        this.signalPolicy = signalPolicy;
+        this.durationTicks = durationTicks;
+        this.maxVehicles = maxVehicles;
+        this.seed = seed;
+        this.engineMode = engineMode;
+        this.microZone = microZone;
+        this.classShares = classShares;
+        this.busStops = busStops;
+        this.emissions = emissions;
+    }
+
+    public Scenario withSeed(long newSeed) {
+        return new Scenario(name, network, demand, signalPolicy, durationTicks, maxVehicles, newSeed, engineMode, microZone,
+                classShares, busStops, emissions);
+    }
+
+    public Scenario withEngineMode(EngineMode mode) {
+        return new Scenario(name, network, demand, signalPolicy, durationTicks, maxVehicles, seed, mode, microZone,
+                classShares, busStops, emissions);
+    }
+
+    public Scenario withHybridZone(ZonePartition zone) {
+        return new Scenario(name, network, demand, signalPolicy, durationTicks, maxVehicles, seed, EngineMode.HYBRID, zone,
+                classShares, busStops, emissions);
+    }
+
+    // Mistura de classes (participações por ordinal de VehicleClass, normalizadas aqui; null = só carros) e
+    // ruas com ponto de ônibus (por índice de rua; null = um ponto em cada link)
+    public Scenario withVehicleClasses(double[] shares, boolean[] busStopStreets) {
+        double[] normalized = null;
+        if (shares != null) {
+            if (shares.length != VehicleClass.values().length) {
+                throw new IllegalArgumentException("Esperada uma participação por classe de veículo.");
+            }
+            double total = 0;
+            for (double share : shares) {
+                if (share < 0) throw new IllegalArgumentException("Participação negativa na mistura de veículos.");
+                total += share;
+            }
+            if (total <= 0) throw new IllegalArgumentException("Mistura de veículos vazia.");
+            normalized = new double[shares.length];
+            for (int c = 0; c < shares.length; c++) normalized[c] = shares[c] / total;
+        }
+        if (busStopStreets != null && busStopStreets.length != network.streetCount()) {
+            throw new IllegalArgumentException("Pontos de ônibus devem cobrir todas as ruas da rede.");
+        }
+        return new Scenario(name, network, demand, signalPolicy, durationTicks, maxVehicles, seed, engineMode, microZone,
+                normalized, busStopStreets == null ? null : busStopStreets.clone(), emissions);
+    }
+
+    public Scenario withEmissions(boolean track) {
+        return new Scenario(name, network, demand, signalPolicy, durationTicks, maxVehicles, seed, engineMode, microZone,
+                classShares, busStops, track);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public NetworkIndex getNetwork() {
+        return network;
+    }
+
+    public DemandModel getDemand() {
+        return demand;
+    }
+
+    public SignalPolicy getSignalPolicy() {
+        return signalPolicy;
+    }
+
+    public long getDurationTicks() {
+        return durationTicks;
+    }
+
+    public int getMaxVehicles() {
+        return maxVehicles;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public EngineMode getEngineMode() {
+        return engineMode;
+    }
+
+    public ZonePartition getMicroZone() {
+        return microZone;
+    }
+
+    // Cópias: o cenário é imutável
+    public double[] getClassShares() {
+        return classShares == null ? null : classShares.clone();
+    }
+
+    public boolean[] getBusStops() {
+        return busStops == null ? null : busStops.clone();
+    }
+
+    public boolean tracksEmissions() {
+        return emissions;
+    }
+
+    @Override
+    public String toString() {
+        return "Scenario{" +
+                "name='" + name + '\'' +
+                ", peakDemandPerHour=" + demand.getPeakRatePerHour() +
+                ", signalPolicy=" + signalPolicy +
+                ", durationTicks=" + durationTicks +
+                ", seed=" + seed +
+                ", engineMode=" + engineMode +
+                '}';
+    }
+}
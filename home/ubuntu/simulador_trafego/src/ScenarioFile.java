@@ -0,0 +1,602 @@
+package com.simuladortrafego;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Cenário declarativo em arquivo texto, lido linha a linha (sem carregar o arquivo inteiro).
+// Uma diretiva por linha, "#" inicia comentário, parâmetros no formato chave=valor:
+//
+//   cenario nome=pico duracao=2h semente=42 modo=MICRO politica=FIXED max=1000 inicio=7:30 emissoes=sim
+//   rua S1 comprimento=100 capacidade=10 faixas=1 maodupla
+//   rua S2 comprimento=80 capacidade=5 sentido=SOUTH
+//   cruzamento I1 fases=NORTH,WEST
+//   fase I3 protegidos=NORTH:LEFT,SOUTH:LEFT          (fase por movimentos de giro, uma linha por fase)
+//   fase I3 protegidos=NORTH:THROUGH,SOUTH:THROUGH permitidos=NORTH:RIGHT,EAST:RIGHT
+//   conecta S1 I1 WEST chegada        (ou "saida")
+//   semaforo I1 NORTH verde=15s amarelo=3s
+//   pedestres I1 WEST 600 botao caminhe=7s travessia=12
+//                                      (faixa na aproximação, pedestres/h; "botao": só abre quando chamada;
+//                                       travessia em metros define o "pare piscante")
+//   detector D1 S1 distancia=30 comprimento=2 cruzamento=I2
+//                                      (laço virtual a 30 m da linha de retenção, no sentido que chega a I2;
+//                                       "cruzamento" só é obrigatório em rua de mão dupla)
+//   matriz pendular perfil=diautil     (plano, diautil ou "<segundos>:<m1>,<m2>,...")
+//   viagens pendular S2 S5 900         (destino "*" = rota aleatória; veículos por hora no pico)
+//   veiculos carro=0.8 onibus=0.05 caminhao=0.05 bicicleta=0.05 emergencia=0.05
+//                                      (emergência só no Simulator com threads; nos motores headless vira carro)
+//   parada S1 S2                       (ruas com ponto de ônibus; sem nenhuma, há um ponto em cada link)
+//   geracao intervalo=5s max=10        (política de criação de carros do Simulator com threads)
+//
+// Ruas e cruzamentos precisam ser declarados antes de serem referenciados; as fases (na linha do
+// cruzamento ou nas linhas "fase") vêm antes das conexões, para que nenhum semáforo seja acionado durante
+// a carga. As fases por movimento são validadas contra a matriz de conflitos ao fim do arquivo.
+// Erros de validação trazem "arquivo:linha".
+public final class ScenarioFile {
+    private static final String EMERGENCY_KEY = "emergencia";
+
+    private final String source;
+    private final Grid grid = new Grid();
+    private final Map<String, OdMatrix> matrices = new LinkedHashMap<>();
+    private final Map<String, Double> vehicleMix = new LinkedHashMap<>();
+    private final Map<String, List<SignalPhase>> movementPhases = new LinkedHashMap<>();
+    private final Map<String, Integer> phaseLines = new LinkedHashMap<>(); // Cruzamento -> linha da primeira "fase"
+    private final List<String> busStops = new ArrayList<>();
+    private String name = "cenario";
+    private long durationTicks = 1200;
+    private long seed = 42L;
+    private EngineMode engineMode = EngineMode.MICRO;
+    private SignalPolicy signalPolicy = SignalPolicy.FIXED;
+    private int maxVehicles = 1000000;
+    private double startSecondOfDay = 0;
+    private long spawnIntervalMs = 5000;
+    private int maxThreadedCars = 10;
+    private boolean emissions = false;
+    private int lineNumber = 0;
+    private int elements = 0;
+
+    private ScenarioFile(String source) {
+        this.source = source;
+        grid.setVerbose(false);
+        vehicleMix.put("carro", 0.9);
+        vehicleMix.put(EMERGENCY_KEY, 0.1);
+    }
+
+    public static ScenarioFile load(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(reader, path.getFileName().toString());
+        }
+    }
+
+    public static ScenarioFile parse(Reader input, String sourceName) throws IOException {
+        ScenarioFile file = new ScenarioFile(sourceName);
+        BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input, 1 << 16);
+        String[] tokens = new String[16];
+        String line;
+        while ((line = reader.readLine()) != null) {
+            file.lineNumber++;
+            int count = tokenize(line, tokens);
+            if (count < 0) {
+                tokens = new String[tokens.length * 2];
+                count = tokenize(line, tokens);
+            }
+            if (count > 0) file.directive(tokens, count);
+        }
+        file.validatePhases();
+        return file;
+    }
+
+    // Divide por espaços até o comentário; retorna -1 se não couber em "tokens"
+    private static int tokenize(String line, String[] tokens) {
+        int count = 0;
+        int i = 0;
+        int n = line.length();
+        while (i < n) {
+            char c = line.charAt(i);
+            if (c == '#') break;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < n && !Character.isWhitespace(line.charAt(i)) && line.charAt(i) != '#') i++;
+            if (count == tokens.length) return -1;
+            tokens[count++] = line.substring(start, i);
+        }
+        return count;
+    }
+
+    private void directive(String[] t, int n) {
+        switch (t[0]) {
+            case "cenario":
+                for (int k = 1; k < n; k++) scenarioOption(t[k]);
+                break;
+            case "rua":
+                street(t, n);
+                break;
+            case "cruzamento":
+                intersection(t, n);
+                break;
+            case "fase":
+                phase(t, n);
+                break;
+            case "conecta":
+                connect(t, n);
+                break;
+            case "semaforo":
+                light(t, n);
+                break;
+            case "pedestres":
+                pedestrians(t, n);
+                break;
+            case "detector":
+                detector(t, n);
+                break;
+            case "matriz":
+                matrix(t, n);
+                break;
+            case "viagens":
+                trips(t, n);
+                break;
+            case "veiculos":
+                vehicles(t, n);
+                break;
+            case "parada":
+                if (n < 2) throw error("uso: parada <rua>...");
+                for (int k = 1; k < n; k++) {
+                    if (grid.findStreetById(t[k]) == null) throw error("rua '" + t[k] + "' não declarada");
+                    busStops.add(t[k]);
+                }
+                break;
+            case "geracao":
+                for (int k = 1; k < n; k++) spawnOption(t[k]);
+                break;
+            default:
+                throw error("diretiva desconhecida '" + t[0] + "'");
+        }
+    }
+
+    private void scenarioOption(String token) {
+        String key = key(token);
+        String value = value(token);
+        switch (key) {
+            case "nome": name = value; break;
+            case "duracao": durationTicks = Math.max(1, parseDurationMs(value) / TickEngine.TICK_MS); break;
+            case "semente": seed = parseLong(value); break;
+            case "modo": engineMode = parseEnum(EngineMode.class, value); break;
+            case "politica": signalPolicy = parseEnum(SignalPolicy.class, value); break;
+            case "max": maxVehicles = parsePositiveInt(value); break;
+            case "inicio": startSecondOfDay = parseClock(value); break;
+            case "emissoes": emissions = parseYesNo(value); break;
+            default: throw error("opção de cenário desconhecida '" + key + "'");
+        }
+    }
+
+    private void spawnOption(String token) {
+        String key = key(token);
+        String value = value(token);
+        switch (key) {
+            case "intervalo": spawnIntervalMs = parseDurationMs(value); break;
+            case "max": maxThreadedCars = parsePositiveInt(value); break;
+            default: throw error("opção de geração desconhecida '" + key + "'");
+        }
+    }
+
+    private void street(String[] t, int n) {
+        if (n < 2) throw error("rua sem id");
+        String id = t[1];
+        if (grid.findStreetById(id) != null) throw error("rua '" + id + "' já declarada");
+        double length = -1;
+        int capacity = -1;
+        int lanes = 1;
+        boolean twoWay = false;
+        Direction direction = null;
+        for (int k = 2; k < n; k++) {
+            if (t[k].equals("maodupla")) {
+                twoWay = true;
+                continue;
+            }
+            String key = key(t[k]);
+            String value = value(t[k]);
+            switch (key) {
+                case "comprimento": length = parseDouble(value); break;
+                case "capacidade": capacity = parsePositiveInt(value); break;
+                case "faixas": lanes = parsePositiveInt(value); break;
+                case "sentido": direction = parseEnum(Direction.class, value); break;
+                default: throw error("opção de rua desconhecida '" + key + "'");
+            }
+        }
+        if (length <= 0) throw error("rua '" + id + "' precisa de comprimento positivo");
+        if (capacity < 0) throw error("rua '" + id + "' precisa de capacidade");
+        if (twoWay == (direction != null)) throw error("rua '" + id + "' deve ser 'maodupla' ou ter 'sentido'");
+        grid.addStreet(new Street(id, length, capacity, twoWay, direction, lanes));
+        elements++;
+    }
+
+    private void intersection(String[] t, int n) {
+        if (n < 2) throw error("cruzamento sem id");
+        String id = t[1];
+        if (grid.findIntersectionById(id) != null) throw error("cruzamento '" + id + "' já declarado");
+        Intersection intersection = new Intersection(id, grid);
+        for (int k = 2; k < n; k++) {
+            String key = key(t[k]);
+            if (!key.equals("fases")) throw error("opção de cruzamento desconhecida '" + key + "'");
+            List<Direction> phases = new ArrayList<>();
+            for (String d : value(t[k]).split(",")) phases.add(parseEnum(Direction.class, d));
+            intersection.setGreenPhases(phases); // Ainda sem semáforos: nada é acionado
+        }
+        grid.addIntersection(intersection);
+        elements++;
+    }
+
+    private void phase(String[] t, int n) {
+        if (n < 3) throw error("uso: fase <cruzamento> protegidos=<movimentos> permitidos=<movimentos>");
+        Intersection intersection = grid.findIntersectionById(t[1]);
+        if (intersection == null) throw error("cruzamento '" + t[1] + "' não declarado");
+        if (intersection.getApproachCount() > 0 || intersection.getExitLegCount() > 0) {
+            throw error("as fases de '" + t[1] + "' devem vir antes das conexões do cruzamento");
+        }
+        List<SignalPhase> cycle = movementPhases.computeIfAbsent(t[1], k -> new ArrayList<>());
+        if (cycle.isEmpty() && !intersection.getPhases().isEmpty()) {
+            throw error("cruzamento '" + t[1] + "' já tem 'fases='; use só linhas 'fase'");
+        }
+        List<Movement> protectedMovements = new ArrayList<>();
+        List<Movement> permittedMovements = new ArrayList<>();
+        for (int k = 2; k < n; k++) {
+            String key = key(t[k]);
+            if (key.equals("protegidos")) {
+                parseMovements(value(t[k]), protectedMovements);
+            } else if (key.equals("permitidos")) {
+                parseMovements(value(t[k]), permittedMovements);
+            } else {
+                throw error("opção de fase desconhecida '" + key + "'");
+            }
+        }
+        if (protectedMovements.isEmpty() && permittedMovements.isEmpty()) throw error("fase sem movimentos");
+        cycle.add(new SignalPhase(protectedMovements, permittedMovements));
+        intersection.setPhases(cycle); // Ainda sem semáforos: nada é acionado
+        phaseLines.putIfAbsent(t[1], lineNumber);
+    }
+
+    private void parseMovements(String list, List<Movement> into) {
+        for (String text : list.split(",")) {
+            try {
+                into.add(Movement.parse(text));
+            } catch (IllegalArgumentException e) {
+                throw error("movimento '" + text + "' inválido; esperado <direção>:" + Arrays.toString(Turn.values()));
+            }
+        }
+    }
+
+    // Fases por movimento contra a matriz de conflitos de cada cruzamento, já com a geometria completa
+    private void validatePhases() {
+        for (Map.Entry<String, Integer> entry : phaseLines.entrySet()) {
+            try {
+                grid.findIntersectionById(entry.getKey()).resolvePhases();
+            } catch (IllegalStateException e) {
+                throw new IllegalArgumentException(source + ":" + entry.getValue() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void connect(String[] t, int n) {
+        if (n != 5) throw error("uso: conecta <rua> <cruzamento> <direção> chegada|saida");
+        if (grid.findStreetById(t[1]) == null) throw error("rua '" + t[1] + "' não declarada");
+        Intersection intersection = grid.findIntersectionById(t[2]);
+        if (intersection == null) throw error("cruzamento '" + t[2] + "' não declarado");
+        Direction direction = parseEnum(Direction.class, t[3]);
+        boolean incoming;
+        if (t[4].equals("chegada")) {
+            incoming = true;
+        } else if (t[4].equals("saida")) {
+            incoming = false;
+        } else {
+            throw error("esperado 'chegada' ou 'saida', encontrado '" + t[4] + "'");
+        }
+        grid.connectStreetToIntersection(t[1], t[2], direction, incoming);
+        elements++;
+    }
+
+    private void light(String[] t, int n) {
+        if (n < 3) throw error("uso: semaforo <cruzamento> <direção> verde=<t> amarelo=<t>");
+        Intersection intersection = grid.findIntersectionById(t[1]);
+        if (intersection == null) throw error("cruzamento '" + t[1] + "' não declarado");
+        TrafficLight light = intersection.getTrafficLight(parseEnum(Direction.class, t[2]));
+        if (light == null) throw error("cruzamento '" + t[1] + "' não tem chegada pela direção " + t[2]);
+        long green = light.getGreenTime();
+        long yellow = light.getYellowTime();
+        for (int k = 3; k < n; k++) {
+            String key = key(t[k]);
+            if (key.equals("verde")) {
+                green = parseDurationMs(value(t[k]));
+            } else if (key.equals("amarelo")) {
+                yellow = parseDurationMs(value(t[k]));
+            } else {
+                throw error("opção de semáforo desconhecida '" + key + "'");
+            }
+        }
+        if (green <= 0 || yellow < 0) throw error("tempos de semáforo inválidos");
+        light.setTimings(green, yellow);
+    }
+
+    private void pedestrians(String[] t, int n) {
+        if (n < 4) throw error("uso: pedestres <cruzamento> <direção> <pedestres/h> [botao] caminhe=<t> travessia=<m>");
+        Intersection intersection = grid.findIntersectionById(t[1]);
+        if (intersection == null) throw error("cruzamento '" + t[1] + "' não declarado");
+        Direction approach = parseEnum(Direction.class, t[2]);
+        if (intersection.getTrafficLight(approach) == null) {
+            throw error("cruzamento '" + t[1] + "' não tem chegada pela direção " + t[2]);
+        }
+        double rate = parseDouble(t[3]);
+        if (rate < 0) throw error("demanda de pedestres negativa");
+        boolean pushButton = false;
+        long walk = Crosswalk.DEFAULT_WALK_MS;
+        double length = Crosswalk.DEFAULT_LENGTH;
+        for (int k = 4; k < n; k++) {
+            if (t[k].equals("botao")) {
+                pushButton = true;
+                continue;
+            }
+            String key = key(t[k]);
+            if (key.equals("caminhe")) {
+                walk = parseDurationMs(value(t[k]));
+            } else if (key.equals("travessia")) {
+                length = parseDouble(value(t[k]));
+            } else {
+                throw error("opção de pedestres desconhecida '" + key + "'");
+            }
+        }
+        if (walk <= 0 || length <= 0) throw error("tempos de travessia inválidos");
+        intersection.addCrosswalk(new Crosswalk(approach, rate, pushButton, walk, length));
+    }
+
+    private void detector(String[] t, int n) {
+        if (n < 3) throw error("uso: detector <id> <rua> distancia=<m> [comprimento=<m>] [cruzamento=<id>]");
+        Street street = grid.findStreetById(t[2]);
+        if (street == null) throw error("rua '" + t[2] + "' não declarada");
+        double distance = -1;
+        double length = LoopDetector.DEFAULT_LENGTH;
+        String toward = null;
+        for (int k = 3; k < n; k++) {
+            String key = key(t[k]);
+            if (key.equals("distancia")) {
+                distance = parseDouble(value(t[k]));
+            } else if (key.equals("comprimento")) {
+                length = parseDouble(value(t[k]));
+            } else if (key.equals("cruzamento")) {
+                toward = value(t[k]);
+                if (grid.findIntersectionById(toward) == null) throw error("cruzamento '" + toward + "' não declarado");
+            } else {
+                throw error("opção de detector desconhecida '" + key + "'");
+            }
+        }
+        if (distance < 0) throw error("detector '" + t[1] + "' sem distancia até a linha de retenção");
+        if (distance + length > street.getLength()) {
+            throw error("detector '" + t[1] + "': distancia + comprimento (" + (distance + length)
+                    + " m) passa do comprimento da rua '" + t[2] + "' (" + street.getLength() + " m)");
+        }
+        try {
+            street.addLoopDetector(new LoopDetector(t[1], distance, length, toward));
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    private void matrix(String[] t, int n) {
+        if (n < 2) throw error("matriz sem nome");
+        if (matrices.containsKey(t[1])) throw error("matriz '" + t[1] + "' já declarada");
+        TimeProfile profile = TimeProfile.flat();
+        for (int k = 2; k < n; k++) {
+            String key = key(t[k]);
+            if (!key.equals("perfil")) throw error("opção de matriz desconhecida '" + key + "'");
+            profile = parseProfile(value(t[k]));
+        }
+        matrices.put(t[1], new OdMatrix(t[1], profile));
+    }
+
+    private TimeProfile parseProfile(String value) {
+        if (value.equals("plano")) return TimeProfile.flat();
+        if (value.equals("diautil")) return TimeProfile.weekday();
+        int colon = value.indexOf(':');
+        if (colon < 0) throw error("perfil inválido '" + value + "'");
+        String[] parts = value.substring(colon + 1).split(",");
+        double[] multipliers = new double[parts.length];
+        for (int k = 0; k < parts.length; k++) multipliers[k] = parseDouble(parts[k]);
+        try {
+            return new TimeProfile(parsePositiveInt(value.substring(0, colon)), multipliers);
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    private void trips(String[] t, int n) {
+        if (n != 5) throw error("uso: viagens <matriz> <origem> <destino|*> <veículos/h>");
+        OdMatrix od = matrices.get(t[1]);
+        if (od == null) throw error("matriz '" + t[1] + "' não declarada");
+        if (grid.findStreetById(t[2]) == null) throw error("rua de origem '" + t[2] + "' não declarada");
+        String destination = t[3].equals("*") ? null : t[3];
+        if (destination != null && grid.findStreetById(destination) == null) {
+            throw error("rua de destino '" + destination + "' não declarada");
+        }
+        double rate = parseDouble(t[4]);
+        if (rate < 0) throw error("taxa de viagens negativa");
+        od.addTrips(t[2], destination, rate);
+    }
+
+    private void vehicles(String[] t, int n) {
+        vehicleMix.clear();
+        double total = 0;
+        for (int k = 1; k < n; k++) {
+            String key = key(t[k]);
+            if (!key.equals(EMERGENCY_KEY) && VehicleClass.fromKey(key) == null) {
+                throw error("classe de veículo desconhecida '" + key + "'");
+            }
+            double share = parseDouble(value(t[k]));
+            if (share < 0) throw error("participação negativa para '" + key + "'");
+            vehicleMix.put(key(t[k]), share);
+            total += share;
+        }
+        if (total <= 0) throw error("mistura de veículos vazia");
+        for (Map.Entry<String, Double> entry : vehicleMix.entrySet()) entry.setValue(entry.getValue() / total);
+    }
+
+    private String key(String token) {
+        int eq = token.indexOf('=');
+        if (eq <= 0) throw error("esperado chave=valor, encontrado '" + token + "'");
+        return token.substring(0, eq);
+    }
+
+    private String value(String token) {
+        String value = token.substring(token.indexOf('=') + 1);
+        if (value.isEmpty()) throw error("valor vazio em '" + token + "'");
+        return value;
+    }
+
+    // "15s", "500ms", "2min", "1h" ou número puro em segundos
+    private long parseDurationMs(String value) {
+        double factor = 1000;
+        String number = value;
+        if (value.endsWith("ms")) {
+            factor = 1;
+            number = value.substring(0, value.length() - 2);
+        } else if (value.endsWith("min")) {
+            factor = 60000;
+            number = value.substring(0, value.length() - 3);
+        } else if (value.endsWith("h")) {
+            factor = 3600000;
+            number = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("s")) {
+            number = value.substring(0, value.length() - 1);
+        }
+        return Math.round(parseDouble(number) * factor);
+    }
+
+    private double parseClock(String value) {
+        String[] parts = value.split(":");
+        if (parts.length != 2) throw error("horário inválido '" + value + "' (use HH:MM)");
+        int hours = parsePositiveOrZero(parts[0]);
+        int minutes = parsePositiveOrZero(parts[1]);
+        if (hours > 23 || minutes > 59) throw error("horário inválido '" + value + "'");
+        return hours * 3600 + minutes * 60;
+    }
+
+    private double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw error("número inválido '" + value + "'");
+        }
+    }
+
+    private long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw error("inteiro inválido '" + value + "'");
+        }
+    }
+
+    private int parsePositiveInt(String value) {
+        int parsed = parsePositiveOrZero(value);
+        if (parsed == 0) throw error("esperado inteiro positivo, encontrado '" + value + "'");
+        return parsed;
+    }
+
+    private int parsePositiveOrZero(String value) {
+        long parsed = parseLong(value);
+        if (parsed < 0 || parsed > Integer.MAX_VALUE) throw error("inteiro fora do intervalo '" + value + "'");
+        return (int) parsed;
+    }
+
+    private <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw error("valor '" + value + "' inválido; esperado um de " + Arrays.toString(type.getEnumConstants()));
+        }
+    }
+
+    private boolean parseYesNo(String value) {
+        if (value.equalsIgnoreCase("sim")) return true;
+        if (value.equalsIgnoreCase("nao")) return false;
+        throw error("esperado 'sim' ou 'nao': '" + value + "'");
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(source + ":" + lineNumber + ": " + message);
+    }
+
+    // Congela o grid e compila o cenário headless; sem matrizes, usa demanda uniforme de 1200 veíc/h
+    public Scenario toScenario() {
+        grid.freeze();
+        NetworkIndex network = new NetworkIndex(grid);
+        DemandModel demand = matrices.isEmpty()
+                ? DemandModel.uniform(network, 1200)
+                : new DemandModel(network, new ArrayList<>(matrices.values()), startSecondOfDay);
+        ZonePartition zone = engineMode == EngineMode.HYBRID && network.intersectionCount() > 0
+                ? ZonePartition.around(network, network.intersection(0).getId(), 0) : null;
+        return new Scenario(name, network, demand, signalPolicy, durationTicks, maxVehicles, seed, engineMode, zone)
+                .withVehicleClasses(classShares(), busStopStreets(network))
+                .withEmissions(emissions);
+    }
+
+    // Participações por VehicleClass; null se a mistura só tem carros (e emergência, que vira carro)
+    private double[] classShares() {
+        double[] shares = new double[VehicleClass.values().length];
+        boolean others = false;
+        for (Map.Entry<String, Double> entry : vehicleMix.entrySet()) {
+            VehicleClass c = entry.getKey().equals(EMERGENCY_KEY) ? VehicleClass.CAR : VehicleClass.fromKey(entry.getKey());
+            shares[c.ordinal()] += entry.getValue();
+            others |= c != VehicleClass.CAR && entry.getValue() > 0;
+        }
+        return others ? shares : null;
+    }
+
+    private boolean[] busStopStreets(NetworkIndex network) {
+        if (busStops.isEmpty()) return null;
+        boolean[] stops = new boolean[network.streetCount()];
+        for (String id : busStops) stops[network.streetIndexOf(id)] = true;
+        return stops;
+    }
+
+    public Grid getGrid() {
+        return grid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, Double> getVehicleMix() {
+        return Collections.unmodifiableMap(vehicleMix);
+    }
+
+    public double getVehicleShare(String vehicleClass) {
+        return vehicleMix.getOrDefault(vehicleClass, 0.0);
+    }
+
+    public long getSpawnIntervalMs() {
+        return spawnIntervalMs;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getMaxThreadedCars() {
+        return maxThreadedCars;
+    }
+
+    public int getElementCount() {
+        return elements;
+    }
+}
@@ -0,0 +1,219 @@
+package com.simuladortrafego;
+
+import java.util.Arrays;
+
+// Estado dos semáforos de uma única execução headless.
+// Segue o ciclo de Intersection.updateSemaphores (verde -> amarelo -> vermelho e próxima fase),
+// mas em tempo simulado e sem threads, para que réplicas paralelas compartilhem o mesmo Grid.
+// As faixas de pedestres (PedestrianSignals) abrem no início do verde das fases compatíveis e seguram
+// o verde da fase até o fim do "siga" e do "pare piscante".
+// Cruzamentos entregues a um controlador externo (setExternal) saem do ciclo: ficam com os estados que o
+// controlador define por aproximação a cada tick, e as faixas de pedestres deles não abrem mais.
+public class SignalController {
+    private static final int CONGESTION_YELLOW_THRESHOLD = 2; // Mesmo limiar arbitrário do Intersection
+    private static final long GREEN_INCREMENT_MS = 2000;
+    private static final long MAX_GREEN_MS = 30000;
+
+    private final NetworkIndex network;
+    private final SignalPolicy policy;
+    private final LightState[] approachState;
+    private final LightState[] movementState; // Por movimento de giro: a direita no vermelho anda com a aproximação vermelha
+    private final long[] greenMs;
+    private final long[] yellowMs;
+    private final int[] yellowPasses;
+    private final int[] phaseIndex;
+    private final long[] phaseElapsedMs;
+    private final boolean[] inYellow;
+    private final long[] carriedExtensionMs; // prorrogação pedida durante o amarelo, vale para o próximo verde
+    private final PedestrianSignals pedestrians; // null sem faixas de pedestres
+    private final long[] pedestrianGreenMs;     // verde mínimo da fase corrente pelas faixas abertas nela
+    private final boolean[] external;           // cruzamento comandado de fora, ver setExternal
+
+    public SignalController(NetworkIndex network, SignalPolicy policy) {
+        this(network, policy, new RandomStreams(RandomStreams.DEFAULT_SEED));
+    }
+
+    // streams: fluxos das chegadas de pedestres
+    public SignalController(NetworkIndex network, SignalPolicy policy, RandomStreams streams) {
+        this.network = network;
+        this.policy = policy;
+        int approaches = network.approachCount();
+        this.approachState = new LightState[approaches];
+        Arrays.fill(approachState, LightState.RED);
+        this.movementState = new LightState[network.movementCount()];
+        Arrays.fill(movementState, LightState.RED);
+        this.greenMs = new long[approaches];
+        this.yellowMs = new long[approaches];
+        for (int a = 0; a < approaches; a++) {
+            greenMs[a] = network.approachGreenMs(a);
+            yellowMs[a] = network.approachYellowMs(a);
+        }
+        this.yellowPasses = new int[approaches];
+        int intersections = network.intersectionCount();
+        this.phaseIndex = new int[intersections];
+        this.phaseElapsedMs = new long[intersections];
+        this.inYellow = new boolean[intersections];
+        this.carriedExtensionMs = new long[intersections];
+        this.pedestrians = network.crosswalkCount() > 0 ? new PedestrianSignals(network, streams) : null;
+        this.pedestrianGreenMs = new long[intersections];
+        this.external = new boolean[intersections];
+        for (int i = 0; i < intersections; i++) {
+            if (network.phaseCount(i) > 0) {
+                setPhaseState(i, 0, LightState.GREEN);
+                openCrosswalks(i);
+            }
+            // Sem fases configuradas os semáforos ficam vermelhos, como no Intersection
+        }
+    }
+
+    // Cópia independente do estado dos semáforos (bifurcação do motor)
+    public SignalController(SignalController source) {
+        this.network = source.network;
+        this.policy = source.policy;
+        this.approachState = source.approachState.clone();
+        this.movementState = source.movementState.clone();
+        this.greenMs = source.greenMs.clone();
+        this.yellowMs = source.yellowMs.clone();
+        this.yellowPasses = source.yellowPasses.clone();
+        this.phaseIndex = source.phaseIndex.clone();
+        this.phaseElapsedMs = source.phaseElapsedMs.clone();
+        this.inYellow = source.inYellow.clone();
+        this.carriedExtensionMs = source.carriedExtensionMs.clone();
+        this.pedestrians = source.pedestrians == null ? null : new PedestrianSignals(source.pedestrians);
+        this.pedestrianGreenMs = source.pedestrianGreenMs.clone();
+        this.external = source.external.clone();
+    }
+
+    public void step(long dtMs) {
+        for (int i = 0; i < phaseIndex.length; i++) {
+            if (network.phaseCount(i) == 0 || external[i]) continue;
+            int phase = phaseIndex[i];
+            int lead = network.phaseLeadApproach(i, phase);
+            if (lead < 0) { // Fase sem semáforo correspondente: avança, como Intersection.updateSemaphores
+                advancePhase(i);
+                continue;
+            }
+            phaseElapsedMs[i] += dtMs;
+            if (!inYellow[i] && phaseElapsedMs[i] >= Math.max(greenMs[lead], pedestrianGreenMs[i])) {
+                for (int a : network.phaseApproaches(i, phase)) {
+                    yellowPasses[a] = 0;
+                }
+                setPhaseState(i, phase, LightState.YELLOW);
+                inYellow[i] = true;
+                phaseElapsedMs[i] = 0;
+            } else if (inYellow[i] && phaseElapsedMs[i] >= yellowMs[lead]) {
+                if (policy == SignalPolicy.ADAPTIVE && yellowPasses[lead] > CONGESTION_YELLOW_THRESHOLD) {
+                    greenMs[lead] = Math.min(greenMs[lead] + GREEN_INCREMENT_MS, MAX_GREEN_MS);
+                }
+                advancePhase(i);
+            }
+        }
+        if (pedestrians != null) pedestrians.step(dtMs);
+    }
+
+    private void advancePhase(int i) {
+        setPhaseState(i, phaseIndex[i], LightState.RED);
+        phaseIndex[i] = (phaseIndex[i] + 1) % network.phaseCount(i);
+        setPhaseState(i, phaseIndex[i], LightState.GREEN);
+        openCrosswalks(i);
+        inYellow[i] = false;
+        phaseElapsedMs[i] = -carriedExtensionMs[i];
+        carriedExtensionMs[i] = 0;
+    }
+
+    private void openCrosswalks(int i) {
+        if (pedestrians != null) pedestrianGreenMs[i] = pedestrians.startPhase(network.phaseCrosswalks(i, phaseIndex[i]));
+    }
+
+    private void setPhaseState(int i, int phase, LightState state) {
+        for (int a : network.phaseApproaches(i, phase)) {
+            approachState[a] = state;
+        }
+        for (int m : network.phaseMovements(i, phase)) {
+            movementState[m] = state;
+        }
+    }
+
+    // Tira o cruzamento do ciclo de fases; os estados atuais ficam até o primeiro setExternalState
+    public void setExternal(int intersection) {
+        external[intersection] = true;
+        inYellow[intersection] = false;
+        pedestrianGreenMs[intersection] = 0;
+    }
+
+    public boolean isExternal(int intersection) {
+        return external[intersection];
+    }
+
+    // Estado de uma aproximação de cruzamento externo, valendo para todos os movimentos dela
+    public void setExternalState(int approach, LightState state) {
+        if (!external[network.approachIntersection(approach)]) {
+            throw new IllegalStateException("Aproximação " + approach + " não pertence a um cruzamento externo.");
+        }
+        if (state == LightState.YELLOW && approachState[approach] != LightState.YELLOW) {
+            yellowPasses[approach] = 0;
+        }
+        approachState[approach] = state;
+        for (int m : network.approachMovements(approach)) {
+            movementState[m] = state;
+        }
+    }
+
+    public LightState state(int approach) {
+        return approachState[approach];
+    }
+
+    public LightState movementState(int movement) {
+        return movementState[movement];
+    }
+
+    // Conversão que sai pelo ramo de uma faixa com pedestres atravessando: o veículo cede e espera
+    public boolean pedestriansCrossing(int movement) {
+        return pedestrians != null && pedestrians.blocks(movement);
+    }
+
+    public PedestrianSignal pedestrianSignal(int crosswalk) {
+        return pedestrians.signal(crosswalk);
+    }
+
+    public int pedestriansWaiting(int crosswalk) {
+        return pedestrians.waiting(crosswalk);
+    }
+
+    public long pedestriansServed() {
+        return pedestrians == null ? 0 : pedestrians.served();
+    }
+
+    public double meanPedestrianDelaySeconds() {
+        return pedestrians == null ? 0.0 : pedestrians.meanDelaySeconds();
+    }
+
+    public int phase(int intersection) {
+        return phaseIndex[intersection];
+    }
+
+    // Prorroga o verde corrente do cruzamento (ou o próximo, se já estiver no amarelo) por ms
+    public void extendGreen(int intersection, long ms) {
+        if (inYellow[intersection]) {
+            carriedExtensionMs[intersection] += ms;
+        } else {
+            phaseElapsedMs[intersection] -= ms;
+        }
+    }
+
+    // Novos tempos da aproximação (NetworkEdits); a política adaptativa continua a partir do novo verde
+    public void setTiming(int approach, long green, long yellow) {
+        greenMs[approach] = green;
+        yellowMs[approach] = yellow;
+    }
+
+    public void carPassedOnYellow(int approach) {
+        if (approachState[approach] == LightState.YELLOW) {
+            yellowPasses[approach]++;
+        }
+    }
+
+    public long greenTimeMs(int approach) {
+        return greenMs[approach];
+    }
+}
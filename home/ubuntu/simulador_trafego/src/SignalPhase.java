@@ -0,0 +1,64 @@
+package com.simuladortrafego;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Fase semafórica como conjunto de movimentos de giro. Protegidos têm preferência e não podem se cruzar
+// entre si; permitidos andam cedendo passagem aos protegidos que cruzam (conversão à esquerda permissiva,
+// direita no vermelho), mas também não podem se cruzar entre si, senão ninguém teria a preferência.
+// A validação contra a matriz de conflitos do cruzamento é feita em Intersection.resolvePhases.
+public final class SignalPhase {
+    private final Direction lead; // Semáforo cujo verde/amarelo dita a duração da fase
+    private final List<Movement> protectedMovements;
+    private final List<Movement> permittedMovements;
+    private final boolean legacy;
+
+    public SignalPhase(List<Movement> protectedMovements, List<Movement> permittedMovements) {
+        if (protectedMovements.isEmpty() && permittedMovements.isEmpty()) {
+            throw new IllegalArgumentException("Fase sem movimentos.");
+        }
+        this.protectedMovements = Collections.unmodifiableList(new ArrayList<>(protectedMovements));
+        this.permittedMovements = Collections.unmodifiableList(new ArrayList<>(permittedMovements));
+        this.lead = (protectedMovements.isEmpty() ? permittedMovements : protectedMovements).get(0).getApproach();
+        this.legacy = false;
+    }
+
+    private SignalPhase(Direction lead) {
+        this.lead = lead;
+        this.protectedMovements = Collections.emptyList();
+        this.permittedMovements = Collections.emptyList();
+        this.legacy = true;
+    }
+
+    // Fase antiga (Intersection.setGreenPhases): todos os movimentos das aproximações compatíveis com a
+    // direção, como antes; a compatibilidade é por aproximação, sem validação movimento a movimento
+    public static SignalPhase of(Direction direction) {
+        if (direction == null) {
+            throw new IllegalArgumentException("Direção da fase não pode ser nula.");
+        }
+        return new SignalPhase(direction);
+    }
+
+    public Direction getLead() {
+        return lead;
+    }
+
+    public boolean isLegacy() {
+        return legacy;
+    }
+
+    public List<Movement> getProtectedMovements() {
+        return protectedMovements;
+    }
+
+    public List<Movement> getPermittedMovements() {
+        return permittedMovements;
+    }
+
+    @Override
+    public String toString() {
+        if (legacy) return lead.toString();
+        return "protegidos=" + protectedMovements + " permitidos=" + permittedMovements;
+    }
+}
@@ -0,0 +1,6 @@
+package com.simuladortrafego;
+
+public enum SignalPolicy {
+    FIXED,    // Tempos dos semáforos do grid, sem ajuste
+    ADAPTIVE  // Mesmo ajuste de Intersection.checkCongestionAndAdjust (+2s de verde se muitos passam no amarelo)
+}
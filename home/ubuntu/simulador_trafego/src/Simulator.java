@@ -2,9 +2,11 @@ package com.simuladortrafego;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.Arrays;
 import java.util.Map; // Added import for Map.Entry
+import java.io.IOException;
+import java.nio.file.Paths;
 
 public class Simulator {
     private Grid grid;
@@ -13,21 +15,67 @@ public class Simulator {
     private volatile boolean running = true;
     private long simulationTime = 0;
     private final long tickDuration = 100; // milliseconds per simulation tick
-    private final int maxCars = 10; // Max cars in simulation
-    private Random random = new Random();
+    private final int maxCars; // Max cars in simulation
+    private final long spawnIntervalMs;
+    private final double emergencyShare;
+    private final boolean gridFromFile;
+    // Sorteios do gerador e de cada carro vêm da mesma semente; a ordem em que as threads dos carros
+    // e dos semáforos se intercalam continua dependendo do relógio
+    private final RandomStreams streams;
+    private final SplittableRandom random;
+    private EventJournal journal; // opcional: chegadas, saídas, amarelos e fases, no tick do laço principal
 
     public Simulator() {
         this.grid = new Grid();
         this.cars = new ArrayList<>();
         this.intersections = new ArrayList<>();
+        this.maxCars = 10;
+        this.spawnIntervalMs = 5000;
+        this.emergencyShare = 0.1;
+        this.gridFromFile = false;
+        this.streams = new RandomStreams(RandomStreams.DEFAULT_SEED);
+        this.random = streams.stream(RandomStreams.SPAWNER, 0);
+    }
+
+    // Grid, intervalo de geração e mistura de veículos vindos de um arquivo de cenário
+    public Simulator(ScenarioFile scenario) {
+        this.grid = scenario.getGrid();
+        this.cars = new ArrayList<>();
+        this.intersections = new ArrayList<>();
+        this.maxCars = scenario.getMaxThreadedCars();
+        this.spawnIntervalMs = scenario.getSpawnIntervalMs();
+        this.emergencyShare = scenario.getVehicleShare("emergencia");
+        this.gridFromFile = true;
+        this.streams = new RandomStreams(scenario.getSeed());
+        this.random = streams.stream(RandomStreams.SPAWNER, 0);
     }
 
     private void setupGrid() {
+        if (gridFromFile) {
+            grid.setVerbose(true);
+        } else {
+            buildDefaultGrid(grid);
+        }
+        intersections.addAll(grid.getIntersections());
+        for (Intersection intersection : intersections) {
+            intersection.resolvePhases(); // Fase por movimento com conflito falha aqui, antes de qualquer thread
+            intersection.startLights();
+            // Fase mal configurada deixa carros presos para sempre no wait() do semáforo
+            for (Direction starved : GridlockDetector.starvedDirections(intersection)) {
+                System.err.println("Aviso: semáforo " + starved + " em " + intersection.getId()
+                        + " nunca fica verde com as fases " + intersection.getPhases() + ".");
+            }
+        }
+
+        System.out.println("Configuração do grid concluída.");
+        grid.printGrid();
+    }
+
+    // Monta o grid padrão de dois cruzamentos; também usado pelo BatchRunner
+    static void buildDefaultGrid(Grid grid) {
         // Create Intersections
         Intersection i1 = new Intersection("I1", grid);
         Intersection i2 = new Intersection("I2", grid);
-        intersections.add(i1);
-        intersections.add(i2);
         grid.addIntersection(i1);
         grid.addIntersection(i2);
 
@@ -81,9 +129,64 @@ public class Simulator {
         // Fase 1 para I2: S1 (chegada Leste) & S4 (chegada Leste) ficam verdes.
         // Fase 2 para I2: S1 (chegada Oeste) fica verde.
         i2.setGreenPhases(Arrays.asList(Direction.EAST)); // Tráfego do Leste apenas, conforme conexões atuais do grid
+    }
 
-        System.out.println("Configuração do grid concluída.");
-        grid.printGrid();
+    // Grid em malha (rows x cols) de cruzamentos com ruas de mão dupla entre vizinhos e uma rua de
+    // entrada e outra de saída em cada lado da borda. Aqui as direções são o sentido de deslocamento
+    // (chegar em NORTH = seguindo para o norte), de modo que getPossibleExits evita apenas o retorno.
+    static void buildManhattanGrid(Grid grid, int rows, int cols, double blockLength, int lanes) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Malha precisa de pelo menos um cruzamento.");
+        }
+        grid.setVerbose(false);
+        int capacity = Math.max(1, (int) (blockLength / 7.0) * lanes);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                Intersection intersection = new Intersection("I-" + r + "-" + c, grid);
+                // Fases definidas antes das conexões: nenhum semáforo existe ainda, então nada é impresso
+                intersection.setGreenPhases(Arrays.asList(Direction.NORTH, Direction.EAST));
+                grid.addIntersection(intersection);
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                String here = "I-" + r + "-" + c;
+                if (c + 1 < cols) { // Rua horizontal até o vizinho a leste
+                    String east = "I-" + r + "-" + (c + 1);
+                    String id = "H-" + r + "-" + c;
+                    grid.addStreet(new Street(id, blockLength, capacity, true, null, lanes));
+                    grid.connectStreetToIntersection(id, here, Direction.EAST, false);
+                    grid.connectStreetToIntersection(id, east, Direction.EAST, true);
+                    grid.connectStreetToIntersection(id, east, Direction.WEST, false);
+                    grid.connectStreetToIntersection(id, here, Direction.WEST, true);
+                }
+                if (r + 1 < rows) { // Rua vertical até o vizinho ao sul
+                    String south = "I-" + (r + 1) + "-" + c;
+                    String id = "V-" + r + "-" + c;
+                    grid.addStreet(new Street(id, blockLength, capacity, true, null, lanes));
+                    grid.connectStreetToIntersection(id, here, Direction.SOUTH, false);
+                    grid.connectStreetToIntersection(id, south, Direction.SOUTH, true);
+                    grid.connectStreetToIntersection(id, south, Direction.NORTH, false);
+                    grid.connectStreetToIntersection(id, here, Direction.NORTH, true);
+                }
+                if (r == 0) addBorderStreets(grid, here, Direction.SOUTH, blockLength, capacity, lanes);
+                if (r == rows - 1) addBorderStreets(grid, here, Direction.NORTH, blockLength, capacity, lanes);
+                if (c == 0) addBorderStreets(grid, here, Direction.EAST, blockLength, capacity, lanes);
+                if (c == cols - 1) addBorderStreets(grid, here, Direction.WEST, blockLength, capacity, lanes);
+            }
+        }
+    }
+
+    // Rua de entrada (seguindo "inbound") e rua de saída (sentido oposto) na borda da malha
+    private static void addBorderStreets(Grid grid, String intersectionId, Direction inbound,
+                                         double length, int capacity, int lanes) {
+        Direction outbound = Intersection.oppositeOf(inbound);
+        String in = "E-" + intersectionId + "-" + inbound;
+        String out = "X-" + intersectionId + "-" + outbound;
+        grid.addStreet(new Street(in, length, capacity, false, inbound, lanes));
+        grid.addStreet(new Street(out, length, capacity, false, outbound, lanes));
+        grid.connectStreetToIntersection(in, intersectionId, inbound, true);
+        grid.connectStreetToIntersection(out, intersectionId, outbound, false);
     }
 
     private void addCar() {
@@ -94,12 +197,13 @@ public class Simulator {
             // For now, any street will do, car logic will try to navigate.
             if (startStreet.isTwoWay() || (!startStreet.isTwoWay() && startStreet.getDirection() != null)) {
                 Car car;
-                if (random.nextInt(10) == 0) { // 10% chance of being an emergency vehicle
-                    car = new EmergencyVehicle(grid, startStreet, 5 + random.nextDouble() * 5); // velocidade 5-10
+                if (random.nextDouble() < emergencyShare) { // 10% de veículos de emergência no grid padrão
+                    car = new EmergencyVehicle(grid, startStreet, 5 + random.nextDouble() * 5, streams); // velocidade 5-10
                 } else {
-                    car = new Car(grid, startStreet, 5 + random.nextDouble() * 5);
+                    car = new Car(grid, startStreet, 5 + random.nextDouble() * 5, streams);
                 }
                 cars.add(car);
+                if (journal != null) journal.appendNow(EventJournal.SPAWN, car.getNumber(), grid.indexOfStreet(startStreet), -1);
                 car.start();
                 System.out.println("Adicionado " + car.getCarId() + " à simulação na rua " + startStreet.getId());
             }
@@ -118,9 +222,10 @@ public class Simulator {
         while (running) {
             long loopStartTime = System.currentTimeMillis();
             simulationTime++;
+            if (journal != null) journal.setClock(simulationTime);
 
             // Adiciona novos carros periodicamente
-            if (System.currentTimeMillis() - lastCarAddTime > 5000) { // Adiciona um carro a cada 5 segundos
+            if (System.currentTimeMillis() - lastCarAddTime > spawnIntervalMs) { // Padrão: um carro a cada 5 segundos
                 addCar();
                 lastCarAddTime = System.currentTimeMillis();
             }
@@ -195,8 +300,31 @@ public class Simulator {
         System.out.println("Simulação parada.");
     }
 
-    public static void main(String[] args) {
-        Simulator simulator = new Simulator();
+    // Grava as decisões da execução em um EventJournal (antes de iniciar); ler com "ReplayTool listar"
+    public void setJournal(EventJournal journal) {
+        this.journal = journal;
+        grid.setJournal(journal);
+    }
+
+    public long getSeed() {
+        return streams.getMasterSeed();
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Opcionais: caminho de um arquivo de cenário (ex.: cenarios/padrao.cenario) e --diario <arquivo>
+        String scenarioPath = null;
+        String journalPath = null;
+        for (int k = 0; k < args.length; k++) {
+            if (args[k].equals("--diario") && k + 1 < args.length) {
+                journalPath = args[++k];
+            } else {
+                scenarioPath = args[k];
+            }
+        }
+        Simulator simulator = scenarioPath != null ? new Simulator(ScenarioFile.load(Paths.get(scenarioPath))) : new Simulator();
+        EventJournal journal = journalPath == null ? null : EventJournal.create(Paths.get(journalPath), simulator.getSeed(),
+                ReplayTool.THREADED_DESCRIPTOR, scenarioPath != null ? scenarioPath : "padrao");
+        if (journal != null) simulator.setJournal(journal);
         Thread simulatorThread = new Thread(simulator::startSimulation);
         simulatorThread.start();
 
@@ -212,6 +340,11 @@ public class Simulator {
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        if (journal != null) {
+            simulator.setJournal(null);
+            journal.close();
+            System.out.println("Diário gravado em " + journalPath + " (" + journal.recordCount() + " eventos).");
+        }
         System.out.println("Saindo do main.");
     }
 }
@@ -1,14 +1,28 @@
 package com.simuladortrafego;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class Street {
     private String id;
     private double length; // in meters or an abstract unit
     private int capacity; // max number of cars
     private boolean isTwoWay;
     private Direction direction; // For one-way streets
+    private int lanes; // faixas por sentido de tráfego
+    private final List<LoopDetector> detectors = new ArrayList<>(); // laços virtuais (motores headless)
 
     public Street(String id, double length, int capacity, boolean isTwoWay, Direction direction) {
+        this(id, length, capacity, isTwoWay, direction, 1);
+    }
+
+    public Street(String id, double length, int capacity, boolean isTwoWay, Direction direction, int lanes) {
+        if (lanes <= 0) {
+            throw new IllegalArgumentException("Street must have at least one lane.");
+        }
         this.id = id;
+        this.lanes = lanes;
         this.length = length;
         this.capacity = capacity;
         this.isTwoWay = isTwoWay;
@@ -30,6 +44,10 @@ public class Street {
         return capacity;
     }
 
+    public int getLanes() {
+        return lanes;
+    }
+
     public boolean isTwoWay() {
         return isTwoWay;
     }
@@ -41,6 +59,24 @@ public class Street {
         return direction;
     }
 
+    public void addLoopDetector(LoopDetector detector) {
+        double reach = detector.getDistanceFromStopLine() + detector.getLength();
+        if (reach > length) {
+            throw new IllegalArgumentException("Detector " + detector.getId() + " não cabe na rua " + id
+                    + ": distância " + detector.getDistanceFromStopLine() + " m + comprimento " + detector.getLength()
+                    + " m = " + reach + " m, mais que os " + length + " m da rua.");
+        }
+        if (isTwoWay && detector.getTowardIntersection() == null) {
+            throw new IllegalArgumentException("Detector " + detector.getId() + " na rua de mão dupla " + id
+                    + " precisa do cruzamento de destino.");
+        }
+        detectors.add(detector);
+    }
+
+    public List<LoopDetector> getLoopDetectors() {
+        return Collections.unmodifiableList(detectors);
+    }
+
     // Basic methods for cars entering/leaving the street might be added later
     // or managed by the Grid/Intersection classes.
 
@@ -50,6 +86,7 @@ public class Street {
                 "id='" + id + '\'' +
                 ", length=" + length +
                 ", capacity=" + capacity +
+                ", lanes=" + lanes +
                 ", isTwoWay=" + isTwoWay +
                 (isTwoWay ? "" : ", direction=" + direction) +
                 '}';
@@ -0,0 +1,1489 @@
+package com.simuladortrafego;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Motor headless em tempo simulado: mesmo grid e mesmas regras de Car/Intersection,
+// mas avançado tick a tick por uma única thread, sem Thread.sleep nem wait().
+// Cada instância é isolada (semáforos, veículos e fluxos aleatórios próprios) e pode rodar em paralelo com outras.
+// Os sorteios vêm de RandomStreams a partir da semente do cenário: a demanda tem um fluxo do motor e cada
+// veículo carrega o seu (velocidade desejada, saída escolhida, decisão no amarelo), então o resultado não
+// depende da ordem de processamento. Isso permite atualizar as faixas em paralelo (enableParallelLanes):
+// tudo que envolve mais de uma faixa (semáforo, espaço na saída, detector de travamento) é decidido antes,
+// em sequência, e o seguimento de cada faixa só lê e escreve os próprios veículos.
+// Com um EventJournal o motor grava chegadas, saídas escolhidas, decisões no amarelo e trocas de fase;
+// em reprodução (replayFrom) as chegadas e decisões vêm do diário em vez dos sorteios, e qualquer
+// diferença entre o que o motor faria e o que foi gravado interrompe a execução no tick em que aparece.
+// Alterações na rede durante a execução (ruas fechadas, capacidades, mão única, tempos de semáforo) chegam
+// como versões imutáveis de um NetworkEditor: o motor confere a versão no início de cada tick, sem trava,
+// e ao trocar reaplica só o que mudou; as rotas da versão já vêm prontas de quem publicou. Com diário o
+// editor fica travado e recusa as alterações na chamada.
+//
+// Modelo microscópico: seguimento de veículos pelo IDM (Intelligent Driver Model) em cada faixa e
+// troca de faixa pelo MOBIL. A linha de retenção funciona como um líder parado quando o veículo da
+// frente precisa parar (vermelho, amarelo sem avançar, ou rua de saída sem espaço).
+// No modo mesoscópico (EngineMode.MESO) cada link vira uma fila (MesoQueues) com tempo de fluxo livre
+// e vazão de saturação, sem posição por metro; semáforos, demanda e rotas são os mesmos.
+// No modo híbrido (EngineMode.HYBRID) só os links que chegam à ZonePartition do cenário são microscópicos;
+// o veículo troca de representação ao cruzar a fronteira e a conservação é conferida periodicamente.
+// Carros, ônibus, caminhões e bicicletas (VehicleClass) diferem só nos parâmetros: o motor lê a classe do
+// registro e indexa as tabelas, sem despacho por veículo. Ônibus param em cada ponto do trajeto (meio do link)
+// pelo tempo de embarque; a capacidade das ruas e a vazão de saturação contam ucp, não veículos.
+// Pedestres são contagens agregadas por faixa (PedestrianSignals, dentro do SignalController): abrem com as
+// fases compatíveis, por botoeira ou em toda fase, e conversões para o ramo de uma faixa ocupada esperam.
+// Emissões (enableEmissions ou Scenario.withEmissions) são somadas em fluxo por faixa e classe a cada tick,
+// a partir da velocidade e da aceleração realizadas, sem guardar trajetórias (EmissionLedger).
+// Com TripStatistics cada veículo conta no próprio registro as paradas e os ticks parado; ao deixar um link
+// a espera vai para a aproximação e, ao sair da rede, a viagem vira uma linha do registro de viagens.
+// Laços virtuais das ruas (LoopDetector) são conferidos no seguimento só nas faixas que cobrem, e a cada
+// intervalo somam contagem, ocupação e velocidade (LoopDetectors), opcionalmente gravadas num DetectorFeed.
+// Com uma ProcessPartition o motor simula apenas os links do próprio processo: veículos que seguem para
+// links de outro processo vão para a caixa de saída do vizinho (BoundaryBuffer) e os recebidos entram
+// pela fila de chegada do link; quem avança os ticks e troca as mensagens é o DistributedNode.
+public class TickEngine {
+    static final long TICK_MS = 100; // Mesmo tickDuration do Simulator
+    static final double TICK_SECONDS = TICK_MS / 1000.0;
+    static final double MIN_DESIRED_SPEED = 8.0;   // m/s (~30 km/h)
+    static final double MAX_DESIRED_SPEED = 14.0;  // m/s (~50 km/h)
+
+    // IDM (Treiber, Hennecke e Helbing) com valores usuais para tráfego urbano; aceleração, desaceleração,
+    // comprimento e velocidades abaixo são os dos carros, as demais classes ficam nas tabelas de VehicleClass
+    static final double IDM_MAX_ACCEL = 1.5;       // a, m/s²
+    static final double IDM_COMFORT_DECEL = 2.0;   // b, m/s²
+    static final double IDM_MIN_GAP = 2.0;         // s0, m
+    static final double IDM_TIME_HEADWAY = 1.2;    // T, s
+    static final double VEHICLE_LENGTH = 5.0;      // m
+    static final double YELLOW_DECISION_HORIZON_S = 1.0;
+    static final double BUS_STOP_FRACTION = 0.5;   // ponto de ônibus no meio do link
+    static final double BUS_STOP_REACH = 2.0;      // m antes do ponto em que o ônibus parado já embarca
+    static final double BUS_STOP_SPEED = 1.0;      // m/s
+
+    // MOBIL (Kesting, Treiber e Helbing)
+    static final double MOBIL_POLITENESS = 0.3;
+    static final double MOBIL_THRESHOLD = 0.1;     // m/s²
+    static final double MOBIL_SAFE_DECEL = 4.0;    // m/s²
+    static final int LANE_CHANGE_PERIOD_TICKS = 10; // cada veículo avalia troca de faixa 1x por segundo
+
+    // Fronteira meso -> micro: quem esperou na fila sai acelerando a partir da linha de retenção
+    static final double JUNCTION_LENGTH = 20.0;    // m percorridos dentro do cruzamento
+    static final long CONSERVATION_CHECK_TICKS = 600; // confere a contagem de veículos a cada minuto simulado
+    static final long STARVATION_TICKS = 1200;        // 2 minutos no vermelho sem ser atendido
+    static final int MAX_GRIDLOCK_REPORTS = 10;       // por motor, para não inundar o log em lotes
+    static final int HEATMAP_SAMPLE_TICKS = 10;       // o mapa de congestionamento amostra uma vez por segundo
+    static final int MESO_STOP_TICKS = 10;            // espera na fila meso que conta como parada (TripStatistics)
+
+    private final Scenario scenario;
+    private final NetworkIndex network;
+    private final SignalController signals;
+    private final RandomStreams streams;
+    private final RandomStreams.Stream demandRandom;
+    private final VehiclePool pool;
+    private final LaneIndex lanes;
+    private final boolean[] laneBlocked; // a frente da faixa precisa parar na linha de retenção
+    private final boolean[] linkMeso;
+    private final MesoQueues meso;
+    private final int[] microLanes;
+    private final DemandModel demand;
+    private final double[] classCumulative; // participações acumuladas das classes de veículo; null: só carros
+    private final boolean[] busStops;       // ruas com ponto de ônibus; null: ponto em todo link
+    private RouteTable routes;         // a da versão em vigor das alterações na rede
+    private NetworkEditor editor;      // alterações na rede em execução (getEditor, useEditor)
+    private NetworkEdits edits;        // versão em vigor, trocada só no início de um tick
+    // Chegadas que ainda não entraram na rede (limite de veículos ou entrada congestionada), por link de origem;
+    // registros compactos, sem slot no pool até a admissão
+    private final ArrivalRing[] pending;
+    private final int[] pendingLinks; // links com chegadas esperando, para não varrer a rede toda a cada tick
+    private int pendingLinkCount = 0;
+    private final DemandModel.ArrivalSink arrivalSink = this::arrival;
+    private int[] scratch = new int[64];
+
+    private long tick = 0;
+    private int nextVehicleId = 0;
+    private int spawned = 0;
+    private int completed = 0;
+    private int inNetwork = 0;
+    private int waiting = 0;
+    private double delaySum = 0;
+    private int boundaryTransfers = 0;
+    private int conservationViolations = 0;
+    // Filas do detector: faixas micro [0, laneCount) e links meso [laneCount, laneCount + linkCount)
+    private final GridlockDetector gridlock;
+    private int gridlockReports = 0;
+    private CongestionHeatmap heatmap; // opcional, ver enableHeatmap
+    private EmissionLedger emissions;  // opcional, ver enableEmissions
+    private TripStatistics trips;      // opcional, ver enableTripStatistics
+    private LoopDetectors detectors;   // null se nenhuma rua tem laços
+    private DetectorFeed detectorFeed; // opcional, ver enableDetectorFeed
+    private ExternalController external; // opcional, ver enableExternalController
+    private ExecutorService laneWorkers;  // opcional, ver enableParallelLanes
+    private List<Callable<Void>> laneTasks;
+    private boolean hashing = false;      // opcional, ver enableTrajectoryHash
+    private EventJournal journal;         // opcional, ver enableJournal
+    private EventJournal.Reader replay;   // opcional, ver replayFrom
+    private int[] journalPhase;           // última fase gravada/conferida por cruzamento
+    private long trajectoryHash = 0;
+
+    // Execução distribuída (partition == null: processo único, todos os links locais)
+    private final ProcessPartition partition;
+    private final int rank;
+    private final boolean[] linkLocal;
+    private final int[] remoteRoom;          // vagas informadas pelo vizinho no último tick, por link remoto
+    private final BoundaryBuffer[] outbox;   // por processo vizinho
+    private final LongRing[] inbound;        // handles dos veículos recebidos esperando espaço, por link local
+    private final int[] inboundLinks;
+    private int inboundLinkCount = 0;
+    private int inboundCount = 0;
+    private int sent = 0;
+    private int received = 0;
+
+    public TickEngine(Scenario scenario) {
+        this(scenario, null, 0);
+    }
+
+    public TickEngine(Scenario scenario, ProcessPartition partition, int rank) {
+        this.scenario = scenario;
+        this.network = scenario.getNetwork();
+        this.streams = new RandomStreams(scenario.getSeed());
+        this.signals = new SignalController(network, scenario.getSignalPolicy(), streams);
+        // Mesmo fluxo de demanda em todos os processos: cada um fica só com as chegadas das próprias origens
+        this.demandRandom = streams.copyableStream(RandomStreams.DEMAND, 0);
+        this.pool = new VehiclePool(Math.min(scenario.getMaxVehicles(), 1024));
+        this.lanes = new LaneIndex(network, pool);
+        this.laneBlocked = new boolean[lanes.laneCount()];
+        this.linkMeso = new boolean[network.linkCount()];
+        for (int l = 0; l < linkMeso.length; l++) {
+            switch (scenario.getEngineMode()) {
+                case MESO:
+                    linkMeso[l] = true;
+                    break;
+                case HYBRID:
+                    linkMeso[l] = !scenario.getMicroZone().isMicroLink(network, l);
+                    break;
+                default:
+                    linkMeso[l] = false;
+            }
+        }
+        this.partition = partition;
+        this.rank = rank;
+        this.linkLocal = new boolean[network.linkCount()];
+        boolean[] localMeso = new boolean[network.linkCount()];
+        for (int l = 0; l < linkLocal.length; l++) {
+            linkLocal[l] = partition == null || partition.linkOwner(l) == rank;
+            localMeso[l] = linkMeso[l] && linkLocal[l];
+        }
+        this.meso = new MesoQueues(network, localMeso, TICK_SECONDS);
+        int microLaneCount = 0;
+        int[] micro = new int[lanes.laneCount()];
+        for (int lane = 0; lane < lanes.laneCount(); lane++) {
+            int link = lanes.linkOf(lane);
+            if (!linkMeso[link] && linkLocal[link]) micro[microLaneCount++] = lane;
+        }
+        this.microLanes = Arrays.copyOf(micro, microLaneCount);
+        this.pendingLinks = new int[network.linkCount()];
+        this.pending = new ArrivalRing[network.linkCount()];
+        for (int l = 0; l < pending.length; l++) {
+            pending[l] = new ArrivalRing(4);
+        }
+        this.remoteRoom = new int[network.linkCount()];
+        this.inbound = new LongRing[network.linkCount()];
+        this.inboundLinks = new int[network.linkCount()];
+        this.outbox = new BoundaryBuffer[partition == null ? 0 : partition.parts()];
+        if (partition != null) {
+            for (int l = 0; l < inbound.length; l++) {
+                if (linkLocal[l]) inbound[l] = new LongRing(4);
+            }
+            for (int peer = 0; peer < outbox.length; peer++) {
+                if (partition.isNeighbour(rank, peer)) outbox[peer] = new BoundaryBuffer();
+            }
+        }
+        int[] queueLinks = new int[lanes.laneCount() + network.linkCount()];
+        for (int lane = 0; lane < lanes.laneCount(); lane++) queueLinks[lane] = lanes.linkOf(lane);
+        for (int l = 0; l < network.linkCount(); l++) queueLinks[lanes.laneCount() + l] = l;
+        this.gridlock = new GridlockDetector(network, queueLinks, STARVATION_TICKS, gridlockListener());
+        this.demand = scenario.getDemand();
+        double[] shares = scenario.getClassShares();
+        if (shares != null && shares[VehicleClass.CAR.ordinal()] < 1.0) {
+            for (int c = 1; c < shares.length; c++) shares[c] += shares[c - 1];
+            this.classCumulative = shares;
+        } else {
+            this.classCumulative = null; // Só carros: nenhum sorteio de classe, mesmas trajetórias de antes
+        }
+        this.busStops = scenario.getBusStops();
+        this.routes = demand.getRoutes();
+        this.editor = new NetworkEditor(network, routes);
+        this.edits = editor.current();
+        if (scenario.tracksEmissions()) enableEmissions();
+        this.detectors = network.detectorCount() > 0
+                ? new LoopDetectors(network, lanes, LoopDetectors.DEFAULT_INTERVAL_MS) : null;
+    }
+
+    // Bifurcação: rede, demanda e geometria das faixas são compartilhadas; os registros dos veículos e das
+    // filas meso ficam em copy-on-write; o resto do estado (faixas, filas, semáforos, detector) é copiado
+    private TickEngine(TickEngine source) {
+        this.scenario = source.scenario;
+        this.network = source.network;
+        this.signals = new SignalController(source.signals);
+        this.streams = source.streams;
+        this.demandRandom = new RandomStreams.Stream(source.demandRandom);
+        this.pool = new VehiclePool(source.pool);
+        this.lanes = new LaneIndex(source.lanes, pool);
+        this.laneBlocked = source.laneBlocked.clone();
+        this.linkMeso = source.linkMeso;
+        this.meso = new MesoQueues(source.meso);
+        this.microLanes = source.microLanes;
+        this.demand = source.demand;
+        this.classCumulative = source.classCumulative;
+        this.busStops = source.busStops;
+        this.routes = source.routes;
+        this.edits = source.edits;
+        this.editor = new NetworkEditor(source.edits);
+        this.emissions = source.emissions == null ? null : new EmissionLedger(source.emissions);
+        this.trips = source.trips == null ? null : new TripStatistics(source.trips);
+        this.detectors = source.detectors == null ? null : new LoopDetectors(source.detectors);
+        this.pending = new ArrivalRing[source.pending.length];
+        for (int l = 0; l < pending.length; l++) {
+            pending[l] = new ArrivalRing(source.pending[l]);
+        }
+        this.pendingLinks = source.pendingLinks.clone();
+        this.pendingLinkCount = source.pendingLinkCount;
+        this.tick = source.tick;
+        this.nextVehicleId = source.nextVehicleId;
+        this.spawned = source.spawned;
+        this.completed = source.completed;
+        this.inNetwork = source.inNetwork;
+        this.waiting = source.waiting;
+        this.delaySum = source.delaySum;
+        this.boundaryTransfers = source.boundaryTransfers;
+        this.conservationViolations = source.conservationViolations;
+        this.gridlock = new GridlockDetector(source.gridlock, gridlockListener());
+        this.gridlockReports = source.gridlockReports;
+        this.hashing = source.hashing;
+        this.trajectoryHash = source.trajectoryHash;
+        this.partition = null;
+        this.rank = 0;
+        this.linkLocal = source.linkLocal;
+        this.remoteRoom = source.remoteRoom;
+        this.outbox = source.outbox;
+        this.inbound = source.inbound;
+        this.inboundLinks = source.inboundLinks;
+    }
+
+    private GridlockDetector.Listener gridlockListener() {
+        return new GridlockDetector.Listener() {
+            @Override
+            public void gridlock(long at, int[] cycleLinks) {
+                reportGridlock(at, cycleLinks);
+            }
+
+            @Override
+            public void starved(long at, int queue, int link, long waitingTicks) {
+                reportStarved(at, link, waitingTicks);
+            }
+        };
+    }
+
+    public ReplicationResult run() {
+        try {
+            while (tick < scenario.getDurationTicks()) {
+                step();
+            }
+        } finally {
+            disableParallelLanes();
+        }
+        return result();
+    }
+
+    public void step() {
+        NetworkEdits latest = editor.current(); // Uma leitura por tick; a versão vale para o tick inteiro
+        if (latest != edits) adopt(latest);
+        tick++;
+        gridlock.step(tick);
+        if (heatmap != null) heatmap.advanceTo((tick - 1) / HEATMAP_SAMPLE_TICKS);
+        signals.step(TICK_MS);
+        if (external != null) {
+            try {
+                external.exchange(tick);
+            } catch (IOException e) {
+                throw new IllegalStateException("Falha na comunicação com o controlador externo: " + e.getMessage(), e);
+            }
+        }
+        if (journalPhase != null) journalPhases();
+        spawn();
+        changeLanes();
+        decideStopLines();
+        if (laneWorkers == null) {
+            followLanes(0, microLanes.length);
+        } else {
+            pool.unshareRecords(); // Depois de uma bifurcação: cópias de bloco não podem correr em paralelo
+            runLaneTasks();
+        }
+        crossStopLines();
+        dischargeMeso();
+        if (hashing) hashTrajectories();
+        if (heatmap != null && tick % HEATMAP_SAMPLE_TICKS == 0) {
+            sampleHeatmap();
+        }
+        if (tick % CONSERVATION_CHECK_TICKS == 0) {
+            checkConservation();
+        }
+        if (detectors != null && detectors.endTick(tick) && detectorFeed != null) {
+            try {
+                detectorFeed.write(detectors);
+            } catch (IOException e) {
+                throw new IllegalStateException("Não foi possível gravar a saída dos detectores: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Todas as chegadas do tick são geradas em lote; as que não cabem esperam na origem
+    private void spawn() {
+        drainInbound();
+        if (replay == null) {
+            demand.generate(tick, TICK_SECONDS, demandRandom, arrivalSink);
+        } else {
+            replayArrivals();
+        }
+        for (int k = pendingLinkCount - 1; k >= 0; k--) {
+            int link = pendingLinks[k];
+            ArrivalRing queue = pending[link];
+            while (!queue.isEmpty() && inNetwork < scenario.getMaxVehicles()) {
+                if (!hasRoom(link)) break; // Entrada congestionada: continua esperando
+                int v = admit(queue, link);
+                waiting--;
+                enterLink(v, link, 0);
+                spawned++;
+                inNetwork++;
+            }
+            if (queue.isEmpty()) pendingLinks[k] = pendingLinks[--pendingLinkCount];
+        }
+    }
+
+    private void arrival(int originLink, int destination) {
+        if (!linkLocal[originLink]) return; // Origem simulada por outro processo
+        // Identificadores intercalados por processo, únicos na simulação distribuída
+        int id = partition == null ? nextVehicleId++ : nextVehicleId++ * partition.parts() + rank;
+        // O fluxo do veículo depende só do id: a classe é o primeiro sorteio, a velocidade o segundo (na admissão)
+        int c = classCumulative == null ? 0 : VehicleClass.draw(RandomStreams.toDouble(RandomStreams.mix64(
+                RandomStreams.advance(streams.seed(RandomStreams.VEHICLE, id)))), classCumulative);
+        if (journal != null) journal.append(EventJournal.SPAWN, tick, id, originLink, destination);
+        if (pending[originLink].isEmpty()) pendingLinks[pendingLinkCount++] = originLink;
+        pending[originLink].addLast(id, destination, c, tick);
+        waiting++;
+    }
+
+    // A chegada mais antiga da fila ganha um slot no pool, com o tick de chegada como início da viagem
+    private int admit(ArrivalRing queue, int originLink) {
+        int id = queue.firstId();
+        int c = queue.firstClass();
+        int v = pool.acquire(id, 0, queue.firstTick(), originLink, queue.firstDestination());
+        queue.removeFirst();
+        long random = streams.seed(RandomStreams.VEHICLE, id);
+        pool.setRandomState(v, classCumulative == null ? random : RandomStreams.advance(random));
+        pool.setVehicleClass(v, c);
+        double speed = VehicleClass.MIN_SPEED[c] + pool.nextDouble(v) * VehicleClass.SPEED_RANGE[c];
+        pool.setDesiredSpeed(v, speed);
+        pool.setSpeed(v, speed);
+        return v;
+    }
+
+    private boolean hasRoom(int link) {
+        if (!linkLocal[link]) return remoteRoom[link] > 0;
+        if (edits.isEntryClosed(link)) return false;
+        if (linkMeso[link]) return meso.hasRoom(link);
+        return lanes.linkPcu(link) < edits.capacity(network.linkStreet(link)) && bestEntryLane(link) >= 0;
+    }
+
+    // Chamador garante hasRoom(link)
+    private void enterLink(int v, int link, double position) {
+        int c = pool.vehicleClass(v);
+        double freeFlow = network.linkLength(link) / pool.desiredSpeed(v);
+        boolean stops = VehicleClass.DWELL_TICKS[c] > 0 && (busStops == null || busStops[network.linkStreet(link)]);
+        if (stops) freeFlow += VehicleClass.DWELL_SECONDS[c]; // O embarque faz parte da viagem, não é atraso
+        pool.setStopTick(v, stops ? 0 : -1);
+        pool.setLink(v, link);
+        pool.setPosition(v, position);
+        pool.setYellowDecision(v, (byte) 0);
+        pool.setNextExit(v, -1);
+        pool.addFreeFlowSeconds(v, freeFlow);
+        if (linkMeso[link]) {
+            pool.setReadyTick(v, tick + (long) Math.ceil(freeFlow / TICK_SECONDS));
+            meso.add(link, v, VehicleClass.PCU[c]);
+            return;
+        }
+        int lane = bestEntryLane(link);
+        int tail = lanes.tail(lane);
+        if (tail >= 0) {
+            pool.setSpeed(v, Math.min(pool.speed(v), pool.speed(tail)));
+        }
+        lanes.insert(lane, v);
+        if (detectors != null && detectors.covers(lane)) detectors.entered(lane, position, pool.speed(v));
+    }
+
+    // Faixa de entrada com mais espaço livre atrás do último veículo; -1 se nenhuma comporta um veículo
+    private int bestEntryLane(int link) {
+        int best = -1;
+        double bestSpace = VEHICLE_LENGTH + IDM_MIN_GAP;
+        int first = lanes.firstLane(link);
+        for (int lane = first; lane < first + lanes.lanesOf(link); lane++) {
+            int tail = lanes.tail(lane);
+            if (tail < 0) return lane;
+            double space = pool.position(tail) - VehicleClass.LENGTH[pool.vehicleClass(tail)];
+            if (space >= bestSpace) {
+                best = lane;
+                bestSpace = space;
+            }
+        }
+        return best;
+    }
+
+    // Sequencial: tudo que a frente da faixa decide olhando para fora dela (semáforo, espaço na saída,
+    // detector de travamento) usa o estado do início do tick, qualquer que seja a ordem das faixas
+    private void decideStopLines() {
+        for (int lane : microLanes) {
+            if (lanes.size(lane) == 0) {
+                laneBlocked[lane] = false;
+                gridlock.idle(lane);
+            } else {
+                laneBlocked[lane] = mustStop(lanes.linkOf(lane), lanes.vehicle(lane, 0));
+            }
+        }
+    }
+
+    // Seguimento dentro das faixas microLanes[from, to): cada faixa só toca os próprios veículos
+    private void followLanes(int from, int to) {
+        for (int k = from; k < to; k++) {
+            int lane = microLanes[k];
+            int n = lanes.size(lane);
+            double length = network.linkLength(lanes.linkOf(lane));
+            for (int order = 0; order < n; order++) {
+                int v = lanes.vehicle(lane, order);
+                double acc;
+                double limit;
+                if (order == 0) {
+                    acc = accelerationBehind(v, -1, lane);
+                    limit = laneBlocked[lane] ? length : Double.POSITIVE_INFINITY;
+                } else {
+                    int leader = lanes.vehicle(lane, order - 1);
+                    acc = accelerationBehind(v, leader, lane);
+                    limit = pool.position(leader) - VehicleClass.LENGTH[pool.vehicleClass(leader)];
+                }
+                long stop = pool.stopTick(v);
+                if (stop >= 0) { // Ônibus com ponto neste link
+                    double stopAt = length * BUS_STOP_FRACTION;
+                    double position = pool.position(v);
+                    if (stop == 0 && position > stopAt) {
+                        pool.setStopTick(v, -1); // Entrou já depois do ponto
+                    } else if (stop == 0 && stopAt - position < BUS_STOP_REACH && pool.speed(v) < BUS_STOP_SPEED) {
+                        pool.setStopTick(v, tick + VehicleClass.DWELL_TICKS[pool.vehicleClass(v)]);
+                        acc = 0;
+                        limit = position;
+                    } else if (stop == 0) { // O ponto é um obstáculo parado à frente
+                        double speed = pool.speed(v);
+                        acc = Math.min(acc, idm(pool.vehicleClass(v), speed, pool.desiredSpeed(v),
+                                stopAt + IDM_MIN_GAP - position, speed));
+                        limit = Math.min(limit, stopAt);
+                    } else if (stop > tick) { // Embarcando
+                        acc = 0;
+                        limit = position;
+                    } else {
+                        pool.setStopTick(v, -1);
+                    }
+                }
+                double speed = pool.speed(v);
+                double before = pool.position(v);
+                integrate(v, acc, limit);
+                if (detectors != null && detectors.covers(lane)) {
+                    detectors.sample(lane, tick, before, pool.position(v), VehicleClass.LENGTH[pool.vehicleClass(v)],
+                            pool.speed(v));
+                }
+                if (emissions != null) { // A faixa é desta thread: a soma não precisa de trava
+                    emissions.sample(lane, pool.vehicleClass(v), speed, (pool.speed(v) - speed) / TICK_SECONDS,
+                            TICK_SECONDS);
+                }
+                if (trips != null && pool.speed(v) < CongestionHeatmap.STOPPED_SPEED && pool.stopTick(v) <= tick) {
+                    if (speed >= CongestionHeatmap.STOPPED_SPEED) pool.setStops(v, pool.stops(v) + 1);
+                    pool.setLinkWaitTicks(v, pool.linkWaitTicks(v) + 1); // Só o registro do próprio veículo
+                }
+            }
+        }
+    }
+
+    private void runLaneTasks() {
+        try {
+            for (Future<Void> done : laneWorkers.invokeAll(laneTasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Atualização das faixas interrompida no tick " + tick + ".", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha ao atualizar as faixas no tick " + tick + ".", e.getCause());
+        }
+    }
+
+    // Estado de todos os veículos em ordem determinística (faixas, filas meso, chegadas pendentes):
+    // dois motores com o mesmo hash fizeram exatamente as mesmas trajetórias
+    private void hashTrajectories() {
+        long h = mixHash(trajectoryHash, tick);
+        for (int lane : microLanes) {
+            for (int order = 0; order < lanes.size(lane); order++) {
+                int v = lanes.vehicle(lane, order);
+                h = mixHash(h, ((long) pool.vehicleId(v) << 32) | lane);
+                h = mixHash(h, Double.doubleToRawLongBits(pool.position(v)));
+                h = mixHash(h, Double.doubleToRawLongBits(pool.speed(v)));
+            }
+        }
+        for (int k = 0; k < meso.activeCount(); k++) {
+            int link = meso.activeLink(k);
+            for (int i = 0; i < meso.size(link); i++) {
+                h = mixHash(h, ((long) pool.vehicleId(meso.vehicle(link, i)) << 32) | link);
+            }
+        }
+        h = mixHash(h, ((long) spawned << 32) | completed);
+        trajectoryHash = mixHash(h, waiting);
+    }
+
+    private static long mixHash(long h, long value) {
+        return RandomStreams.mix64(h ^ value) + 0x9E3779B97F4A7C15L;
+    }
+
+    // Integração balística; "limit" impede atravessar o líder ou a linha de retenção
+    private void integrate(int v, double acc, double limit) {
+        double speed = pool.speed(v);
+        double newSpeed = speed + acc * TICK_SECONDS;
+        double advance;
+        if (newSpeed < 0) {
+            advance = acc < 0 ? -0.5 * speed * speed / acc : 0;
+            newSpeed = 0;
+        } else {
+            advance = speed * TICK_SECONDS + 0.5 * acc * TICK_SECONDS * TICK_SECONDS;
+        }
+        double position = pool.position(v) + advance;
+        if (position > limit) {
+            position = Math.max(pool.position(v), limit);
+            newSpeed = 0;
+        }
+        pool.setAcceleration(v, acc);
+        pool.setSpeed(v, newSpeed);
+        pool.setPosition(v, position);
+    }
+
+    // Aceleração IDM de v atrás de "leader"; sem líder, a linha de retenção da faixa vale se estiver bloqueada
+    private double accelerationBehind(int v, int leader, int lane) {
+        double speed = pool.speed(v);
+        int c = pool.vehicleClass(v);
+        if (leader >= 0) {
+            double gap = pool.position(leader) - VehicleClass.LENGTH[pool.vehicleClass(leader)] - pool.position(v);
+            return idm(c, speed, pool.desiredSpeed(v), gap, speed - pool.speed(leader));
+        }
+        if (laneBlocked[lane]) {
+            double gap = network.linkLength(lanes.linkOf(lane)) - pool.position(v);
+            return idm(c, speed, pool.desiredSpeed(v), gap, speed);
+        }
+        return idm(c, speed, pool.desiredSpeed(v), Double.POSITIVE_INFINITY, 0);
+    }
+
+    // Aceleração e desaceleração vêm das tabelas da classe c (VehicleClass), sem despacho por veículo
+    static double idm(int c, double speed, double desiredSpeed, double gap, double approachRate) {
+        double maxAccel = VehicleClass.MAX_ACCEL[c];
+        double ratio = speed / desiredSpeed;
+        double free = 1 - ratio * ratio * ratio * ratio;
+        if (gap == Double.POSITIVE_INFINITY) {
+            return maxAccel * free;
+        }
+        double desiredGap = IDM_MIN_GAP + Math.max(0, speed * IDM_TIME_HEADWAY
+                + speed * approachRate / VehicleClass.IDM_DENOMINATOR[c]);
+        double interaction = desiredGap / Math.max(gap, 0.1);
+        return maxAccel * (free - interaction * interaction);
+    }
+
+    // Decide se o veículo da frente da faixa deve parar na linha de retenção neste tick
+    private boolean mustStop(int link, int v) {
+        if (pool.nextExit(v) < 0 && network.exitCount(link) > 0) {
+            pool.setNextExit(v, chooseExit(v, link));
+        }
+        int approach = network.linkApproach(link);
+        LightState state = movementState(link, pool.nextExit(v));
+        int queue = pool.lane(v);
+        if (state == LightState.RED) {
+            pool.setYellowDecision(v, (byte) 0);
+            gridlock.waitingAtRed(queue);
+            releaseIfExitFreed(queue, v, link);
+            return true;
+        }
+        if (pedestriansCrossing(link, pool.nextExit(v))) {
+            gridlock.waitingAtRed(queue);
+            return true;
+        }
+        gridlock.released(queue);
+        if (state == LightState.YELLOW) {
+            if (pool.yellowDecision(v) == 0) {
+                double speed = pool.speed(v);
+                double distance = network.linkLength(link) - pool.position(v);
+                double stoppingDistance = speed * speed / (2 * VehicleClass.COMFORT_DECEL[pool.vehicleClass(v)]);
+                if (distance > stoppingDistance + speed * YELLOW_DECISION_HORIZON_S) {
+                    return true; // Ainda longe: prepara-se para parar
+                }
+                // Sem distância para frear, avança; senão 50%, como Car.shouldProceedOnYellow
+                boolean go = distance < stoppingDistance || proceedOnYellow(v, link);
+                pool.setYellowDecision(v, go ? (byte) 1 : (byte) 2);
+                if (go) signals.carPassedOnYellow(approach);
+            }
+            if (pool.yellowDecision(v) != 1) return true;
+        }
+        int next = nextLink(v, link);
+        if (next >= 0 && !hasRoom(next)) { // Rua de saída sem espaço: não bloqueia o cruzamento
+            gridlock.block(queue, pool.nextExit(v));
+            return true;
+        }
+        gridlock.unblock(queue);
+        return false;
+    }
+
+    // Semáforo do movimento escolhido; sem saída (fim da rede), vale o da aproximação
+    private LightState movementState(int link, int exit) {
+        return exit < 0 ? signals.state(network.linkApproach(link)) : signals.movementState(network.exitMovement(link, exit));
+    }
+
+    // A conversão cede aos pedestres que atravessam o ramo de saída
+    private boolean pedestriansCrossing(int link, int exit) {
+        return exit >= 0 && signals.pedestriansCrossing(network.exitMovement(link, exit));
+    }
+
+    private int nextLink(int v, int link) {
+        int k = pool.nextExit(v);
+        if (k < 0) return -1;
+        // A viagem termina ao sair da rede ou ao entrar na rua de destino
+        return network.exitStreet(link, k) == pool.destination(v) ? -1 : network.exitNextLink(link, k);
+    }
+
+    private void crossStopLines() {
+        for (int lane : microLanes) {
+            if (lanes.size(lane) == 0 || laneBlocked[lane]) continue;
+            int head = lanes.vehicle(lane, 0);
+            int link = lanes.linkOf(lane);
+            double length = network.linkLength(link);
+            if (pool.position(head) < length) continue;
+            int next = nextLink(head, link);
+            if (next >= 0 && !hasRoom(next)) {
+                pool.setPosition(head, length);
+                pool.setSpeed(head, 0);
+                continue;
+            }
+            double overshoot = pool.position(head) - length;
+            lanes.remove(head);
+            if (heatmap != null) heatmap.exit(link);
+            if (trips != null) passage(head, link, pool.linkWaitTicks(head));
+            if (next < 0) {
+                finishTrip(head);
+            } else {
+                if (linkMeso[next]) boundaryTransfers++; // micro -> meso: posição e faixa são descartadas
+                handOver(head, next, overshoot);
+            }
+        }
+    }
+
+    // Links mesoscópicos: libera a frente da fila quando terminou o trecho em fluxo livre, o semáforo
+    // permite (o amarelo conta como verde efetivo), há crédito de saturação e a rua de saída tem espaço
+    private void dischargeMeso() {
+        for (int k = meso.activeCount() - 1; k >= 0; k--) {
+            int link = meso.activeLink(k);
+            int queue = lanes.laneCount() + link;
+            if (meso.accrue(link)) {
+                int approach = network.linkApproach(link);
+                LightState approachState = signals.state(approach);
+                while (meso.canRelease(link) && meso.size(link) > 0) {
+                    int head = meso.head(link);
+                    if (pool.readyTick(head) > tick) {
+                        gridlock.idle(queue);
+                        break;
+                    }
+                    if (approachState == LightState.RED) { // Nenhum movimento liberado: nem escolhe a saída
+                        gridlock.waitingAtRed(queue);
+                        releaseIfExitFreed(queue, head, link);
+                        break;
+                    }
+                    if (pool.nextExit(head) < 0 && network.exitCount(link) > 0) {
+                        pool.setNextExit(head, chooseExit(head, link));
+                    }
+                    LightState state = movementState(link, pool.nextExit(head));
+                    if (state == LightState.RED) { // Outro movimento da aproximação está verde, não o da frente
+                        gridlock.waitingAtRed(queue);
+                        releaseIfExitFreed(queue, head, link);
+                        break;
+                    }
+                    if (pedestriansCrossing(link, pool.nextExit(head))) {
+                        gridlock.waitingAtRed(queue);
+                        break;
+                    }
+                    gridlock.released(queue);
+                    int next = nextLink(head, link);
+                    if (next >= 0 && !hasRoom(next)) {
+                        gridlock.block(queue, pool.nextExit(head));
+                        break;
+                    }
+                    gridlock.unblock(queue);
+                    meso.poll(link, VehicleClass.PCU[pool.vehicleClass(head)]);
+                    if (heatmap != null) heatmap.exit(link);
+                    if (emissions != null) mesoEmissions(head, link);
+                    if (trips != null) passage(head, link, (int) Math.max(0, tick - pool.readyTick(head)));
+                    if (detectors != null) {
+                        detectors.discharge(link, tick, VehicleClass.LENGTH[pool.vehicleClass(head)], queueExitSpeed(head));
+                    }
+                    if (state == LightState.YELLOW) signals.carPassedOnYellow(approach);
+                    if (next < 0) {
+                        finishTrip(head);
+                    } else {
+                        if (!linkMeso[next]) enterMicroFromQueue(head);
+                        handOver(head, next, 0);
+                    }
+                }
+            }
+            if (meso.size(link) == 0) gridlock.idle(queue);
+            meso.deactivateIfEmpty(k);
+        }
+    }
+
+    // Sem velocidade por tick na fila: o trecho em fluxo livre à velocidade desejada e o resto em marcha lenta
+    // (espera na fila e, para ônibus com ponto no link, o embarque)
+    private void mesoEmissions(int v, int link) {
+        int c = pool.vehicleClass(v);
+        double speed = pool.desiredSpeed(v);
+        double idle = (tick - pool.readyTick(v)) * TICK_SECONDS + (pool.stopTick(v) == 0 ? VehicleClass.DWELL_SECONDS[c] : 0);
+        emissions.traversal(link, c, speed, network.linkLength(link) / speed, idle);
+    }
+
+    // No vermelho a aresta de espera por falta de espaço é mantida enquanto a saída continuar cheia,
+    // para que um ciclo travado não pareça se desfazer a cada ciclo semafórico
+    private void releaseIfExitFreed(int queue, int v, int link) {
+        if (!gridlock.isBlocked(queue)) return;
+        int next = nextLink(v, link);
+        if (next < 0 || hasRoom(next)) gridlock.unblock(queue);
+    }
+
+    private void reportGridlock(long at, int[] cycleLinks) {
+        if (gridlockReports++ >= MAX_GRIDLOCK_REPORTS) return;
+        StringBuilder message = new StringBuilder("Travamento no tick " + at + " (" + scenario.getName() + "): ");
+        for (int k = 0; k < cycleLinks.length; k++) {
+            if (k > 0) message.append(" -> ");
+            message.append(describeLink(cycleLinks[k]));
+        }
+        System.err.println(message);
+    }
+
+    private void reportStarved(long at, int link, long waitingTicks) {
+        if (gridlockReports++ >= MAX_GRIDLOCK_REPORTS) return;
+        System.err.println("Aproximação sem verde no tick " + at + " (" + scenario.getName() + "): "
+                + describeLink(link) + " esperando há " + (waitingTicks * TICK_SECONDS) + " s");
+    }
+
+    // Rua, cruzamento e os veículos parados no link (até 10)
+    private String describeLink(int link) {
+        StringBuilder text = new StringBuilder(network.street(network.linkStreet(link)).getId())
+                .append('@').append(network.intersection(network.linkIntersection(link)).getId()).append(" [");
+        int listed = 0;
+        if (linkMeso[link]) {
+            for (int k = 0; k < meso.size(link) && listed < 10; k++, listed++) {
+                text.append(listed > 0 ? "," : "").append(pool.vehicleId(meso.vehicle(link, k)));
+            }
+        } else {
+            int first = lanes.firstLane(link);
+            for (int lane = first; lane < first + lanes.lanesOf(link); lane++) {
+                for (int order = 0; order < lanes.size(lane) && listed < 10; order++, listed++) {
+                    text.append(listed > 0 ? "," : "").append(pool.vehicleId(lanes.vehicle(lane, order)));
+                }
+            }
+        }
+        return text.append(']').toString();
+    }
+
+    // Fim de cada segundo: veículos, soma das velocidades e parados de cada link com veículos.
+    // Na fila meso quem já cumpriu o tempo de fluxo livre está parado; os demais andam à velocidade desejada.
+    private void sampleHeatmap() {
+        heatmap.beginSample();
+        for (int lane : microLanes) {
+            int n = lanes.size(lane);
+            if (n == 0) continue;
+            double speedTotal = 0;
+            int stopped = 0;
+            for (int order = 0; order < n; order++) {
+                double speed = pool.speed(lanes.vehicle(lane, order));
+                speedTotal += speed;
+                if (speed < CongestionHeatmap.STOPPED_SPEED) stopped++;
+            }
+            heatmap.sample(lanes.linkOf(lane), n, speedTotal, stopped);
+        }
+        for (int k = 0; k < meso.activeCount(); k++) {
+            int link = meso.activeLink(k);
+            int n = meso.size(link);
+            double speedTotal = 0;
+            int stopped = 0;
+            for (int i = 0; i < n; i++) {
+                int v = meso.vehicle(link, i);
+                if (pool.readyTick(v) <= tick) {
+                    stopped++;
+                } else {
+                    speedTotal += pool.desiredSpeed(v);
+                }
+            }
+            heatmap.sample(link, n, speedTotal, stopped);
+        }
+    }
+
+    // Chamador garante hasRoom(next); links de outro processo recebem o veículo pela caixa de saída
+    private void handOver(int v, int next, double position) {
+        if (linkLocal[next]) {
+            enterLink(v, next, position);
+            return;
+        }
+        remoteRoom[next]--;
+        outbox[partition.linkOwner(next)].addVehicle(next, pool.vehicleId(v), pool.desiredSpeed(v),
+                pool.spawnTick(v), pool.originLink(v), pool.destination(v), pool.freeFlowSeconds(v),
+                pool.speed(v), position, pool.randomState(v), pool.vehicleClass(v), pool.stops(v), pool.tripWaitTicks(v));
+        pool.release(v);
+        sent++;
+        inNetwork--;
+    }
+
+    // Veículos recebidos de vizinhos entram antes das novas chegadas, assim que houver espaço
+    private void drainInbound() {
+        for (int k = inboundLinkCount - 1; k >= 0; k--) {
+            int link = inboundLinks[k];
+            LongRing queue = inbound[link];
+            while (!queue.isEmpty() && hasRoom(link)) {
+                int v = pool.slotOf(queue.pollFirst()); // Atravessa ticks: confere que o slot não foi reciclado
+                inboundCount--;
+                enterLink(v, link, pool.position(v));
+            }
+            if (queue.isEmpty()) inboundLinks[k] = inboundLinks[--inboundLinkCount];
+        }
+    }
+
+    // Meso -> micro: a fila não tem velocidade; quem chegou no tempo de fluxo livre cruza embalado,
+    // quem esperou parte do repouso e atravessa o cruzamento acelerando
+    private void enterMicroFromQueue(int v) {
+        boundaryTransfers++;
+        pool.setSpeed(v, queueExitSpeed(v));
+        pool.setAcceleration(v, 0);
+    }
+
+    private double queueExitSpeed(int v) {
+        double desired = pool.desiredSpeed(v);
+        if (pool.readyTick(v) < tick) {
+            return Math.min(desired, Math.sqrt(2 * VehicleClass.MAX_ACCEL[pool.vehicleClass(v)] * JUNCTION_LENGTH));
+        }
+        return desired;
+    }
+
+    // Nenhum veículo pode sumir ou duplicar na troca de representação
+    private void checkConservation() {
+        int counted = 0;
+        for (int lane : microLanes) {
+            counted += lanes.size(lane);
+        }
+        for (int k = 0; k < meso.activeCount(); k++) {
+            counted += meso.size(meso.activeLink(k));
+        }
+        counted += inboundCount;
+        if (counted != inNetwork || spawned + received != completed + sent + inNetwork || pool.liveCount() != inNetwork) {
+            conservationViolations++;
+            System.err.println("Conservação violada no tick " + tick + " (" + scenario.getName() + "): contados="
+                    + counted + ", na rede=" + inNetwork + ", gerados=" + spawned + ", concluídos=" + completed
+                    + ", vivos no pool=" + pool.liveCount() + ", esperando=" + waiting
+                    + ", enviados=" + sent + ", recebidos=" + received);
+        }
+    }
+
+    // Fim do link que chega a uma aproximação: a espera parada nele vai para a aproximação e para a viagem.
+    // Na fila meso não há velocidade: a espera é o tempo na fila depois do trecho em fluxo livre, e conta
+    // como uma parada a partir de MESO_STOP_TICKS
+    private void passage(int v, int link, int waitTicks) {
+        if (waitTicks >= MESO_STOP_TICKS && linkMeso[link]) pool.setStops(v, pool.stops(v) + 1);
+        trips.passage(pool.vehicleId(v), network.linkApproach(link), tick, waitTicks * TICK_SECONDS);
+        pool.setTripWaitTicks(v, pool.tripWaitTicks(v) + waitTicks);
+        pool.setLinkWaitTicks(v, 0);
+    }
+
+    private void finishTrip(int v) {
+        completed++;
+        inNetwork--;
+        double delay = Math.max(0, (tick - pool.spawnTick(v)) * TICK_SECONDS - pool.freeFlowSeconds(v));
+        delaySum += delay;
+        if (trips != null) {
+            trips.trip(pool.vehicleId(v), pool.vehicleClass(v), pool.originLink(v), pool.destination(v),
+                    pool.spawnTick(v), tick, pool.stops(v), pool.tripWaitTicks(v) * TICK_SECONDS, delay);
+        }
+        pool.release(v);
+    }
+
+    // MOBIL: troca para a faixa vizinha se a vantagem própria mais a dos vizinhos (ponderada pela
+    // polidez) superar o limiar, sem forçar o novo seguidor a frear além de MOBIL_SAFE_DECEL
+    private void changeLanes() {
+        int phase = (int) (tick % LANE_CHANGE_PERIOD_TICKS);
+        int count = 0;
+        for (int lane : microLanes) {
+            if (lanes.lanesOf(lanes.linkOf(lane)) < 2) continue;
+            for (int order = 0; order < lanes.size(lane); order++) {
+                int v = lanes.vehicle(lane, order);
+                if (pool.vehicleId(v) % LANE_CHANGE_PERIOD_TICKS != phase) continue;
+                if (pool.stopTick(v) > tick) continue; // Ônibus embarcando não sai do ponto
+                if (count == scratch.length) scratch = Arrays.copyOf(scratch, count * 2);
+                scratch[count++] = v;
+            }
+        }
+        for (int c = 0; c < count; c++) {
+            int v = scratch[c];
+            int lane = pool.lane(v);
+            int link = lanes.linkOf(lane);
+            int first = lanes.firstLane(link);
+            int last = first + lanes.lanesOf(link) - 1;
+            double current = accelerationBehind(v, lanes.leader(v), lane);
+            int oldFollower = lanes.follower(v);
+            double oldFollowerGain = 0;
+            if (oldFollower >= 0) {
+                oldFollowerGain = accelerationBehind(oldFollower, lanes.leader(v), lane)
+                        - accelerationBehind(oldFollower, v, lane);
+            }
+            int bestLane = -1;
+            double bestIncentive = MOBIL_THRESHOLD;
+            for (int target = lane - 1; target <= lane + 1; target += 2) {
+                if (target < first || target > last) continue;
+                double incentive = laneChangeIncentive(v, target, current, oldFollowerGain);
+                if (incentive > bestIncentive) {
+                    bestIncentive = incentive;
+                    bestLane = target;
+                }
+            }
+            if (bestLane >= 0) {
+                lanes.remove(v);
+                lanes.insert(bestLane, v);
+            }
+        }
+    }
+
+    private double laneChangeIncentive(int v, int target, double current, double oldFollowerGain) {
+        double position = pool.position(v);
+        int order = lanes.insertionOrder(target, position);
+        int newLeader = order > 0 ? lanes.vehicle(target, order - 1) : -1;
+        int newFollower = order < lanes.size(target) ? lanes.vehicle(target, order) : -1;
+        if (newLeader >= 0 && pool.position(newLeader) - VehicleClass.LENGTH[pool.vehicleClass(newLeader)] - position < IDM_MIN_GAP) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double newFollowerGain = 0;
+        if (newFollower >= 0) {
+            double gap = position - VehicleClass.LENGTH[pool.vehicleClass(v)] - pool.position(newFollower);
+            if (gap < IDM_MIN_GAP) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            double speed = pool.speed(newFollower);
+            double after = idm(pool.vehicleClass(newFollower), speed, pool.desiredSpeed(newFollower), gap, speed - pool.speed(v));
+            if (after < -MOBIL_SAFE_DECEL) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            newFollowerGain = after - accelerationBehind(newFollower, newLeader, target);
+        }
+        double candidate = accelerationBehind(v, newLeader, target);
+        return candidate - current + MOBIL_POLITENESS * (newFollowerGain + oldFollowerGain);
+    }
+
+    // Veículos com destino seguem a rota mais curta; sem destino (ou inalcançável), escolha aleatória como o Car,
+    // entre os movimentos que alguma fase libera
+    private int chooseExit(int v, int fromLink) {
+        if (replay != null) {
+            int k = expect(EventJournal.EXIT, pool.vehicleId(v), fromLink);
+            if (k < 0 || k >= network.exitCount(fromLink)) {
+                throw new IllegalStateException("Diário corrompido no tick " + tick + ": saída " + k + " inexistente no link " + fromLink + ".");
+            }
+            return k;
+        }
+        int k = drawExit(v, fromLink);
+        if (journal != null) journal.append(EventJournal.EXIT, tick, pool.vehicleId(v), fromLink, k);
+        return k;
+    }
+
+    private int drawExit(int v, int fromLink) {
+        int destination = pool.destination(v);
+        if (destination >= 0) {
+            int k = routes.nextExit(fromLink, destination);
+            if (k >= 0) return k;
+        }
+        int exits = network.exitCount(fromLink);
+        int open = 0;
+        int served = 0;
+        for (int k = 0; k < exits; k++) {
+            if (!exitOpen(fromLink, k)) continue;
+            open++;
+            if (network.exitServed(fromLink, k)) served++;
+        }
+        if (open == 0) return pool.nextInt(v, exits); // Todas fechadas: espera na linha de retenção
+        boolean onlyServed = served > 0 && served < open;
+        int pick = pool.nextInt(v, onlyServed ? served : open);
+        if (!onlyServed && open == exits) return pick;
+        for (int k = 0; ; k++) {
+            if (exitOpen(fromLink, k) && (!onlyServed || network.exitServed(fromLink, k)) && pick-- == 0) return k;
+        }
+    }
+
+    private boolean exitOpen(int link, int k) {
+        if (edits.isStreetClosed(network.exitStreet(link, k))) return false;
+        int next = network.exitNextLink(link, k);
+        return next < 0 || !edits.isLinkClosed(next);
+    }
+
+    // Passa a usar outra versão das alterações na rede; só o que mudou em relação à anterior é reaplicado
+    private void adopt(NetworkEdits next) {
+        NetworkEdits previous = edits;
+        edits = next;
+        routes = next.getRoutes();
+        if (next.closuresDiffer(previous)) {
+            // Quem escolheu entrar em rua ou sentido fechado escolhe de novo na linha de retenção
+            for (int v = 0; v < pool.capacity(); v++) {
+                if (!pool.isInUse(v)) continue;
+                int link = pool.link(v);
+                int k = pool.nextExit(v);
+                if (link >= 0 && k >= 0 && !exitOpen(link, k)) pool.setNextExit(v, -1);
+            }
+        }
+        if (next.capacityDiffers(previous)) {
+            for (int l = 0; l < network.linkCount(); l++) {
+                if (!linkMeso[l] || !linkLocal[l]) continue;
+                meso.setCapacity(l, next.capacity(network.linkStreet(l)));
+            }
+        }
+        if (next.timingDiffers(previous)) {
+            for (int a = 0; a < network.approachCount(); a++) {
+                if (next.greenMs(a) != previous.greenMs(a) || next.yellowMs(a) != previous.yellowMs(a)) {
+                    signals.setTiming(a, next.greenMs(a), next.yellowMs(a));
+                }
+            }
+        }
+    }
+
+    private boolean proceedOnYellow(int v, int link) {
+        if (replay != null) return expect(EventJournal.YELLOW, pool.vehicleId(v), link) == 1;
+        boolean go = pool.nextBoolean(v);
+        if (journal != null) journal.append(EventJournal.YELLOW, tick, pool.vehicleId(v), link, go ? 1 : 0);
+        return go;
+    }
+
+    // Trocas de fase entram no diário; na reprodução são conferidas (dependem só do que já foi reproduzido)
+    private void journalPhases() {
+        for (int i = 0; i < journalPhase.length; i++) {
+            int phase = signals.phase(i);
+            if (phase == journalPhase[i]) continue;
+            journalPhase[i] = phase;
+            if (journal != null) {
+                journal.append(EventJournal.PHASE, tick, i, phase, 0);
+            } else {
+                expect(EventJournal.PHASE, i, phase);
+            }
+        }
+    }
+
+    // Chegadas gravadas para este tick, na ordem original; os identificadores têm de bater
+    private void replayArrivals() {
+        while (replay.type() == EventJournal.SPAWN && replay.tick() == tick) {
+            if (replay.entity() != nextVehicleId) {
+                throw divergence("chegada do veículo " + nextVehicleId);
+            }
+            int origin = replay.a();
+            int destination = replay.b();
+            replay.advance();
+            arrival(origin, destination);
+        }
+        if (replay.type() == EventJournal.SPAWN && replay.tick() < tick) {
+            throw divergence("nenhuma chegada pendente");
+        }
+    }
+
+    // Consome o próximo evento do diário, que tem de ser (type, entity, a) neste tick; devolve o campo b
+    private int expect(int type, int entity, int a) {
+        if (replay.type() != type || replay.tick() != tick || replay.entity() != entity || replay.a() != a) {
+            throw divergence(EventJournal.describeKey(type, tick, entity, a));
+        }
+        int b = replay.b();
+        replay.advance();
+        return b;
+    }
+
+    private IllegalStateException divergence(String expected) {
+        return new IllegalStateException("Reprodução divergiu no tick " + tick + " (" + scenario.getName()
+                + "): o motor esperava " + expected + ", o diário tem " + replay.describeCurrent() + ".");
+    }
+
+    // Vagas livres em um link local, descontando os veículos recebidos que ainda esperam para entrar
+    int boundaryRoom(int link) {
+        int free;
+        if (linkMeso[link]) {
+            free = meso.room(link);
+        } else {
+            free = 0;
+            int first = lanes.firstLane(link);
+            for (int lane = first; lane < first + lanes.lanesOf(link); lane++) {
+                int tail = lanes.tail(lane);
+                if (tail < 0 || pool.position(tail) - VehicleClass.LENGTH[pool.vehicleClass(tail)] >= VEHICLE_LENGTH + IDM_MIN_GAP) free++;
+            }
+        }
+        return Math.max(0, free - inbound[link].size());
+    }
+
+    // Caixa de saída para o vizinho, já com o espaço livre dos links que ele alimenta
+    BoundaryBuffer outbox(int peer) {
+        BoundaryBuffer out = outbox[peer];
+        for (int link : partition.importLinks(rank, peer)) {
+            out.addRoom(link, boundaryRoom(link));
+        }
+        return out;
+    }
+
+    void receive(BoundaryBuffer in) {
+        for (int k = 0; k < in.roomCount(); k++) {
+            remoteRoom[in.roomLink(k)] = in.room(k);
+        }
+        for (int k = 0; k < in.size(); k++) {
+            int link = in.link(k);
+            if (!linkLocal[link]) {
+                throw new IllegalStateException("Veículo " + in.vehicleId(k) + " recebido para link de outro processo.");
+            }
+            int v = pool.acquire(in.vehicleId(k), in.desiredSpeed(k), in.spawnTick(k), in.origin(k), in.destination(k));
+            pool.addFreeFlowSeconds(v, in.freeFlowSeconds(k));
+            pool.setSpeed(v, in.speed(k));
+            pool.setPosition(v, in.position(k));
+            pool.setRandomState(v, in.randomState(k));
+            pool.setVehicleClass(v, in.vehicleClass(k));
+            pool.setStops(v, in.stops(k));
+            pool.setTripWaitTicks(v, in.waitTicks(k));
+            if (inbound[link].isEmpty()) inboundLinks[inboundLinkCount++] = link;
+            inbound[link].addLast(pool.handle(v));
+            inboundCount++;
+            received++;
+            inNetwork++;
+        }
+    }
+
+    // Handle (VehiclePool.handle) do veículo na rede, ou -1. Quem guarda o handle entre ticks confere
+    // VehiclePool.isValid antes de ler o registro: o slot é reaproveitado quando o veículo sai
+    public long findVehicle(int vehicleId) {
+        for (int v = 0; v < pool.capacity(); v++) {
+            if (pool.isInUse(v) && pool.vehicleId(v) == vehicleId) return pool.handle(v);
+        }
+        return -1;
+    }
+
+    // Chegada gerada que ainda espera vaga na origem (sem slot no pool); varre as filas, para ferramentas
+    public boolean isWaiting(int vehicleId) {
+        for (int k = 0; k < pendingLinkCount; k++) {
+            ArrivalRing queue = pending[pendingLinks[k]];
+            for (int i = 0; i < queue.size(); i++) {
+                if (queue.id(i) == vehicleId) return true;
+            }
+        }
+        return false;
+    }
+
+    // Fração percorrida do link atual (0 a 1); na fila meso estimada pelo tempo de fluxo livre restante
+    public double linkProgress(int v) {
+        int link = pool.link(v);
+        if (link < 0) return 0;
+        double length = network.linkLength(link);
+        if (!linkMeso[link]) return Math.min(1.0, pool.position(v) / length);
+        long remaining = pool.readyTick(v) - tick;
+        if (remaining <= 0) return 1.0;
+        double freeFlowTicks = length / pool.desiredSpeed(v) / TICK_SECONDS;
+        return Math.max(0.0, 1.0 - remaining / freeFlowTicks);
+    }
+
+    public LightState lightState(int approach) {
+        return signals.state(approach);
+    }
+
+    // Faixa de pedestres c do NetworkIndex (só com faixas configuradas)
+    public PedestrianSignal pedestrianSignal(int crosswalk) {
+        return signals.pedestrianSignal(crosswalk);
+    }
+
+    public int pedestriansWaiting(int crosswalk) {
+        return signals.pedestriansWaiting(crosswalk);
+    }
+
+    public NetworkIndex getNetwork() {
+        return network;
+    }
+
+    public VehiclePool getPool() {
+        return pool;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int getBoundaryTransfers() {
+        return boundaryTransfers;
+    }
+
+    public int getConservationViolations() {
+        return conservationViolations;
+    }
+
+    // Liga o mapa de congestionamento (antes de rodar); desligado por padrão para não pesar nos lotes
+    public CongestionHeatmap enableHeatmap(CongestionHeatmap map) {
+        if (tick > 0) {
+            throw new IllegalStateException("Mapa de congestionamento deve ser ligado antes do primeiro tick.");
+        }
+        this.heatmap = map;
+        return map;
+    }
+
+    public CongestionHeatmap getHeatmap() {
+        return heatmap;
+    }
+
+    // Liga a estimativa de emissões e consumo (antes de rodar); custa duas avaliações de polinômio por veículo e tick
+    public EmissionLedger enableEmissions() {
+        if (tick > 0) {
+            throw new IllegalStateException("Emissões devem ser ligadas antes do primeiro tick.");
+        }
+        if (emissions == null) {
+            int[] laneLink = new int[lanes.laneCount()];
+            for (int lane = 0; lane < laneLink.length; lane++) laneLink[lane] = lanes.linkOf(lane);
+            emissions = new EmissionLedger(network, laneLink);
+        }
+        return emissions;
+    }
+
+    public EmissionLedger getEmissions() {
+        return emissions;
+    }
+
+    // Laços virtuais da rede (null se nenhuma rua tem laços); valores do último intervalo fechado
+    public LoopDetectors getDetectors() {
+        return detectors;
+    }
+
+    public void setDetectorIntervalMs(long intervalMs) {
+        if (tick > 0) {
+            throw new IllegalStateException("Intervalo dos detectores deve ser definido antes do primeiro tick.");
+        }
+        if (detectors == null) {
+            throw new IllegalStateException("Nenhuma rua do cenário tem laços virtuais.");
+        }
+        if (external != null) {
+            throw new IllegalStateException("Intervalo dos detectores deve ser definido antes de ligar o controlador externo.");
+        }
+        detectors = new LoopDetectors(network, lanes, intervalMs);
+    }
+
+    // Grava cada intervalo fechado dos laços no feed; quem chama fecha o feed ao terminar
+    public DetectorFeed enableDetectorFeed(DetectorFeed feed) {
+        if (detectors == null) {
+            throw new IllegalStateException("Nenhuma rua do cenário tem laços virtuais.");
+        }
+        this.detectorFeed = feed;
+        return feed;
+    }
+
+    // Entrega cruzamentos a um controlador externo (antes do primeiro tick): cada tick passa a esperar a resposta
+    // dele, com os laços que chegam a esses cruzamentos; quem chama fecha o controlador ao terminar
+    public ExternalController enableExternalController(ExternalController controller) throws IOException {
+        if (tick > 0) {
+            throw new IllegalStateException("Controlador externo deve ser ligado antes do primeiro tick.");
+        }
+        if (partition != null) {
+            throw new IllegalStateException("Controlador externo não é suportado na execução distribuída.");
+        }
+        if (external != null) {
+            throw new IllegalStateException("O motor já tem um controlador externo.");
+        }
+        controller.attach(network, signals, detectors);
+        this.external = controller;
+        return controller;
+    }
+
+    public ExternalController getExternalController() {
+        return external;
+    }
+
+    // Liga o registro de viagens (antes de rodar): tempo de viagem por par origem-destino e espera por aproximação
+    public TripStatistics enableTripStatistics(TripStatistics statistics) {
+        if (tick > 0) {
+            throw new IllegalStateException("Estatísticas de viagem devem ser ligadas antes do primeiro tick.");
+        }
+        this.trips = statistics;
+        return statistics;
+    }
+
+    public TripStatistics getTripStatistics() {
+        return trips;
+    }
+
+    // Divide o seguimento das faixas micro entre "threads" threads (1 = sequencial). O resultado é o mesmo
+    // para qualquer número de threads; só compensa em redes grandes, onde cada bloco tem muitas faixas.
+    // As threads são encerradas ao fim de run() ou por disableParallelLanes.
+    public void enableParallelLanes(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Número de threads deve ser positivo: " + threads);
+        }
+        disableParallelLanes();
+        int blocks = Math.min(threads, microLanes.length);
+        if (blocks <= 1) return;
+        laneTasks = new ArrayList<>();
+        for (int b = 0; b < blocks; b++) {
+            int from = (int) ((long) microLanes.length * b / blocks);
+            int to = (int) ((long) microLanes.length * (b + 1) / blocks);
+            laneTasks.add(() -> {
+                followLanes(from, to);
+                return null;
+            });
+        }
+        laneWorkers = Executors.newFixedThreadPool(blocks, task -> {
+            Thread worker = new Thread(task, "faixas-" + scenario.getName());
+            worker.setDaemon(true);
+            return worker;
+        });
+    }
+
+    public void disableParallelLanes() {
+        if (laneWorkers == null) return;
+        laneWorkers.shutdown();
+        laneWorkers = null;
+        laneTasks = null;
+    }
+
+    // Liga o hash das trajetórias (antes de rodar); cada tick custa uma passada por todos os veículos
+    public void enableTrajectoryHash() {
+        if (tick > 0) {
+            throw new IllegalStateException("Hash de trajetórias deve ser ligado antes do primeiro tick.");
+        }
+        hashing = true;
+    }
+
+    public long getTrajectoryHash() {
+        return trajectoryHash;
+    }
+
+    // Cópia do estado atual para análises "e se" (WhatIfAnalysis). Barata: os registros dos veículos são
+    // compartilhados até alguém escrever neles. Chamar entre dois step() na thread que avança este motor;
+    // depois disso cada cópia avança sozinha, em qualquer thread, com os mesmos sorteios que este motor faria.
+    // Diário, mapa de congestionamento, saída dos detectores e threads das faixas não são herdados; as emissões
+    // somadas, as estatísticas de viagem e os acumuladores dos laços até aqui são copiados. A cópia parte da
+    // versão em vigor das alterações na rede, com um editor próprio: alterar a rede da cópia não altera este
+    // motor. Com controlador externo ligado não há cópia, porque ele só responde a este motor.
+    public TickEngine fork() {
+        if (partition != null) {
+            throw new IllegalStateException("Bifurcação não é suportada na execução distribuída.");
+        }
+        if (external != null) {
+            throw new IllegalStateException("Bifurcação não é suportada com controlador externo.");
+        }
+        return new TickEngine(this);
+    }
+
+    // Prorroga o verde corrente do cruzamento (ou o próximo, se já estiver no amarelo)
+    public void extendGreen(String intersectionId, long ms) {
+        int i = network.intersectionIndexOf(intersectionId);
+        if (i < 0) {
+            throw new IllegalArgumentException("Cruzamento desconhecido: " + intersectionId);
+        }
+        signals.extendGreen(i, ms);
+    }
+
+    // Alterações na rede (fechar ruas, capacidade, mão única, tempos de semáforo) feitas de qualquer thread;
+    // o motor passa a usá-las no início do próximo tick
+    public NetworkEditor getEditor() {
+        return editor;
+    }
+
+    // Segue um editor compartilhado com outros motores do mesmo cenário (chamar entre dois step())
+    public void useEditor(NetworkEditor shared) {
+        if (shared.getNetwork() != network) {
+            throw new IllegalArgumentException("Editor de outra rede.");
+        }
+        if (journal != null || replay != null) {
+            throw new IllegalStateException("Motor com diário não troca de editor.");
+        }
+        this.editor = shared;
+    }
+
+    // Grava as entradas e decisões da execução (antes de rodar); só no motor de processo único
+    public void enableJournal(EventJournal target) {
+        checkJournalStart();
+        editor.lock();
+        this.journal = target;
+        this.journalPhase = initialPhases();
+    }
+
+    // Reproduz uma execução gravada com o mesmo cenário e a mesma semente (antes de rodar)
+    public void replayFrom(EventJournal.Reader source) {
+        checkJournalStart();
+        if (source.getSeed() != scenario.getSeed()) {
+            throw new IllegalArgumentException("Diário gravado com a semente " + source.getSeed()
+                    + ", cenário com " + scenario.getSeed() + ".");
+        }
+        editor.lock();
+        this.replay = source;
+        this.journalPhase = initialPhases();
+    }
+
+    private void checkJournalStart() {
+        if (tick > 0) {
+            throw new IllegalStateException("Diário deve ser ligado antes do primeiro tick.");
+        }
+        if (partition != null) {
+            throw new IllegalStateException("Diário não é suportado na execução distribuída.");
+        }
+        if (journal != null || replay != null) {
+            throw new IllegalStateException("Motor já está gravando ou reproduzindo um diário.");
+        }
+        if (editor.current().getVersion() != 0) { // O diário não teria como reproduzir a rede alterada
+            throw new IllegalStateException("Rede já alterada pelo editor; o diário exige a rede do cenário.");
+        }
+    }
+
+    private int[] initialPhases() {
+        int[] phases = new int[network.intersectionCount()];
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = signals.phase(i);
+        }
+        return phases;
+    }
+
+    public EventJournal.Reader getReplay() {
+        return replay;
+    }
+
+    public GridlockDetector getGridlockDetector() {
+        return gridlock;
+    }
+
+    // Soma dos atrasos das viagens concluídas até agora
+    double totalDelaySeconds() {
+        return delaySum;
+    }
+
+    public int getSent() {
+        return sent;
+    }
+
+    public int getReceived() {
+        return received;
+    }
+
+    public ReplicationResult result() {
+        double hours = tick * TICK_SECONDS / 3600.0;
+        ReplicationResult result = new ReplicationResult(scenario.getSeed(), spawned, completed, inNetwork + waiting,
+                completed > 0 ? delaySum / completed : 0.0,
+                hours > 0 ? completed / hours : 0.0,
+                signals.pedestriansServed(), signals.meanPedestrianDelaySeconds());
+        if (emissions == null) return result;
+        return result.withEmissions(emissions.total(EmissionLedger.Pollutant.CO2),
+                emissions.total(EmissionLedger.Pollutant.NOX), emissions.total(EmissionLedger.Pollutant.FUEL));
+    }
+}
@@ -0,0 +1,41 @@
+package com.simuladortrafego;
+
+// Multiplicadores de demanda por faixa horária (cíclico em 24h).
+// A taxa de uma matriz OD é a taxa de pico; o perfil a escala ao longo do dia.
+public final class TimeProfile {
+    private static final int SECONDS_PER_DAY = 24 * 3600;
+
+    private final int slotSeconds;
+    private final double[] multipliers;
+
+    public TimeProfile(int slotSeconds, double[] multipliers) {
+        if (slotSeconds <= 0 || multipliers.length == 0) {
+            throw new IllegalArgumentException("Perfil horário precisa de faixas positivas e ao menos um multiplicador.");
+        }
+        for (double m : multipliers) {
+            if (m < 0) {
+                throw new IllegalArgumentException("Multiplicador de demanda negativo: " + m);
+            }
+        }
+        this.slotSeconds = slotSeconds;
+        this.multipliers = multipliers.clone();
+    }
+
+    public static TimeProfile flat() {
+        return new TimeProfile(SECONDS_PER_DAY, new double[] {1.0});
+    }
+
+    // Perfil típico de dia útil com pico da manhã (7h-9h) e da tarde (17h-19h)
+    public static TimeProfile weekday() {
+        return new TimeProfile(3600, new double[] {
+                0.05, 0.03, 0.02, 0.02, 0.05, 0.15, 0.45, 0.90, 1.00, 0.70, 0.50, 0.50,
+                0.55, 0.55, 0.50, 0.55, 0.70, 0.95, 0.90, 0.60, 0.40, 0.30, 0.20, 0.10});
+    }
+
+    public double multiplierAt(double secondOfDay) {
+        long second = (long) Math.floor(secondOfDay) % SECONDS_PER_DAY;
+        if (second < 0) second += SECONDS_PER_DAY;
+        int slot = (int) (second / slotSeconds) % multipliers.length;
+        return multipliers[slot];
+    }
+}
@@ -0,0 +1,274 @@
+package com.simuladortrafego;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Tempos de viagem e esperas por viagem dos motores headless (TickEngine.enableTripStatistics).
+// Cada viagem concluída vira uma linha em colunas primitivas (criação, saída, origem, destino, classe,
+// paradas, espera parado) e cada passagem por um cruzamento uma linha de espera na aproximação; as colunas
+// são circulares, então só as últimas "capacity" linhas ficam guardadas. Todas as viagens entram também em
+// QuantileSketch por par origem-destino e todas as passagens por aproximação, com memória limitada pelo
+// número de pares e de baldes, não pela duração da execução. Gravado nas fases sequenciais do tick; as
+// consultas devolvem cópias e podem ser feitas entre dois step() na thread que avança o motor.
+public final class TripStatistics {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final String ANY_DESTINATION = "*";
+
+    private final NetworkIndex network;
+    private final int capacity;
+
+    private final int[] tripVehicle;
+    private final long[] tripSpawn;
+    private final long[] tripExit;
+    private final int[] tripOrigin;       // rua de origem
+    private final int[] tripDestination;  // rua de destino, -1 para rota aleatória
+    private final byte[] tripClass;
+    private final int[] tripStops;
+    private final float[] tripWait;       // segundos parado fora de pontos de ônibus
+    private long trips = 0;
+
+    private final int[] passageVehicle;
+    private final int[] passageApproach;
+    private final long[] passageTick;
+    private final float[] passageWait;    // segundos parado no link que chega à aproximação
+    private long passages = 0;
+
+    private final QuantileSketch travelTime;
+    private final QuantileSketch delay;
+    private final Map<Long, QuantileSketch> odTravelTime;
+    private final QuantileSketch[] approachWait;
+
+    public TripStatistics(NetworkIndex network) {
+        this(network, DEFAULT_CAPACITY);
+    }
+
+    public TripStatistics(NetworkIndex network, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacidade do registro de viagens deve ser positiva: " + capacity);
+        }
+        this.network = network;
+        this.capacity = capacity;
+        this.tripVehicle = new int[capacity];
+        this.tripSpawn = new long[capacity];
+        this.tripExit = new long[capacity];
+        this.tripOrigin = new int[capacity];
+        this.tripDestination = new int[capacity];
+        this.tripClass = new byte[capacity];
+        this.tripStops = new int[capacity];
+        this.tripWait = new float[capacity];
+        this.passageVehicle = new int[capacity];
+        this.passageApproach = new int[capacity];
+        this.passageTick = new long[capacity];
+        this.passageWait = new float[capacity];
+        this.travelTime = new QuantileSketch();
+        this.delay = new QuantileSketch();
+        this.odTravelTime = new HashMap<>();
+        this.approachWait = new QuantileSketch[network.approachCount()];
+        for (int a = 0; a < approachWait.length; a++) approachWait[a] = new QuantileSketch();
+    }
+
+    // Cópia independente (bifurcação do motor)
+    TripStatistics(TripStatistics source) {
+        this.network = source.network;
+        this.capacity = source.capacity;
+        this.tripVehicle = source.tripVehicle.clone();
+        this.tripSpawn = source.tripSpawn.clone();
+        this.tripExit = source.tripExit.clone();
+        this.tripOrigin = source.tripOrigin.clone();
+        this.tripDestination = source.tripDestination.clone();
+        this.tripClass = source.tripClass.clone();
+        this.tripStops = source.tripStops.clone();
+        this.tripWait = source.tripWait.clone();
+        this.trips = source.trips;
+        this.passageVehicle = source.passageVehicle.clone();
+        this.passageApproach = source.passageApproach.clone();
+        this.passageTick = source.passageTick.clone();
+        this.passageWait = source.passageWait.clone();
+        this.passages = source.passages;
+        this.travelTime = new QuantileSketch(source.travelTime);
+        this.delay = new QuantileSketch(source.delay);
+        this.odTravelTime = new HashMap<>();
+        for (Map.Entry<Long, QuantileSketch> entry : source.odTravelTime.entrySet()) {
+            odTravelTime.put(entry.getKey(), new QuantileSketch(entry.getValue()));
+        }
+        this.approachWait = new QuantileSketch[source.approachWait.length];
+        for (int a = 0; a < approachWait.length; a++) approachWait[a] = new QuantileSketch(source.approachWait[a]);
+    }
+
+    void passage(int vehicleId, int approach, long tick, double waitSeconds) {
+        int row = (int) (passages++ % capacity);
+        passageVehicle[row] = vehicleId;
+        passageApproach[row] = approach;
+        passageTick[row] = tick;
+        passageWait[row] = (float) waitSeconds;
+        approachWait[approach].add(waitSeconds);
+    }
+
+    void trip(int vehicleId, int vehicleClass, int originLink, int destination, long spawnTick, long exitTick,
+              int stops, double waitSeconds, double delaySeconds) {
+        int row = (int) (trips++ % capacity);
+        int origin = network.linkStreet(originLink);
+        tripVehicle[row] = vehicleId;
+        tripSpawn[row] = spawnTick;
+        tripExit[row] = exitTick;
+        tripOrigin[row] = origin;
+        tripDestination[row] = destination;
+        tripClass[row] = (byte) vehicleClass;
+        tripStops[row] = stops;
+        tripWait[row] = (float) waitSeconds;
+        double seconds = (exitTick - spawnTick) * TickEngine.TICK_SECONDS;
+        travelTime.add(seconds);
+        delay.add(delaySeconds);
+        odTravelTime.computeIfAbsent(odKey(origin, destination), k -> new QuantileSketch()).add(seconds);
+    }
+
+    private static long odKey(int origin, int destination) {
+        return (long) origin << 32 | (destination & 0xFFFFFFFFL);
+    }
+
+    public long getTripCount() {
+        return trips;
+    }
+
+    public long getPassageCount() {
+        return passages;
+    }
+
+    // Linhas guardadas: 0 é a mais antiga ainda nas colunas
+    public int retainedTrips() {
+        return (int) Math.min(trips, capacity);
+    }
+
+    public int retainedPassages() {
+        return (int) Math.min(passages, capacity);
+    }
+
+    private int tripRow(int row) {
+        if (row < 0 || row >= retainedTrips()) {
+            throw new IllegalArgumentException("Viagem fora do registro: " + row);
+        }
+        return (int) ((trips - retainedTrips() + row) % capacity);
+    }
+
+    private int passageRow(int row) {
+        if (row < 0 || row >= retainedPassages()) {
+            throw new IllegalArgumentException("Passagem fora do registro: " + row);
+        }
+        return (int) ((passages - retainedPassages() + row) % capacity);
+    }
+
+    public int tripVehicleId(int row) {
+        return tripVehicle[tripRow(row)];
+    }
+
+    public long tripSpawnTick(int row) {
+        return tripSpawn[tripRow(row)];
+    }
+
+    public long tripExitTick(int row) {
+        return tripExit[tripRow(row)];
+    }
+
+    public int tripOriginStreet(int row) {
+        return tripOrigin[tripRow(row)];
+    }
+
+    public int tripDestinationStreet(int row) {
+        return tripDestination[tripRow(row)];
+    }
+
+    public VehicleClass tripVehicleClass(int row) {
+        return VehicleClass.values()[tripClass[tripRow(row)]];
+    }
+
+    public int tripStops(int row) {
+        return tripStops[tripRow(row)];
+    }
+
+    public double tripWaitSeconds(int row) {
+        return tripWait[tripRow(row)];
+    }
+
+    public int passageVehicleId(int row) {
+        return passageVehicle[passageRow(row)];
+    }
+
+    public int passageApproach(int row) {
+        return passageApproach[passageRow(row)];
+    }
+
+    public long passageTick(int row) {
+        return passageTick[passageRow(row)];
+    }
+
+    public double passageWaitSeconds(int row) {
+        return passageWait[passageRow(row)];
+    }
+
+    public QuantileSketch travelTime() {
+        return new QuantileSketch(travelTime);
+    }
+
+    // Atraso em relação ao tempo de fluxo livre, o mesmo de ReplicationResult.getMeanDelaySeconds
+    public QuantileSketch delay() {
+        return new QuantileSketch(delay);
+    }
+
+    // Destino "*": viagens de rota aleatória. Par sem viagens concluídas: sketch vazio
+    public QuantileSketch travelTime(String originStreet, String destinationStreet) {
+        int origin = network.streetIndexOf(originStreet);
+        if (origin < 0) {
+            throw new IllegalArgumentException("Rua desconhecida: " + originStreet);
+        }
+        int destination = -1;
+        if (!destinationStreet.equals(ANY_DESTINATION)) {
+            destination = network.streetIndexOf(destinationStreet);
+            if (destination < 0) {
+                throw new IllegalArgumentException("Rua desconhecida: " + destinationStreet);
+            }
+        }
+        QuantileSketch sketch = odTravelTime.get(odKey(origin, destination));
+        return sketch == null ? new QuantileSketch() : new QuantileSketch(sketch);
+    }
+
+    public QuantileSketch approachWait(int approach) {
+        return new QuantileSketch(approachWait[approach]);
+    }
+
+    public QuantileSketch approachWait(String intersectionId, Direction direction) {
+        for (int a = 0; a < network.approachCount(); a++) {
+            if (network.approachDirection(a) == direction
+                    && network.intersection(network.approachIntersection(a)).getId().equals(intersectionId)) {
+                return approachWait(a);
+            }
+        }
+        throw new IllegalArgumentException("Aproximação desconhecida: " + intersectionId + " " + direction);
+    }
+
+    // Uma linha por par origem-destino e por aproximação com amostras: "tipo;id;n;media_s;p50_s;p90_s;p95_s"
+    public void report(Appendable out) throws IOException {
+        out.append("tipo;id;n;media_s;p50_s;p90_s;p95_s\n");
+        Long[] keys = odTravelTime.keySet().toArray(new Long[0]);
+        Arrays.sort(keys); // Ordem estável entre execuções
+        for (long key : keys) {
+            int destination = (int) key;
+            String id = network.street((int) (key >>> 32)).getId() + ">"
+                    + (destination < 0 ? ANY_DESTINATION : network.street(destination).getId());
+            line(out, "od", id, odTravelTime.get(key));
+        }
+        for (int a = 0; a < approachWait.length; a++) {
+            if (approachWait[a].getCount() == 0) continue;
+            line(out, "aproximacao", network.intersection(network.approachIntersection(a)).getId() + ":"
+                    + network.approachDirection(a), approachWait[a]);
+        }
+    }
+
+    private static void line(Appendable out, String kind, String id, QuantileSketch sketch) throws IOException {
+        out.append(kind).append(';').append(id).append(';')
+                .append(String.format(Locale.ROOT, "%d;%.1f;%.1f;%.1f;%.1f", sketch.getCount(), sketch.getMean(),
+                        sketch.quantile(0.5), sketch.quantile(0.9), sketch.quantile(0.95))).append('\n');
+    }
+}
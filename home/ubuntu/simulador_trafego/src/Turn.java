@@ -0,0 +1,5 @@
+package com.simuladortrafego;
+
+public enum Turn {
+    THROUGH, RIGHT, LEFT, U_TURN
+}
@@ -0,0 +1,93 @@
+package com.simuladortrafego;
+
+// Classes de veículo dos motores headless. O laço dos ticks não chama métodos por veículo: cada registro
+// do VehiclePool guarda o índice da classe (ordinal) e o motor lê os parâmetros nas tabelas estáticas
+// abaixo, uma coluna por parâmetro. Uma classe nova é só mais uma linha no enum.
+// Capacidade em unidades de carro de passeio (ucp): filas meso e limites de capacidade somam ucp, e a
+// vazão de saturação também é em ucp/h, então um caminhão ocupa e descarrega como 2,5 carros.
+public enum VehicleClass {
+    // chave no cenário, comprimento (m), aceleração máxima e desaceleração confortável do IDM (m/s²),
+    // faixa da velocidade desejada (m/s), ucp e tempo de embarque em cada parada (s)
+    CAR("carro", TickEngine.VEHICLE_LENGTH, TickEngine.IDM_MAX_ACCEL, TickEngine.IDM_COMFORT_DECEL,
+            TickEngine.MIN_DESIRED_SPEED, TickEngine.MAX_DESIRED_SPEED, 1.0, 0),
+    BUS("onibus", 12.0, 1.0, 1.5, 8.0, 12.0, 2.0, 20),
+    TRUCK("caminhao", 16.0, 0.7, 1.5, 7.0, 11.0, 2.5, 0),
+    BICYCLE("bicicleta", 1.8, 1.0, 1.5, 4.0, 6.5, 0.3, 0);
+
+    private final String key;
+    private final double length;
+    private final double maxAccel;
+    private final double comfortDecel;
+    private final double minDesiredSpeed;
+    private final double maxDesiredSpeed;
+    private final double pcu;
+    private final double dwellSeconds; // parada em cada ponto de ônibus do trajeto
+
+    VehicleClass(String key, double length, double maxAccel, double comfortDecel, double minDesiredSpeed,
+                 double maxDesiredSpeed, double pcu, double dwellSeconds) {
+        this.key = key;
+        this.length = length;
+        this.maxAccel = maxAccel;
+        this.comfortDecel = comfortDecel;
+        this.minDesiredSpeed = minDesiredSpeed;
+        this.maxDesiredSpeed = maxDesiredSpeed;
+        this.pcu = pcu;
+        this.dwellSeconds = dwellSeconds;
+    }
+
+    private static final VehicleClass[] ALL = values();
+
+    // Tabelas indexadas pelo ordinal, lidas pelo TickEngine
+    static final double[] LENGTH = new double[ALL.length];
+    static final double[] MAX_ACCEL = new double[ALL.length];
+    static final double[] COMFORT_DECEL = new double[ALL.length];
+    static final double[] IDM_DENOMINATOR = new double[ALL.length]; // 2·√(a·b) do termo dinâmico do IDM
+    static final double[] MIN_SPEED = new double[ALL.length];
+    static final double[] SPEED_RANGE = new double[ALL.length];
+    static final double[] PCU = new double[ALL.length];
+    static final long[] DWELL_TICKS = new long[ALL.length];
+    static final double[] DWELL_SECONDS = new double[ALL.length];
+
+    static {
+        for (VehicleClass c : ALL) {
+            int i = c.ordinal();
+            LENGTH[i] = c.length;
+            MAX_ACCEL[i] = c.maxAccel;
+            COMFORT_DECEL[i] = c.comfortDecel;
+            IDM_DENOMINATOR[i] = 2 * Math.sqrt(c.maxAccel * c.comfortDecel);
+            MIN_SPEED[i] = c.minDesiredSpeed;
+            SPEED_RANGE[i] = c.maxDesiredSpeed - c.minDesiredSpeed;
+            PCU[i] = c.pcu;
+            DWELL_TICKS[i] = Math.round(c.dwellSeconds / TickEngine.TICK_SECONDS);
+            DWELL_SECONDS[i] = c.dwellSeconds;
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public double getPcu() {
+        return pcu;
+    }
+
+    public static VehicleClass of(int index) {
+        return ALL[index];
+    }
+
+    // Chave do arquivo de cenário ("carro", "onibus"...); null se não for uma classe dos motores headless
+    public static VehicleClass fromKey(String key) {
+        for (VehicleClass c : ALL) {
+            if (c.key.equals(key)) return c;
+        }
+        return null;
+    }
+
+    // Classe sorteada com u uniforme em [0, 1) pelas participações acumuladas (por ordinal)
+    static int draw(double u, double[] cumulativeShares) {
+        for (int i = 0; i < cumulativeShares.length - 1; i++) {
+            if (u < cumulativeShares[i]) return i;
+        }
+        return cumulativeShares.length - 1;
+    }
+}
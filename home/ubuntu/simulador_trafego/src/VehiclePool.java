@@ -0,0 +1,331 @@
+package com.simuladortrafego;
+
+import java.util.Arrays;
+
+// Armazenamento reciclável dos veículos dos motores headless: um registro de RECORD_BYTES por slot, com
+// todos os campos do veículo no layout abaixo, em blocos fora do heap (OffHeapTable) compartilhados em
+// copy-on-write pelas bifurcações; no heap restam só a lista livre e os blocos, e a frota não pesa nas
+// pausas do coletor de lixo. Um slot liberado volta para a lista livre e é reaproveitado pelo próximo
+// veículo; em regime permanente criar e retirar veículos não aloca nada. Cada liberação incrementa a
+// geração do slot, então um handle (geração << 32 | slot) guardado depois que o veículo saiu é detectado
+// como obsoleto (isValid, slotOf).
+public class VehiclePool {
+    // Layout do registro (deslocamentos em bytes; longs e doubles alinhados em 8)
+    private static final int DESIRED_SPEED = 0;
+    private static final int SPAWN_TICK = 8;
+    private static final int POSITION = 16;
+    private static final int FREE_FLOW_SECONDS = 24;
+    private static final int SPEED = 32;
+    private static final int ACCELERATION = 40;
+    private static final int READY_TICK = 48;   // modo mesoscópico: tick em que o veículo termina o trecho em fluxo livre
+    private static final int VEHICLE_ID = 56;
+    private static final int ORIGIN_LINK = 60;
+    private static final int DESTINATION = 64;
+    private static final int LINK = 68;
+    private static final int LANE = 72;
+    private static final int LANE_ORDER = 76;
+    private static final int NEXT_EXIT = 80;    // saída escolhida ao chegar à frente da faixa, ou -1
+    private static final int GENERATION = 84;
+    private static final int YELLOW_DECISION = 88;
+    private static final int IN_USE = 89;
+    private static final int VEHICLE_CLASS = 90; // ordinal de VehicleClass
+    private static final int STOPS = 92;        // paradas na viagem (TripStatistics)
+    private static final int RANDOM_STATE = 96; // Fluxo aleatório próprio do veículo (RandomStreams)
+    private static final int STOP_TICK = 104;   // parada de ônibus no link: -1 nenhuma, 0 a caminho, > 0 embarque até o tick
+    private static final int LINK_WAIT_TICKS = 112; // ticks parado no link atual
+    private static final int TRIP_WAIT_TICKS = 116; // ticks parado na viagem, fora de pontos de ônibus
+    static final int RECORD_BYTES = 120;
+
+    private final OffHeapTable records;
+    private int capacity;
+    private int live = 0;
+    private int[] freeSlots;
+    private int freeCount;
+
+    public VehiclePool(int initialCapacity) {
+        this.records = new OffHeapTable(RECORD_BYTES, 0);
+        this.capacity = 0;
+        this.freeSlots = new int[0];
+        grow(Math.max(16, initialCapacity));
+    }
+
+    // Cópia para a bifurcação do motor: os registros são compartilhados em copy-on-write
+    public VehiclePool(VehiclePool source) {
+        this.records = new OffHeapTable(source.records);
+        this.capacity = source.capacity;
+        this.live = source.live;
+        this.freeSlots = source.freeSlots.clone();
+        this.freeCount = source.freeCount;
+    }
+
+    // Antes de escrever em registros distintos a partir de várias threads (faixas em paralelo)
+    void unshareRecords() {
+        records.unshareAll();
+    }
+
+    public int acquire(int id, double speed, long tick, int origin, int destinationStreet) {
+        if (freeCount == 0) grow(capacity * 2);
+        int slot = freeSlots[--freeCount];
+        records.setByte(slot, IN_USE, (byte) 1);
+        live++;
+        records.setInt(slot, VEHICLE_ID, id);
+        records.setDouble(slot, DESIRED_SPEED, speed);
+        records.setLong(slot, SPAWN_TICK, tick);
+        records.setInt(slot, ORIGIN_LINK, origin);
+        records.setInt(slot, DESTINATION, destinationStreet);
+        return slot;
+    }
+
+    public void release(int slot) {
+        if (!isInUse(slot)) {
+            throw new IllegalStateException("Slot " + slot + " liberado duas vezes.");
+        }
+        reset(slot);
+        records.setByte(slot, IN_USE, (byte) 0);
+        records.setInt(slot, GENERATION, records.getInt(slot, GENERATION) + 1);
+        freeSlots[freeCount++] = slot;
+        live--;
+    }
+
+    // Zera o registro, preservando a geração
+    private void reset(int slot) {
+        records.setInt(slot, VEHICLE_ID, -1);
+        records.setDouble(slot, DESIRED_SPEED, 0);
+        records.setLong(slot, SPAWN_TICK, 0);
+        records.setInt(slot, ORIGIN_LINK, -1);
+        records.setInt(slot, DESTINATION, -1);
+        records.setInt(slot, LINK, -1);
+        records.setDouble(slot, POSITION, 0);
+        records.setDouble(slot, FREE_FLOW_SECONDS, 0);
+        records.setByte(slot, YELLOW_DECISION, (byte) 0);
+        records.setDouble(slot, SPEED, 0);
+        records.setDouble(slot, ACCELERATION, 0);
+        records.setInt(slot, LANE, -1);
+        records.setInt(slot, LANE_ORDER, -1);
+        records.setInt(slot, NEXT_EXIT, -1);
+        records.setLong(slot, READY_TICK, 0);
+        records.setLong(slot, RANDOM_STATE, 0);
+        records.setByte(slot, VEHICLE_CLASS, (byte) 0);
+        records.setLong(slot, STOP_TICK, -1);
+        records.setInt(slot, STOPS, 0);
+        records.setInt(slot, LINK_WAIT_TICKS, 0);
+        records.setInt(slot, TRIP_WAIT_TICKS, 0);
+    }
+
+    private void grow(int newCapacity) {
+        int old = capacity;
+        records.ensureCapacity(newCapacity);
+        newCapacity = records.capacity(); // blocos inteiros
+        freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+        capacity = newCapacity;
+        // Slots novos entram na lista livre de forma que os menores saiam primeiro
+        for (int slot = newCapacity - 1; slot >= old; slot--) {
+            reset(slot);
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    public long handle(int slot) {
+        return ((long) records.getInt(slot, GENERATION) << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    public boolean isValid(long handle) {
+        int slot = (int) handle;
+        return slot >= 0 && slot < capacity && isInUse(slot) && records.getInt(slot, GENERATION) == (int) (handle >>> 32);
+    }
+
+    public int slotOf(long handle) {
+        if (!isValid(handle)) {
+            throw new IllegalStateException("Referência obsoleta para veículo: slot " + (int) handle
+                    + ", geração " + (int) (handle >>> 32));
+        }
+        return (int) handle;
+    }
+
+    public int liveCount() {
+        return live;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long offHeapBytes() {
+        return records.offHeapBytes();
+    }
+
+    public boolean isInUse(int slot) {
+        return records.getByte(slot, IN_USE) != 0;
+    }
+
+    public int vehicleId(int slot) {
+        return records.getInt(slot, VEHICLE_ID);
+    }
+
+    public double desiredSpeed(int slot) {
+        return records.getDouble(slot, DESIRED_SPEED);
+    }
+
+    public long spawnTick(int slot) {
+        return records.getLong(slot, SPAWN_TICK);
+    }
+
+    public int originLink(int slot) {
+        return records.getInt(slot, ORIGIN_LINK);
+    }
+
+    public int destination(int slot) {
+        return records.getInt(slot, DESTINATION);
+    }
+
+    public int link(int slot) {
+        return records.getInt(slot, LINK);
+    }
+
+    public void setLink(int slot, int value) {
+        records.setInt(slot, LINK, value);
+    }
+
+    public double position(int slot) {
+        return records.getDouble(slot, POSITION);
+    }
+
+    public void setPosition(int slot, double value) {
+        records.setDouble(slot, POSITION, value);
+    }
+
+    public double freeFlowSeconds(int slot) {
+        return records.getDouble(slot, FREE_FLOW_SECONDS);
+    }
+
+    public void addFreeFlowSeconds(int slot, double seconds) {
+        records.setDouble(slot, FREE_FLOW_SECONDS, records.getDouble(slot, FREE_FLOW_SECONDS) + seconds);
+    }
+
+    public byte yellowDecision(int slot) {
+        return records.getByte(slot, YELLOW_DECISION);
+    }
+
+    public void setYellowDecision(int slot, byte value) {
+        records.setByte(slot, YELLOW_DECISION, value);
+    }
+
+    public double speed(int slot) {
+        return records.getDouble(slot, SPEED);
+    }
+
+    public void setSpeed(int slot, double value) {
+        records.setDouble(slot, SPEED, value);
+    }
+
+    public double acceleration(int slot) {
+        return records.getDouble(slot, ACCELERATION);
+    }
+
+    public void setAcceleration(int slot, double value) {
+        records.setDouble(slot, ACCELERATION, value);
+    }
+
+    public int lane(int slot) {
+        return records.getInt(slot, LANE);
+    }
+
+    public void setLane(int slot, int value) {
+        records.setInt(slot, LANE, value);
+    }
+
+    public int laneOrder(int slot) {
+        return records.getInt(slot, LANE_ORDER);
+    }
+
+    public void setLaneOrder(int slot, int value) {
+        records.setInt(slot, LANE_ORDER, value);
+    }
+
+    public int nextExit(int slot) {
+        return records.getInt(slot, NEXT_EXIT);
+    }
+
+    public void setNextExit(int slot, int value) {
+        records.setInt(slot, NEXT_EXIT, value);
+    }
+
+    public long readyTick(int slot) {
+        return records.getLong(slot, READY_TICK);
+    }
+
+    public void setReadyTick(int slot, long value) {
+        records.setLong(slot, READY_TICK, value);
+    }
+
+    public void setDesiredSpeed(int slot, double value) {
+        records.setDouble(slot, DESIRED_SPEED, value);
+    }
+
+    public int vehicleClass(int slot) {
+        return records.getByte(slot, VEHICLE_CLASS);
+    }
+
+    public void setVehicleClass(int slot, int value) {
+        records.setByte(slot, VEHICLE_CLASS, (byte) value);
+    }
+
+    public long stopTick(int slot) {
+        return records.getLong(slot, STOP_TICK);
+    }
+
+    public void setStopTick(int slot, long value) {
+        records.setLong(slot, STOP_TICK, value);
+    }
+
+    public int stops(int slot) {
+        return records.getInt(slot, STOPS);
+    }
+
+    public void setStops(int slot, int value) {
+        records.setInt(slot, STOPS, value);
+    }
+
+    public int linkWaitTicks(int slot) {
+        return records.getInt(slot, LINK_WAIT_TICKS);
+    }
+
+    public void setLinkWaitTicks(int slot, int value) {
+        records.setInt(slot, LINK_WAIT_TICKS, value);
+    }
+
+    public int tripWaitTicks(int slot) {
+        return records.getInt(slot, TRIP_WAIT_TICKS);
+    }
+
+    public void setTripWaitTicks(int slot, int value) {
+        records.setInt(slot, TRIP_WAIT_TICKS, value);
+    }
+
+    public long randomState(int slot) {
+        return records.getLong(slot, RANDOM_STATE);
+    }
+
+    public void setRandomState(int slot, long state) {
+        records.setLong(slot, RANDOM_STATE, state);
+    }
+
+    // Próximo valor do fluxo do veículo; só toca o próprio registro, então faixas diferentes podem sortear em paralelo
+    private long nextRandom(int slot) {
+        long state = RandomStreams.advance(records.getLong(slot, RANDOM_STATE));
+        records.setLong(slot, RANDOM_STATE, state);
+        return RandomStreams.mix64(state);
+    }
+
+    public double nextDouble(int slot) {
+        return RandomStreams.toDouble(nextRandom(slot));
+    }
+
+    public int nextInt(int slot, int bound) {
+        return RandomStreams.toInt(nextRandom(slot), bound);
+    }
+
+    public boolean nextBoolean(int slot) {
+        return nextRandom(slot) < 0;
+    }
+}
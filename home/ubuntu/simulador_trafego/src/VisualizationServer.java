@@ -0,0 +1,547 @@
+package com.simuladortrafego;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Servidor local de visualização: HTTP mínimo para a página com o canvas e o mapa do grid (JSON), e
+// WebSocket que transmite deltas binários por tick (só veículos e semáforos que mudaram).
+// A thread da simulação só captura um quadro quantizado (posição em 1/255 do link) quando há clientes e
+// o intervalo mínimo passou, alternando entre dois quadros reaproveitados; a diferença contra o último
+// quadro enviado e a escrita no socket ficam na thread de cada cliente, que respeita a própria taxa máxima
+// (?fps= na URL do WebSocket). Só escuta no loopback, e o WebSocket só aceita páginas servidas por ele
+// mesmo (Origin), para que outro site aberto no navegador não leia a simulação.
+public class VisualizationServer {
+    static final int DEFAULT_CLIENT_FPS = 10;
+    static final int MAX_CAPTURE_FPS = 30;
+    static final int REQUEST_TIMEOUT_MS = 5000; // pedido HTTP incompleto não segura a thread
+    static final int LIVENESS_CHECK_MS = 1000;  // cliente sem quadro novo confere se o socket ainda está aberto
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final byte DELTA_MESSAGE = 1;
+
+    // Quadro capturado pela thread da simulação, indexado pelo slot do VehiclePool. O slot de um veículo
+    // que saiu é reaproveitado; o handle (com a geração) distingue o novo ocupante do anterior.
+    // Os dois quadros se alternam: a captura só reescreve o que não é o mais recente e que nenhum cliente
+    // está lendo (readers, protegido por frameLock)
+    private static final class Frame {
+        long tick;
+        final long[] handles;  // VehiclePool.handle do slot, ou -1 para slot livre
+        final long[] vehicles; // (id << 32 | link << 8 | fração quantizada)
+        final byte[] lights;
+        int readers;
+
+        Frame(int slots, int approaches) {
+            this.handles = new long[slots];
+            this.vehicles = new long[slots];
+            this.lights = new byte[approaches];
+        }
+    }
+
+    private final class Client implements Runnable {
+        private final Socket socket;
+        private final long minIntervalNanos;
+        private long[] sentHandles = new long[0];
+        private long[] sentVehicles = new long[0];
+        private byte[] sentLights;
+        private long lastSentTick = -1;
+
+        Client(Socket socket, int fps) {
+            this.socket = socket;
+            this.minIntervalNanos = 1_000_000_000L / Math.max(1, fps);
+        }
+
+        @Override
+        public void run() {
+            try {
+                OutputStream out = socket.getOutputStream();
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                while (running) {
+                    long start = System.nanoTime();
+                    Frame frame = awaitFrame(lastSentTick);
+                    if (!running) break;
+                    if (frame == null) { // Nenhum quadro novo (simulação parada ou lenta)
+                        if (!peerOpen()) break;
+                        continue;
+                    }
+                    long tick;
+                    try {
+                        tick = frame.tick;
+                        buffer = encodeDelta(frame, buffer);
+                    } finally {
+                        release(frame);
+                    }
+                    writeBinaryFrame(out, buffer.array(), buffer.position());
+                    lastSentTick = tick;
+                    long wait = minIntervalNanos - (System.nanoTime() - start);
+                    if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+            } catch (IOException e) {
+                // Cliente fechou a página
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                clients.remove(this);
+                closeQuietly(socket);
+            }
+        }
+
+        // A página não manda nada depois do handshake: fim do fluxo ou quadro de fechamento é cliente que saiu
+        private boolean peerOpen() throws IOException {
+            InputStream in = socket.getInputStream();
+            socket.setSoTimeout(1);
+            try {
+                int first = in.read();
+                if (first < 0 || (first & 0x0F) == 0x8) return false;
+                while (in.available() > 0 && in.read() >= 0) {
+                    // Descarta o que mais vier (ping, texto)
+                }
+                return true;
+            } catch (SocketTimeoutException e) {
+                return true;
+            }
+        }
+
+        // Tipo, tick, semáforos alterados (aproximação, estado), removidos (id) e alterados (id, link, fração)
+        private ByteBuffer encodeDelta(Frame frame, ByteBuffer buffer) {
+            if (sentLights == null) {
+                sentLights = new byte[frame.lights.length];
+                Arrays.fill(sentLights, (byte) -1);
+            }
+            if (sentHandles.length < frame.handles.length) {
+                int old = sentHandles.length;
+                sentHandles = Arrays.copyOf(sentHandles, frame.handles.length);
+                Arrays.fill(sentHandles, old, sentHandles.length, -1L);
+                sentVehicles = Arrays.copyOf(sentVehicles, frame.handles.length);
+            }
+            int changedLights = 0;
+            for (int a = 0; a < frame.lights.length; a++) {
+                if (frame.lights[a] != sentLights[a]) changedLights++;
+            }
+            int removed = 0;
+            int updated = 0;
+            for (int slot = 0; slot < sentHandles.length; slot++) {
+                long now = slot < frame.handles.length ? frame.handles[slot] : -1L;
+                long before = sentHandles[slot];
+                if (before != -1L && now != before) removed++; // Saiu, ou o slot já é de outro veículo
+                if (now != -1L && (now != before || frame.vehicles[slot] != sentVehicles[slot])) updated++;
+            }
+            int bytes = 1 + 8 + 4 + changedLights * 5 + 4 + removed * 4 + 4 + updated * 8;
+            if (buffer.capacity() < bytes) buffer = ByteBuffer.allocate(Integer.highestOneBit(bytes) << 1);
+            buffer.clear();
+            buffer.put(DELTA_MESSAGE).putLong(frame.tick);
+            buffer.putInt(changedLights);
+            for (int a = 0; a < frame.lights.length; a++) {
+                if (frame.lights[a] == sentLights[a]) continue;
+                buffer.putInt(a).put(frame.lights[a]);
+                sentLights[a] = frame.lights[a];
+            }
+            buffer.putInt(removed);
+            for (int slot = 0; slot < sentHandles.length; slot++) {
+                long now = slot < frame.handles.length ? frame.handles[slot] : -1L;
+                long before = sentHandles[slot];
+                if (before != -1L && now != before) buffer.putInt((int) (sentVehicles[slot] >>> 32));
+            }
+            buffer.putInt(updated);
+            for (int slot = 0; slot < sentHandles.length; slot++) {
+                long now = slot < frame.handles.length ? frame.handles[slot] : -1L;
+                long vehicle = now == -1L ? 0L : frame.vehicles[slot];
+                if (now != -1L && (now != sentHandles[slot] || vehicle != sentVehicles[slot])) {
+                    buffer.putInt((int) (vehicle >>> 32)).putInt((int) vehicle);
+                }
+                sentHandles[slot] = now;
+                sentVehicles[slot] = vehicle;
+            }
+            return buffer;
+        }
+    }
+
+    private final NetworkIndex network;
+    private final String mapJson;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final Object frameLock = new Object();
+    private final Frame[] frames = new Frame[2]; // escritos só pela thread da simulação
+    private Frame latest;
+    private long lastCaptureNanos = 0;
+    private volatile boolean running = false;
+    private ServerSocket serverSocket;
+
+    public VisualizationServer(NetworkIndex network) {
+        this.network = network;
+        this.mapJson = buildMapJson(network);
+    }
+
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "visualizacao-http");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Visualização em http://localhost:" + serverSocket.getLocalPort() + "/");
+    }
+
+    public void stop() {
+        running = false;
+        closeQuietly(serverSocket);
+        synchronized (frameLock) {
+            frameLock.notifyAll();
+        }
+    }
+
+    // Chamado pela thread da simulação a cada tick; sem clientes ou antes do intervalo mínimo não faz nada
+    public void publish(TickEngine engine) {
+        if (clients.isEmpty()) return;
+        long now = System.nanoTime();
+        if (now - lastCaptureNanos < 1_000_000_000L / MAX_CAPTURE_FPS) return;
+        VehiclePool pool = engine.getPool();
+        int spareIndex;
+        synchronized (frameLock) {
+            spareIndex = latest == frames[0] ? 1 : 0;
+            if (frames[spareIndex] != null && frames[spareIndex].readers > 0) return; // Tenta no próximo tick
+        }
+        if (frames[spareIndex] == null || frames[spareIndex].handles.length != pool.capacity()) {
+            frames[spareIndex] = new Frame(pool.capacity(), network.approachCount()); // Só quando o pool cresce
+        }
+        lastCaptureNanos = now;
+        Frame frame = frames[spareIndex]; // Nem o mais recente nem lido por cliente: ninguém mais o alcança
+        long[] handles = frame.handles;
+        long[] vehicles = frame.vehicles;
+        for (int slot = 0; slot < vehicles.length; slot++) {
+            int link = pool.isInUse(slot) ? pool.link(slot) : -1;
+            if (link < 0) {
+                handles[slot] = -1L;
+                continue;
+            }
+            long quantized = Math.round(engine.linkProgress(slot) * 255);
+            handles[slot] = pool.handle(slot);
+            vehicles[slot] = ((long) pool.vehicleId(slot) << 32) | ((long) link << 8) | quantized;
+        }
+        byte[] lights = frame.lights;
+        for (int a = 0; a < lights.length; a++) {
+            lights[a] = (byte) engine.lightState(a).ordinal();
+        }
+        synchronized (frameLock) {
+            frame.tick = engine.getTick();
+            latest = frame;
+            frameLock.notifyAll();
+        }
+    }
+
+    // Quadro mais recente depois de afterTick, reservado para leitura (devolver com release); null se
+    // nenhum chegou em LIVENESS_CHECK_MS ou se o servidor parou
+    private Frame awaitFrame(long afterTick) throws InterruptedException {
+        synchronized (frameLock) {
+            long deadline = System.currentTimeMillis() + LIVENESS_CHECK_MS;
+            while (running && (latest == null || latest.tick == afterTick)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return null;
+                frameLock.wait(remaining);
+            }
+            if (!running) return null;
+            latest.readers++;
+            return latest;
+        }
+    }
+
+    private void release(Frame frame) {
+        synchronized (frameLock) {
+            frame.readers--;
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> handle(socket), "visualizacao-cliente");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (running) System.err.println("Erro no servidor de visualização: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            String requestLine = in.readLine();
+            if (requestLine == null) {
+                closeQuietly(socket);
+                return;
+            }
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+            String[] parts = requestLine.split(" ");
+            String path = parts.length > 1 ? parts[1] : "/";
+            String query = "";
+            int q = path.indexOf('?');
+            if (q >= 0) {
+                query = path.substring(q + 1);
+                path = path.substring(0, q);
+            }
+            if (path.equals("/ws") && "websocket".equalsIgnoreCase(headers.get("upgrade"))) {
+                if (!localOrigin(headers.get("origin"))) {
+                    respond(socket, "403 Forbidden", "text/plain", "Origem não permitida".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                socket.setSoTimeout(0);
+                acceptWebSocket(socket, headers.get("sec-websocket-key"), parseFps(query));
+                return; // O socket agora pertence ao cliente
+            }
+            if (path.equals("/")) {
+                respond(socket, "200 OK", "text/html; charset=utf-8", PAGE.getBytes(StandardCharsets.UTF_8));
+            } else if (path.equals("/map")) {
+                respond(socket, "200 OK", "application/json", mapJson.getBytes(StandardCharsets.UTF_8));
+            } else {
+                respond(socket, "404 Not Found", "text/plain", "Não encontrado".getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            closeQuietly(socket);
+        }
+    }
+
+    // Sem Origin: cliente fora do navegador. Com Origin, só a página deste servidor (loopback, mesma porta)
+    private boolean localOrigin(String origin) {
+        if (origin == null) return true;
+        try {
+            URI uri = new URI(origin);
+            String host = uri.getHost();
+            return "http".equals(uri.getScheme()) && uri.getPort() == serverSocket.getLocalPort() && host != null
+                    && (host.equals("localhost") || host.equals("127.0.0.1") || host.equals("[::1]"));
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    private static int parseFps(String query) {
+        for (String pair : query.split("&")) {
+            if (pair.startsWith("fps=")) {
+                try {
+                    return Math.max(1, Math.min(MAX_CAPTURE_FPS, Integer.parseInt(pair.substring(4))));
+                } catch (NumberFormatException e) {
+                    return DEFAULT_CLIENT_FPS;
+                }
+            }
+        }
+        return DEFAULT_CLIENT_FPS;
+    }
+
+    private void acceptWebSocket(Socket socket, String key, int fps) throws IOException {
+        if (key == null) {
+            respond(socket, "400 Bad Request", "text/plain", "Falta Sec-WebSocket-Key".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        String accept;
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            accept = Base64.getEncoder().encodeToString(sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 indisponível.", e);
+        }
+        String response = "HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n";
+        socket.getOutputStream().write(response.getBytes(StandardCharsets.ISO_8859_1));
+        socket.getOutputStream().flush();
+        socket.setTcpNoDelay(true);
+        Client client = new Client(socket, fps);
+        clients.add(client);
+        client.run(); // Esta thread passa a ser a de envio do cliente
+    }
+
+    // Quadro binário do servidor (sem máscara), com o comprimento estendido quando necessário
+    private static void writeBinaryFrame(OutputStream out, byte[] payload, int length) throws IOException {
+        byte[] header;
+        if (length < 126) {
+            header = new byte[] {(byte) 0x82, (byte) length};
+        } else if (length < 65536) {
+            header = new byte[] {(byte) 0x82, 126, (byte) (length >>> 8), (byte) length};
+        } else {
+            header = ByteBuffer.allocate(10).put((byte) 0x82).put((byte) 127).putLong(length).array();
+        }
+        out.write(header);
+        out.write(payload, 0, length);
+        out.flush();
+    }
+
+    private static void respond(Socket socket, String status, String contentType, byte[] body) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        String head = "HTTP/1.1 " + status + "\r\nContent-Type: " + contentType + "\r\nContent-Length: " + body.length
+                + "\r\nConnection: close\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(body);
+        out.flush();
+        closeQuietly(socket);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) closeable.close();
+        } catch (IOException e) {
+            // Já fechado
+        }
+    }
+
+    // Disposição dos cruzamentos por busca em largura: cada link desloca uma unidade no sentido de chegada.
+    // Links de mão dupla ficam lado a lado (deslocados para a direita de quem trafega).
+    static String buildMapJson(NetworkIndex network) {
+        int n = network.intersectionCount();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        boolean[] placed = new boolean[n];
+        int[] upstream = new int[network.linkCount()];
+        Arrays.fill(upstream, -1);
+        for (int l = 0; l < network.linkCount(); l++) {
+            for (int k = 0; k < network.exitCount(l); k++) {
+                int next = network.exitNextLink(l, k);
+                if (next >= 0 && upstream[next] < 0) upstream[next] = network.linkIntersection(l);
+            }
+        }
+        double componentOffset = 0;
+        for (int root = 0; root < n; root++) {
+            if (placed[root]) continue;
+            ArrayDeque<Integer> frontier = new ArrayDeque<>();
+            placed[root] = true;
+            x[root] = componentOffset;
+            frontier.add(root);
+            double maxX = componentOffset;
+            while (!frontier.isEmpty()) {
+                int i = frontier.poll();
+                for (int l = 0; l < network.linkCount(); l++) {
+                    if (upstream[l] != i) continue;
+                    int j = network.linkIntersection(l);
+                    if (placed[j]) continue;
+                    double[] unit = unit(network.approachDirection(network.linkApproach(l)));
+                    x[j] = x[i] + unit[0];
+                    y[j] = y[i] + unit[1];
+                    placed[j] = true;
+                    maxX = Math.max(maxX, x[j]);
+                    frontier.add(j);
+                }
+            }
+            componentOffset = maxX + 2;
+        }
+        StringBuilder json = new StringBuilder("{\"intersections\":[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) json.append(',');
+            json.append('[').append(x[i]).append(',').append(y[i]).append(",\"")
+                    .append(network.intersection(i).getId()).append("\"]");
+        }
+        json.append("],\"links\":[");
+        for (int l = 0; l < network.linkCount(); l++) {
+            int to = network.linkIntersection(l);
+            double[] unit = unit(network.approachDirection(network.linkApproach(l)));
+            double x0 = upstream[l] >= 0 ? x[upstream[l]] : x[to] - unit[0] * 0.6;
+            double y0 = upstream[l] >= 0 ? y[upstream[l]] : y[to] - unit[1] * 0.6;
+            double ox = -unit[1] * 0.08, oy = unit[0] * 0.08; // à direita do sentido de tráfego
+            if (l > 0) json.append(',');
+            json.append(String.format(Locale.ROOT, "[%.3f,%.3f,%.3f,%.3f,%d]",
+                    x0 + ox, y0 + oy, x[to] + ox, y[to] + oy, network.linkApproach(l)));
+        }
+        return json.append("],\"approaches\":").append(network.approachCount()).append('}').toString();
+    }
+
+    // Norte para cima na tela
+    private static double[] unit(Direction heading) {
+        switch (heading) {
+            case NORTH: return new double[] {0, -1};
+            case SOUTH: return new double[] {0, 1};
+            case EAST: return new double[] {1, 0};
+            default: return new double[] {-1, 0};
+        }
+    }
+
+    private static final String PAGE = """
+            <!DOCTYPE html>
+            <html><head><meta charset="utf-8"><title>Simulador de Tráfego</title>
+            <style>body{margin:0;background:#111;color:#ddd;font-family:sans-serif}#info{position:fixed;top:6px;left:8px}</style>
+            </head><body><div id="info">conectando...</div><canvas id="c"></canvas><script>
+            const cv = document.getElementById('c'), ctx = cv.getContext('2d'), info = document.getElementById('info');
+            const vehicles = new Map(); let map = null, lights = [], tick = 0;
+            const colors = ['#2c2', '#ec2', '#e22'];
+            fetch('/map').then(r => r.json()).then(m => { map = m; lights = new Array(m.approaches).fill(2); connect(); draw(); });
+            function connect() {
+              const ws = new WebSocket('ws://' + location.host + '/ws' + location.search);
+              ws.binaryType = 'arraybuffer';
+              ws.onmessage = e => {
+                const d = new DataView(e.data); let p = 1;
+                tick = Number(d.getBigInt64(p)); p += 8;
+                for (let n = d.getInt32(p), k = (p += 4, 0); k < n; k++, p += 5) lights[d.getInt32(p)] = d.getInt8(p + 4);
+                for (let n = d.getInt32(p), k = (p += 4, 0); k < n; k++, p += 4) vehicles.delete(d.getInt32(p));
+                for (let n = d.getInt32(p), k = (p += 4, 0); k < n; k++, p += 8) {
+                  const packed = d.getUint32(p + 4); vehicles.set(d.getInt32(p), [packed >>> 8, (packed & 255) / 255]);
+                }
+              };
+              ws.onclose = () => { info.textContent = 'desconectado'; };
+            }
+            function draw() {
+              cv.width = innerWidth; cv.height = innerHeight;
+              let minX = 1e9, minY = 1e9, maxX = -1e9, maxY = -1e9;
+              for (const [x0, y0, x1, y1] of map.links) { minX = Math.min(minX, x0, x1); minY = Math.min(minY, y0, y1); maxX = Math.max(maxX, x0, x1); maxY = Math.max(maxY, y0, y1); }
+              const s = Math.min(cv.width / (maxX - minX + 1), cv.height / (maxY - minY + 1));
+              const tx = x => (x - minX + 0.5) * s, ty = y => (y - minY + 0.5) * s;
+              ctx.lineWidth = Math.max(1, s * 0.04);
+              for (const [x0, y0, x1, y1, a] of map.links) {
+                ctx.strokeStyle = '#444'; ctx.beginPath(); ctx.moveTo(tx(x0), ty(y0)); ctx.lineTo(tx(x1), ty(y1)); ctx.stroke();
+                ctx.fillStyle = colors[lights[a]] || '#888';
+                ctx.fillRect(tx(x0 + (x1 - x0) * 0.85) - 2, ty(y0 + (y1 - y0) * 0.85) - 2, 4, 4);
+              }
+              ctx.fillStyle = '#4af';
+              for (const [link, f] of vehicles.values()) {
+                const [x0, y0, x1, y1] = map.links[link];
+                ctx.fillRect(tx(x0 + (x1 - x0) * f * 0.8) - 1.5, ty(y0 + (y1 - y0) * f * 0.8) - 1.5, 3, 3);
+              }
+              info.textContent = 'tick ' + tick + ' | ' + vehicles.size + ' veículos';
+              requestAnimationFrame(draw);
+            }
+            </script></body></html>
+            """;
+
+    // Uso: VisualizationServer [porta] [padrao|NxM] [MICRO|MESO|HYBRID] [demanda/h] [velocidade (x tempo real, 0 = máxima)]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String gridSpec = args.length > 1 && !args[1].equalsIgnoreCase("padrao") ? args[1] : null;
+        EngineMode mode = args.length > 2 ? EngineMode.valueOf(args[2].toUpperCase()) : EngineMode.MICRO;
+        double demand = args.length > 3 ? Double.parseDouble(args[3]) : 1200;
+        double speedup = args.length > 4 ? Double.parseDouble(args[4]) : 1.0;
+        Scenario scenario = DistributedNode.buildScenario(gridSpec, mode, demand, 42L, Long.MAX_VALUE);
+        TickEngine engine = new TickEngine(scenario);
+        VisualizationServer server = new VisualizationServer(scenario.getNetwork());
+        server.start(port);
+        long start = System.nanoTime();
+        while (true) {
+            engine.step();
+            server.publish(engine);
+            if (speedup > 0) { // Mantém o ritmo de tempo real (multiplicado)
+                long due = start + (long) (engine.getTick() * TickEngine.TICK_MS * 1_000_000L / speedup);
+                long ahead = due - System.nanoTime();
+                if (ahead > 0) Thread.sleep(ahead / 1_000_000, (int) (ahead % 1_000_000));
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.simuladortrafego;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Análises "e se" sobre uma simulação em andamento: cada variante é uma bifurcação (TickEngine.fork) do
+// estado atual com uma alteração (prorrogar um verde, fechar uma rua...), avançada pelo mesmo horizonte
+// em paralelo com as demais e com a própria execução ao vivo. As bifurcações herdam os fluxos aleatórios,
+// então todas veem a mesma demanda e as diferenças entre variantes vêm só das alterações.
+// A variante "base" (sem alteração) é sempre a primeira e serve de referência na comparação.
+public final class WhatIfAnalysis {
+
+    public interface Change {
+        void apply(TickEngine fork);
+    }
+
+    // Indicadores de uma variante acumulados só no horizonte, a partir do tick da bifurcação
+    public static final class Outcome {
+        private final String name;
+        private final int completed;
+        private final double meanDelaySeconds;
+        private final int inNetwork;
+        private final long trajectoryHash;
+
+        Outcome(String name, int completed, double meanDelaySeconds, int inNetwork, long trajectoryHash) {
+            this.name = name;
+            this.completed = completed;
+            this.meanDelaySeconds = meanDelaySeconds;
+            this.inNetwork = inNetwork;
+            this.trajectoryHash = trajectoryHash;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCompleted() {
+            return completed;
+        }
+
+        public double getMeanDelaySeconds() {
+            return meanDelaySeconds;
+        }
+
+        public int getInNetwork() {
+            return inNetwork;
+        }
+
+        public long getTrajectoryHash() {
+            return trajectoryHash;
+        }
+    }
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Change> changes = new ArrayList<>();
+
+    public WhatIfAnalysis() {
+        add("base", fork -> { });
+    }
+
+    public WhatIfAnalysis add(String name, Change change) {
+        names.add(name);
+        changes.add(change);
+        return this;
+    }
+
+    // Bifurca "live" agora (na thread que o avança) e devolve as variantes rodando em "workers";
+    // o chamador pode continuar avançando "live" enquanto isso
+    public List<Future<Outcome>> start(TickEngine live, long horizonTicks, ExecutorService workers) {
+        List<Future<Outcome>> outcomes = new ArrayList<>();
+        for (int k = 0; k < names.size(); k++) {
+            TickEngine fork = live.fork();
+            changes.get(k).apply(fork);
+            String name = names.get(k);
+            outcomes.add(workers.submit(() -> advance(name, fork, horizonTicks)));
+        }
+        return outcomes;
+    }
+
+    public List<Outcome> run(TickEngine live, long horizonTicks, ExecutorService workers) {
+        return await(start(live, horizonTicks, workers));
+    }
+
+    static List<Outcome> await(List<Future<Outcome>> futures) {
+        List<Outcome> outcomes = new ArrayList<>();
+        try {
+            for (Future<Outcome> future : futures) {
+                outcomes.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Análise interrompida.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha em uma variante: " + e.getCause().getMessage(), e.getCause());
+        }
+        return outcomes;
+    }
+
+    private static Outcome advance(String name, TickEngine fork, long horizonTicks) {
+        int completedBefore = fork.result().getCompleted();
+        double delayBefore = fork.totalDelaySeconds();
+        for (long t = 0; t < horizonTicks; t++) {
+            fork.step();
+        }
+        ReplicationResult result = fork.result();
+        int completed = result.getCompleted() - completedBefore;
+        double delay = fork.totalDelaySeconds() - delayBefore;
+        return new Outcome(name, completed, completed > 0 ? delay / completed : 0.0, result.getInNetwork(),
+                fork.getTrajectoryHash());
+    }
+
+    static final String CHANGE_FORMS = "verde:<cruzamento>:<s>, fecha:<rua>, abre:<rua>, capacidade:<rua>:<veículos>,"
+            + " mao:<rua>:<cruzamento> ou tempos:<cruzamento>:<verde s>:<amarelo s>";
+
+    // Uma das CHANGE_FORMS; várias alterações na mesma variante unidas por "+"
+    static Change parseChange(String spec) {
+        List<Change> parts = new ArrayList<>();
+        for (String part : spec.split("\\+")) {
+            String[] fields = part.split(":");
+            if (fields[0].equals("verde") && fields.length == 3) {
+                long ms = Math.round(Double.parseDouble(fields[2]) * 1000);
+                parts.add(fork -> fork.extendGreen(fields[1], ms));
+            } else if (fields[0].equals("fecha") && fields.length == 2) {
+                parts.add(fork -> fork.getEditor().closeStreet(fields[1]));
+            } else if (fields[0].equals("abre") && fields.length == 2) {
+                parts.add(fork -> fork.getEditor().reopenStreet(fields[1]));
+            } else if (fields[0].equals("capacidade") && fields.length == 3) {
+                int vehicles = Integer.parseInt(fields[2]);
+                parts.add(fork -> fork.getEditor().setCapacity(fields[1], vehicles));
+            } else if (fields[0].equals("mao") && fields.length == 3) {
+                parts.add(fork -> fork.getEditor().restrictOneWay(fields[1], fields[2]));
+            } else if (fields[0].equals("tempos") && fields.length == 4) {
+                double green = Double.parseDouble(fields[2]);
+                double yellow = Double.parseDouble(fields[3]);
+                parts.add(fork -> fork.getEditor().retimeLight(fields[1], green, yellow));
+            } else {
+                throw new IllegalArgumentException("Alteração inválida (use " + CHANGE_FORMS + "): " + part);
+            }
+        }
+        return fork -> {
+            for (Change change : parts) change.apply(fork);
+        };
+    }
+
+    // Uso: WhatIfAnalysis <padrao|NxM|extrato OSM|arquivo de cenário> <MICRO|MESO|HYBRID> <demanda/h> <semente>
+    //      <tick da bifurcação> <minutos> <variante>...
+    // Avança a execução "ao vivo" até o tick, bifurca as variantes e as roda nos núcleos livres enquanto a
+    // execução ao vivo segue; a base tem de terminar idêntica a ela.
+    public static void main(String[] args) throws IOException {
+        if (args.length < 7) {
+            System.err.println("Uso: WhatIfAnalysis <padrao|NxM|extrato OSM|arquivo de cenário> <MICRO|MESO|HYBRID>"
+                    + " <demanda/h> <semente> <tick da bifurcação> <minutos> <variante>...");
+            System.err.println("Variante: " + CHANGE_FORMS + "; várias unidas por +");
+            System.exit(2);
+        }
+        long forkTick = Long.parseLong(args[4]);
+        long horizonTicks = Math.round(Double.parseDouble(args[5]) * 60 / TickEngine.TICK_SECONDS);
+        Scenario scenario = ReproducibilityCheck.buildScenario(new String[] {args[0], args[1], args[2], args[3],
+                String.valueOf(forkTick + horizonTicks)});
+        WhatIfAnalysis analysis = new WhatIfAnalysis();
+        for (int k = 6; k < args.length; k++) {
+            analysis.add(args[k], parseChange(args[k]));
+        }
+
+        TickEngine live = new TickEngine(scenario);
+        live.enableTrajectoryHash();
+        while (live.getTick() < forkTick) {
+            live.step();
+        }
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); // um núcleo fica com a execução ao vivo
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.currentTimeMillis();
+            List<Future<Outcome>> running = analysis.start(live, horizonTicks, workers);
+            long forked = System.currentTimeMillis() - start;
+            for (long t = 0; t < horizonTicks; t++) {
+                live.step();
+            }
+            List<Outcome> outcomes = await(running);
+            System.out.println("Bifurcação no tick " + forkTick + " em " + forked + " ms; " + outcomes.size()
+                    + " variantes por " + args[5] + " min em " + threads + " threads ("
+                    + (System.currentTimeMillis() - start) + " ms).");
+            Outcome base = outcomes.get(0);
+            System.out.printf("%-40s %12s %8s %14s %8s %10s%n", "Variante", "Concluídos", "Δ", "Atraso médio", "Δ", "Na rede");
+            for (Outcome o : outcomes) {
+                System.out.printf("%-40s %12d %+8d %12.2f s %+8.2f %10d%n", o.getName(), o.getCompleted(),
+                        o.getCompleted() - base.getCompleted(), o.getMeanDelaySeconds(),
+                        o.getMeanDelaySeconds() - base.getMeanDelaySeconds(), o.getInNetwork());
+            }
+            if (base.getTrajectoryHash() != live.getTrajectoryHash()) {
+                System.err.println("Base divergiu da execução ao vivo.");
+                System.exit(1);
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+}
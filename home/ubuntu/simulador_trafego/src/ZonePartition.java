@@ -0,0 +1,85 @@
+package com.simuladortrafego;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+// Divide a rede em zona microscópica (núcleo) e mesoscópica (entorno) para o modo HYBRID.
+// Um link pertence à zona do cruzamento para onde ele leva; ruas que cruzam a fronteira
+// são onde os veículos trocam de representação.
+public final class ZonePartition {
+    private final boolean[] microIntersection;
+    private final int microCount;
+
+    private ZonePartition(boolean[] microIntersection) {
+        this.microIntersection = microIntersection;
+        int count = 0;
+        for (boolean micro : microIntersection) if (micro) count++;
+        this.microCount = count;
+    }
+
+    public static ZonePartition of(NetworkIndex network, Collection<String> microIntersectionIds) {
+        boolean[] micro = new boolean[network.intersectionCount()];
+        for (String id : microIntersectionIds) {
+            int i = network.intersectionIndexOf(id);
+            if (i < 0) {
+                throw new IllegalArgumentException("Cruzamento desconhecido na zona microscópica: " + id);
+            }
+            micro[i] = true;
+        }
+        return new ZonePartition(micro);
+    }
+
+    // Núcleo = cruzamentos a até "hops" saltos do centro (busca em largura pelas ligações da rede)
+    public static ZonePartition around(NetworkIndex network, String centerId, int hops) {
+        int center = network.intersectionIndexOf(centerId);
+        if (center < 0) {
+            throw new IllegalArgumentException("Cruzamento central desconhecido: " + centerId);
+        }
+        int n = network.intersectionCount();
+        List<List<Integer>> neighbours = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) neighbours.add(new ArrayList<>());
+        for (int l = 0; l < network.linkCount(); l++) {
+            int from = network.linkIntersection(l);
+            for (int k = 0; k < network.exitCount(l); k++) {
+                int next = network.exitNextLink(l, k);
+                if (next < 0) continue;
+                int to = network.linkIntersection(next);
+                neighbours.get(from).add(to);
+                neighbours.get(to).add(from);
+            }
+        }
+        int[] depth = new int[n];
+        Arrays.fill(depth, -1);
+        boolean[] micro = new boolean[n];
+        ArrayDeque<Integer> frontier = new ArrayDeque<>();
+        depth[center] = 0;
+        frontier.add(center);
+        while (!frontier.isEmpty()) {
+            int i = frontier.poll();
+            micro[i] = true;
+            if (depth[i] == hops) continue;
+            for (int j : neighbours.get(i)) {
+                if (depth[j] < 0) {
+                    depth[j] = depth[i] + 1;
+                    frontier.add(j);
+                }
+            }
+        }
+        return new ZonePartition(micro);
+    }
+
+    public boolean isMicroIntersection(int i) {
+        return microIntersection[i];
+    }
+
+    public boolean isMicroLink(NetworkIndex network, int link) {
+        return microIntersection[network.linkIntersection(link)];
+    }
+
+    public int microIntersectionCount() {
+        return microCount;
+    }
+}